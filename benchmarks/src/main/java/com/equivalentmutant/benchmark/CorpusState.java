@@ -0,0 +1,94 @@
+package com.equivalentmutant.benchmark;
+
+import com.equivalentmutant.dependency.MethodDependencyTracker;
+import com.equivalentmutant.dependency.RecursiveDependencyResolver;
+import com.equivalentmutant.dependency.SimpleMethodResolver;
+import com.equivalentmutant.index.SourceIndex;
+import com.equivalentmutant.model.CallSiteTable;
+import com.equivalentmutant.model.DependencyGraph;
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.model.MethodCallInfo;
+import com.equivalentmutant.parser.CompilationUnitCache;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A generated corpus shared by the stage benchmarks, indexed once per trial. Each stage uses the part it
+ * needs: the files for parsing, the index and its call sites for resolution, the entry method for
+ * traversal and the entry method's graph for rendering.
+ * <p>
+ * The shape is set with JMH parameters, for example {@code -p classCount=2000 -p callDensity=5}.
+ */
+@State(Scope.Benchmark)
+public class CorpusState {
+
+    @Param("500")
+    public int classCount;
+
+    @Param("20")
+    public int methodsPerClass;
+
+    @Param("3")
+    public double callDensity;
+
+    @Param("0.1")
+    public double overloadRate;
+
+    @Param("8")
+    public int chainDepth;
+
+    Path root;
+    List<Path> files;
+    CompilationUnitCache unitCache;
+    CallSiteTable callSiteTable;
+    SimpleMethodResolver methodResolver;
+    SourceIndex index;
+    JavaMethod entryMethod;
+    MethodCallInfo[] calls;
+    DependencyGraph graph;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        SyntheticCorpus corpus = new SyntheticCorpus(classCount, methodsPerClass, callDensity, overloadRate,
+            chainDepth, 42);
+        root = Files.createTempDirectory("corpus");
+        files = corpus.write(root);
+
+        unitCache = new CompilationUnitCache();
+        callSiteTable = new CallSiteTable();
+        methodResolver = new SimpleMethodResolver();
+        index = new SourceIndex(root, unitCache, callSiteTable, methodResolver);
+        index.build(Runtime.getRuntime().availableProcessors(), null);
+        entryMethod = index.findMethods(corpus.getEntryClass() + "." + corpus.getEntryMethod()).get(0);
+
+        List<MethodCallInfo> allCalls = new ArrayList<>();
+        for (JavaMethod method : index.getMethods()) {
+            List<MethodCallInfo> methodCalls = callSiteTable.get(method);
+            if (methodCalls != null) {
+                allCalls.addAll(methodCalls);
+            }
+        }
+        calls = allCalls.toArray(new MethodCallInfo[0]);
+
+        graph = newDependencyResolver().buildDependencyGraph(entryMethod, -1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticCorpus.delete(root);
+    }
+
+    RecursiveDependencyResolver newDependencyResolver() {
+        return new RecursiveDependencyResolver(new MethodDependencyTracker(unitCache, callSiteTable), methodResolver);
+    }
+}
@@ -0,0 +1,43 @@
+package com.equivalentmutant.benchmark;
+
+import com.equivalentmutant.dependency.SimpleMethodResolver;
+import com.equivalentmutant.index.SourceIndex;
+import com.equivalentmutant.model.CallSiteTable;
+import com.equivalentmutant.parser.CompilationUnitCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Indexing the whole corpus from scratch with {@link SourceIndex#build}: parsing every file, recording the
+ * call sites and registering the methods with the resolver.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IndexBenchmark {
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Benchmark
+    public SourceIndex buildIndex(CorpusState corpus) throws IOException {
+        SourceIndex index = new SourceIndex(corpus.root, new CompilationUnitCache(), new CallSiteTable(),
+            new SimpleMethodResolver());
+        index.build(threads, null);
+        return index;
+    }
+}
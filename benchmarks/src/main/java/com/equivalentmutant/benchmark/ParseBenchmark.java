@@ -0,0 +1,53 @@
+package com.equivalentmutant.benchmark;
+
+import com.equivalentmutant.model.CallSiteTable;
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.parser.CompilationUnitCache;
+import com.equivalentmutant.parser.JavaSourceParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing one source file into methods and call sites with {@link JavaSourceParser#parseFile(File)}. The
+ * file is dropped from the parser's cache first, so every operation parses.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+    @State(Scope.Thread)
+    public static class ParserState {
+        CompilationUnitCache unitCache;
+        JavaSourceParser parser;
+        int next;
+
+        @Setup
+        public void setUp() {
+            unitCache = new CompilationUnitCache();
+            parser = new JavaSourceParser(unitCache, new CallSiteTable());
+        }
+    }
+
+    @Benchmark
+    public List<JavaMethod> parseFile(CorpusState corpus, ParserState state) throws FileNotFoundException {
+        File file = corpus.files.get(state.next++ % corpus.files.size()).toFile();
+        state.unitCache.invalidate(file);
+        return state.parser.parseFile(file);
+    }
+}
@@ -0,0 +1,41 @@
+package com.equivalentmutant.benchmark;
+
+import com.equivalentmutant.context.MethodContextExtractor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering the context of the corpus entry method's graph, both into a string with
+ * {@link MethodContextExtractor#extractMethodContext} and streamed to a writer that discards it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RenderBenchmark {
+
+    private final MethodContextExtractor extractor = new MethodContextExtractor();
+
+    @Benchmark
+    public String extractMethodContext(CorpusState corpus) {
+        return extractor.extractMethodContext(corpus.graph);
+    }
+
+    @Benchmark
+    public void writeMethodContext(CorpusState corpus) throws IOException {
+        extractor.writeMethodContext(corpus.graph, Writer.nullWriter());
+    }
+}
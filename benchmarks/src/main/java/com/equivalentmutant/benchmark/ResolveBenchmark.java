@@ -0,0 +1,45 @@
+package com.equivalentmutant.benchmark;
+
+import com.equivalentmutant.dependency.SimpleMethodResolver;
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.model.MethodCallInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Linking call sites to methods with the {@link SimpleMethodResolver} of the indexed corpus, one call site
+ * per operation, cycling through every call site of the corpus.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResolveBenchmark {
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public Optional<JavaMethod> resolveMethod(CorpusState corpus, Cursor cursor) {
+        MethodCallInfo call = corpus.calls[cursor.next++ % corpus.calls.length];
+        return corpus.methodResolver.resolveMethod(call.getMethodName(), call.getArgumentTypes());
+    }
+
+    @Benchmark
+    public Optional<JavaMethod> resolveCall(CorpusState corpus, Cursor cursor) {
+        return corpus.methodResolver.resolveCall(corpus.calls[cursor.next++ % corpus.calls.length]);
+    }
+}
@@ -0,0 +1,80 @@
+package com.equivalentmutant.benchmark;
+
+import com.equivalentmutant.context.MethodContextExtractor;
+import com.equivalentmutant.dependency.MethodDependencyTracker;
+import com.equivalentmutant.dependency.RecursiveDependencyResolver;
+import com.equivalentmutant.dependency.SimpleMethodResolver;
+import com.equivalentmutant.index.SourceIndex;
+import com.equivalentmutant.model.CallSiteTable;
+import com.equivalentmutant.model.DependencyGraph;
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.parser.CompilationUnitCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole pipeline as the command line runs it, on corpora from a thousand to a million methods: index
+ * the sources, build the entry method's graph and stream its context. Each operation starts from cold
+ * caches, so it is measured as single shots.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class ScalingBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int methodCount;
+
+    private SyntheticCorpus corpus;
+    private Path root;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        corpus = SyntheticCorpus.ofMethods(methodCount);
+        root = Files.createTempDirectory("corpus");
+        corpus.write(root);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticCorpus.delete(root);
+    }
+
+    @Benchmark
+    public DependencyGraph analyze() throws IOException {
+        CompilationUnitCache unitCache = new CompilationUnitCache();
+        CallSiteTable callSiteTable = new CallSiteTable();
+        SimpleMethodResolver methodResolver = new SimpleMethodResolver();
+        SourceIndex index = new SourceIndex(root, unitCache, callSiteTable, methodResolver);
+        int threads = Runtime.getRuntime().availableProcessors();
+        index.build(threads, null);
+
+        JavaMethod entryMethod = index.findMethods(corpus.getEntryClass() + "." + corpus.getEntryMethod()).get(0);
+        try (RecursiveDependencyResolver dependencyResolver = new RecursiveDependencyResolver(
+                 new MethodDependencyTracker(unitCache, callSiteTable), methodResolver, threads)) {
+            DependencyGraph graph = dependencyResolver.buildDependencyGraph(entryMethod, -1);
+            new MethodContextExtractor().writeMethodContext(graph, Writer.nullWriter());
+            return graph;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.equivalentmutant.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates a source tree of synthetic classes whose call graph has a chosen shape.
+ * <p>
+ * The classes are split into layers, one per level of the call chain, and the methods of each layer call
+ * methods of the next one, so the longest call chain from the first layer is {@code chainDepth - 1} calls.
+ * Every method has a name unique in the corpus and calls its callees through their qualified class, so
+ * name-based resolution finds the intended callee; overloads add a two-argument variant of a method that
+ * its callers pick some of the time. The same parameters and seed always generate the same sources.
+ */
+public class SyntheticCorpus {
+
+    private static final int CLASSES_PER_PACKAGE = 100;
+
+    private final int classCount;
+    private final int methodsPerClass;
+    private final double callDensity;
+    private final double overloadRate;
+    private final int chainDepth;
+    private final long seed;
+
+    /**
+     * @param classCount The number of classes
+     * @param methodsPerClass The number of methods declared by each class, not counting overloads
+     * @param callDensity The average number of calls each method makes, except in the last layer
+     * @param overloadRate The fraction of methods that also have a two-argument overload
+     * @param chainDepth The number of layers, and so the number of methods on the longest call chain
+     * @param seed The seed choosing the callees
+     */
+    public SyntheticCorpus(int classCount, int methodsPerClass, double callDensity, double overloadRate,
+                           int chainDepth, long seed) {
+        if (classCount < 1 || methodsPerClass < 1 || chainDepth < 1 || chainDepth > classCount) {
+            throw new IllegalArgumentException("Need at least one class and method, and one class per layer");
+        }
+        if (callDensity < 0 || overloadRate < 0 || overloadRate > 1) {
+            throw new IllegalArgumentException("Call density and overload rate must not be negative");
+        }
+        this.classCount = classCount;
+        this.methodsPerClass = methodsPerClass;
+        this.callDensity = callDensity;
+        this.overloadRate = overloadRate;
+        this.chainDepth = chainDepth;
+        this.seed = seed;
+    }
+
+    /**
+     * Creates a corpus of about the given size with the default shape: 20 methods per class, 3 calls per
+     * method, 10% overloads and a call chain of 8 methods.
+     *
+     * @param methodCount The number of methods, not counting overloads
+     * @return The corpus
+     */
+    public static SyntheticCorpus ofMethods(int methodCount) {
+        int classCount = Math.max(8, methodCount / 20);
+        return new SyntheticCorpus(classCount, Math.max(1, methodCount / classCount), 3.0, 0.1, 8, 42);
+    }
+
+    /**
+     * Writes the corpus as one file per class.
+     *
+     * @param root The source root to create the package directories in
+     * @return The written files, in class order
+     * @throws IOException If a file cannot be written
+     */
+    public List<Path> write(Path root) throws IOException {
+        Random random = new Random(seed);
+        BitSet overloaded = new BitSet(classCount * methodsPerClass);
+        for (int i = 0; i < classCount * methodsPerClass; i++) {
+            if (random.nextDouble() < overloadRate) {
+                overloaded.set(i);
+            }
+        }
+
+        List<Path> files = new ArrayList<>(classCount);
+        StringBuilder body = new StringBuilder();
+        for (int c = 0; c < classCount; c++) {
+            Path directory = Files.createDirectories(root.resolve("bench").resolve(packageName(c).substring(6)));
+            Path file = directory.resolve(className(c) + ".java");
+            int layer = layerOf(c);
+            try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                out.write("package " + packageName(c) + ";\n\n");
+                out.write("public class " + className(c) + " {\n");
+                for (int m = 0; m < methodsPerClass; m++) {
+                    String name = methodName(c, m);
+                    body.setLength(0);
+                    body.append("\n    /** Layer ").append(layer).append(", method ").append(m).append(". */\n");
+                    body.append("    public static int ").append(name).append("(int x) {\n");
+                    body.append("        int r = x;\n");
+                    if (layer < chainDepth - 1) {
+                        int calls = (int) callDensity + (random.nextDouble() < callDensity % 1 ? 1 : 0);
+                        int first = firstClassOf(layer + 1);
+                        int span = firstClassOf(layer + 2) - first;
+                        for (int i = 0; i < calls; i++) {
+                            int callee = first + random.nextInt(span);
+                            int method = random.nextInt(methodsPerClass);
+                            body.append("        r += ").append(packageName(callee)).append('.')
+                                .append(className(callee)).append('.').append(methodName(callee, method));
+                            if (overloaded.get(callee * methodsPerClass + method) && random.nextBoolean()) {
+                                body.append("(r, ").append(i).append(");\n");
+                            } else {
+                                body.append("(r);\n");
+                            }
+                        }
+                    }
+                    body.append("        return r;\n    }\n");
+                    if (overloaded.get(c * methodsPerClass + m)) {
+                        body.append("\n    public static int ").append(name).append("(int x, int y) {\n");
+                        body.append("        return ").append(name).append("(x + y);\n    }\n");
+                    }
+                    out.append(body);
+                }
+                out.write("}\n");
+            }
+            files.add(file);
+        }
+        return files;
+    }
+
+    /**
+     * @return The qualified name of the class declaring the entry method
+     */
+    public String getEntryClass() {
+        return packageName(0) + "." + className(0);
+    }
+
+    /**
+     * @return The name of a method in the first layer, from which the call chains start
+     */
+    public String getEntryMethod() {
+        return methodName(0, 0);
+    }
+
+    /**
+     * @return The number of methods, not counting overloads
+     */
+    public int getMethodCount() {
+        return classCount * methodsPerClass;
+    }
+
+    @Override
+    public String toString() {
+        return classCount + " classes x " + methodsPerClass + " methods, " + callDensity + " calls per method, "
+            + overloadRate + " overloads, chain depth " + chainDepth;
+    }
+
+    /**
+     * Deletes a generated source tree.
+     *
+     * @param root The source root
+     * @throws IOException If a file cannot be deleted
+     */
+    public static void delete(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path directory, IOException e) throws IOException {
+                Files.delete(directory);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private int layerOf(int classIndex) {
+        return (int) ((long) classIndex * chainDepth / classCount);
+    }
+
+    private int firstClassOf(int layer) {
+        // The smallest class index whose layer is at least the given one
+        return (int) (((long) layer * classCount + chainDepth - 1) / chainDepth);
+    }
+
+    private static String packageName(int classIndex) {
+        return "bench.p" + (classIndex / CLASSES_PER_PACKAGE);
+    }
+
+    private static String className(int classIndex) {
+        return "C" + classIndex;
+    }
+
+    private static String methodName(int classIndex, int methodIndex) {
+        return "c" + classIndex + "m" + methodIndex;
+    }
+}
@@ -0,0 +1,30 @@
+package com.equivalentmutant.benchmark;
+
+import com.equivalentmutant.dependency.RecursiveDependencyResolver;
+import com.equivalentmutant.model.DependencyGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the complete dependency graph of the corpus entry method with
+ * {@link RecursiveDependencyResolver#buildDependencyGraph}, on the already indexed call sites.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TraverseBenchmark {
+
+    @Benchmark
+    public DependencyGraph buildDependencyGraph(CorpusState corpus) {
+        return corpus.newDependencyResolver().buildDependencyGraph(corpus.entryMethod, -1);
+    }
+}
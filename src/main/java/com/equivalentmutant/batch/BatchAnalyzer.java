@@ -0,0 +1,350 @@
+package com.equivalentmutant.batch;
+
+import com.equivalentmutant.context.ContextStore;
+import com.equivalentmutant.context.ContextTruncation;
+import com.equivalentmutant.context.HashingWriter;
+import com.equivalentmutant.context.Json;
+import com.equivalentmutant.context.MethodContextExtractor;
+import com.equivalentmutant.dependency.MethodDependencyTracker;
+import com.equivalentmutant.dependency.MethodResolver;
+import com.equivalentmutant.dependency.MutationSlice;
+import com.equivalentmutant.dependency.MutationSlicer;
+import com.equivalentmutant.dependency.RecursiveDependencyResolver;
+import com.equivalentmutant.dependency.SubgraphCache;
+import com.equivalentmutant.dependency.TraversalBudget;
+import com.equivalentmutant.index.SourceIndex;
+import com.equivalentmutant.model.DependencyGraph;
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.model.MethodCallInfo;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Analyzes many target methods against one method index.
+ * <p>
+ * Targets are spread over a pool of worker threads, each building graphs with the sequential traversal.
+ * Output records are written in target order, one JSON object per line. Only the targets within a window
+ * of {@value #WINDOW_PER_THREAD} per thread past the first unwritten record are started, so no more
+ * finished records than that are held back waiting for an earlier one. Within the window, the targets
+ * with the largest estimated graphs are started first, so a run does not end waiting on a single large
+ * target that happened to come last.
+ * <p>
+ * With a {@link MutationSlicer}, the graph of a target with a mutation line only follows the calls that the
+ * mutation can affect, and the record reports the size of the slice. A target whose mutation does not lie
+ * in a statement of the method is analyzed whole.
+ * <p>
+ * Every record carries the SHA-256 hash of its context. With a {@link ContextStore}, contexts are written to
+ * the store instead of into the records, and a context already stored for an earlier graph with the same
+ * context key is not rendered again.
+ * <p>
+ * When the extractor has a {@link com.equivalentmutant.context.ContextBudget}, records with an inline
+ * context also report what the budget cut from it; a stored context states the same in its closing line.
+ */
+public class BatchAnalyzer {
+
+    static final int WINDOW_PER_THREAD = 32;
+
+    private final SourceIndex sourceIndex;
+    private final MethodDependencyTracker dependencyTracker;
+    private final MethodResolver methodResolver;
+    private final RecursiveDependencyResolver dependencyResolver;
+    private final MethodContextExtractor contextExtractor;
+    private final int threads;
+    private final MutationSlicer mutationSlicer;
+    private final ContextStore contextStore;
+
+    /**
+     * @param sourceIndex The index the targets are looked up in
+     * @param dependencyTracker The tracker used to find method calls
+     * @param methodResolver The resolver used to resolve method calls
+     * @param contextExtractor The extractor that renders the context of each graph
+     * @param threads The number of targets analyzed at the same time
+     */
+    public BatchAnalyzer(SourceIndex sourceIndex, MethodDependencyTracker dependencyTracker,
+                         MethodResolver methodResolver, MethodContextExtractor contextExtractor, int threads) {
+        this(sourceIndex, dependencyTracker, methodResolver, contextExtractor, threads, null);
+    }
+
+    /**
+     * @param sourceIndex The index the targets are looked up in
+     * @param dependencyTracker The tracker used to find method calls
+     * @param methodResolver The resolver used to resolve method calls
+     * @param contextExtractor The extractor that renders the context of each graph
+     * @param threads The number of targets analyzed at the same time
+     * @param subgraphCache The cache sharing resolved subgraphs between targets, or null
+     */
+    public BatchAnalyzer(SourceIndex sourceIndex, MethodDependencyTracker dependencyTracker,
+                         MethodResolver methodResolver, MethodContextExtractor contextExtractor, int threads,
+                         SubgraphCache subgraphCache) {
+        this(sourceIndex, dependencyTracker, methodResolver, contextExtractor, threads, subgraphCache, null);
+    }
+
+    /**
+     * @param sourceIndex The index the targets are looked up in
+     * @param dependencyTracker The tracker used to find method calls
+     * @param methodResolver The resolver used to resolve method calls
+     * @param contextExtractor The extractor that renders the context of each graph
+     * @param threads The number of targets analyzed at the same time
+     * @param subgraphCache The cache sharing resolved subgraphs between targets, or null
+     * @param mutationSlicer The slicer restricting each graph to the calls its mutation can affect, or null
+     */
+    public BatchAnalyzer(SourceIndex sourceIndex, MethodDependencyTracker dependencyTracker,
+                         MethodResolver methodResolver, MethodContextExtractor contextExtractor, int threads,
+                         SubgraphCache subgraphCache, MutationSlicer mutationSlicer) {
+        this(sourceIndex, dependencyTracker, methodResolver, contextExtractor, threads, subgraphCache,
+            mutationSlicer, null);
+    }
+
+    /**
+     * @param sourceIndex The index the targets are looked up in
+     * @param dependencyTracker The tracker used to find method calls
+     * @param methodResolver The resolver used to resolve method calls
+     * @param contextExtractor The extractor that renders the context of each graph
+     * @param threads The number of targets analyzed at the same time
+     * @param subgraphCache The cache sharing resolved subgraphs between targets, or null
+     * @param mutationSlicer The slicer restricting each graph to the calls its mutation can affect, or null
+     * @param contextStore The store the contexts are written to instead of the records, or null
+     */
+    public BatchAnalyzer(SourceIndex sourceIndex, MethodDependencyTracker dependencyTracker,
+                         MethodResolver methodResolver, MethodContextExtractor contextExtractor, int threads,
+                         SubgraphCache subgraphCache, MutationSlicer mutationSlicer, ContextStore contextStore) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        }
+        this.sourceIndex = sourceIndex;
+        this.dependencyTracker = dependencyTracker;
+        this.methodResolver = methodResolver;
+        this.dependencyResolver = new RecursiveDependencyResolver(dependencyTracker, methodResolver, 1, subgraphCache);
+        this.contextExtractor = contextExtractor;
+        this.threads = threads;
+        this.mutationSlicer = mutationSlicer;
+        this.contextStore = contextStore;
+    }
+
+    /**
+     * Analyzes all targets and writes one record per target, in target order. A target that cannot be
+     * analyzed produces an error record instead of stopping the batch.
+     *
+     * @param targets The targets
+     * @param maxDepth The maximum recursion depth (use -1 for unlimited)
+     * @param budget The limits for each traversal
+     * @param out The destination of the records
+     * @return The number of targets that failed
+     * @throws IOException If the records cannot be written
+     * @throws InterruptedException If the calling thread is interrupted
+     */
+    public int analyze(List<BatchTarget> targets, int maxDepth, TraversalBudget budget, Writer out)
+            throws IOException, InterruptedException {
+        int[] estimates = new int[targets.size()];
+        for (int i = 0; i < targets.size(); i++) {
+            JavaMethod method = findMethod(targets.get(i));
+            estimates[i] = method == null ? 0 : estimateSize(method);
+        }
+        PriorityQueue<Integer> ready = new PriorityQueue<>(
+            (a, b) -> estimates[a] != estimates[b] ? Integer.compare(estimates[b], estimates[a]) : Integer.compare(a, b));
+        int window = threads * WINDOW_PER_THREAD;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CompletionService<BatchRecord> completion = new ExecutorCompletionService<>(executor);
+        try {
+            // Records finish out of order; hold them until every earlier record has been written
+            Map<Integer, BatchRecord> finished = new HashMap<>();
+            int nextToWrite = 0;
+            int nextToQueue = 0;
+            int running = 0;
+            int failed = 0;
+            while (nextToWrite < targets.size()) {
+                while (nextToQueue < targets.size() && nextToQueue < nextToWrite + window) {
+                    ready.add(nextToQueue++);
+                }
+                // Keep every thread busy with one target queued behind it, but start the largest ready
+                // target only when a thread is about to need it
+                while (running < 2 * threads && !ready.isEmpty()) {
+                    int position = ready.poll();
+                    BatchTarget target = targets.get(position);
+                    completion.submit(() -> analyzeTarget(position, target, maxDepth, budget));
+                    running++;
+                }
+                BatchRecord record = takeRecord(completion);
+                running--;
+                if (!record.isSuccess()) {
+                    failed++;
+                }
+                finished.put(record.getPosition(), record);
+                boolean written = false;
+                while (finished.containsKey(nextToWrite)) {
+                    out.write(finished.remove(nextToWrite).getJson());
+                    out.write('\n');
+                    nextToWrite++;
+                    written = true;
+                }
+                if (written) {
+                    out.flush();
+                }
+            }
+            return failed;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Analyzes a single target.
+     *
+     * @param target The target
+     * @param maxDepth The maximum recursion depth (use -1 for unlimited)
+     * @param budget The limits for the traversal
+     * @return The record of the target, a single-line JSON object
+     */
+    public String analyze(BatchTarget target, int maxDepth, TraversalBudget budget) {
+        return analyzeTarget(0, target, maxDepth, budget).getJson();
+    }
+
+    private BatchRecord analyzeTarget(int position, BatchTarget target, int maxDepth, TraversalBudget budget) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"index\":").append(target.getIndex())
+            .append(",\"target\":").append(Json.quote(target.toString()));
+        int header = json.length();
+        try {
+            JavaMethod method = findMethod(target);
+            if (method == null) {
+                throw new IllegalArgumentException("Target method not found: " + target);
+            }
+            MutationSlice slice = sliceAtMutation(method, target);
+            DependencyGraph graph = dependencyResolver.buildDependencyGraph(method, maxDepth, budget, slice);
+
+            json.append(",\"status\":\"ok\"")
+                .append(",\"signature\":").append(Json.quote(method.getSignature()))
+                .append(",\"location\":").append(Json.quote(method.getLocation().toString()))
+                .append(",\"methods\":").append(graph.getAllMethods().size())
+                .append(",\"dependencies\":").append(graph.getDependencyCount())
+                .append(",\"truncated\":")
+                .append(graph.isTruncated() ? Json.quote(graph.getTruncationReason().name()) : "null");
+            if (mutationSlicer != null) {
+                json.append(",\"slice\":");
+                if (slice == null) {
+                    json.append("null");
+                } else {
+                    json.append("{\"statements\":").append(slice.getStatementCount())
+                        .append(",\"sliced\":").append(slice.getSlicedStatementCount())
+                        .append(",\"calls\":").append(slice.getCallSiteCount()).append('}');
+                }
+            }
+            String contextHash;
+            if (contextStore != null) {
+                contextHash = contextStore.store(graph, target.getMutationLine(), contextExtractor);
+            } else {
+                json.append(",\"context\":\"");
+                // The context is escaped straight into the record instead of being built as a string first
+                HashingWriter context = new HashingWriter(Json.escaping(json));
+                ContextTruncation truncation = contextExtractor.writeMethodContext(graph, target.getMutationLine(),
+                    context);
+                contextHash = context.getHash();
+                json.append('"');
+                if (!contextExtractor.getBudget().isUnlimited()) {
+                    json.append(",\"contextTruncation\":");
+                    if (truncation.isTruncated()) {
+                        json.append("{\"root\":").append(truncation.isRootTruncated() ? "\"cut\"" : "\"full\"")
+                            .append(",\"full\":").append(truncation.getFullMethods())
+                            .append(",\"signatures\":").append(truncation.getSignatureMethods())
+                            .append(",\"omitted\":").append(truncation.getOmittedMethods()).append('}');
+                    } else {
+                        json.append("null");
+                    }
+                }
+            }
+            json.append(",\"contextHash\":").append(Json.quote(contextHash)).append('}');
+            return new BatchRecord(position, true, json.toString());
+        } catch (RuntimeException | IOException e) {
+            // Drop whatever part of a successful record was written before the failure
+            json.setLength(header);
+            json.append(",\"status\":\"error\"")
+                .append(",\"error\":").append(Json.quote(String.valueOf(e.getMessage())))
+                .append('}');
+            return new BatchRecord(position, false, json.toString());
+        }
+    }
+
+    /**
+     * Slices the target method at its mutation.
+     *
+     * @return The slice, or null if slicing is off, the target has no mutation line or the mutation does not
+     *         lie in a statement of the method
+     */
+    private MutationSlice sliceAtMutation(JavaMethod method, BatchTarget target) {
+        if (mutationSlicer == null || target.getMutationLine() < 0) {
+            return null;
+        }
+        try {
+            return mutationSlicer.slice(method, target.getMutationLine(), target.getMutationColumn());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Finds the indexed method of a target.
+     *
+     * @param target The target
+     * @return The method, or null if no indexed method matches
+     */
+    public JavaMethod findMethod(BatchTarget target) {
+        return target.selectMethod(sourceIndex.findMethods(target.getFullyQualifiedName()));
+    }
+
+    /**
+     * Estimates the graph size of a method from the calls made within two levels of it. This only reads
+     * the call-site table, so it is cheap compared to building the graph.
+     */
+    private int estimateSize(JavaMethod method) {
+        List<MethodCallInfo> calls = dependencyTracker.findMethodCalls(method);
+        int estimate = calls.size();
+        Set<JavaMethod> callees = new HashSet<>();
+        for (MethodCallInfo call : calls) {
+            Optional<JavaMethod> callee = methodResolver.resolveCall(call);
+            if (callee.isPresent() && callees.add(callee.get())) {
+                estimate += dependencyTracker.findMethodCalls(callee.get()).size();
+            }
+        }
+        return estimate;
+    }
+
+    private static BatchRecord takeRecord(CompletionService<BatchRecord> completion) throws InterruptedException {
+        try {
+            return completion.take().get();
+        } catch (ExecutionException e) {
+            // Targets catch their own failures, so this is an error in the analyzer itself
+            throw new RuntimeException("Batch analysis failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * The finished output of one target.
+     */
+    private static class BatchRecord {
+        private final int position;
+        private final boolean success;
+        private final String json;
+
+        BatchRecord(int position, boolean success, String json) {
+            this.position = position;
+            this.success = success;
+            this.json = json;
+        }
+
+        int getPosition() {
+            return position;
+        }
+
+        boolean isSuccess() {
+            return success;
+        }
+
+        String getJson() {
+            return json;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.equivalentmutant.batch;
+
+import com.equivalentmutant.model.JavaMethod;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A method to analyze in a batch run, usually the method containing a mutant.
+ */
+public class BatchTarget {
+    private final int index;
+    private final String className;
+    private final String methodName;
+    private final String signature;
+    private final int mutationLine;
+    private final int mutationColumn;
+
+    /**
+     * @param index The position of the target in the batch
+     * @param className Fully qualified name of the class
+     * @param methodName Name of the method
+     * @param signature The method signature used to pick an overload, or null
+     * @param mutationLine The line of the mutation, or -1 if unknown
+     * @param mutationColumn The column of the mutation, or -1 if unknown
+     */
+    public BatchTarget(int index, String className, String methodName, String signature,
+                       int mutationLine, int mutationColumn) {
+        this.index = index;
+        this.className = className;
+        this.methodName = methodName;
+        this.signature = signature;
+        this.mutationLine = mutationLine;
+        this.mutationColumn = mutationColumn;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public String getSignature() {
+        return signature;
+    }
+
+    public int getMutationLine() {
+        return mutationLine;
+    }
+
+    public int getMutationColumn() {
+        return mutationColumn;
+    }
+
+    public String getFullyQualifiedName() {
+        return className + "." + methodName;
+    }
+
+    /**
+     * Picks the method this target refers to among the methods with its name, using the signature and then
+     * the mutation line to choose between overloads.
+     *
+     * @param candidates The methods with the target's fully qualified name
+     * @return The method, or null if no candidate matches
+     */
+    public JavaMethod selectMethod(List<JavaMethod> candidates) {
+        if (signature != null) {
+            String normalizedSignature = normalizeSignature(signature);
+            List<JavaMethod> matching = new ArrayList<>();
+            for (JavaMethod candidate : candidates) {
+                if (normalizeSignature(candidate.getSignature()).equals(normalizedSignature)) {
+                    matching.add(candidate);
+                }
+            }
+            candidates = matching;
+        }
+        if (candidates.size() > 1 && mutationLine >= 0) {
+            for (JavaMethod candidate : candidates) {
+                if (candidate.getLocation().getBeginLine() <= mutationLine
+                        && mutationLine <= candidate.getLocation().getEndLine()) {
+                    return candidate;
+                }
+            }
+        }
+        return candidates.isEmpty() ? null : candidates.get(0);
+    }
+
+    private static String normalizeSignature(String signature) {
+        return signature.replaceAll("\\s+", " ").replace(" (", "(").replace(", ", ",").trim();
+    }
+
+    @Override
+    public String toString() {
+        String target = signature == null ? getFullyQualifiedName() : className + " " + signature;
+        return mutationLine < 0 ? target : target + " @" + mutationLine + (mutationColumn < 0 ? "" : ":" + mutationColumn);
+    }
+}
@@ -0,0 +1,78 @@
+package com.equivalentmutant.batch;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads batch targets from a text file.
+ * <p>
+ * Each line holds one target as tab-separated fields:
+ * <pre>
+ * CLASS &lt;tab&gt; METHOD [&lt;tab&gt; SIGNATURE [&lt;tab&gt; LINE[:COLUMN]]]
+ * </pre>
+ * The signature and location are optional; an empty signature or {@code -} means any overload. Blank
+ * lines and lines starting with {@code #} are ignored.
+ */
+public class BatchTargetReader {
+
+    /**
+     * Reads all targets of a file.
+     *
+     * @param file The target file
+     * @return The targets in file order
+     * @throws IOException If the file cannot be read
+     * @throws IllegalArgumentException If a line is malformed
+     */
+    public List<BatchTarget> read(Path file) throws IOException {
+        List<BatchTarget> targets = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+                targets.add(parseLine(line, targets.size(), file, lineNumber));
+            }
+        }
+        return targets;
+    }
+
+    private BatchTarget parseLine(String line, int index, Path file, int lineNumber) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length < 2 || fields.length > 4 || fields[0].trim().isEmpty() || fields[1].trim().isEmpty()) {
+            throw new IllegalArgumentException(file + ":" + lineNumber + ": expected CLASS<tab>METHOD[<tab>SIGNATURE[<tab>LINE[:COLUMN]]]");
+        }
+
+        String signature = fields.length > 2 ? fields[2].trim() : "";
+        if (signature.isEmpty() || signature.equals("-")) {
+            signature = null;
+        }
+
+        int mutationLine = -1;
+        int mutationColumn = -1;
+        if (fields.length > 3 && !fields[3].trim().isEmpty()) {
+            String location = fields[3].trim();
+            try {
+                int colon = location.indexOf(':');
+                if (colon < 0) {
+                    mutationLine = Integer.parseInt(location);
+                } else {
+                    mutationLine = Integer.parseInt(location.substring(0, colon));
+                    mutationColumn = Integer.parseInt(location.substring(colon + 1));
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(file + ":" + lineNumber + ": invalid mutation location: " + location);
+            }
+        }
+
+        return new BatchTarget(index, fields[0].trim(), fields[1].trim(), signature, mutationLine, mutationColumn);
+    }
+}
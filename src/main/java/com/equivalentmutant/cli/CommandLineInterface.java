@@ -1,36 +1,74 @@
 package com.equivalentmutant.cli;
 
+import com.equivalentmutant.batch.BatchAnalyzer;
+import com.equivalentmutant.batch.BatchTarget;
+import com.equivalentmutant.batch.BatchTargetReader;
 import com.equivalentmutant.dependency.MethodDependencyTracker;
+import com.equivalentmutant.dependency.MutationSlice;
+import com.equivalentmutant.dependency.MutationSlicer;
 import com.equivalentmutant.dependency.RecursiveDependencyResolver;
 import com.equivalentmutant.dependency.SimpleMethodResolver;
+import com.equivalentmutant.dependency.SubgraphCache;
+import com.equivalentmutant.dependency.SymbolSolverMethodResolver;
+import com.equivalentmutant.dependency.TraversalBudget;
+import com.equivalentmutant.index.GraphSnapshotFile;
+import com.equivalentmutant.index.IndexUpdate;
+import com.equivalentmutant.index.PersistentMethodIndex;
+import com.equivalentmutant.index.ReactorLayout;
+import com.equivalentmutant.index.ReverseCallIndex;
+import com.equivalentmutant.index.SourceIndex;
+import com.equivalentmutant.index.SourceWatcher;
+import com.equivalentmutant.index.TestMethodFilter;
+import com.equivalentmutant.model.CallSiteTable;
 import com.equivalentmutant.model.DependencyGraph;
 import com.equivalentmutant.model.JavaMethod;
-import com.equivalentmutant.parser.JavaSourceParser;
+import com.equivalentmutant.model.TruncationReason;
+import com.equivalentmutant.parser.CompilationUnitCache;
+import com.equivalentmutant.parser.SymbolResolution;
+import com.equivalentmutant.server.AnalyzerServer;
+import com.equivalentmutant.stats.PipelineStats;
+import com.equivalentmutant.context.BinaryStructureWriter;
+import com.equivalentmutant.context.ContextBudget;
+import com.equivalentmutant.context.ContextOutput;
+import com.equivalentmutant.context.ContextStore;
+import com.equivalentmutant.context.ContextTruncation;
+import com.equivalentmutant.context.HashingWriter;
+import com.equivalentmutant.context.JsonLinesStructureWriter;
 import com.equivalentmutant.context.MethodContextExtractor;
+import com.equivalentmutant.context.OutputFormat;
 import org.apache.commons.cli.*;
 
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Command-line interface for the equivalent mutant analyzer tool.
  */
 public class CommandLineInterface {
     
-    private final JavaSourceParser parser;
     private final MethodDependencyTracker dependencyTracker;
-    private final SimpleMethodResolver methodResolver;
-    private final RecursiveDependencyResolver dependencyResolver;
-    private final MethodContextExtractor contextExtractor;
+    private SimpleMethodResolver methodResolver;
+    private SymbolResolution symbolResolution;
+    private MethodContextExtractor contextExtractor;
+    private final CompilationUnitCache unitCache;
+    private final CallSiteTable callSiteTable;
     
     public CommandLineInterface() {
-        this.parser = new JavaSourceParser();
-        this.dependencyTracker = new MethodDependencyTracker();
+        this.unitCache = new CompilationUnitCache();
+        this.callSiteTable = new CallSiteTable();
+        this.dependencyTracker = new MethodDependencyTracker(unitCache, callSiteTable);
         this.methodResolver = new SimpleMethodResolver();
-        this.dependencyResolver = new RecursiveDependencyResolver(dependencyTracker, methodResolver);
         this.contextExtractor = new MethodContextExtractor();
     }
     
@@ -50,19 +88,139 @@ public class CommandLineInterface {
                 printHelp(options);
                 return;
             }
+            if (cmd.hasOption("stats")) {
+                if (!cmd.getOptionValue("stats").equals("json")) {
+                    throw new ParseException("Unknown statistics format: " + cmd.getOptionValue("stats"));
+                }
+                PipelineStats.setEnabled(true);
+            }
             
-            String sourcePath = cmd.getOptionValue("source");
+            List<Path> sourceRoots = new ArrayList<>();
+            if (cmd.hasOption("source")) {
+                for (String sourcePath : cmd.getOptionValues("source")) {
+                    sourceRoots.add(Paths.get(sourcePath));
+                }
+            }
+            if (cmd.hasOption("reactor")) {
+                sourceRoots.addAll(ReactorLayout.findSourceRoots(Paths.get(cmd.getOptionValue("reactor"))));
+            }
+            if (sourceRoots.isEmpty() && !cmd.hasOption("load-graph")) {
+                throw new ParseException("Missing required option: s");
+            }
             String className = cmd.getOptionValue("class");
             String methodName = cmd.getOptionValue("method");
             int maxDepth = Integer.parseInt(cmd.getOptionValue("depth", "-1"));
+            int threads = Integer.parseInt(cmd.getOptionValue("threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+            TraversalBudget budget = new TraversalBudget(
+                Integer.parseInt(cmd.getOptionValue("max-nodes", "-1")),
+                Integer.parseInt(cmd.getOptionValue("max-edges", "-1")),
+                Integer.parseInt(cmd.getOptionValue("max-fanout", "-1")),
+                Long.parseLong(cmd.getOptionValue("timeout", "-1")));
+            if (cmd.hasOption("context-bytes") || cmd.hasOption("context-lines")) {
+                try {
+                    contextExtractor = new MethodContextExtractor(new ContextBudget(
+                        Long.parseLong(cmd.getOptionValue("context-bytes", "-1")),
+                        Long.parseLong(cmd.getOptionValue("context-lines", "-1"))));
+                } catch (IllegalArgumentException e) {
+                    throw new ParseException(e.getMessage());
+                }
+            }
+            String indexDir = cmd.getOptionValue("index-dir");
+            String resolver = cmd.getOptionValue("resolver", "simple");
+            if (resolver.equals("symbol") && !sourceRoots.isEmpty()) {
+                methodResolver = new SymbolSolverMethodResolver();
+                List<Path> classPath = new ArrayList<>();
+                if (cmd.hasOption("classpath")) {
+                    for (String entry : cmd.getOptionValue("classpath").split(File.pathSeparator)) {
+                        if (!entry.isEmpty()) {
+                            classPath.add(Paths.get(entry));
+                        }
+                    }
+                }
+                // Types are looked up in every root, so calls into sibling modules resolve
+                List<Path> typeRoots = new ArrayList<>();
+                for (Path sourceRoot : sourceRoots) {
+                    typeRoots.add(Files.isDirectory(sourceRoot) ? sourceRoot : sourceRoot.toAbsolutePath().getParent());
+                }
+                symbolResolution = new SymbolResolution(typeRoots, classPath);
+            } else if (!resolver.equals("simple") && !resolver.equals("symbol")) {
+                throw new ParseException("Unknown resolver: " + resolver);
+            }
+            
+            long subgraphCacheSize = Long.parseLong(cmd.getOptionValue("subgraph-cache",
+                String.valueOf(SubgraphCache.DEFAULT_MAX_SIZE)));
+            SubgraphCache subgraphCache = subgraphCacheSize > 0 ? new SubgraphCache(subgraphCacheSize) : null;
+            MutationSlicer mutationSlicer = cmd.hasOption("slice") || cmd.hasOption("mutation")
+                ? new MutationSlicer(unitCache) : null;
+            String testDir = cmd.getOptionValue("tests");
+            if (cmd.hasOption("test-map") && testDir == null) {
+                throw new ParseException("--test-map needs --tests");
+            }
+            ContextStore contextStore = null;
+            if (cmd.hasOption("context-store")) {
+                if (!cmd.hasOption("batch") && !cmd.hasOption("serve")) {
+                    throw new ParseException("--context-store needs --batch or --serve");
+                }
+                contextStore = new ContextStore(Paths.get(cmd.getOptionValue("context-store")));
+            }
+            
+            if (cmd.hasOption("serve")) {
+                serve(sourceRoots, Integer.parseInt(cmd.getOptionValue("serve")), maxDepth, threads, budget, indexDir,
+                    subgraphCache, mutationSlicer, testDir, contextStore);
+                return;
+            }
+            
+            String outputFile = cmd.getOptionValue("output");
+            boolean gzip = cmd.hasOption("gzip");
+            if (cmd.hasOption("batch")) {
+                analyzeBatch(sourceRoots, cmd.getOptionValue("batch"), outputFile, gzip, maxDepth, threads,
+                    budget, indexDir, subgraphCache, mutationSlicer, contextStore);
+                return;
+            }
+            
+            OutputFormat format;
+            try {
+                format = OutputFormat.fromName(cmd.getOptionValue("format", "text"));
+            } catch (IllegalArgumentException e) {
+                throw new ParseException(e.getMessage());
+            }
+            if (gzip && outputFile == null && format == OutputFormat.TEXT) {
+                throw new ParseException("--gzip needs --output when writing a single method's context");
+            }
+            
+            int mutationLine = -1;
+            int mutationColumn = -1;
+            if (cmd.hasOption("mutation")) {
+                String mutation = cmd.getOptionValue("mutation");
+                int colon = mutation.indexOf(':');
+                try {
+                    mutationLine = Integer.parseInt(colon < 0 ? mutation : mutation.substring(0, colon));
+                    mutationColumn = colon < 0 ? -1 : Integer.parseInt(mutation.substring(colon + 1));
+                } catch (NumberFormatException e) {
+                    throw new ParseException("Invalid mutation location: " + mutation);
+                }
+            }
             
-            if (sourcePath == null || className == null || methodName == null) {
+            if (testDir != null) {
+                selectTests(sourceRoots, testDir, className, methodName, mutationLine, threads, indexDir,
+                    cmd.getOptionValue("test-map"), gzip);
+                return;
+            }
+            
+            if (cmd.hasOption("load-graph")) {
+                loadGraph(cmd.getOptionValue("load-graph"), format, outputFile, gzip);
+                return;
+            }
+            
+            if (sourceRoots.isEmpty() || className == null || methodName == null) {
                 System.err.println("Error: source, class, and method options are required.");
                 printHelp(options);
                 return;
             }
             
-            analyze(sourcePath, className, methodName, maxDepth);
+            analyze(sourceRoots, className, methodName, mutationLine, mutationColumn, mutationSlicer, maxDepth, threads,
+                budget, indexDir, cmd.hasOption("watch"), format, outputFile, gzip, cmd.getOptionValue("save-graph"));
             
         } catch (ParseException e) {
             System.err.println("Error parsing command-line arguments: " + e.getMessage());
@@ -70,6 +228,11 @@ public class CommandLineInterface {
         } catch (Exception e) {
             System.err.println("Error during analysis: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            // Standard error keeps the statistics out of output written to the standard output
+            if (PipelineStats.isEnabled()) {
+                System.err.print(PipelineStats.global().toJson());
+            }
         }
     }
     
@@ -80,8 +243,14 @@ public class CommandLineInterface {
             .longOpt("source")
             .hasArg()
             .argName("PATH")
-            .desc("Path to the source directory or file")
-            .required()
+            .desc("Path to the source directory or file; repeat for the source roots of several modules")
+            .build();
+        
+        Option reactorOption = Option.builder()
+            .longOpt("reactor")
+            .hasArg()
+            .argName("DIR")
+            .desc("Root of a multi-module Maven or Gradle build; the src/main/java directory of every module below it is added as a source root")
             .build();
         
         Option classOption = Option.builder("c")
@@ -89,7 +258,6 @@ public class CommandLineInterface {
             .hasArg()
             .argName("CLASS")
             .desc("Fully qualified name of the class")
-            .required()
             .build();
         
         Option methodOption = Option.builder("m")
@@ -97,7 +265,6 @@ public class CommandLineInterface {
             .hasArg()
             .argName("METHOD")
             .desc("Name of the method to analyze")
-            .required()
             .build();
         
         Option depthOption = Option.builder("d")
@@ -107,15 +274,210 @@ public class CommandLineInterface {
             .desc("Maximum recursion depth (-1 for unlimited)")
             .build();
         
+        Option threadsOption = Option.builder("t")
+            .longOpt("threads")
+            .hasArg()
+            .argName("THREADS")
+            .desc("Number of threads used to parse the source tree and build the graph (default: available processors)")
+            .build();
+        
+        Option maxNodesOption = Option.builder()
+            .longOpt("max-nodes")
+            .hasArg()
+            .argName("NODES")
+            .desc("Maximum number of methods in the dependency graph (-1 for unlimited)")
+            .build();
+        
+        Option maxEdgesOption = Option.builder()
+            .longOpt("max-edges")
+            .hasArg()
+            .argName("EDGES")
+            .desc("Maximum number of dependencies in the dependency graph (-1 for unlimited)")
+            .build();
+        
+        Option maxFanOutOption = Option.builder()
+            .longOpt("max-fanout")
+            .hasArg()
+            .argName("CALLS")
+            .desc("Maximum number of dependencies followed from a single method (-1 for unlimited)")
+            .build();
+        
+        Option timeoutOption = Option.builder()
+            .longOpt("timeout")
+            .hasArg()
+            .argName("MILLIS")
+            .desc("Time limit for building the dependency graph in milliseconds (-1 for unlimited)")
+            .build();
+        
+        Option indexDirOption = Option.builder()
+            .longOpt("index-dir")
+            .hasArg()
+            .argName("DIR")
+            .desc("Directory for the persistent method index, so unchanged files are not parsed again")
+            .build();
+        
+        Option mutationOption = Option.builder()
+            .longOpt("mutation")
+            .hasArg()
+            .argName("LINE[:COLUMN]")
+            .desc("Location of the mutation in the method; only the calls the mutated statement can affect through data and control dependence are followed")
+            .build();
+        
+        Option sliceOption = Option.builder()
+            .longOpt("slice")
+            .desc("In batch and server mode, follow only the calls each target's mutation can affect, for targets with a mutation line")
+            .build();
+        
+        Option testsOption = Option.builder()
+            .longOpt("tests")
+            .hasArg()
+            .argName("DIR")
+            .desc("Test source directory inside the source path; instead of the context, list the callers of the method and the test methods that can reach it")
+            .build();
+        
+        Option testMapOption = Option.builder()
+            .longOpt("test-map")
+            .hasArg()
+            .argName("FILE")
+            .desc("With --tests, write the tests reaching each method of the sources to FILE, one JSON object per method")
+            .build();
+        
+        Option contextBytesOption = Option.builder()
+            .longOpt("context-bytes")
+            .hasArg()
+            .argName("BYTES")
+            .desc("Maximum size of each method context in UTF-8 bytes; the dependencies nearest the root are written in full, later ones as signatures only (-1 for unlimited, otherwise at least " + ContextBudget.MIN_BYTES + ")")
+            .build();
+        
+        Option contextLinesOption = Option.builder()
+            .longOpt("context-lines")
+            .hasArg()
+            .argName("LINES")
+            .desc("Maximum number of lines of each method context, applied like --context-bytes (-1 for unlimited)")
+            .build();
+        
+        Option contextStoreOption = Option.builder()
+            .longOpt("context-store")
+            .hasArg()
+            .argName("DIR")
+            .desc("In batch and server mode, write each context once to a content-addressed store in DIR and give only its hash in the record")
+            .build();
+        
+        Option watchOption = Option.builder("w")
+            .longOpt("watch")
+            .desc("Keep running and analyze again whenever a source change affects the method")
+            .build();
+        
+        Option batchOption = Option.builder("b")
+            .longOpt("batch")
+            .hasArg()
+            .argName("FILE")
+            .desc("Analyze every target listed in FILE (CLASS<tab>METHOD[<tab>SIGNATURE[<tab>LINE[:COLUMN]]] per line) instead of a single method")
+            .build();
+        
+        Option outputOption = Option.builder("o")
+            .longOpt("output")
+            .hasArg()
+            .argName("FILE")
+            .desc("File receiving the method context, or the batch records in batch mode (default: standard output)")
+            .build();
+        
+        Option formatOption = Option.builder()
+            .longOpt("format")
+            .hasArg()
+            .argName("FORMAT")
+            .desc("Output format for a single method: 'text' for the method context, 'jsonl' or 'binary' for the dependency structure (default: text)")
+            .build();
+        
+        Option gzipOption = Option.builder()
+            .longOpt("gzip")
+            .desc("Compress the output with gzip while it is written; a single method's context needs --output")
+            .build();
+        
+        Option saveGraphOption = Option.builder()
+            .longOpt("save-graph")
+            .hasArg()
+            .argName("FILE")
+            .desc("Save the method's dependency graph to FILE, so it can be printed later with --load-graph")
+            .build();
+        
+        Option loadGraphOption = Option.builder()
+            .longOpt("load-graph")
+            .hasArg()
+            .argName("FILE")
+            .desc("Print a dependency graph saved with --save-graph instead of analyzing the sources; fails if the sources changed since it was saved")
+            .build();
+        
+        Option statsOption = Option.builder()
+            .longOpt("stats")
+            .hasArg()
+            .argName("FORMAT")
+            .desc("Record counters and timings for each phase of the analysis and print them to standard error at the end; the format is 'json' (in server mode they are reported by /stats)")
+            .build();
+        
+        Option serveOption = Option.builder()
+            .longOpt("serve")
+            .hasArg()
+            .argName("PORT")
+            .desc("Keep the index in memory and answer analysis requests over HTTP on 127.0.0.1:PORT")
+            .build();
+        
+        Option subgraphCacheOption = Option.builder()
+            .longOpt("subgraph-cache")
+            .hasArg()
+            .argName("SIZE")
+            .desc("Size of the cache sharing resolved subgraphs between targets in batch and server mode, in methods plus dependencies (0 to disable, default: " + SubgraphCache.DEFAULT_MAX_SIZE + ")")
+            .build();
+        
+        Option resolverOption = Option.builder()
+            .longOpt("resolver")
+            .hasArg()
+            .argName("RESOLVER")
+            .desc("How calls are linked to methods: 'symbol' resolves receiver types and overloads with the symbol solver but does not follow calls to overriding implementations, 'simple' matches by method name (default: simple)")
+            .build();
+        
+        Option classPathOption = Option.builder()
+            .longOpt("classpath")
+            .hasArg()
+            .argName("PATHS")
+            .desc("Jar files and class directories of the analyzed project's libraries, used by the symbol resolver")
+            .build();
+        
         Option helpOption = Option.builder("h")
             .longOpt("help")
             .desc("Print help information")
             .build();
         
         options.addOption(sourceOption);
+        options.addOption(reactorOption);
         options.addOption(classOption);
         options.addOption(methodOption);
         options.addOption(depthOption);
+        options.addOption(threadsOption);
+        options.addOption(maxNodesOption);
+        options.addOption(maxEdgesOption);
+        options.addOption(maxFanOutOption);
+        options.addOption(timeoutOption);
+        options.addOption(indexDirOption);
+        options.addOption(mutationOption);
+        options.addOption(sliceOption);
+        options.addOption(testsOption);
+        options.addOption(testMapOption);
+        options.addOption(contextBytesOption);
+        options.addOption(contextLinesOption);
+        options.addOption(contextStoreOption);
+        options.addOption(watchOption);
+        options.addOption(batchOption);
+        options.addOption(outputOption);
+        options.addOption(formatOption);
+        options.addOption(gzipOption);
+        options.addOption(saveGraphOption);
+        options.addOption(loadGraphOption);
+        options.addOption(statsOption);
+        options.addOption(serveOption);
+        options.addOption(subgraphCacheOption);
+        options.addOption(resolverOption);
+        options.addOption(classPathOption);
         options.addOption(helpOption);
         
         return options;
@@ -129,60 +491,402 @@ public class CommandLineInterface {
                            true);
     }
     
-    private void analyze(String sourcePath, String className, String methodName, int maxDepth) throws FileNotFoundException {
-        System.out.println("Analyzing method: " + className + "." + methodName);
-        System.out.println("Source path: " + sourcePath);
-        System.out.println("Max depth: " + (maxDepth < 0 ? "unlimited" : maxDepth));
+    private void analyze(List<Path> sourceRoots, String className, String methodName, int mutationLine,
+                         int mutationColumn, MutationSlicer mutationSlicer, int maxDepth, int threads,
+                         TraversalBudget budget, String indexDir, boolean watch, OutputFormat format,
+                         String outputFile, boolean gzip, String snapshotFile)
+            throws IOException, InterruptedException {
+        // Keep status lines out of a structure written to the standard output
+        PrintStream log = format != OutputFormat.TEXT && outputFile == null ? System.err : System.out;
+        log.println("Analyzing method: " + className + "." + methodName);
+        if (mutationLine >= 0) {
+            log.println("Mutation: line " + mutationLine + (mutationColumn < 0 ? "" : ", column " + mutationColumn));
+        }
+        log.println(sourceRoots.size() == 1 ? "Source path: " + sourceRoots.get(0) : "Source roots: " + sourceRoots.size());
+        log.println("Max depth: " + (maxDepth < 0 ? "unlimited" : maxDepth));
         
-        // Parse all Java files in the source directory
-        List<JavaMethod> allMethods = new ArrayList<>();
-        File sourceDir = new File(sourcePath);
+        SourceIndex sourceIndex = buildIndex(sourceRoots, threads, indexDir, log);
         
-        if (sourceDir.isDirectory()) {
-            parseDirectory(sourceDir, allMethods);
-        } else if (sourceDir.isFile() && sourceDir.getName().endsWith(".java")) {
-            allMethods.addAll(parser.parseFile(sourceDir));
-        } else {
-            throw new IllegalArgumentException("Source path must be a directory or a Java file");
+        try (RecursiveDependencyResolver dependencyResolver =
+                 new RecursiveDependencyResolver(dependencyTracker, methodResolver, threads)) {
+            BatchTarget target = new BatchTarget(0, className, methodName, null, mutationLine, mutationColumn);
+            DependencyGraph graph = analyzeTarget(sourceIndex, dependencyResolver, target, mutationSlicer, maxDepth,
+                budget, format, outputFile, gzip, snapshotFile, log);
+            
+            if (watch) {
+                watchSources(sourceIndex, dependencyResolver, graph, target, mutationSlicer, maxDepth, budget, format,
+                    outputFile, gzip, snapshotFile, log);
+            }
         }
+    }
+    
+    private void analyzeBatch(List<Path> sourceRoots, String batchFile, String outputFile, boolean gzip, int maxDepth,
+                              int threads, TraversalBudget budget, String indexDir, SubgraphCache subgraphCache,
+                              MutationSlicer mutationSlicer, ContextStore contextStore)
+            throws IOException, InterruptedException {
+        List<BatchTarget> targets = new BatchTargetReader().read(Paths.get(batchFile));
+        System.err.println("Analyzing " + targets.size() + " targets from " + batchFile);
         
-        // Add all methods to the resolver
-        methodResolver.addMethods(allMethods);
+        SourceIndex sourceIndex = buildIndex(sourceRoots, threads, indexDir, System.err);
+        BatchAnalyzer batchAnalyzer = new BatchAnalyzer(sourceIndex, dependencyTracker, methodResolver,
+            contextExtractor, threads, subgraphCache, mutationSlicer, contextStore);
         
-        // Find the target method
-        Optional<JavaMethod> targetMethodOpt = allMethods.stream()
-            .filter(m -> m.getFullyQualifiedName().equals(className + "." + methodName))
-            .findFirst();
+        long start = System.nanoTime();
+        int failed;
+        try (Writer out = openOutput(outputFile, gzip)) {
+            failed = batchAnalyzer.analyze(targets, maxDepth, budget, out);
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        System.err.println("Batch finished: " + (targets.size() - failed) + " analyzed, " + failed + " failed in "
+            + elapsedMillis + " ms");
+        printResolutionSummary(System.err);
+        if (subgraphCache != null) {
+            System.err.println("Subgraph cache: " + subgraphCache.getHits() + " hits, " + subgraphCache.getMisses()
+                + " misses, " + subgraphCache.size() + " subgraphs held");
+        }
+        if (contextStore != null) {
+            System.err.println("Context store: " + contextStore.getRendered() + " rendered ("
+                + contextStore.getDuplicates() + " already stored), " + contextStore.getReused() + " reused");
+        }
+    }
+    
+    /**
+     * Runs the analysis server until the process is stopped, keeping the index current as sources change.
+     */
+    private void serve(List<Path> sourceRoots, int port, int maxDepth, int threads, TraversalBudget budget,
+                       String indexDir, SubgraphCache subgraphCache, MutationSlicer mutationSlicer, String testDir,
+                       ContextStore contextStore) throws IOException, InterruptedException {
+        SourceIndex sourceIndex = buildIndex(sourceRoots, threads, indexDir, System.out);
+        BatchAnalyzer batchAnalyzer = new BatchAnalyzer(sourceIndex, dependencyTracker, methodResolver,
+            contextExtractor, threads, subgraphCache, mutationSlicer, contextStore);
+        AnalyzerServer server = new AnalyzerServer(sourceIndex, batchAnalyzer, unitCache, subgraphCache, maxDepth,
+            budget);
+        if (testDir != null) {
+            server.setReverseCallIndex(buildReverseCallIndex(sourceIndex, testDir, System.out));
+        }
+        // Runs under the index's write lock, so no request sees the index before the caches follow it
+        SourceWatcher watcher = new SourceWatcher(sourceIndex, update -> {
+            System.out.println("Source changed: " + update);
+            printSkippedFiles(update, System.out);
+            if (subgraphCache != null) {
+                subgraphCache.clear();
+            }
+            if (testDir != null) {
+                server.setReverseCallIndex(buildReverseCallIndex(sourceIndex, testDir, System.out));
+            }
+        }, e -> System.err.println("Error while applying source changes: " + e.getMessage()));
         
-        if (!targetMethodOpt.isPresent()) {
-            throw new IllegalArgumentException("Target method not found: " + className + "." + methodName);
+        server.start(port);
+        watcher.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                // Exiting anyway
+            }
+        }));
+        System.out.println("Serving " + describeSources(sourceIndex.getRoots()) + " on http://127.0.0.1:" + server.getPort()
+            + (testDir != null ? " (/analyze, /tests, /health, /stats)" : " (/analyze, /health, /stats)"));
+        watcher.awaitClose();
+    }
+    
+    /**
+     * Lists the callers of a method and the tests that reach it, and writes the test-selection map of the
+     * whole source tree when a file for it is given.
+     */
+    private void selectTests(List<Path> sourceRoots, String testDir, String className, String methodName,
+                             int mutationLine, int threads, String indexDir, String testMapFile, boolean gzip)
+            throws IOException {
+        if (testMapFile == null && (className == null || methodName == null)) {
+            throw new IllegalArgumentException("--tests needs --class and --method, or --test-map");
         }
+        SourceIndex sourceIndex = buildIndex(sourceRoots, threads, indexDir, System.out);
+        ReverseCallIndex reverseIndex = buildReverseCallIndex(sourceIndex, testDir, System.out);
         
-        JavaMethod targetMethod = targetMethodOpt.get();
+        if (testMapFile != null) {
+            try (Writer out = openOutput(testMapFile, gzip)) {
+                reverseIndex.writeTestMap(out);
+            }
+            System.out.println("Test map written to " + testMapFile);
+        }
+        if (className == null || methodName == null) {
+            return;
+        }
         
-        // Build the dependency graph
-        DependencyGraph graph = dependencyResolver.buildDependencyGraph(targetMethod, maxDepth);
+        BatchTarget target = new BatchTarget(0, className, methodName, null, mutationLine, -1);
+        JavaMethod method = target.selectMethod(sourceIndex.findMethods(target.getFullyQualifiedName()));
+        if (method == null) {
+            throw new IllegalArgumentException("Target method not found: " + target.getFullyQualifiedName());
+        }
+        long start = System.nanoTime();
+        List<JavaMethod> callers = reverseIndex.getCallers(method);
+        List<JavaMethod> tests = reverseIndex.findReachingTests(method);
+        long elapsedMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
         
-        // Extract and print the context
-        String context = contextExtractor.extractMethodContext(graph);
-        System.out.println("\nMethod Context:");
-        System.out.println(context);
+        System.out.println("\nCallers of " + method.getFullyQualifiedName() + ": " + callers.size());
+        for (JavaMethod caller : callers) {
+            System.out.println("  " + caller.getFullyQualifiedName());
+        }
+        System.out.println("Tests reaching " + method.getFullyQualifiedName() + ": " + tests.size());
+        for (JavaMethod test : tests) {
+            System.out.println("  " + test.getFullyQualifiedName());
+        }
+        System.out.println("Query answered in " + elapsedMicros + " us");
+    }
+    
+    /**
+     * Builds the reverse call index of the sources, taking the test methods from a directory inside them.
+     */
+    private ReverseCallIndex buildReverseCallIndex(SourceIndex sourceIndex, String testDir, PrintStream log) {
+        Path testRoot = Paths.get(testDir).toAbsolutePath().normalize();
+        boolean inSources = false;
+        for (Path sourceRoot : sourceIndex.getRoots()) {
+            inSources |= testRoot.startsWith(sourceRoot.toAbsolutePath().normalize());
+        }
+        if (!inSources) {
+            throw new IllegalArgumentException("Test directory " + testDir + " is not inside the source path "
+                + describeSources(sourceIndex.getRoots()));
+        }
+        long start = System.nanoTime();
+        ReverseCallIndex reverseIndex = new ReverseCallIndex(sourceIndex.getMethods(), dependencyTracker,
+            methodResolver, new TestMethodFilter(testRoot, unitCache));
+        log.println("Reverse call index: " + reverseIndex.getMethodCount() + " methods, "
+            + reverseIndex.getCallCount() + " calls, " + reverseIndex.getTestCount() + " tests, built in "
+            + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        return reverseIndex;
+    }
+    
+    /**
+     * Indexes the source roots, through the persistent index when a directory for it is given. With several
+     * roots, each is a shard of the persistent index.
+     *
+     * @param log The stream receiving the index statistics
+     */
+    private SourceIndex buildIndex(List<Path> sourceRoots, int threads, String indexDir, PrintStream log)
+            throws IOException {
+        SourceIndex sourceIndex = new SourceIndex(sourceRoots, unitCache, callSiteTable, methodResolver,
+            symbolResolution);
+        if (indexDir != null) {
+            PersistentMethodIndex persistentIndex = new PersistentMethodIndex(Paths.get(indexDir));
+            sourceIndex.build(threads, persistentIndex);
+            for (String ignored : persistentIndex.getIgnoredIndexes()) {
+                log.println("Ignoring method index: " + ignored);
+            }
+            log.println("Method index: " + persistentIndex.getReusedFiles() + " files reused, "
+                + persistentIndex.getParsedFiles() + " parsed, " + persistentIndex.getRemovedFiles() + " removed"
+                + (persistentIndex.getShardCount() > 1 ? ", " + persistentIndex.getWrittenShards() + " of "
+                    + persistentIndex.getShardCount() + " shards written" : ""));
+        } else {
+            sourceIndex.build(threads, null);
+        }
+        return sourceIndex;
+    }
+    
+    private static void printSkippedFiles(IndexUpdate update, PrintStream log) {
+        for (Map.Entry<Path, String> skipped : update.getSkippedFiles().entrySet()) {
+            log.println("Skipping " + skipped.getKey() + ": " + skipped.getValue());
+        }
+    }
+    
+    /**
+     * Names the indexed sources in status lines: the path of a single root, or the number of roots.
+     */
+    private static String describeSources(List<Path> sourceRoots) {
+        return sourceRoots.size() == 1 ? sourceRoots.get(0).toString() : sourceRoots.size() + " source roots";
+    }
+    
+    /**
+     * Opens the file receiving the output, or the standard output if no file is given.
+     */
+    private static Writer openOutput(String outputFile, boolean gzip) throws IOException {
+        return outputFile == null
+            ? ContextOutput.open(ContextOutput.shielded(System.out), gzip)
+            : ContextOutput.open(Paths.get(outputFile), gzip);
+    }
+    
+    /**
+     * Analyzes the target and streams the result to the output. In text format without a context budget the
+     * root method is written before the traversal starts, and the dependencies as the finished graph is walked; the structure
+     * formats are written from the finished graph. When the target has a mutation line, the mutation also
+     * picks between overloads and the graph is restricted to the slice at the mutation.
+     */
+    private DependencyGraph analyzeTarget(SourceIndex sourceIndex, RecursiveDependencyResolver dependencyResolver,
+                                          BatchTarget target, MutationSlicer mutationSlicer, int maxDepth,
+                                          TraversalBudget budget, OutputFormat format, String outputFile,
+                                          boolean gzip, String snapshotFile, PrintStream log) throws IOException {
+        // Find the target method
+        JavaMethod targetMethod = target.selectMethod(sourceIndex.findMethods(target.getFullyQualifiedName()));
+        if (targetMethod == null) {
+            throw new IllegalArgumentException("Target method not found: " + target.getFullyQualifiedName());
+        }
+        
+        MutationSlice slice = null;
+        if (mutationSlicer != null && target.getMutationLine() >= 0) {
+            slice = mutationSlicer.slice(targetMethod, target.getMutationLine(), target.getMutationColumn());
+            log.println("Mutation slice: " + slice);
+        }
+        
+        DependencyGraph graph;
+        String contextHash = null;
+        ContextTruncation truncation = null;
+        if (format == OutputFormat.TEXT) {
+            if (outputFile == null) {
+                System.out.println("\nMethod Context:");
+            }
+            try (Writer out = openOutput(outputFile, gzip)) {
+                HashingWriter context = new HashingWriter(out);
+                if (contextExtractor.getBudget().isUnlimited()) {
+                    contextExtractor.writeRootContext(targetMethod, context);
+                    context.flush();
+                    
+                    // Build the dependency graph
+                    graph = dependencyResolver.buildDependencyGraph(targetMethod, maxDepth, budget, slice);
+                    sourceIndex.registerGraph(graph);
+                    
+                    truncation = contextExtractor.writeDependencyContext(graph, context);
+                } else {
+                    // The whole graph decides how the root method fits the context budget
+                    graph = dependencyResolver.buildDependencyGraph(targetMethod, maxDepth, budget, slice);
+                    sourceIndex.registerGraph(graph);
+                    
+                    truncation = contextExtractor.writeMethodContext(graph, target.getMutationLine(), context);
+                }
+                contextHash = context.getHash();
+                if (outputFile == null) {
+                    out.write("\n");
+                }
+            }
+        } else {
+            graph = dependencyResolver.buildDependencyGraph(targetMethod, maxDepth, budget, slice);
+            sourceIndex.registerGraph(graph);
+            writeStructure(graph, format, outputFile, gzip);
+        }
+        if (snapshotFile != null) {
+            GraphSnapshotFile.write(Paths.get(snapshotFile), graph);
+            log.println("\nDependency graph saved to " + snapshotFile);
+        }
+        if (outputFile != null) {
+            log.println("\nMethod " + (format == OutputFormat.TEXT ? "context" : "dependency structure")
+                + " written to " + outputFile);
+        }
+        if (contextHash != null) {
+            log.println("Context hash: " + contextHash);
+        }
+        if (truncation != null && truncation.isTruncated()) {
+            log.println("Context truncated: " + truncation);
+        }
         
-        // Print summary
-        System.out.println("\nDependency Summary:");
-        System.out.println("Total methods in dependency graph: " + graph.getAllMethods().size());
+        printGraphSummary(graph, log);
+        log.println("Parsed files cache: " + unitCache.getMisses() + " parsed, " + unitCache.getHits() + " reused");
+        printResolutionSummary(log);
+        return graph;
     }
     
-    private void parseDirectory(File directory, List<JavaMethod> allMethods) throws FileNotFoundException {
-        File[] files = directory.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                if (file.isDirectory()) {
-                    parseDirectory(file, allMethods);
-                } else if (file.getName().endsWith(".java")) {
-                    allMethods.addAll(parser.parseFile(file));
+    /**
+     * Prints a dependency graph saved by an earlier run, without indexing the sources.
+     */
+    private void loadGraph(String snapshotFile, OutputFormat format, String outputFile, boolean gzip)
+            throws IOException {
+        PrintStream log = format != OutputFormat.TEXT && outputFile == null ? System.err : System.out;
+        GraphSnapshotFile snapshot = GraphSnapshotFile.open(Paths.get(snapshotFile));
+        List<String> changedFiles = snapshot.findChangedFiles();
+        if (!changedFiles.isEmpty()) {
+            throw new IllegalStateException("Graph snapshot " + snapshotFile + " is out of date: "
+                + changedFiles.size() + " source files changed since it was saved, including " + changedFiles.get(0));
+        }
+        DependencyGraph graph = snapshot.read();
+        log.println("Loaded dependency graph of " + graph.getRootMethod().getFullyQualifiedName() + " from "
+            + snapshotFile + " (" + snapshot.getMethodCount() + " methods, " + snapshot.getEdgeCount() + " calls)");
+        
+        ContextTruncation truncation = null;
+        if (format == OutputFormat.TEXT) {
+            if (outputFile == null) {
+                System.out.println("\nMethod Context:");
+            }
+            try (Writer out = openOutput(outputFile, gzip)) {
+                truncation = contextExtractor.writeMethodContext(graph, out);
+                if (outputFile == null) {
+                    out.write("\n");
                 }
             }
+        } else {
+            writeStructure(graph, format, outputFile, gzip);
+        }
+        if (outputFile != null) {
+            log.println("\nMethod " + (format == OutputFormat.TEXT ? "context" : "dependency structure")
+                + " written to " + outputFile);
+        }
+        if (truncation != null && truncation.isTruncated()) {
+            log.println("Context truncated: " + truncation);
+        }
+        printGraphSummary(graph, log);
+    }
+    
+    /**
+     * Writes the dependency structure of a graph in one of the structure formats.
+     */
+    private static void writeStructure(DependencyGraph graph, OutputFormat format, String outputFile, boolean gzip)
+            throws IOException {
+        if (format == OutputFormat.JSONL) {
+            try (Writer out = openOutput(outputFile, gzip)) {
+                new JsonLinesStructureWriter(out).write(graph);
+            }
+        } else {
+            OutputStream target = outputFile == null
+                ? ContextOutput.shielded(System.out)
+                : Files.newOutputStream(Paths.get(outputFile));
+            try (OutputStream out = ContextOutput.openStream(target, gzip)) {
+                new BinaryStructureWriter(out).write(graph);
+            }
+        }
+    }
+    
+    private static void printGraphSummary(DependencyGraph graph, PrintStream log) {
+        log.println("\nDependency Summary:");
+        log.println("Total methods in dependency graph: " + graph.getAllMethods().size());
+        if (graph.isTruncated()) {
+            log.println("Graph truncated (" + graph.getTruncationReason() + "): "
+                + graph.getTruncatedMethods().size() + " methods not fully expanded, "
+                + graph.getDroppedCallCount() + " calls dropped");
+            for (Map.Entry<JavaMethod, TruncationReason> entry : graph.getTruncatedMethods().entrySet()) {
+                log.println("  " + entry.getKey().getFullyQualifiedName() + " (" + entry.getValue() + ")");
+            }
         }
     }
-} 
\ No newline at end of file
+    
+    private void printResolutionSummary(PrintStream out) {
+        if (methodResolver instanceof SymbolSolverMethodResolver) {
+            SymbolSolverMethodResolver resolver = (SymbolSolverMethodResolver) methodResolver;
+            out.println("Call resolution: " + resolver.getResolvedCalls() + " resolved, "
+                + resolver.getExternalCalls() + " outside the sources, "
+                + resolver.getFallbackCalls() + " fell back to name matching");
+        }
+    }
+    
+    /**
+     * Keeps the index current and prints the analysis again whenever a change affects the target's graph.
+     */
+    private void watchSources(SourceIndex sourceIndex, RecursiveDependencyResolver dependencyResolver,
+                              DependencyGraph initialGraph, BatchTarget target, MutationSlicer mutationSlicer,
+                              int maxDepth, TraversalBudget budget, OutputFormat format, String outputFile, boolean gzip,
+                              String snapshotFile, PrintStream log) throws IOException, InterruptedException {
+        AtomicReference<DependencyGraph> currentGraph = new AtomicReference<>(initialGraph);
+        SourceWatcher watcher = new SourceWatcher(sourceIndex, update -> {
+            log.println("\nSource changed: " + update);
+            printSkippedFiles(update, log);
+            if (currentGraph.get().isStale()) {
+                try {
+                    currentGraph.set(analyzeTarget(sourceIndex, dependencyResolver, target, mutationSlicer, maxDepth,
+                        budget, format, outputFile, gzip, snapshotFile, log));
+                } catch (IllegalArgumentException | IOException e) {
+                    System.err.println("Error during analysis: " + e.getMessage());
+                }
+            }
+        }, e -> System.err.println("Error while applying source changes: " + e.getMessage()));
+        
+        log.println("\nWatching " + describeSources(sourceIndex.getRoots()) + " for changes (Ctrl+C to stop)");
+        watcher.start();
+        watcher.awaitClose();
+    }
+}
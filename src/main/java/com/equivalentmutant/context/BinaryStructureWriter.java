@@ -0,0 +1,86 @@
+package com.equivalentmutant.context;
+
+import com.equivalentmutant.index.BinaryIO;
+import com.equivalentmutant.model.CompactGraph;
+import com.equivalentmutant.model.DependencyGraph;
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.model.SourceLocation;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes dependency structures in a compact binary encoding.
+ * <p>
+ * All numbers are big-endian ints, and strings are written with {@link BinaryIO#writeString}, as a byte
+ * length followed by UTF-8 bytes. A structure is laid out as:
+ * <pre>
+ * magic "EMDG", version
+ * truncation reason (empty if the graph is complete)
+ * file count, then each file path
+ * method count, then per method: package, class, name, signature, file, line, column, end line, end column, depth
+ * call count, then per call: caller, callee, file, line, column, end line, end column
+ * </pre>
+ * Several structures may follow each other in one stream.
+ */
+public class BinaryStructureWriter implements DependencyStructureWriter {
+
+    public static final int MAGIC = 0x454D4447; // "EMDG"
+    public static final int VERSION = 1;
+
+    private final DataOutputStream out;
+
+    /**
+     * @param out The stream receiving the structures; it is not flushed or closed
+     */
+    public BinaryStructureWriter(OutputStream out) {
+        this.out = new DataOutputStream(out);
+    }
+
+    @Override
+    public void write(DependencyGraph graph) throws IOException {
+        CompactGraph.Snapshot snapshot = graph.getCompactGraph().snapshot();
+        FileTable files = new FileTable(snapshot);
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        BinaryIO.writeString(out, graph.isTruncated() ? graph.getTruncationReason().name() : "");
+
+        out.writeInt(files.getPaths().size());
+        for (String path : files.getPaths()) {
+            BinaryIO.writeString(out, path);
+        }
+
+        out.writeInt(snapshot.getMethodCount());
+        for (int id = 0; id < snapshot.getMethodCount(); id++) {
+            JavaMethod method = snapshot.method(id);
+            SourceLocation location = method.getLocation();
+            BinaryIO.writeString(out, method.getPackageName());
+            BinaryIO.writeString(out, method.getClassName());
+            BinaryIO.writeString(out, method.getMethodName());
+            BinaryIO.writeString(out, method.getSignature());
+            out.writeInt(files.idOf(location.getFilePath()));
+            out.writeInt(location.getBeginLine());
+            out.writeInt(location.getBeginColumn());
+            out.writeInt(location.getEndLine());
+            out.writeInt(location.getEndColumn());
+            out.writeInt(graph.getDepth(method));
+        }
+
+        out.writeInt(snapshot.getEdgeCount());
+        for (int i = 0; i < snapshot.callerCount(); i++) {
+            int caller = snapshot.callerAt(i);
+            for (int index = snapshot.outStart(caller); index < snapshot.outEnd(caller); index++) {
+                int edge = snapshot.outEdge(index);
+                out.writeInt(caller);
+                out.writeInt(snapshot.callee(edge));
+                out.writeInt(files.idOf(snapshot.callSitePath(edge)));
+                out.writeInt(snapshot.callSiteBeginLine(edge));
+                out.writeInt(snapshot.callSiteBeginColumn(edge));
+                out.writeInt(snapshot.callSiteEndLine(edge));
+                out.writeInt(snapshot.callSiteEndColumn(edge));
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.equivalentmutant.context;
+
+/**
+ * Limits on the size of a rendered method context.
+ * <p>
+ * Each limit uses -1 for unlimited. Bytes are counted in UTF-8 and lines as line breaks. A byte limit holds
+ * at least the line a context is left out with, so no context ever exceeds its budget.
+ */
+public class ContextBudget {
+
+    /**
+     * The smallest byte limit
+     */
+    public static final int MIN_BYTES = MethodContextExtractor.CONTEXT_OMITTED.length();
+
+    public static final ContextBudget UNLIMITED = new ContextBudget(-1, -1);
+
+    private final long maxBytes;
+    private final long maxLines;
+
+    /**
+     * Creates a context budget.
+     *
+     * @param maxBytes The maximum size of the context in bytes, at least {@link #MIN_BYTES}
+     * @param maxLines The maximum number of lines of the context
+     */
+    public ContextBudget(long maxBytes, long maxLines) {
+        if ((maxBytes != -1 && maxBytes < MIN_BYTES) || maxLines == 0 || maxLines < -1) {
+            throw new IllegalArgumentException("Context limits must be -1, at least " + MIN_BYTES
+                + " bytes and at least 1 line");
+        }
+        this.maxBytes = maxBytes;
+        this.maxLines = maxLines;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getMaxLines() {
+        return maxLines;
+    }
+
+    /**
+     * Checks whether any limit is set.
+     *
+     * @return True if the budget never cuts a context
+     */
+    public boolean isUnlimited() {
+        return maxBytes < 0 && maxLines < 0;
+    }
+
+    boolean allows(long bytes, long lines) {
+        return (maxBytes < 0 || bytes <= maxBytes) && (maxLines < 0 || lines <= maxLines);
+    }
+
+    @Override
+    public String toString() {
+        return "ContextBudget[maxBytes=" + maxBytes + ", maxLines=" + maxLines + "]";
+    }
+}
@@ -0,0 +1,119 @@
+package com.equivalentmutant.context;
+
+import com.equivalentmutant.stats.PipelineStats;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Opens the destinations contexts, dependency structures and batch records are streamed to.
+ * <p>
+ * Text is encoded as UTF-8, and all output is optionally compressed with gzip as it is written. Flushing
+ * pushes everything written so far downstream, compressed data included, so a reader sees the first part
+ * of a context while the rest is still being produced. Closing finishes the gzip stream and closes the
+ * destination. When {@link PipelineStats statistics} are enabled, the bytes reaching the destination are
+ * counted.
+ */
+public final class ContextOutput {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ContextOutput() {
+    }
+
+    /**
+     * @param out The destination stream
+     * @param gzip Whether to compress the output
+     * @return A buffered writer to the stream
+     * @throws IOException If the gzip header cannot be written
+     */
+    public static Writer open(OutputStream out, boolean gzip) throws IOException {
+        out = counted(out);
+        OutputStream stream = gzip ? new GZIPOutputStream(out, BUFFER_SIZE, true) : out;
+        return new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Opens a stream for binary output.
+     *
+     * @param out The destination stream
+     * @param gzip Whether to compress the output
+     * @return A buffered stream to the destination
+     * @throws IOException If the gzip header cannot be written
+     */
+    public static OutputStream openStream(OutputStream out, boolean gzip) throws IOException {
+        out = counted(out);
+        return gzip ? new GZIPOutputStream(out, BUFFER_SIZE, true) : new BufferedOutputStream(out, BUFFER_SIZE);
+    }
+
+    /**
+     * @param channel The destination channel
+     * @param gzip Whether to compress the output
+     * @return A buffered writer to the channel
+     * @throws IOException If the gzip header cannot be written
+     */
+    public static Writer open(WritableByteChannel channel, boolean gzip) throws IOException {
+        return open(Channels.newOutputStream(channel), gzip);
+    }
+
+    /**
+     * @param file The destination file, created or replaced
+     * @param gzip Whether to compress the output
+     * @return A buffered writer to the file
+     * @throws IOException If the file cannot be opened
+     */
+    public static Writer open(Path file, boolean gzip) throws IOException {
+        return open(Files.newOutputStream(file), gzip);
+    }
+
+    /**
+     * Wraps a stream that must stay open, such as the standard output, so closing a writer opened on it only
+     * flushes it.
+     *
+     * @param out The stream
+     * @return The wrapped stream
+     */
+    public static OutputStream shielded(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                out.write(bytes, offset, length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+    }
+
+    private static OutputStream counted(OutputStream out) {
+        if (!PipelineStats.isEnabled()) {
+            return out;
+        }
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                PipelineStats.global().recordOutput(1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                out.write(bytes, offset, length);
+                PipelineStats.global().recordOutput(length);
+            }
+        };
+    }
+}
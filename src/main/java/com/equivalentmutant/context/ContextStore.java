@@ -0,0 +1,196 @@
+package com.equivalentmutant.context;
+
+import com.equivalentmutant.model.DependencyGraph;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An on-disk store of rendered contexts, addressed by the SHA-256 hash of their content.
+ * <p>
+ * Contexts that come out the same, such as those of different mutants of one method, are stored once.
+ * Each graph is also recorded under its {@link MethodContextExtractor#contextKey context key}, so a graph
+ * whose context is already stored is not rendered again. Downstream checks can record a verdict per
+ * context and look it up for the next mutant with the same context.
+ * <p>
+ * The store directory holds three trees, each split by the first two hex digits:
+ * <ul>
+ *   <li>{@code contexts/ab/<hash>}: the context text, UTF-8</li>
+ *   <li>{@code keys/ab/<key>}: the hash of the context a graph with that key renders to</li>
+ *   <li>{@code verdicts/ab/<hash>}: the verdict recorded for a context</li>
+ * </ul>
+ * Every file is written to a temporary file and moved into place, so concurrent writers, including other
+ * processes, and interrupted runs never leave a partial file behind.
+ */
+public class ContextStore {
+
+    private final Path directory;
+    private final LongAdder rendered = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+
+    /**
+     * Opens a store, creating its directory if needed.
+     *
+     * @param directory The store directory
+     * @throws IOException If the directory cannot be created
+     */
+    public ContextStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    /**
+     * Stores the context of a graph, rendering it only if no graph with the same context key has been
+     * stored before.
+     *
+     * @param graph The dependency graph
+     * @param extractor The extractor rendering the context
+     * @return The content hash of the context
+     * @throws IOException If the store cannot be read or written
+     */
+    public String store(DependencyGraph graph, MethodContextExtractor extractor) throws IOException {
+        return store(graph, -1, extractor);
+    }
+
+    /**
+     * Stores the context of a graph, rendering it only if no graph with the same context key has been
+     * stored before.
+     *
+     * @param graph The dependency graph
+     * @param focusLine The source line a root method over the budget is cut around, or -1 for its declaration
+     * @param extractor The extractor rendering the context
+     * @return The content hash of the context
+     * @throws IOException If the store cannot be read or written
+     */
+    public String store(DependencyGraph graph, int focusLine, MethodContextExtractor extractor)
+            throws IOException {
+        String key = extractor.contextKey(graph, focusLine);
+        Path keyFile = entryPath("keys", key);
+        String hash = readString(keyFile);
+        if (hash != null && Files.exists(entryPath("contexts", hash))) {
+            reused.increment();
+            return hash;
+        }
+
+        Path temp = Files.createTempFile(directory, "context", ".tmp");
+        try {
+            HashingWriter out = new HashingWriter(Files.newBufferedWriter(temp, StandardCharsets.UTF_8));
+            try (Writer writer = out) {
+                extractor.writeMethodContext(graph, focusLine, writer);
+            }
+            hash = out.getHash();
+            rendered.increment();
+            Path contextFile = entryPath("contexts", hash);
+            if (Files.exists(contextFile)) {
+                duplicates.increment();
+            } else {
+                moveIntoPlace(temp, contextFile);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        writeString(keyFile, hash);
+        return hash;
+    }
+
+    /**
+     * Reads a stored context.
+     *
+     * @param hash The content hash
+     * @return The context, or null if the store does not hold it
+     * @throws IOException If the context cannot be read
+     */
+    public String read(String hash) throws IOException {
+        return readString(entryPath("contexts", hash));
+    }
+
+    /**
+     * @param hash The content hash
+     * @return The file holding the context, which may not exist
+     */
+    public Path getContextPath(String hash) {
+        return entryPath("contexts", hash);
+    }
+
+    /**
+     * Records the verdict of a downstream check for a context, replacing any earlier one.
+     *
+     * @param hash The content hash of the context
+     * @param verdict The verdict
+     * @throws IOException If the verdict cannot be written
+     */
+    public void putVerdict(String hash, String verdict) throws IOException {
+        writeString(entryPath("verdicts", hash), verdict);
+    }
+
+    /**
+     * @param hash The content hash of a context
+     * @return The verdict recorded for the context, or null if there is none
+     * @throws IOException If the verdict cannot be read
+     */
+    public String getVerdict(String hash) throws IOException {
+        return readString(entryPath("verdicts", hash));
+    }
+
+    /**
+     * @return The number of contexts rendered by this instance
+     */
+    public long getRendered() {
+        return rendered.sum();
+    }
+
+    /**
+     * @return The number of contexts found by their key without rendering
+     */
+    public long getReused() {
+        return reused.sum();
+    }
+
+    /**
+     * @return The number of rendered contexts whose content was already stored under another key
+     */
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    private Path entryPath(String tree, String hex) {
+        if (hex.length() != 64 || !hex.chars().allMatch(c -> (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+            throw new IllegalArgumentException("Not a SHA-256 hex string: " + hex);
+        }
+        return directory.resolve(tree).resolve(hex.substring(0, 2)).resolve(hex);
+    }
+
+    private static String readString(Path file) throws IOException {
+        try {
+            return Files.readString(file, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private void writeString(Path file, String content) throws IOException {
+        Path temp = Files.createTempFile(directory, "entry", ".tmp");
+        try {
+            Files.writeString(temp, content, StandardCharsets.UTF_8);
+            moveIntoPlace(temp, file);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void moveIntoPlace(Path temp, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
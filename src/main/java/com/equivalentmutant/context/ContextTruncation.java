@@ -0,0 +1,63 @@
+package com.equivalentmutant.context;
+
+/**
+ * Reports how much of a graph a rendered context holds: the dependencies written in full, those cut to
+ * their signature, and those left out, to keep the context within its {@link ContextBudget}, and whether
+ * the code of the root method itself had to be cut.
+ */
+public class ContextTruncation {
+
+    private final int fullMethods;
+    private final int signatureMethods;
+    private final int omittedMethods;
+    private final boolean rootTruncated;
+
+    ContextTruncation(int fullMethods, int signatureMethods, int omittedMethods, boolean rootTruncated) {
+        this.fullMethods = fullMethods;
+        this.signatureMethods = signatureMethods;
+        this.omittedMethods = omittedMethods;
+        this.rootTruncated = rootTruncated;
+    }
+
+    /**
+     * @return The number of dependencies written with their source code
+     */
+    public int getFullMethods() {
+        return fullMethods;
+    }
+
+    /**
+     * @return The number of dependencies written without their source code
+     */
+    public int getSignatureMethods() {
+        return signatureMethods;
+    }
+
+    /**
+     * @return The number of dependencies not written at all
+     */
+    public int getOmittedMethods() {
+        return omittedMethods;
+    }
+
+    /**
+     * @return True if the root method alone exceeds the budget and only part of its code is written
+     */
+    public boolean isRootTruncated() {
+        return rootTruncated;
+    }
+
+    /**
+     * @return True if the root method or any dependency is not written in full
+     */
+    public boolean isTruncated() {
+        return rootTruncated || signatureMethods > 0 || omittedMethods > 0;
+    }
+
+    @Override
+    public String toString() {
+        return (rootTruncated ? "root method code cut, " : "") + fullMethods + " of "
+            + (fullMethods + signatureMethods + omittedMethods) + " dependencies in full, " + signatureMethods
+            + " as signatures only, " + omittedMethods + " omitted";
+    }
+}
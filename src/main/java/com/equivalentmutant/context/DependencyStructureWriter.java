@@ -0,0 +1,23 @@
+package com.equivalentmutant.context;
+
+import com.equivalentmutant.model.DependencyGraph;
+
+import java.io.IOException;
+
+/**
+ * Writes the dependency structure of a graph in a machine-readable format.
+ * <p>
+ * A structure is written as three tables in order: the files, the methods and the calls. Every method is
+ * written once, and methods and calls refer to files and methods by their ID, which is the position in
+ * their table. Method IDs are those of the graph's {@link com.equivalentmutant.model.CompactGraph}, so the
+ * root method is always 0. Calls are grouped by caller in ID order. The tables are written straight from
+ * the graph without building intermediate objects for them.
+ */
+public interface DependencyStructureWriter {
+
+    /**
+     * @param graph The graph to write
+     * @throws IOException If writing fails
+     */
+    void write(DependencyGraph graph) throws IOException;
+}
@@ -0,0 +1,40 @@
+package com.equivalentmutant.context;
+
+import com.equivalentmutant.model.CompactGraph;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The distinct file paths of the methods and call sites of a graph, numbered in order of first use.
+ */
+class FileTable {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> paths = new ArrayList<>();
+
+    FileTable(CompactGraph.Snapshot snapshot) {
+        for (int id = 0; id < snapshot.getMethodCount(); id++) {
+            add(snapshot.method(id).getLocation().getFilePath());
+        }
+        for (int edge = 0; edge < snapshot.getEdgeCount(); edge++) {
+            add(snapshot.callSitePath(edge));
+        }
+    }
+
+    private void add(String path) {
+        if (!ids.containsKey(path)) {
+            ids.put(path, paths.size());
+            paths.add(path);
+        }
+    }
+
+    int idOf(String path) {
+        return ids.get(path);
+    }
+
+    List<String> getPaths() {
+        return paths;
+    }
+}
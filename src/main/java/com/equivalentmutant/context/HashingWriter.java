@@ -0,0 +1,138 @@
+package com.equivalentmutant.context;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A writer that passes text on while computing the SHA-256 hash of its UTF-8 encoding, so a context gets
+ * its content hash in the same pass that writes it.
+ * <p>
+ * The hash is that of {@code text.getBytes(UTF_8)}: an unpaired surrogate counts as {@code '?'}.
+ */
+public class HashingWriter extends Writer {
+
+    private final Writer out;
+    private final MessageDigest digest = newDigest();
+    private final byte[] buffer = new byte[8192];
+    private int buffered;
+    private char highSurrogate;
+    private String hash;
+
+    /**
+     * @param out The writer receiving the text
+     */
+    public HashingWriter(Writer out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        out.write(c);
+        update((char) c);
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+        out.write(chars, offset, length);
+        for (int i = offset; i < offset + length; i++) {
+            update(chars[i]);
+        }
+    }
+
+    @Override
+    public void write(String text, int offset, int length) throws IOException {
+        out.write(text, offset, length);
+        for (int i = offset; i < offset + length; i++) {
+            update(text.charAt(i));
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Finishes the hash. Nothing may be written afterwards.
+     *
+     * @return The SHA-256 hash of everything written, as a lowercase hex string
+     */
+    public String getHash() {
+        if (hash == null) {
+            if (highSurrogate != 0) {
+                put('?');
+                highSurrogate = 0;
+            }
+            digest.update(buffer, 0, buffered);
+            buffered = 0;
+            hash = toHex(digest.digest());
+        }
+        return hash;
+    }
+
+    private void update(char c) {
+        if (hash != null) {
+            throw new IllegalStateException("Hash already computed");
+        }
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(high, c);
+                put(0xF0 | (codePoint >>> 18));
+                put(0x80 | ((codePoint >>> 12) & 0x3F));
+                put(0x80 | ((codePoint >>> 6) & 0x3F));
+                put(0x80 | (codePoint & 0x3F));
+                return;
+            }
+            put('?');
+        }
+        if (c < 0x80) {
+            put(c);
+        } else if (c < 0x800) {
+            put(0xC0 | (c >>> 6));
+            put(0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            put('?');
+        } else {
+            put(0xE0 | (c >>> 12));
+            put(0x80 | ((c >>> 6) & 0x3F));
+            put(0x80 | (c & 0x3F));
+        }
+    }
+
+    private void put(int b) {
+        if (buffered == buffer.length) {
+            digest.update(buffer, 0, buffered);
+            buffered = 0;
+        }
+        buffer[buffered++] = (byte) b;
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform provides SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = Character.forDigit((bytes[i] >>> 4) & 0xF, 16);
+            hex[2 * i + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,96 @@
+package com.equivalentmutant.context;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Minimal helpers for writing JSON output by hand.
+ */
+public final class Json {
+
+    private Json() {
+    }
+
+    /**
+     * Quotes and escapes a string as a JSON string literal.
+     *
+     * @param value The string, or null
+     * @return The JSON literal, or {@code null} for a null string
+     */
+    public static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder quoted = new StringBuilder(value.length() + 16);
+        quoted.append('"');
+        try {
+            for (int i = 0; i < value.length(); i++) {
+                escape(value.charAt(i), quoted);
+            }
+        } catch (IOException e) {
+            // A StringBuilder does not fail
+            throw new UncheckedIOException(e);
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Returns a writer that escapes everything written to it as the content of a JSON string literal. The
+     * surrounding quotes are not written.
+     *
+     * @param out The destination of the escaped text
+     * @return The escaping writer
+     */
+    public static Writer escaping(Appendable out) {
+        return new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) throws IOException {
+                for (int i = offset; i < offset + length; i++) {
+                    escape(buffer[i], out);
+                }
+            }
+
+            @Override
+            public void write(String value, int offset, int length) throws IOException {
+                for (int i = offset; i < offset + length; i++) {
+                    escape(value.charAt(i), out);
+                }
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private static void escape(char c, Appendable out) throws IOException {
+        switch (c) {
+            case '"':
+                out.append("\\\"");
+                break;
+            case '\\':
+                out.append("\\\\");
+                break;
+            case '\n':
+                out.append("\\n");
+                break;
+            case '\r':
+                out.append("\\r");
+                break;
+            case '\t':
+                out.append("\\t");
+                break;
+            default:
+                if (c < 0x20) {
+                    out.append(String.format("\\u%04x", (int) c));
+                } else {
+                    out.append(c);
+                }
+        }
+    }
+}
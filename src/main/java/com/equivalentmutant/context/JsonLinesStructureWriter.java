@@ -0,0 +1,124 @@
+package com.equivalentmutant.context;
+
+import com.equivalentmutant.model.CompactGraph;
+import com.equivalentmutant.model.DependencyGraph;
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.model.SourceLocation;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes dependency structures as JSON Lines, one JSON object per line.
+ * <p>
+ * Each structure starts with a {@code graph} record giving the table sizes, followed by the tables:
+ * <pre>
+ * {"type":"graph","root":0,"files":F,"methods":M,"calls":C,"truncated":null}
+ * {"type":"file","id":0,"path":"src/A.java"}
+ * {"type":"method","id":0,"package":"p","class":"A","name":"run","signature":"void run()","file":0,
+ *  "line":3,"column":5,"endLine":9,"endColumn":5,"depth":0}
+ * {"type":"call","caller":0,"callee":1,"file":0,"line":4,"column":9,"endLine":4,"endColumn":20}
+ * </pre>
+ * A method's depth is -1 if none was recorded, and {@code truncated} names the exhausted budget of a
+ * truncated graph.
+ */
+public class JsonLinesStructureWriter implements DependencyStructureWriter {
+
+    private final Writer out;
+    private final Writer escaped;
+
+    /**
+     * @param out The writer receiving the records; it is not flushed or closed
+     */
+    public JsonLinesStructureWriter(Writer out) {
+        this.out = out;
+        this.escaped = Json.escaping(out);
+    }
+
+    @Override
+    public void write(DependencyGraph graph) throws IOException {
+        CompactGraph.Snapshot snapshot = graph.getCompactGraph().snapshot();
+        FileTable files = new FileTable(snapshot);
+
+        out.write("{\"type\":\"graph\",\"root\":0,\"files\":");
+        writeInt(files.getPaths().size());
+        out.write(",\"methods\":");
+        writeInt(snapshot.getMethodCount());
+        out.write(",\"calls\":");
+        writeInt(snapshot.getEdgeCount());
+        out.write(",\"truncated\":");
+        if (graph.isTruncated()) {
+            writeString(graph.getTruncationReason().name());
+        } else {
+            out.write("null");
+        }
+        out.write("}\n");
+
+        List<String> paths = files.getPaths();
+        for (int id = 0; id < paths.size(); id++) {
+            out.write("{\"type\":\"file\",\"id\":");
+            writeInt(id);
+            out.write(",\"path\":");
+            writeString(paths.get(id));
+            out.write("}\n");
+        }
+
+        for (int id = 0; id < snapshot.getMethodCount(); id++) {
+            JavaMethod method = snapshot.method(id);
+            SourceLocation location = method.getLocation();
+            out.write("{\"type\":\"method\",\"id\":");
+            writeInt(id);
+            out.write(",\"package\":");
+            writeString(method.getPackageName());
+            out.write(",\"class\":");
+            writeString(method.getClassName());
+            out.write(",\"name\":");
+            writeString(method.getMethodName());
+            out.write(",\"signature\":");
+            writeString(method.getSignature());
+            writePosition(files.idOf(location.getFilePath()), location.getBeginLine(), location.getBeginColumn(),
+                location.getEndLine(), location.getEndColumn());
+            out.write(",\"depth\":");
+            writeInt(graph.getDepth(method));
+            out.write("}\n");
+        }
+
+        for (int i = 0; i < snapshot.callerCount(); i++) {
+            int caller = snapshot.callerAt(i);
+            for (int index = snapshot.outStart(caller); index < snapshot.outEnd(caller); index++) {
+                int edge = snapshot.outEdge(index);
+                out.write("{\"type\":\"call\",\"caller\":");
+                writeInt(caller);
+                out.write(",\"callee\":");
+                writeInt(snapshot.callee(edge));
+                writePosition(files.idOf(snapshot.callSitePath(edge)), snapshot.callSiteBeginLine(edge),
+                    snapshot.callSiteBeginColumn(edge), snapshot.callSiteEndLine(edge), snapshot.callSiteEndColumn(edge));
+                out.write("}\n");
+            }
+        }
+    }
+
+    private void writePosition(int file, int line, int column, int endLine, int endColumn) throws IOException {
+        out.write(",\"file\":");
+        writeInt(file);
+        out.write(",\"line\":");
+        writeInt(line);
+        out.write(",\"column\":");
+        writeInt(column);
+        out.write(",\"endLine\":");
+        writeInt(endLine);
+        out.write(",\"endColumn\":");
+        writeInt(endColumn);
+    }
+
+    private void writeInt(int value) throws IOException {
+        out.write(Integer.toString(value));
+    }
+
+    private void writeString(String value) throws IOException {
+        out.write('"');
+        escaped.write(value);
+        out.write('"');
+    }
+}
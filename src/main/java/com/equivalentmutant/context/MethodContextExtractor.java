@@ -1,16 +1,67 @@
 package com.equivalentmutant.context;
 
+import com.equivalentmutant.model.CompactGraph;
 import com.equivalentmutant.model.DependencyGraph;
 import com.equivalentmutant.model.JavaMethod;
 import com.equivalentmutant.model.MethodDependency;
+import com.equivalentmutant.stats.ContextRenderEvent;
+import com.equivalentmutant.stats.PipelineStats;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.*;
 
 /**
  * Extracts and formats method context for further analysis.
+ * <p>
+ * The dependencies are rendered breadth-first from the root, the callees of each method in the order of
+ * their call sites, each under the first caller that reaches it. The order depends only on the calls in
+ * the graph, not on the order a traversal happened to add them in, so the same graph always renders to
+ * the same text and a {@link HashingWriter content hash} of the text identifies it across runs.
+ * <p>
+ * With a {@link ContextBudget}, the dependencies are ranked by call distance from the root, then by the
+ * number of call sites reaching them. In that rank each dependency is written in full if it still fits,
+ * otherwise as its signature alone if that fits, and is left out otherwise, so a large method near the
+ * root does not keep the smaller ones after it out. The context still lists the dependencies it holds in
+ * rendering order, and ends with a line stating what was cut. The root method is written in full unless it
+ * does not fit along with that line; then only the lines of its code around a focus line, such as the line
+ * of a mutation, are written, and all dependencies are left out. If not even the header of the root method
+ * fits, the context is a single line saying so. The context never exceeds the budget.
  */
 public class MethodContextExtractor {
     
+    private static final byte FULL = 0;
+    private static final byte SIGNATURE = 1;
+    private static final byte OMITTED = 2;
+    
+    private static final String CODE_OMITTED = "Code: omitted to fit the context budget\n";
+    
+    /**
+     * The whole context of a root method whose header does not fit the budget
+     */
+    static final String CONTEXT_OMITTED = "CONTEXT OMITTED to fit the context budget\n";
+    
+    private final ContextBudget budget;
+    
+    public MethodContextExtractor() {
+        this(ContextBudget.UNLIMITED);
+    }
+    
+    /**
+     * @param budget The limits on the size of each context
+     */
+    public MethodContextExtractor(ContextBudget budget) {
+        this.budget = budget;
+    }
+    
+    public ContextBudget getBudget() {
+        return budget;
+    }
+    
     /**
      * Extracts the complete context of a method and its dependencies.
      * 
@@ -18,61 +69,512 @@ public class MethodContextExtractor {
      * @return A formatted string with the complete context
      */
     public String extractMethodContext(DependencyGraph graph) {
-        StringBuilder context = new StringBuilder();
-        Set<JavaMethod> processedMethods = new HashSet<>();
-        
-        // Start with the root method
-        JavaMethod rootMethod = graph.getRootMethod();
-        context.append("ROOT METHOD:\n");
-        appendMethodContext(context, rootMethod);
-        processedMethods.add(rootMethod);
+        StringWriter context = new StringWriter();
+        try {
+            writeMethodContext(graph, context);
+        } catch (IOException e) {
+            // A StringWriter does not fail
+            throw new UncheckedIOException(e);
+        }
+        return context.toString();
+    }
+    
+    /**
+     * Writes the complete context of a method and its dependencies as the graph is walked, without building
+     * it in memory first.
+     * 
+     * @param graph The dependency graph
+     * @param out The writer receiving the context
+     * @return What the budget cut from the context
+     * @throws IOException If writing fails
+     */
+    public ContextTruncation writeMethodContext(DependencyGraph graph, Writer out) throws IOException {
+        return writeMethodContext(graph, -1, out);
+    }
+    
+    /**
+     * Writes the complete context of a method and its dependencies as the graph is walked, without building
+     * it in memory first.
+     * 
+     * @param graph The dependency graph
+     * @param focusLine The source line a root method over the budget is cut around, or -1 for its declaration
+     * @param out The writer receiving the context
+     * @return What the budget cut from the context
+     * @throws IOException If writing fails
+     */
+    public ContextTruncation writeMethodContext(DependencyGraph graph, int focusLine, Writer out)
+            throws IOException {
+        return writeContext(graph, focusLine, true, out);
+    }
+    
+    /**
+     * Writes the root part of a context. Without a budget it depends only on the root method, so it can be
+     * written while the dependency graph is still being built.
+     * 
+     * @param rootMethod The root method
+     * @param out The writer receiving the context
+     * @throws IOException If writing fails
+     * @throws IllegalStateException If the extractor has a budget, since then the whole graph decides how
+     *         the root method is written
+     */
+    public void writeRootContext(JavaMethod rootMethod, Writer out) throws IOException {
+        checkUnlimited();
+        out.write("ROOT METHOD:\n");
+        writeMethod(out, rootMethod);
+    }
+    
+    /**
+     * Writes the dependency part of a context, which follows the root part.
+     * 
+     * @param graph The dependency graph
+     * @param out The writer receiving the context
+     * @return What the budget cut from the context
+     * @throws IOException If writing fails
+     * @throws IllegalStateException If the extractor has a budget
+     */
+    public ContextTruncation writeDependencyContext(DependencyGraph graph, Writer out) throws IOException {
+        checkUnlimited();
+        return writeContext(graph, -1, false, out);
+    }
+    
+    private void checkUnlimited() {
+        if (!budget.isUnlimited()) {
+            throw new IllegalStateException("A context with a budget is written as a whole");
+        }
+    }
+    
+    private ContextTruncation writeContext(DependencyGraph graph, int focusLine, boolean withRoot, Writer out)
+            throws IOException {
+        long start = PipelineStats.startTimer();
+        ContextRenderEvent event = new ContextRenderEvent();
+        event.begin();
         
-        // Process all dependencies
-        context.append("\nDEPENDENCIES:\n");
-        for (Map.Entry<JavaMethod, Set<MethodDependency>> entry : graph.getAllDependencies().entrySet()) {
-            JavaMethod caller = entry.getKey();
+        CompactGraph.Snapshot snapshot = graph.getCompactGraph().snapshot();
+        int[] order = renderOrder(graph, snapshot);
+        int count = order.length / 2;
+        byte[] forms = planForms(graph, snapshot, order);
+        ContextTruncation truncation;
+        if (forms[count] == OMITTED) {
+            out.write(CONTEXT_OMITTED);
+            truncation = new ContextTruncation(0, 0, count, true);
+        } else {
+            if (withRoot) {
+                out.write("ROOT METHOD:\n");
+                if (forms[count] == FULL) {
+                    writeMethod(out, graph.getRootMethod());
+                } else {
+                    writeRootExcerpt(out, graph.getRootMethod(), focusLine, count);
+                }
+            }
             
-            for (MethodDependency dependency : entry.getValue()) {
-                JavaMethod callee = dependency.getCallee();
-                
-                if (!processedMethods.contains(callee)) {
-                    context.append("Method called from: ")
-                          .append(caller.getFullyQualifiedName())
-                          .append("\n");
-                    appendMethodContext(context, callee);
-                    context.append("\n");
-                    processedMethods.add(callee);
+            // Process all dependencies
+            out.write("\nDEPENDENCIES:\n");
+            int[] formCounts = new int[3];
+            for (int i = 0; i < order.length; i += 2) {
+                byte form = forms[i / 2];
+                formCounts[form]++;
+                if (form != OMITTED) {
+                    writeDependency(out, snapshot.method(order[i + 1]), snapshot.method(order[i]), form == FULL);
                 }
             }
+            truncation = new ContextTruncation(formCounts[FULL], formCounts[SIGNATURE], formCounts[OMITTED],
+                forms[count] != FULL);
+            if (truncation.isTruncated()) {
+                out.write(truncationNote(truncation));
+            }
         }
         
-        return context.toString();
+        if (PipelineStats.isEnabled()) {
+            PipelineStats.global().recordRender(start);
+        }
+        if (event.shouldCommit()) {
+            event.rootMethod = graph.getRootMethod().getFullyQualifiedName();
+            event.commit();
+        }
+        return truncation;
+    }
+    
+    /**
+     * Computes a key for the context of a graph without rendering it. Graphs with the same key render to
+     * the same context: the key covers every rendered field of every method in rendering order, and the
+     * source code through the file it is sliced from, its content hash and the slice bounds.
+     *
+     * @param graph The dependency graph
+     * @return The key, as a SHA-256 hex string
+     */
+    public String contextKey(DependencyGraph graph) {
+        return contextKey(graph, -1);
+    }
+    
+    /**
+     * Computes a key for the context of a graph without rendering it, as
+     * {@link #writeMethodContext(DependencyGraph, int, Writer)} renders it with the same focus line.
+     *
+     * @param graph The dependency graph
+     * @param focusLine The source line a root method over the budget is cut around, or -1 for its declaration
+     * @return The key, as a SHA-256 hex string
+     */
+    public String contextKey(DependencyGraph graph, int focusLine) {
+        CompactGraph.Snapshot snapshot = graph.getCompactGraph().snapshot();
+        int[] order = renderOrder(graph, snapshot);
+        MessageDigest digest = HashingWriter.newDigest();
+        if (!budget.isUnlimited()) {
+            // The same graph renders differently under another budget, and a root that may be cut around
+            // another line
+            String limits = budget.getMaxBytes() + "/" + budget.getMaxLines();
+            if (rootForm(graph.getRootMethod(), order.length / 2) != FULL) {
+                limits += "/" + focusLine;
+            }
+            digest.update((limits + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        updateKey(digest, "", graph.getRootMethod());
+        for (int i = 0; i < order.length; i += 2) {
+            updateKey(digest, snapshot.method(order[i + 1]).getFullyQualifiedName(), snapshot.method(order[i]));
+        }
+        return HashingWriter.toHex(digest.digest());
+    }
+    
+    private static void updateKey(MessageDigest digest, String caller, JavaMethod method) {
+        StringBuilder fields = new StringBuilder(256)
+            .append(caller).append('\0')
+            .append(method.getPackageName()).append('\0')
+            .append(method.getClassName()).append('\0')
+            .append(method.getSignature()).append('\0')
+            .append(method.getLocation()).append('\0');
+        if (method.getSourceText() != null) {
+            fields.append(method.getSourceText().getFilePath()).append('\0')
+                .append(method.getSourceText().getContentHash()).append('\0')
+                .append(method.getSourceBegin()).append('\0')
+                .append(method.getSourceEnd());
+        } else {
+            fields.append(method.getSourceCode());
+        }
+        digest.update(fields.append('\n').toString().getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Orders the dependencies of a graph for rendering: breadth-first from the root, the calls of each
+     * method by call-site position, an enclosing call before the calls in its receiver, and calls at the
+     * same site by callee name.
+     *
+     * @return Pairs of callee ID and the ID of the caller it is first reached from, in rendering order
+     */
+    private static int[] renderOrder(DependencyGraph graph, CompactGraph.Snapshot snapshot) {
+        int root = graph.getCompactGraph().idOf(graph.getRootMethod());
+        int[] order = new int[2 * Math.max(0, snapshot.getMethodCount() - 1)];
+        if (root < 0) {
+            return order;
+        }
+        boolean[] reached = new boolean[snapshot.getMethodCount()];
+        int[] queue = new int[snapshot.getMethodCount()];
+        int[] calls = new int[16];
+        int head = 0;
+        int tail = 0;
+        int count = 0;
+        reached[root] = true;
+        queue[tail++] = root;
+        while (head < tail) {
+            int caller = queue[head++];
+            int callCount = snapshot.outEnd(caller) - snapshot.outStart(caller);
+            if (calls.length < callCount) {
+                calls = new int[Math.max(callCount, calls.length * 2)];
+            }
+            // Insertion sort, since a method makes few calls
+            for (int i = 0; i < callCount; i++) {
+                int edge = snapshot.outEdge(snapshot.outStart(caller) + i);
+                int j = i;
+                while (j > 0 && compareCalls(snapshot, calls[j - 1], edge) > 0) {
+                    calls[j] = calls[j - 1];
+                    j--;
+                }
+                calls[j] = edge;
+            }
+            for (int i = 0; i < callCount; i++) {
+                int callee = snapshot.callee(calls[i]);
+                if (!reached[callee]) {
+                    reached[callee] = true;
+                    queue[tail++] = callee;
+                    order[count++] = callee;
+                    order[count++] = caller;
+                }
+            }
+        }
+        return count == order.length ? order : Arrays.copyOf(order, count);
+    }
+    
+    /**
+     * Decides how each method is written to keep the context within the budget.
+     *
+     * @return The form of each dependency, indexed like the pairs of the rendering order, followed by the
+     *         {@link #rootForm form of the root method}
+     */
+    private byte[] planForms(DependencyGraph graph, CompactGraph.Snapshot snapshot, int[] order)
+            throws IOException {
+        int count = order.length / 2;
+        byte[] forms = new byte[count + 1];
+        if (budget.isUnlimited()) {
+            return forms;
+        }
+        SizeCountingWriter counter = new SizeCountingWriter();
+        counter.write("ROOT METHOD:\n");
+        writeMethod(counter, graph.getRootMethod());
+        counter.write("\nDEPENDENCIES:\n");
+        long usedBytes = counter.getBytes();
+        long usedLines = counter.getLines();
+        
+        long[] fullBytes = new long[count];
+        long[] fullLines = new long[count];
+        long totalBytes = usedBytes;
+        long totalLines = usedLines;
+        for (int i = 0; i < count; i++) {
+            counter.reset();
+            writeDependency(counter, snapshot.method(order[2 * i + 1]), snapshot.method(order[2 * i]), true);
+            fullBytes[i] = counter.getBytes();
+            fullLines[i] = counter.getLines();
+            totalBytes += fullBytes[i];
+            totalLines += fullLines[i];
+        }
+        if (budget.allows(totalBytes, totalLines)) {
+            return forms;
+        }
+        
+        // The context is cut, so it ends with the closing note
+        forms[count] = rootForm(graph.getRootMethod(), count);
+        if (forms[count] != FULL) {
+            Arrays.fill(forms, 0, count, OMITTED);
+            return forms;
+        }
+        // Leave room for the note, measured with the largest counts it can state
+        counter.reset();
+        counter.write(truncationNote(new ContextTruncation(count, count, count, false)));
+        usedBytes += counter.getBytes();
+        usedLines += counter.getLines();
+        
+        // Rank by call distance from the root, then by the number of call sites reaching the method
+        int[] distance = new int[snapshot.getMethodCount()];
+        for (int i = 0; i < order.length; i += 2) {
+            distance[order[i]] = distance[order[i + 1]] + 1;
+        }
+        int[] callSites = new int[snapshot.getMethodCount()];
+        for (int method = 0; method < snapshot.getMethodCount(); method++) {
+            for (int i = snapshot.outStart(method); i < snapshot.outEnd(method); i++) {
+                callSites[snapshot.callee(snapshot.outEdge(i))]++;
+            }
+        }
+        Integer[] ranking = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            ranking[i] = i;
+        }
+        Arrays.sort(ranking, (a, b) -> {
+            int result = Integer.compare(distance[order[2 * a]], distance[order[2 * b]]);
+            if (result == 0) {
+                result = Integer.compare(callSites[order[2 * b]], callSites[order[2 * a]]);
+            }
+            return result != 0 ? result : Integer.compare(a, b);
+        });
+        
+        for (int i : ranking) {
+            byte form = FULL;
+            long bytes = fullBytes[i];
+            long lines = fullLines[i];
+            if (!budget.allows(usedBytes + bytes, usedLines + lines)) {
+                form = SIGNATURE;
+                counter.reset();
+                writeDependency(counter, snapshot.method(order[2 * i + 1]), snapshot.method(order[2 * i]), false);
+                bytes = counter.getBytes();
+                lines = counter.getLines();
+                if (!budget.allows(usedBytes + bytes, usedLines + lines)) {
+                    form = OMITTED;
+                }
+            }
+            forms[i] = form;
+            if (form != OMITTED) {
+                usedBytes += bytes;
+                usedLines += lines;
+            }
+        }
+        return forms;
+    }
+    
+    /**
+     * Decides how the root method of a context that is cut is written: {@code FULL} if it fits along with
+     * the closing note, {@code SIGNATURE} for its header and the lines of its code that fit if at least the
+     * header fits, and {@code OMITTED} otherwise, leaving only {@link #CONTEXT_OMITTED}.
+     */
+    private byte rootForm(JavaMethod rootMethod, int count) {
+        if (budget.isUnlimited()) {
+            return FULL;
+        }
+        SizeCountingWriter counter = new SizeCountingWriter();
+        try {
+            counter.write("ROOT METHOD:\n");
+            writeMethod(counter, rootMethod);
+            counter.write("\nDEPENDENCIES:\n");
+            counter.write(truncationNote(new ContextTruncation(count, count, count, false)));
+            if (budget.allows(counter.getBytes(), counter.getLines())) {
+                return FULL;
+            }
+            counter.reset();
+            counter.write("ROOT METHOD:\n");
+            writeMethodHeader(counter, rootMethod);
+            counter.write(CODE_OMITTED);
+            counter.write("\nDEPENDENCIES:\n");
+            counter.write(truncationNote(new ContextTruncation(0, 0, count, true)));
+        } catch (IOException e) {
+            // A SizeCountingWriter does not fail
+            throw new UncheckedIOException(e);
+        }
+        return budget.allows(counter.getBytes(), counter.getLines()) ? SIGNATURE : OMITTED;
+    }
+    
+    /**
+     * Writes the header of a root method over the budget and the lines of its code around the focus line
+     * that still fit, growing the excerpt alternately downwards and upwards.
+     */
+    private void writeRootExcerpt(Writer out, JavaMethod method, int focusLine, int count) throws IOException {
+        writeMethodHeader(out, method);
+        String[] lines = method.getSourceCode().split("\n", -1);
+        // The code may start with a comment above the declaration, but always ends on its last line
+        int firstLine = method.getLocation().getEndLine() - lines.length + 1;
+        int focus = focusLine - firstLine;
+        if (focusLine < 0 || focus < 0 || focus >= lines.length) {
+            focus = Math.max(0, Math.min(lines.length - 1, method.getLocation().getBeginLine() - firstLine));
+        }
+        
+        // Everything but the kept lines, with the widest line numbers the excerpt can state
+        SizeCountingWriter counter = new SizeCountingWriter();
+        counter.write("ROOT METHOD:\n");
+        writeMethodHeader(counter, method);
+        counter.write(excerptHeader(method.getLocation().getEndLine(), method.getLocation().getEndLine()));
+        counter.write("\nDEPENDENCIES:\n");
+        counter.write(truncationNote(new ContextTruncation(0, 0, count, true)));
+        long usedBytes = counter.getBytes();
+        long usedLines = counter.getLines();
+        
+        int begin = focus;
+        int end = focus;
+        boolean grown = true;
+        while (grown) {
+            grown = false;
+            for (int next : new int[] {end, begin - 1}) {
+                // Lines above the focus line are only kept along with it
+                if (next < 0 || next >= lines.length || (next < focus && end == focus)) {
+                    continue;
+                }
+                counter.reset();
+                counter.write(lines[next]);
+                counter.write("\n");
+                if (budget.allows(usedBytes + counter.getBytes(), usedLines + counter.getLines())) {
+                    usedBytes += counter.getBytes();
+                    usedLines += counter.getLines();
+                    if (next == end) {
+                        end++;
+                    } else {
+                        begin--;
+                    }
+                    grown = true;
+                }
+            }
+        }
+        
+        // No kept line leaves the shorter line saying so, which the root form made sure fits
+        if (begin == end) {
+            out.write(CODE_OMITTED);
+            return;
+        }
+        out.write(excerptHeader(firstLine + begin, firstLine + end - 1));
+        for (int i = begin; i < end; i++) {
+            out.write(lines[i]);
+            out.write("\n");
+        }
+    }
+    
+    private static String excerptHeader(int beginLine, int endLine) {
+        return "Code: lines " + beginLine + " to " + endLine + " only, to fit the context budget\n";
+    }
+    
+    private String truncationNote(ContextTruncation truncation) {
+        StringBuilder note = new StringBuilder("\nCONTEXT TRUNCATED: ").append(truncation).append(" to fit ");
+        if (budget.getMaxBytes() >= 0) {
+            note.append(budget.getMaxBytes()).append(" bytes");
+        }
+        if (budget.getMaxLines() >= 0) {
+            note.append(budget.getMaxBytes() >= 0 ? " and " : "").append(budget.getMaxLines()).append(" lines");
+        }
+        return note.append('\n').toString();
+    }
+    
+    private static int compareCalls(CompactGraph.Snapshot snapshot, int a, int b) {
+        int result = Integer.compare(snapshot.callSiteBeginLine(a), snapshot.callSiteBeginLine(b));
+        if (result == 0) {
+            result = Integer.compare(snapshot.callSiteBeginColumn(a), snapshot.callSiteBeginColumn(b));
+        }
+        if (result == 0) {
+            result = Integer.compare(snapshot.callSiteEndLine(b), snapshot.callSiteEndLine(a));
+        }
+        if (result == 0) {
+            result = Integer.compare(snapshot.callSiteEndColumn(b), snapshot.callSiteEndColumn(a));
+        }
+        if (result == 0) {
+            JavaMethod calleeA = snapshot.method(snapshot.callee(a));
+            JavaMethod calleeB = snapshot.method(snapshot.callee(b));
+            result = calleeA.getFullyQualifiedName().compareTo(calleeB.getFullyQualifiedName());
+            if (result == 0) {
+                result = calleeA.getSignature().compareTo(calleeB.getSignature());
+            }
+        }
+        return result;
+    }
+    
+    private void writeDependency(Writer out, JavaMethod caller, JavaMethod method, boolean full)
+            throws IOException {
+        out.write("Method called from: ");
+        out.write(caller.getFullyQualifiedName());
+        out.write("\n");
+        if (full) {
+            writeMethod(out, method);
+        } else {
+            writeMethodHeader(out, method);
+            out.write(CODE_OMITTED);
+        }
+        out.write("\n");
+    }
+    
+    private void writeMethod(Writer out, JavaMethod method) throws IOException {
+        writeMethodHeader(out, method);
+        out.write("Code:\n");
+        method.writeSourceCode(out);
+        out.write("\n");
     }
     
-    private void appendMethodContext(StringBuilder context, JavaMethod method) {
-        context.append("Package: ").append(method.getPackageName()).append("\n");
-        context.append("Class: ").append(method.getClassName()).append("\n");
-        context.append("Method: ").append(method.getSignature()).append("\n");
-        context.append("Source: ").append(method.getLocation()).append("\n");
-        context.append("Code:\n").append(method.getSourceCode()).append("\n");
+    private void writeMethodHeader(Writer out, JavaMethod method) throws IOException {
+        out.write("Package: " + method.getPackageName() + "\n");
+        out.write("Class: " + method.getClassName() + "\n");
+        out.write("Method: " + method.getSignature() + "\n");
+        out.write("Source: " + method.getLocation() + "\n");
     }
     
     /**
      * Extracts a dependency structure in a format suitable for visualization.
+     * <p>
+     * The structure is built in memory; {@link DependencyStructureWriter} streams the same information
+     * without doing so.
      * 
      * @param graph The dependency graph
      * @return A map representation of the dependency structure
      */
     public Map<String, Object> extractDependencyStructure(DependencyGraph graph) {
         Map<String, Object> structure = new HashMap<>();
-        structure.put("rootMethod", formatMethod(graph.getRootMethod()));
+        // Each method is formatted once, however many dependencies it takes part in
+        Map<JavaMethod, Map<String, String>> formattedMethods = new HashMap<>();
+        structure.put("rootMethod", formattedMethods.computeIfAbsent(graph.getRootMethod(), this::formatMethod));
         
         List<Map<String, Object>> dependencies = new ArrayList<>();
         for (Map.Entry<JavaMethod, Set<MethodDependency>> entry : graph.getAllDependencies().entrySet()) {
             for (MethodDependency dependency : entry.getValue()) {
                 Map<String, Object> dep = new HashMap<>();
-                dep.put("caller", formatMethod(dependency.getCaller()));
-                dep.put("callee", formatMethod(dependency.getCallee()));
+                dep.put("caller", formattedMethods.computeIfAbsent(dependency.getCaller(), this::formatMethod));
+                dep.put("callee", formattedMethods.computeIfAbsent(dependency.getCallee(), this::formatMethod));
                 dep.put("callSite", dependency.getCallSite().toString());
                 dependencies.add(dep);
             }
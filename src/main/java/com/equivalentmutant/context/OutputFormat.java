@@ -0,0 +1,27 @@
+package com.equivalentmutant.context;
+
+/**
+ * The formats an analysis result can be written in.
+ */
+public enum OutputFormat {
+    /** The human-readable method context. */
+    TEXT,
+    /** The dependency structure as JSON Lines, see {@link JsonLinesStructureWriter}. */
+    JSONL,
+    /** The dependency structure in a compact binary encoding, see {@link BinaryStructureWriter}. */
+    BINARY;
+
+    /**
+     * @param name The lower-case name of the format
+     * @return The format
+     * @throws IllegalArgumentException If there is no such format
+     */
+    public static OutputFormat fromName(String name) {
+        for (OutputFormat format : values()) {
+            if (format.name().toLowerCase().equals(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown output format: " + name);
+    }
+}
@@ -0,0 +1,70 @@
+package com.equivalentmutant.context;
+
+import java.io.Writer;
+
+/**
+ * A writer that discards text and only counts its UTF-8 bytes and line breaks, to measure a part of a
+ * context before deciding whether to write it.
+ */
+class SizeCountingWriter extends Writer {
+
+    private long bytes;
+    private long lines;
+
+    @Override
+    public void write(int c) {
+        count((char) c);
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            count(chars[i]);
+        }
+    }
+
+    @Override
+    public void write(String text, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            count(text.charAt(i));
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    long getBytes() {
+        return bytes;
+    }
+
+    long getLines() {
+        return lines;
+    }
+
+    /**
+     * Starts counting again from zero.
+     */
+    void reset() {
+        bytes = 0;
+        lines = 0;
+    }
+
+    private void count(char c) {
+        if (c < 0x80) {
+            bytes++;
+            if (c == '\n') {
+                lines++;
+            }
+        } else if (c < 0x800 || Character.isSurrogate(c)) {
+            // Each half of a surrogate pair counts two of the pair's four bytes
+            bytes += 2;
+        } else {
+            bytes += 3;
+        }
+    }
+}
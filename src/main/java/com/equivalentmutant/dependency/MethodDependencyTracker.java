@@ -1,10 +1,15 @@
 package com.equivalentmutant.dependency;
 
+import com.equivalentmutant.model.CallSiteTable;
 import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.model.MethodCallInfo;
 import com.equivalentmutant.model.MethodDependency;
 import com.equivalentmutant.model.SourceLocation;
+import com.equivalentmutant.model.SymbolTable;
+import com.equivalentmutant.parser.CompilationUnitCache;
+import com.equivalentmutant.stats.CallExtractionEvent;
+import com.equivalentmutant.stats.PipelineStats;
 import com.github.javaparser.JavaParser;
-import com.github.javaparser.ParseResult;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
@@ -15,27 +20,45 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 
 /**
  * Tracks method dependencies by analyzing method calls within a method.
  */
 public class MethodDependencyTracker {
     
-    private final JavaParser parser;
+    // JavaParser is not thread-safe and the tracker may be shared by concurrent traversals
+    private final ThreadLocal<JavaParser> parser = ThreadLocal.withInitial(JavaParser::new);
+    private final CompilationUnitCache unitCache;
+    private final CallSiteTable callSiteTable;
     
     public MethodDependencyTracker() {
-        this.parser = new JavaParser();
+        this(new CompilationUnitCache(), new CallSiteTable());
+    }
+    
+    public MethodDependencyTracker(CompilationUnitCache unitCache, CallSiteTable callSiteTable) {
+        this.unitCache = unitCache;
+        this.callSiteTable = callSiteTable;
     }
     
     /**
      * Identifies direct method calls within the given method.
+     * <p>
+     * Methods indexed by {@code JavaSourceParser} are answered from the call-site table without touching
+     * the filesystem; other methods are located in their parsed source file.
      * 
      * @param method The method to analyze
      * @return A list of method call information
      */
     public List<MethodCallInfo> findMethodCalls(JavaMethod method) {
+        List<MethodCallInfo> indexedCalls = callSiteTable.get(method);
+        if (indexedCalls != null) {
+            return indexedCalls;
+        }
+        
         List<MethodCallInfo> methodCalls = new ArrayList<>();
+        long start = PipelineStats.startTimer();
+        CallExtractionEvent event = new CallExtractionEvent();
+        event.begin();
         
         try {
             // Instead of parsing just the method source code, we need to parse the entire file
@@ -45,12 +68,8 @@ public class MethodDependencyTracker {
                 throw new RuntimeException("Source file not found: " + method.getLocation().getFilePath());
             }
             
-            ParseResult<CompilationUnit> parseResult = parser.parse(sourceFile);
-            if (!parseResult.isSuccessful() || !parseResult.getResult().isPresent()) {
-                throw new RuntimeException("Failed to parse file: " + sourceFile.getPath());
-            }
-            
-            CompilationUnit cu = parseResult.getResult().get();
+            // Reuse the unit parsed during indexing instead of parsing the file again
+            CompilationUnit cu = unitCache.getCompilationUnit(sourceFile, parser.get());
             
             // Find the specific method in the compilation unit and analyze its calls
             cu.findAll(MethodDeclaration.class).stream()
@@ -63,12 +82,23 @@ public class MethodDependencyTracker {
                     }
                     return parent.getNameAsString().equals(method.getClassName());
                 })
+                // Overloads share name and class, the declaration line tells them apart
+                .filter(m -> method.getLocation().getBeginLine() <= 0
+                    || m.getBegin().map(pos -> pos.line).orElse(0) == method.getLocation().getBeginLine())
                 .findFirst()
                 .ifPresent(methodDecl -> {
                     // Create a visitor to extract all method calls within this method
-                    methodDecl.accept(new MethodCallVisitor(sourceFile.getPath(), methodCalls), null);
+                    methodDecl.accept(new MethodCallVisitor(SymbolTable.shared().intern(sourceFile.getPath()), methodCalls), null);
                 });
             
+            if (PipelineStats.isEnabled()) {
+                PipelineStats.global().recordExtraction(methodCalls.size(), start);
+            }
+            if (event.shouldCommit()) {
+                event.source = method.getFullyQualifiedName();
+                event.callSites = methodCalls.size();
+                event.commit();
+            }
             return methodCalls;
         } catch (FileNotFoundException e) {
             throw new RuntimeException("Failed to parse source file: " + e.getMessage(), e);
@@ -87,31 +117,8 @@ public class MethodDependencyTracker {
         return new MethodDependency(caller, callee, callSite);
     }
     
-    /**
-     * Information about a method call.
-     */
-    public static class MethodCallInfo {
-        private final String methodName;
-        private final List<String> argumentTypes;
-        private final SourceLocation location;
-        
-        public MethodCallInfo(String methodName, List<String> argumentTypes, SourceLocation location) {
-            this.methodName = methodName;
-            this.argumentTypes = argumentTypes;
-            this.location = location;
-        }
-        
-        public String getMethodName() {
-            return methodName;
-        }
-        
-        public List<String> getArgumentTypes() {
-            return argumentTypes;
-        }
-        
-        public SourceLocation getLocation() {
-            return location;
-        }
+    public CallSiteTable getCallSiteTable() {
+        return callSiteTable;
     }
     
     /**
@@ -132,11 +139,7 @@ public class MethodDependencyTracker {
             String methodName = methodCallExpr.getNameAsString();
             
             // Get argument types (this is a simplification, in a real implementation we'd need to resolve types)
-            List<String> argumentTypes = new ArrayList<>();
-            methodCallExpr.getArguments().forEach(argument -> {
-                // In a real implementation, we'd resolve the actual type
-                argumentTypes.add("Unknown");
-            });
+            List<String> argumentTypes = MethodCallInfo.unknownArgumentTypes(methodCallExpr.getArguments().size());
             
             // Create source location
             SourceLocation location = new SourceLocation(
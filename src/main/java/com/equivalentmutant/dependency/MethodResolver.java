@@ -1,6 +1,7 @@
 package com.equivalentmutant.dependency;
 
 import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.model.MethodCallInfo;
 
 import java.util.List;
 import java.util.Optional;
@@ -18,4 +19,15 @@ public interface MethodResolver {
      * @return The resolved method, if found
      */
     Optional<JavaMethod> resolveMethod(String methodName, List<String> argumentTypes);
+    
+    /**
+     * Resolves a recorded call site to its implementation. Resolvers that understand resolved call targets
+     * override this; by default the call is resolved by name and argument types.
+     * 
+     * @param call The call site
+     * @return The resolved method, if found
+     */
+    default Optional<JavaMethod> resolveCall(MethodCallInfo call) {
+        return resolveMethod(call.getMethodName(), call.getArgumentTypes());
+    }
 } 
\ No newline at end of file
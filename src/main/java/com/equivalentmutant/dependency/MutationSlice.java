@@ -0,0 +1,73 @@
+package com.equivalentmutant.dependency;
+
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.model.SourceLocation;
+import com.github.javaparser.Range;
+
+import java.util.Set;
+
+/**
+ * The statements of a method that a mutation can affect, as far as they matter to a traversal: the calls
+ * made from them.
+ * <p>
+ * A traversal given a slice follows only the root method's calls that lie inside it. Calls made by the
+ * other methods of the graph are all followed.
+ */
+public class MutationSlice {
+
+    private final JavaMethod method;
+    private final Set<Range> callSites;
+    private final int statementCount;
+    private final int slicedStatementCount;
+
+    MutationSlice(JavaMethod method, Set<Range> callSites, int statementCount, int slicedStatementCount) {
+        this.method = method;
+        this.callSites = callSites;
+        this.statementCount = statementCount;
+        this.slicedStatementCount = slicedStatementCount;
+    }
+
+    /**
+     * @return The mutated method
+     */
+    public JavaMethod getMethod() {
+        return method;
+    }
+
+    /**
+     * Tells whether a call made by the mutated method lies inside the slice.
+     *
+     * @param callSite The location of the call
+     * @return True if the call can be affected by the mutation
+     */
+    public boolean contains(SourceLocation callSite) {
+        return callSites.contains(Range.range(callSite.getBeginLine(), callSite.getBeginColumn(),
+            callSite.getEndLine(), callSite.getEndColumn()));
+    }
+
+    /**
+     * @return The number of calls inside the slice
+     */
+    public int getCallSiteCount() {
+        return callSites.size();
+    }
+
+    /**
+     * @return The number of statements in the method body
+     */
+    public int getStatementCount() {
+        return statementCount;
+    }
+
+    /**
+     * @return The number of statements inside the slice
+     */
+    public int getSlicedStatementCount() {
+        return slicedStatementCount;
+    }
+
+    @Override
+    public String toString() {
+        return slicedStatementCount + " of " + statementCount + " statements, " + callSites.size() + " calls";
+    }
+}
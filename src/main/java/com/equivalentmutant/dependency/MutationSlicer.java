@@ -0,0 +1,346 @@
+package com.equivalentmutant.dependency;
+
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.parser.CompilationUnitCache;
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.Position;
+import com.github.javaparser.Range;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.ArrayAccessExpr;
+import com.github.javaparser.ast.expr.AssignExpr;
+import com.github.javaparser.ast.expr.CastExpr;
+import com.github.javaparser.ast.expr.EnclosedExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.FieldAccessExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.ThisExpr;
+import com.github.javaparser.ast.expr.UnaryExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.BreakStmt;
+import com.github.javaparser.ast.stmt.ContinueStmt;
+import com.github.javaparser.ast.stmt.DoStmt;
+import com.github.javaparser.ast.stmt.ExpressionStmt;
+import com.github.javaparser.ast.stmt.ForEachStmt;
+import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.ast.stmt.LocalClassDeclarationStmt;
+import com.github.javaparser.ast.stmt.LocalRecordDeclarationStmt;
+import com.github.javaparser.ast.stmt.ReturnStmt;
+import com.github.javaparser.ast.stmt.Statement;
+import com.github.javaparser.ast.stmt.ThrowStmt;
+import com.github.javaparser.ast.stmt.WhileStmt;
+
+import java.io.FileNotFoundException;
+import java.util.*;
+
+/**
+ * Computes the slice of a method that a mutation can affect, so that a traversal only follows the calls
+ * whose behaviour the mutation can change.
+ * <p>
+ * The slice starts at the innermost statement containing the mutation and grows to a fixpoint:
+ * <ul>
+ *   <li>Data dependence: a statement that reads a variable written by a statement in the slice joins it, if
+ *   it comes after the write or shares an enclosing loop with it. Assignments, declarations, increments and
+ *   decrements write a variable. A call made for its side effects, whose result is discarded, also writes
+ *   the variables passed as receiver or argument, since it may change the objects they refer to.</li>
+ *   <li>Field state: a called method can read the fields of its object without naming them at the call. So
+ *   once a statement in the slice writes a name that is not a parameter or local variable of the method,
+ *   every later statement with a call that can reach {@code this} joins. Such a call has an implicit,
+ *   {@code this} or {@code super} receiver, or passes {@code this} along.</li>
+ *   <li>Control dependence: when the condition of an if, loop, switch, try or synchronized statement is in
+ *   the slice, every statement nested in it joins. If those include a return, break, continue or throw,
+ *   every statement after it joins as well.</li>
+ * </ul>
+ * Names are not resolved. A local variable is not told apart from a field of the same name, and any other
+ * name written, such as a static field of another class, is taken as a field; both can only make the
+ * slice larger. Calls whose result is used are taken to be queries; treating every call as a
+ * possible write would pull in each statement that touches a shared object such as a parsed command line.
+ */
+public class MutationSlicer {
+
+    // JavaParser is not thread-safe and the slicer may be shared by concurrent analyses
+    private final ThreadLocal<JavaParser> parser = ThreadLocal.withInitial(JavaParser::new);
+    private final CompilationUnitCache unitCache;
+
+    public MutationSlicer(CompilationUnitCache unitCache) {
+        this.unitCache = unitCache;
+    }
+
+    /**
+     * Slices a method at a mutation.
+     *
+     * @param method The mutated method
+     * @param line The line of the mutation
+     * @param column The column of the mutation, or -1 to start from every statement on the line
+     * @return The slice
+     * @throws IllegalArgumentException If the mutation does not lie in a statement of the method body
+     */
+    public MutationSlice slice(JavaMethod method, int line, int column) {
+        MethodDeclaration declaration = findDeclaration(method);
+        if (!declaration.getBody().isPresent()) {
+            throw new IllegalArgumentException("Method has no body: " + method.getFullyQualifiedName());
+        }
+
+        List<Unit> units = new ArrayList<>();
+        collectUnits(declaration.getBody().get(), units);
+        Set<String> locals = new HashSet<>();
+        for (Parameter parameter : declaration.findAll(Parameter.class)) {
+            locals.add(parameter.getNameAsString());
+        }
+        for (VariableDeclarator variable : declaration.findAll(VariableDeclarator.class)) {
+            locals.add(variable.getNameAsString());
+        }
+
+        boolean[] inSlice = new boolean[units.size()];
+        Deque<Unit> work = new ArrayDeque<>();
+        for (Unit unit : units) {
+            if (unit.contains(line, column) && !hasNestedUnitContaining(unit, units, line, column)) {
+                inSlice[unit.index] = true;
+                work.add(unit);
+            }
+        }
+        if (work.isEmpty()) {
+            throw new IllegalArgumentException("No statement of " + method.getFullyQualifiedName() + " at line "
+                + line + (column < 0 ? "" : ", column " + column));
+        }
+
+        while (!work.isEmpty()) {
+            Unit affected = work.poll();
+            boolean writesField = writesField(affected, locals);
+            for (Unit unit : units) {
+                if (inSlice[unit.index]) {
+                    continue;
+                }
+                boolean joins = affected.isAncestorOf(unit)
+                    || (affected.jumpsOut && unit.begin.isAfter(affected.end))
+                    || ((readsWrittenVariable(unit, affected) || (writesField && unit.reachesThis))
+                        && (unit.begin.isAfter(affected.begin) || shareLoop(unit, affected, units)));
+                if (joins) {
+                    inSlice[unit.index] = true;
+                    work.add(unit);
+                }
+            }
+        }
+
+        Set<Range> callSites = new HashSet<>();
+        int slicedCount = 0;
+        for (Unit unit : units) {
+            if (inSlice[unit.index]) {
+                callSites.addAll(unit.callSites);
+                slicedCount++;
+            }
+        }
+        return new MutationSlice(method, callSites, units.size(), slicedCount);
+    }
+
+    private MethodDeclaration findDeclaration(JavaMethod method) {
+        try {
+            return unitCache.findDeclaration(method, parser.get()).orElseThrow(() ->
+                new IllegalArgumentException("Declaration not found: " + method.getFullyQualifiedName()));
+        } catch (FileNotFoundException e) {
+            throw new RuntimeException("Source file not found: " + method.getLocation().getFilePath(), e);
+        }
+    }
+
+    /**
+     * Collects the statements of a body in source order, without those nested in expressions such as
+     * lambdas, which belong to the statement holding the expression.
+     */
+    private static void collectUnits(Node node, List<Unit> units) {
+        for (Node child : node.getChildNodes()) {
+            if (child instanceof Expression) {
+                continue;
+            }
+            if (child instanceof Statement && !(child instanceof BlockStmt) && child.getRange().isPresent()) {
+                Unit unit = new Unit(units.size(), (Statement) child);
+                units.add(unit);
+                if (child instanceof LocalClassDeclarationStmt || child instanceof LocalRecordDeclarationStmt) {
+                    // A local class is not sliced, its calls all belong to its declaration
+                    unit.scan(child, true);
+                    continue;
+                }
+                unit.scan(child, false);
+            }
+            collectUnits(child, units);
+        }
+    }
+
+    private static boolean hasNestedUnitContaining(Unit unit, List<Unit> units, int line, int column) {
+        for (Unit other : units) {
+            if (unit.isAncestorOf(other) && other.contains(line, column)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean readsWrittenVariable(Unit reader, Unit writer) {
+        for (String name : writer.writes) {
+            if (reader.reads.contains(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean writesField(Unit writer, Set<String> locals) {
+        for (String name : writer.writes) {
+            if (!locals.contains(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean shareLoop(Unit a, Unit b, List<Unit> units) {
+        for (Unit loop : units) {
+            if (loop.isLoop && (loop == a || loop.isAncestorOf(a)) && (loop == b || loop.isAncestorOf(b))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tells whether a return, break, continue or throw is nested in a statement, outside of lambdas and
+     * local classes.
+     */
+    private static boolean containsJump(Node node) {
+        for (Node child : node.getChildNodes()) {
+            if (child instanceof Expression || child instanceof LocalClassDeclarationStmt
+                    || child instanceof LocalRecordDeclarationStmt) {
+                continue;
+            }
+            if (child instanceof ReturnStmt || child instanceof BreakStmt || child instanceof ContinueStmt
+                    || child instanceof ThrowStmt || containsJump(child)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The variable named by the base of an assignment target or call receiver, such as {@code a} in
+     * {@code a.b[i]}, or null if there is none.
+     */
+    private static String baseName(Expression expression) {
+        if (expression instanceof NameExpr) {
+            return ((NameExpr) expression).getNameAsString();
+        } else if (expression instanceof FieldAccessExpr) {
+            FieldAccessExpr fieldAccess = (FieldAccessExpr) expression;
+            return fieldAccess.getScope().isThisExpr() ? fieldAccess.getNameAsString() : baseName(fieldAccess.getScope());
+        } else if (expression instanceof ArrayAccessExpr) {
+            return baseName(((ArrayAccessExpr) expression).getName());
+        } else if (expression instanceof EnclosedExpr) {
+            return baseName(((EnclosedExpr) expression).getInner());
+        } else if (expression instanceof CastExpr) {
+            return baseName(((CastExpr) expression).getExpression());
+        }
+        return null;
+    }
+
+    /**
+     * A statement of the method body together with what its own code, leaving out nested statements, reads,
+     * writes and calls. For a compound statement such as a loop, its own code is the header.
+     */
+    private static class Unit {
+        private final int index;
+        private final Statement statement;
+        private final Position begin;
+        private final Position end;
+        private final boolean isLoop;
+        private final Set<String> reads = new HashSet<>();
+        private final Set<String> writes = new HashSet<>();
+        private final List<Range> callSites = new ArrayList<>();
+        private final boolean jumpsOut;
+        private boolean reachesThis;
+
+        Unit(int index, Statement statement) {
+            this.index = index;
+            this.statement = statement;
+            this.begin = statement.getBegin().get();
+            this.end = statement.getEnd().get();
+            this.isLoop = statement instanceof ForStmt || statement instanceof ForEachStmt
+                || statement instanceof WhileStmt || statement instanceof DoStmt;
+            this.jumpsOut = containsJump(statement);
+        }
+
+        boolean contains(int line, int column) {
+            if (column < 0) {
+                return begin.line <= line && line <= end.line;
+            }
+            Position position = new Position(line, column);
+            return !position.isBefore(begin) && !position.isAfter(end);
+        }
+
+        boolean isAncestorOf(Unit other) {
+            return other != this && statement.isAncestorOf(other.statement);
+        }
+
+        /**
+         * Records the reads, writes and calls of a node's own code.
+         *
+         * @param inExpression True once the scan has entered an expression, whose nested statements are
+         *                     part of this unit
+         */
+        void scan(Node node, boolean inExpression) {
+            if (node instanceof Statement && !(node instanceof BlockStmt) && node != statement && !inExpression) {
+                // Nested statements are units of their own
+                return;
+            }
+
+            if (node instanceof NameExpr) {
+                reads.add(((NameExpr) node).getNameAsString());
+            } else if (node instanceof FieldAccessExpr && ((FieldAccessExpr) node).getScope().isThisExpr()) {
+                reads.add(((FieldAccessExpr) node).getNameAsString());
+            } else if (node instanceof ThisExpr
+                    && !node.getParentNode().filter(parent -> parent instanceof FieldAccessExpr).isPresent()) {
+                // this passed along, or the receiver of a call
+                reachesThis = true;
+            } else if (node instanceof VariableDeclarator) {
+                writes.add(((VariableDeclarator) node).getNameAsString());
+            } else if (node instanceof AssignExpr) {
+                AssignExpr assign = (AssignExpr) node;
+                addWrite(assign.getTarget());
+                if (assign.getOperator() == AssignExpr.Operator.ASSIGN && assign.getTarget() instanceof NameExpr) {
+                    // A plain assignment to a variable does not read it
+                    scan(assign.getValue(), true);
+                    return;
+                }
+            } else if (node instanceof UnaryExpr) {
+                UnaryExpr.Operator operator = ((UnaryExpr) node).getOperator();
+                if (operator == UnaryExpr.Operator.PREFIX_INCREMENT || operator == UnaryExpr.Operator.PREFIX_DECREMENT
+                        || operator == UnaryExpr.Operator.POSTFIX_INCREMENT
+                        || operator == UnaryExpr.Operator.POSTFIX_DECREMENT) {
+                    addWrite(((UnaryExpr) node).getExpression());
+                }
+            } else if (node instanceof MethodCallExpr) {
+                MethodCallExpr call = (MethodCallExpr) node;
+                call.getRange().ifPresent(callSites::add);
+                if (!call.getScope().isPresent() || call.getScope().get().isThisExpr()
+                        || call.getScope().get().isSuperExpr()) {
+                    reachesThis = true;
+                }
+                if (call.getParentNode().filter(parent -> parent instanceof ExpressionStmt).isPresent()) {
+                    call.getScope().ifPresent(this::addWrite);
+                    call.getArguments().forEach(this::addWrite);
+                }
+            }
+
+            boolean childInExpression = inExpression || node instanceof Expression;
+            for (Node child : node.getChildNodes()) {
+                scan(child, childInExpression);
+            }
+        }
+
+        private void addWrite(Expression target) {
+            String name = baseName(target);
+            if (name != null) {
+                writes.add(name);
+            }
+        }
+    }
+}
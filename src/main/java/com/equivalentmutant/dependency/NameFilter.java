@@ -0,0 +1,87 @@
+package com.equivalentmutant.dependency;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter over method names, used to reject calls to names that no indexed method has before
+ * looking them up.
+ * <p>
+ * The filter is sized for a fixed number of names at about ten bits per name and three probes, which keeps
+ * the false positive rate near 2%. Names can be added while other threads test names; a name is never
+ * reported absent once its {@link #add(String)} has returned. Names cannot be removed, so a filter that has
+ * seen many removals should be replaced by a fresh one.
+ */
+class NameFilter {
+
+    private static final int BITS_PER_NAME = 10;
+    private static final int PROBES = 3;
+
+    private final AtomicLongArray words;
+    private final int mask;
+    private final int capacity;
+    private int names;
+
+    /**
+     * @param capacity The number of names the filter is sized for
+     */
+    NameFilter(int capacity) {
+        this.capacity = Math.max(capacity, 64);
+        long bits = Long.highestOneBit((long) this.capacity * BITS_PER_NAME - 1) << 1;
+        this.words = new AtomicLongArray((int) Math.max(bits >>> 6, 1));
+        this.mask = (int) (bits - 1);
+    }
+
+    /**
+     * Adds a name. Callers must not add names concurrently with each other.
+     *
+     * @param name The name
+     * @return False if the filter holds more names than it was sized for and should be rebuilt larger
+     */
+    boolean add(String name) {
+        int hash = mix(name.hashCode());
+        int step = (hash >>> 16) | 1;
+        for (int i = 0; i < PROBES; i++) {
+            int bit = (hash + i * step) & mask;
+            long flag = 1L << bit;
+            long word = words.get(bit >>> 6);
+            if ((word & flag) == 0) {
+                words.set(bit >>> 6, word | flag);
+            }
+        }
+        return ++names <= capacity;
+    }
+
+    /**
+     * Tests whether a name may have been added.
+     *
+     * @param name The name
+     * @return False if the name was definitely never added
+     */
+    boolean mightContain(String name) {
+        int hash = mix(name.hashCode());
+        int step = (hash >>> 16) | 1;
+        for (int i = 0; i < PROBES; i++) {
+            int bit = (hash + i * step) & mask;
+            if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * The finalization step of MurmurHash3, spreading the bits of {@link String#hashCode()}.
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
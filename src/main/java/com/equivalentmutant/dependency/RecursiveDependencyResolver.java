@@ -2,65 +2,465 @@ package com.equivalentmutant.dependency;
 
 import com.equivalentmutant.model.DependencyGraph;
 import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.model.MethodCallInfo;
 import com.equivalentmutant.model.MethodDependency;
+import com.equivalentmutant.model.TruncationReason;
+import com.equivalentmutant.stats.GraphBuildEvent;
+import com.equivalentmutant.stats.PipelineStats;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Resolves method dependencies recursively.
+ * <p>
+ * The call graph is explored breadth-first, one depth level at a time, so every method is expanded at its
+ * shortest distance from the root and deep call chains cannot overflow the stack. With a parallelism above
+ * one, the calls of each level's methods are resolved concurrently on a fork-join pool and then added to the
+ * graph in frontier order, so the resulting graph, including the order in which its methods and edges are
+ * added, is the same as with a single thread. Such a resolver owns its pool and must be closed.
+ * <p>
+ * A {@link TraversalBudget} bounds the size and duration of a traversal. Budgeted traversals run on the
+ * calling thread so that they always stop at the same point in breadth order.
+ * <p>
+ * With a {@link SubgraphCache}, unbudgeted traversals run on the calling thread and reuse the subgraphs
+ * found by earlier traversals: when a method is reached with a remaining depth that has been explored
+ * before, the dependencies of its whole subgraph are taken from the cache and the traversal continues through
+ * them without resolving any call. After each traversal the subgraphs of the root and of its direct callees
+ * are added to the cache. The resulting graph is the same as without the cache.
+ * <p>
+ * Given a {@link MutationSlice}, a traversal follows only the root method's calls inside the slice, so the
+ * graph holds just the code a mutation can reach. The subgraph of a sliced root is not cached.
  */
-public class RecursiveDependencyResolver {
-    
+public class RecursiveDependencyResolver implements AutoCloseable {
+
+    // Frontier slices smaller than this are expanded on the current worker instead of being split further
+    private static final int SPLIT_THRESHOLD = 8;
+    // Subgraphs are cached for the methods up to this depth below each root
+    private static final int CACHED_SUBGRAPH_DEPTH = 1;
+
     private final MethodDependencyTracker dependencyTracker;
     private final MethodResolver methodResolver;
-    
+    private final ForkJoinPool pool;
+    private final SubgraphCache subgraphCache;
+
     public RecursiveDependencyResolver(MethodDependencyTracker dependencyTracker, MethodResolver methodResolver) {
+        this(dependencyTracker, methodResolver, 1);
+    }
+
+    /**
+     * Creates a resolver that expands each level of the graph on the given number of threads.
+     *
+     * @param dependencyTracker The tracker supplying call sites
+     * @param methodResolver The resolver for called methods
+     * @param parallelism The number of traversal threads (1 for a sequential traversal)
+     */
+    public RecursiveDependencyResolver(MethodDependencyTracker dependencyTracker, MethodResolver methodResolver,
+                                       int parallelism) {
+        this(dependencyTracker, methodResolver, parallelism, null);
+    }
+
+    /**
+     * Creates a resolver that shares resolved subgraphs between traversals.
+     *
+     * @param dependencyTracker The tracker supplying call sites
+     * @param methodResolver The resolver for called methods
+     * @param parallelism The number of traversal threads for traversals that do not use the cache
+     * @param subgraphCache The cache of resolved subgraphs, or null to resolve every traversal from scratch
+     */
+    public RecursiveDependencyResolver(MethodDependencyTracker dependencyTracker, MethodResolver methodResolver,
+                                       int parallelism, SubgraphCache subgraphCache) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
         this.dependencyTracker = dependencyTracker;
         this.methodResolver = methodResolver;
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        this.subgraphCache = subgraphCache;
     }
-    
+
+    /**
+     * Shuts down the traversal threads, if the resolver has any.
+     */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
     /**
      * Builds a dependency graph for the given root method by recursively resolving all method calls.
-     * 
+     *
      * @param rootMethod The root method to analyze
      * @param maxDepth The maximum recursion depth (use -1 for unlimited)
      * @return A dependency graph
      */
     public DependencyGraph buildDependencyGraph(JavaMethod rootMethod, int maxDepth) {
+        return buildDependencyGraph(rootMethod, maxDepth, TraversalBudget.UNLIMITED);
+    }
+
+    /**
+     * Builds a dependency graph for the given root method, stopping when the budget runs out.
+     * <p>
+     * When a budget is exhausted, the method being expanded and every method still waiting to be expanded
+     * are marked as truncated in the graph, together with the reason.
+     *
+     * @param rootMethod The root method to analyze
+     * @param maxDepth The maximum recursion depth (use -1 for unlimited)
+     * @param budget The limits for the traversal
+     * @return A dependency graph, possibly truncated
+     */
+    public DependencyGraph buildDependencyGraph(JavaMethod rootMethod, int maxDepth, TraversalBudget budget) {
+        return buildDependencyGraph(rootMethod, maxDepth, budget, null);
+    }
+
+    /**
+     * Builds a dependency graph for the given root method, following only the root's calls that a mutation
+     * can affect.
+     *
+     * @param rootMethod The root method to analyze
+     * @param maxDepth The maximum recursion depth (use -1 for unlimited)
+     * @param budget The limits for the traversal
+     * @param slice The slice of the root method at the mutation, or null to follow all of its calls
+     * @return A dependency graph, possibly truncated
+     */
+    public DependencyGraph buildDependencyGraph(JavaMethod rootMethod, int maxDepth, TraversalBudget budget,
+                                                MutationSlice slice) {
+        if (slice != null && !slice.getMethod().equals(rootMethod)) {
+            throw new IllegalArgumentException("Slice of " + slice.getMethod().getFullyQualifiedName()
+                + " does not belong to " + rootMethod.getFullyQualifiedName());
+        }
+        long start = PipelineStats.startTimer();
+        GraphBuildEvent event = new GraphBuildEvent();
+        event.begin();
         DependencyGraph graph = new DependencyGraph(rootMethod);
-        Set<JavaMethod> visitedMethods = new HashSet<>();
-        
-        buildDependencyGraphRecursive(rootMethod, graph, visitedMethods, 0, maxDepth);
-        
+        graph.recordDepth(rootMethod, 0);
+
+        if (subgraphCache != null && budget.isUnlimited()) {
+            buildDependencyGraphComposed(rootMethod, graph, maxDepth, slice);
+        } else if (pool == null || !budget.isUnlimited()) {
+            buildDependencyGraphSequential(rootMethod, graph, maxDepth, budget, slice);
+        } else {
+            buildDependencyGraphParallel(rootMethod, graph, maxDepth, slice);
+        }
+
+        // A graph lists only methods with edges, so a root without resolved calls is counted on its own
+        int nodes = Math.max(1, graph.getAllMethods().size());
+        if (PipelineStats.isEnabled()) {
+            PipelineStats.global().recordTraversal(nodes, graph.getDependencyCount(), start);
+        }
+        if (event.shouldCommit()) {
+            event.rootMethod = rootMethod.getFullyQualifiedName();
+            event.nodes = nodes;
+            event.edges = graph.getDependencyCount();
+            event.truncated = graph.isTruncated();
+            event.commit();
+        }
         return graph;
     }
-    
-    private void buildDependencyGraphRecursive(JavaMethod method, DependencyGraph graph,
-                                              Set<JavaMethod> visitedMethods, int currentDepth, int maxDepth) {
-        // Stop if we've already processed this method or exceeded max depth
-        if (visitedMethods.contains(method) || (maxDepth >= 0 && currentDepth > maxDepth)) {
-            return;
-        }
-        
-        visitedMethods.add(method);
-        
+
+    private void buildDependencyGraphSequential(JavaMethod rootMethod, DependencyGraph graph, int maxDepth,
+                                                TraversalBudget budget, MutationSlice slice) {
+        long deadline = budget.deadlineFrom(System.nanoTime());
+        Set<JavaMethod> visitedMethods = new HashSet<>();
+        visitedMethods.add(rootMethod);
+        List<JavaMethod> frontier = Collections.singletonList(rootMethod);
+        int edgeCount = 0;
+        int droppedCalls = 0;
+        boolean fanOutCut = false;
+
+        // Methods beyond the maximum depth still appear as callees but are not expanded
+        for (int depth = 0; !frontier.isEmpty() && (maxDepth < 0 || depth <= maxDepth); depth++) {
+            List<JavaMethod> nextFrontier = new ArrayList<>();
+
+            for (int i = 0; i < frontier.size(); i++) {
+                JavaMethod method = frontier.get(i);
+                TruncationReason stopReason = null;
+
+                if (System.nanoTime() > deadline) {
+                    stopReason = TruncationReason.DEADLINE;
+                } else {
+                    // Find all method calls within this method
+                    List<MethodCallInfo> methodCalls = findMethodCalls(method, slice);
+                    int fanOut = 0;
+
+                    for (MethodCallInfo callInfo : methodCalls) {
+                        // Resolve the called method
+                        Optional<JavaMethod> calleeOpt = methodResolver.resolveCall(callInfo);
+                        if (!calleeOpt.isPresent()) {
+                            continue;
+                        }
+                        JavaMethod callee = calleeOpt.get();
+
+                        if (stopReason != null) {
+                            droppedCalls++;
+                            continue;
+                        }
+                        if (!budget.allowsFanOut(fanOut + 1)) {
+                            graph.markTruncated(method, TruncationReason.FAN_OUT);
+                            fanOutCut = true;
+                            droppedCalls++;
+                            continue;
+                        }
+                        boolean newMethod = !visitedMethods.contains(callee);
+                        if (newMethod && !budget.allowsNodes(visitedMethods.size() + 1)) {
+                            stopReason = TruncationReason.NODE_LIMIT;
+                            droppedCalls++;
+                            continue;
+                        }
+                        if (!budget.allowsEdges(edgeCount + 1)) {
+                            stopReason = TruncationReason.EDGE_LIMIT;
+                            droppedCalls++;
+                            continue;
+                        }
+
+                        // Create and add the dependency
+                        MethodDependency dependency = dependencyTracker.createDependency(method, callee, callInfo.getLocation());
+                        if (graph.addDependency(dependency)) {
+                            edgeCount++;
+                        }
+                        fanOut++;
+
+                        if (newMethod) {
+                            visitedMethods.add(callee);
+                            graph.recordDepth(callee, depth + 1);
+                            nextFrontier.add(callee);
+                        }
+                    }
+                }
+
+                if (stopReason != null) {
+                    // Everything not yet expanded is cut, in breadth order from the current method on
+                    for (int j = i; j < frontier.size(); j++) {
+                        graph.markTruncated(frontier.get(j), stopReason);
+                    }
+                    if (maxDepth < 0 || depth + 1 <= maxDepth) {
+                        for (JavaMethod pending : nextFrontier) {
+                            graph.markTruncated(pending, stopReason);
+                        }
+                    }
+                    graph.setTruncation(stopReason, droppedCalls);
+                    return;
+                }
+            }
+            frontier = nextFrontier;
+        }
+
+        if (fanOutCut) {
+            graph.setTruncation(TruncationReason.FAN_OUT, droppedCalls);
+        }
+    }
+
+    private void buildDependencyGraphParallel(JavaMethod rootMethod, DependencyGraph graph, int maxDepth,
+                                              MutationSlice slice) {
+        Set<JavaMethod> visitedMethods = new HashSet<>();
+        visitedMethods.add(rootMethod);
+        List<JavaMethod> frontier = Collections.singletonList(rootMethod);
+
+        for (int depth = 0; !frontier.isEmpty() && (maxDepth < 0 || depth <= maxDepth); depth++) {
+            // Workers only resolve; the graph and the next frontier are built in frontier order afterwards
+            List<List<MethodDependency>> resolved = new ArrayList<>(Collections.nCopies(frontier.size(), null));
+            pool.invoke(new ResolveLevelTask(frontier, 0, frontier.size(), resolved, slice));
+
+            List<JavaMethod> nextFrontier = new ArrayList<>();
+            for (List<MethodDependency> dependencies : resolved) {
+                for (MethodDependency dependency : dependencies) {
+                    graph.addDependency(dependency);
+                    JavaMethod callee = dependency.getCallee();
+                    if (visitedMethods.add(callee)) {
+                        graph.recordDepth(callee, depth + 1);
+                        nextFrontier.add(callee);
+                    }
+                }
+            }
+            frontier = nextFrontier;
+        }
+    }
+
+    private void buildDependencyGraphComposed(JavaMethod rootMethod, DependencyGraph graph, int maxDepth,
+                                              MutationSlice slice) {
+        // The dependencies of every method expanded so far, whether resolved here or taken from the cache
+        Map<JavaMethod, List<MethodDependency>> expanded = new HashMap<>();
+        Set<JavaMethod> visitedMethods = new HashSet<>();
+        visitedMethods.add(rootMethod);
+        List<JavaMethod> frontier = Collections.singletonList(rootMethod);
+
+        for (int depth = 0; !frontier.isEmpty() && (maxDepth < 0 || depth <= maxDepth); depth++) {
+            List<JavaMethod> nextFrontier = new ArrayList<>();
+            int remainingDepth = maxDepth < 0 ? -1 : maxDepth - depth;
+
+            for (JavaMethod method : frontier) {
+                List<MethodDependency> dependencies = expanded.get(method);
+                if (dependencies == null) {
+                    // The cached subgraph of the root holds all of its calls, not just those in the slice
+                    SubgraphCache.Subgraph subgraph = slice != null && method.equals(rootMethod)
+                        ? null : subgraphCache.get(method, remainingDepth);
+                    if (subgraph != null) {
+                        // Every method in the subgraph lies within the maximum depth, so the traversal reaches
+                        // and adds each of them in its usual order
+                        for (Map.Entry<JavaMethod, List<MethodDependency>> entry : subgraph.getDependencies().entrySet()) {
+                            expanded.putIfAbsent(entry.getKey(), entry.getValue());
+                        }
+                        dependencies = expanded.get(method);
+                    } else {
+                        dependencies = resolveDependencies(method, slice);
+                        expanded.put(method, dependencies);
+                    }
+                }
+
+                for (MethodDependency dependency : dependencies) {
+                    graph.addDependency(dependency);
+                }
+                for (MethodDependency dependency : dependencies) {
+                    JavaMethod callee = dependency.getCallee();
+                    if (visitedMethods.add(callee)) {
+                        graph.recordDepth(callee, depth + 1);
+                        nextFrontier.add(callee);
+                    }
+                }
+            }
+            frontier = nextFrontier;
+        }
+
+        // Subgraphs cut from a sliced traversal may run back into the sliced root
+        if (slice == null) {
+            cacheSubgraphs(rootMethod, expanded, maxDepth);
+        }
+    }
+
+    /**
+     * Stores the subgraphs of the root and of the methods near it, cut out of a finished traversal.
+     */
+    private void cacheSubgraphs(JavaMethod rootMethod, Map<JavaMethod, List<MethodDependency>> expanded, int maxDepth) {
+        Set<JavaMethod> seen = new HashSet<>();
+        seen.add(rootMethod);
+        List<JavaMethod> level = Collections.singletonList(rootMethod);
+
+        for (int depth = 0; !level.isEmpty() && depth <= CACHED_SUBGRAPH_DEPTH && (maxDepth < 0 || depth <= maxDepth); depth++) {
+            int remainingDepth = maxDepth < 0 ? -1 : maxDepth - depth;
+            List<JavaMethod> nextLevel = new ArrayList<>();
+            for (JavaMethod method : level) {
+                if (!subgraphCache.contains(method, remainingDepth)) {
+                    subgraphCache.put(method, remainingDepth, extractSubgraph(method, remainingDepth, expanded));
+                }
+                for (MethodDependency dependency : expanded.getOrDefault(method, Collections.emptyList())) {
+                    if (seen.add(dependency.getCallee())) {
+                        nextLevel.add(dependency.getCallee());
+                    }
+                }
+            }
+            level = nextLevel;
+        }
+    }
+
+    /**
+     * Collects the dependencies of the methods within the remaining depth of a method. A method at most
+     * {@code remainingDepth} levels below one that was expanded at depth {@code maxDepth - remainingDepth}
+     * was itself expanded, so its dependencies are complete.
+     */
+    private static SubgraphCache.Subgraph extractSubgraph(JavaMethod method, int remainingDepth,
+                                                          Map<JavaMethod, List<MethodDependency>> expanded) {
+        Map<JavaMethod, List<MethodDependency>> dependencies = new HashMap<>();
+        Set<JavaMethod> seen = new HashSet<>();
+        seen.add(method);
+        List<JavaMethod> level = Collections.singletonList(method);
+
+        for (int depth = 0; !level.isEmpty() && (remainingDepth < 0 || depth <= remainingDepth); depth++) {
+            List<JavaMethod> nextLevel = new ArrayList<>();
+            for (JavaMethod current : level) {
+                List<MethodDependency> methodDependencies = expanded.get(current);
+                if (methodDependencies == null) {
+                    continue;
+                }
+                dependencies.put(current, methodDependencies);
+                for (MethodDependency dependency : methodDependencies) {
+                    if (seen.add(dependency.getCallee())) {
+                        nextLevel.add(dependency.getCallee());
+                    }
+                }
+            }
+            level = nextLevel;
+        }
+        return new SubgraphCache.Subgraph(dependencies);
+    }
+
+    /**
+     * Resolves the calls made by a single method.
+     *
+     * @return The dependencies, in call-site order
+     */
+    private List<MethodDependency> resolveDependencies(JavaMethod method, MutationSlice slice) {
         // Find all method calls within this method
-        List<MethodDependencyTracker.MethodCallInfo> methodCalls = dependencyTracker.findMethodCalls(method);
-        
-        for (MethodDependencyTracker.MethodCallInfo callInfo : methodCalls) {
+        List<MethodCallInfo> methodCalls = findMethodCalls(method, slice);
+        List<MethodDependency> dependencies = new ArrayList<>(methodCalls.size());
+
+        for (MethodCallInfo callInfo : methodCalls) {
             // Resolve the called method
-            Optional<JavaMethod> calleeOpt = methodResolver.resolveMethod(callInfo.getMethodName(), callInfo.getArgumentTypes());
-            
+            Optional<JavaMethod> calleeOpt = methodResolver.resolveCall(callInfo);
+
             if (calleeOpt.isPresent()) {
-                JavaMethod callee = calleeOpt.get();
-                
-                // Create and add the dependency
-                MethodDependency dependency = dependencyTracker.createDependency(method, callee, callInfo.getLocation());
-                graph.addDependency(dependency);
-                
-                // Recursively process the callee
-                buildDependencyGraphRecursive(callee, graph, visitedMethods, currentDepth + 1, maxDepth);
+                // Create the dependency
+                dependencies.add(dependencyTracker.createDependency(method, calleeOpt.get(), callInfo.getLocation()));
+            }
+        }
+
+        return dependencies;
+    }
+
+    /**
+     * Finds the calls made by a method, keeping only those inside the slice when the method is the sliced one.
+     */
+    private List<MethodCallInfo> findMethodCalls(JavaMethod method, MutationSlice slice) {
+        List<MethodCallInfo> methodCalls = dependencyTracker.findMethodCalls(method);
+        if (slice == null || !method.equals(slice.getMethod())) {
+            return methodCalls;
+        }
+        List<MethodCallInfo> slicedCalls = new ArrayList<>();
+        for (MethodCallInfo callInfo : methodCalls) {
+            if (slice.contains(callInfo.getLocation())) {
+                slicedCalls.add(callInfo);
+            }
+        }
+        return slicedCalls;
+    }
+
+    /**
+     * Resolves the calls of a slice of the current frontier, splitting it across the pool's workers. Each
+     * method's dependencies are stored at its frontier index.
+     */
+    private class ResolveLevelTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<JavaMethod> frontier;
+        private final int from;
+        private final int to;
+        private final transient List<List<MethodDependency>> resolved;
+        private final transient MutationSlice slice;
+
+        ResolveLevelTask(List<JavaMethod> frontier, int from, int to, List<List<MethodDependency>> resolved,
+                         MutationSlice slice) {
+            this.frontier = frontier;
+            this.from = from;
+            this.to = to;
+            this.resolved = resolved;
+            this.slice = slice;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SPLIT_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(
+                    new ResolveLevelTask(frontier, from, middle, resolved, slice),
+                    new ResolveLevelTask(frontier, middle, to, resolved, slice));
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                resolved.set(i, resolveDependencies(frontier.get(i), slice));
             }
         }
     }
-} 
\ No newline at end of file
+}
@@ -1,16 +1,29 @@
 package com.equivalentmutant.dependency;
 
 import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.model.MethodCallInfo;
+import com.equivalentmutant.stats.PipelineStats;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A simple implementation of MethodResolver that uses a collection of known methods.
+ * <p>
+ * Methods are indexed by name and by declaring class and name. Each entry holds its candidates together
+ * with the candidate chosen for every arity, so a lookup is a filter test and one or two hash map reads
+ * and allocates nothing. Names that no known method has are rejected by a {@link NameFilter} before the
+ * map is consulted, which is the common case for calls into the JDK and libraries.
+ * <p>
+ * Methods can be added and removed while other threads resolve calls. Entries are immutable and replaced
+ * as a whole, and changes are serialized.
  */
 public class SimpleMethodResolver implements MethodResolver {
     
-    private final Map<String, List<JavaMethod>> methodsByName = new HashMap<>();
-    private final Map<String, List<JavaMethod>> methodsByFullyQualifiedName = new HashMap<>();
+    private final Map<String, Candidates> methodsByName = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Candidates>> methodsByClass = new ConcurrentHashMap<>();
+    private final Map<String, List<JavaMethod>> methodsByFullyQualifiedName = new ConcurrentHashMap<>();
+    private volatile NameFilter nameFilter = new NameFilter(0);
     
     /**
      * Adds a method to the resolver.
@@ -18,8 +31,42 @@ public class SimpleMethodResolver implements MethodResolver {
      * @param method The method to add
      */
     public void addMethod(JavaMethod method) {
-        methodsByName.computeIfAbsent(method.getMethodName(), k -> new ArrayList<>()).add(method);
-        methodsByFullyQualifiedName.computeIfAbsent(method.getFullyQualifiedName(), k -> new ArrayList<>()).add(method);
+        addMethods(Collections.singletonList(method));
+    }
+    
+    /**
+     * Removes a method from the resolver.
+     * 
+     * @param method The method to remove
+     */
+    public void removeMethod(JavaMethod method) {
+        removeMethods(Collections.singletonList(method));
+    }
+    
+    /**
+     * Removes multiple methods from the resolver.
+     * 
+     * @param methods The methods to remove
+     */
+    public synchronized void removeMethods(Collection<JavaMethod> methods) {
+        for (Map.Entry<String, List<JavaMethod>> entry : groupByName(methods).entrySet()) {
+            methodsByName.computeIfPresent(entry.getKey(), (name, candidates) -> candidates.without(entry.getValue()));
+        }
+        for (Map.Entry<String, Map<String, List<JavaMethod>>> classEntry : groupByClass(methods).entrySet()) {
+            methodsByClass.computeIfPresent(classEntry.getKey(), (className, byName) -> {
+                for (Map.Entry<String, List<JavaMethod>> entry : classEntry.getValue().entrySet()) {
+                    byName.computeIfPresent(entry.getKey(), (name, candidates) -> candidates.without(entry.getValue()));
+                }
+                return byName.isEmpty() ? null : byName;
+            });
+        }
+        for (JavaMethod method : methods) {
+            methodsByFullyQualifiedName.computeIfPresent(method.getFullyQualifiedName(), (k, candidates) -> {
+                List<JavaMethod> remaining = new ArrayList<>(candidates);
+                remaining.remove(method);
+                return remaining.isEmpty() ? null : Collections.unmodifiableList(remaining);
+            });
+        }
     }
     
     /**
@@ -27,47 +74,96 @@ public class SimpleMethodResolver implements MethodResolver {
      * 
      * @param methods The methods to add
      */
-    public void addMethods(Collection<JavaMethod> methods) {
+    public synchronized void addMethods(Collection<JavaMethod> methods) {
+        for (Map.Entry<String, List<JavaMethod>> entry : groupByName(methods).entrySet()) {
+            String name = entry.getKey();
+            Candidates previous = methodsByName.get(name);
+            methodsByName.put(name, previous == null ? new Candidates(entry.getValue()) : previous.with(entry.getValue()));
+            if (previous == null) {
+                addToFilter(name);
+            }
+        }
+        for (Map.Entry<String, Map<String, List<JavaMethod>>> classEntry : groupByClass(methods).entrySet()) {
+            Map<String, Candidates> byName = methodsByClass.computeIfAbsent(classEntry.getKey(), k -> new ConcurrentHashMap<>());
+            for (Map.Entry<String, List<JavaMethod>> entry : classEntry.getValue().entrySet()) {
+                Candidates previous = byName.get(entry.getKey());
+                byName.put(entry.getKey(), previous == null ? new Candidates(entry.getValue()) : previous.with(entry.getValue()));
+            }
+        }
         for (JavaMethod method : methods) {
-            addMethod(method);
+            methodsByFullyQualifiedName.merge(method.getFullyQualifiedName(), Collections.singletonList(method), (existing, added) -> {
+                List<JavaMethod> merged = new ArrayList<>(existing);
+                merged.addAll(added);
+                return Collections.unmodifiableList(merged);
+            });
         }
     }
     
+    private void addToFilter(String name) {
+        if (!nameFilter.add(name)) {
+            // Over capacity: rebuild at twice the size, which also drops the names of removed methods
+            NameFilter rebuilt = new NameFilter(methodsByName.size() * 2);
+            for (String knownName : methodsByName.keySet()) {
+                rebuilt.add(knownName);
+            }
+            nameFilter = rebuilt;
+        }
+    }
+    
+    private static Map<String, List<JavaMethod>> groupByName(Collection<JavaMethod> methods) {
+        Map<String, List<JavaMethod>> byName = new LinkedHashMap<>();
+        for (JavaMethod method : methods) {
+            byName.computeIfAbsent(method.getMethodName(), k -> new ArrayList<>()).add(method);
+        }
+        return byName;
+    }
+    
+    private static Map<String, Map<String, List<JavaMethod>>> groupByClass(Collection<JavaMethod> methods) {
+        Map<String, Map<String, List<JavaMethod>>> byClass = new LinkedHashMap<>();
+        for (JavaMethod method : methods) {
+            byClass.computeIfAbsent(method.getQualifiedClassName(), k -> new LinkedHashMap<>())
+                .computeIfAbsent(method.getMethodName(), k -> new ArrayList<>()).add(method);
+        }
+        return byClass;
+    }
+    
     @Override
     public Optional<JavaMethod> resolveMethod(String methodName, List<String> argumentTypes) {
-        // First, try to find methods with the given name
-        List<JavaMethod> candidates = methodsByName.getOrDefault(methodName, Collections.emptyList());
-        
-        if (candidates.isEmpty()) {
-            return Optional.empty();
+        if (!nameFilter.mightContain(methodName)) {
+            return miss();
         }
-        
-        // If there's exactly one method with this name, return it
-        if (candidates.size() == 1) {
-            return Optional.of(candidates.get(0));
+        Candidates candidates = methodsByName.get(methodName);
+        return candidates == null ? miss() : candidates.pick(argumentTypes.size());
+    }
+    
+    /**
+     * Resolves a call site, preferring methods of the class the call is made on when that class is known.
+     * Calls that no method of that class matches, for example calls to inherited methods, are resolved
+     * among all methods.
+     */
+    @Override
+    public Optional<JavaMethod> resolveCall(MethodCallInfo call) {
+        String methodName = call.getMethodName();
+        if (!nameFilter.mightContain(methodName)) {
+            return miss();
         }
-        
-        // Try to match by argument count if we know them
-        if (!argumentTypes.isEmpty()) {
-            List<JavaMethod> matchingArgCount = new ArrayList<>();
-            for (JavaMethod candidate : candidates) {
-                if (candidate.getParameterTypes().size() == argumentTypes.size()) {
-                    matchingArgCount.add(candidate);
-                }
-            }
-            
-            if (matchingArgCount.size() == 1) {
-                return Optional.of(matchingArgCount.get(0));
-            }
-            
-            if (!matchingArgCount.isEmpty()) {
-                // Return the first one with matching arg count
-                return Optional.of(matchingArgCount.get(0));
+        int arity = call.getArgumentTypes().size();
+        if (call.getReceiverClass() != null) {
+            Map<String, Candidates> byName = methodsByClass.get(call.getReceiverClass());
+            Candidates candidates = byName == null ? null : byName.get(methodName);
+            if (candidates != null) {
+                return candidates.pick(arity);
             }
         }
-        
-        // If we can't match by arguments, just return the first candidate
-        return Optional.of(candidates.get(0));
+        Candidates candidates = methodsByName.get(methodName);
+        return candidates == null ? miss() : candidates.pick(arity);
+    }
+    
+    private static Optional<JavaMethod> miss() {
+        if (PipelineStats.isEnabled()) {
+            PipelineStats.global().recordResolution(PipelineStats.Resolution.MISS);
+        }
+        return Optional.empty();
     }
     
     /**
@@ -80,4 +176,81 @@ public class SimpleMethodResolver implements MethodResolver {
         List<JavaMethod> candidates = methodsByFullyQualifiedName.getOrDefault(fullyQualifiedName, Collections.emptyList());
         return candidates.stream().findFirst();
     }
-} 
\ No newline at end of file
+    
+    /**
+     * The methods sharing a name, in the order they were added, with the answer for every arity computed
+     * up front: the first method taking that many parameters, or else the first method.
+     */
+    private static final class Candidates {
+        private static final Optional<JavaMethod>[] NO_ARITIES = newOptionalArray(0);
+        
+        private final JavaMethod[] methods;
+        private final Optional<JavaMethod>[] byArity;
+        private final Optional<JavaMethod> first;
+        
+        Candidates(List<JavaMethod> methods) {
+            this.methods = methods.toArray(new JavaMethod[0]);
+            this.first = Optional.of(this.methods[0]);
+            
+            int maxArity = -1;
+            for (JavaMethod method : this.methods) {
+                maxArity = Math.max(maxArity, method.getParameterTypes().size());
+            }
+            Optional<JavaMethod>[] arities = this.methods.length == 1 ? NO_ARITIES : newOptionalArray(maxArity + 1);
+            for (JavaMethod method : this.methods) {
+                int arity = method.getParameterTypes().size();
+                if (arity < arities.length && arities[arity] == null) {
+                    arities[arity] = Optional.of(method);
+                }
+            }
+            this.byArity = arities;
+        }
+        
+        Optional<JavaMethod> pick(int arity) {
+            if (PipelineStats.isEnabled()) {
+                PipelineStats.global().recordResolution(isAmbiguous(arity)
+                    ? PipelineStats.Resolution.AMBIGUOUS : PipelineStats.Resolution.HIT);
+            }
+            // A single candidate is returned whatever the arity
+            if (arity < byArity.length && byArity[arity] != null) {
+                return byArity[arity];
+            }
+            return first;
+        }
+        
+        /**
+         * @return True if several candidates take that many parameters, or none does and there are several
+         */
+        boolean isAmbiguous(int arity) {
+            int matching = 0;
+            for (JavaMethod method : methods) {
+                if (method.getParameterTypes().size() == arity) {
+                    matching++;
+                }
+            }
+            return matching > 1 || (matching == 0 && methods.length > 1);
+        }
+        
+        Candidates with(List<JavaMethod> added) {
+            List<JavaMethod> all = new ArrayList<>(Arrays.asList(methods));
+            all.addAll(added);
+            return new Candidates(all);
+        }
+        
+        /**
+         * @return The remaining candidates, or null if none remain
+         */
+        Candidates without(List<JavaMethod> removed) {
+            List<JavaMethod> remaining = new ArrayList<>(Arrays.asList(methods));
+            for (JavaMethod method : removed) {
+                remaining.remove(method);
+            }
+            return remaining.isEmpty() ? null : new Candidates(remaining);
+        }
+        
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static Optional<JavaMethod>[] newOptionalArray(int length) {
+            return (Optional<JavaMethod>[]) new Optional[length];
+        }
+    }
+}
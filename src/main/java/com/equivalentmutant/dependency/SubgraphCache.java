@@ -0,0 +1,184 @@
+package com.equivalentmutant.dependency;
+
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.model.MethodDependency;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of resolved dependency subgraphs, shared by the traversals of many root methods.
+ * <p>
+ * An entry holds everything a traversal finds below one method when that method still has a given number
+ * of levels left to expand: the resolved dependencies of every method expanded within those levels. Graphs
+ * rooted elsewhere that reach the same method with the same remaining depth are composed from the entry
+ * instead of resolving the calls again.
+ * <p>
+ * The size of an entry is its number of expanded methods plus its number of dependencies. Entries are
+ * evicted in LRU order once the total size exceeds {@code maxSize}. The cache describes the indexed sources
+ * at the time the entries were built and must be cleared when the index changes.
+ */
+public class SubgraphCache {
+
+    public static final long DEFAULT_MAX_SIZE = 1_000_000;
+
+    private final long maxSize;
+    private final LinkedHashMap<Key, Subgraph> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalSize;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public SubgraphCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public SubgraphCache(long maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the subgraph below a method.
+     *
+     * @param method The method
+     * @param remainingDepth The number of levels the method may still be expanded by (-1 for unlimited)
+     * @return The subgraph, or null if it is not cached
+     */
+    public Subgraph get(JavaMethod method, int remainingDepth) {
+        Subgraph subgraph;
+        synchronized (entries) {
+            subgraph = entries.get(new Key(method, remainingDepth));
+        }
+        if (subgraph == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return subgraph;
+    }
+
+    /**
+     * Checks for a subgraph without counting a hit or miss.
+     */
+    boolean contains(JavaMethod method, int remainingDepth) {
+        synchronized (entries) {
+            return entries.containsKey(new Key(method, remainingDepth));
+        }
+    }
+
+    /**
+     * Stores the subgraph below a method. Subgraphs larger than the whole cache are not stored.
+     *
+     * @param method The method
+     * @param remainingDepth The number of levels the method may still be expanded by (-1 for unlimited)
+     * @param subgraph The subgraph
+     */
+    public void put(JavaMethod method, int remainingDepth, Subgraph subgraph) {
+        if (subgraph.size() > maxSize) {
+            return;
+        }
+        synchronized (entries) {
+            Subgraph previous = entries.put(new Key(method, remainingDepth), subgraph);
+            if (previous != null) {
+                totalSize -= previous.size();
+            }
+            totalSize += subgraph.size();
+
+            Iterator<Subgraph> eldest = entries.values().iterator();
+            while (totalSize > maxSize && eldest.hasNext()) {
+                Subgraph evicted = eldest.next();
+                eldest.remove();
+                totalSize -= evicted.size();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            totalSize = 0;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return The combined size of all entries
+     */
+    public long getTotalSize() {
+        synchronized (entries) {
+            return totalSize;
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * The resolved dependencies of every method expanded below a subgraph root, including the root.
+     */
+    public static class Subgraph {
+        private final Map<JavaMethod, List<MethodDependency>> dependencies;
+        private final int size;
+
+        /**
+         * @param dependencies The dependencies of each expanded method, empty for methods without calls
+         */
+        public Subgraph(Map<JavaMethod, List<MethodDependency>> dependencies) {
+            this.dependencies = Collections.unmodifiableMap(new HashMap<>(dependencies));
+            int edges = 0;
+            for (List<MethodDependency> methodDependencies : dependencies.values()) {
+                edges += methodDependencies.size();
+            }
+            this.size = dependencies.size() + edges;
+        }
+
+        public Map<JavaMethod, List<MethodDependency>> getDependencies() {
+            return dependencies;
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+
+    private static class Key {
+        private final JavaMethod method;
+        private final int remainingDepth;
+
+        Key(JavaMethod method, int remainingDepth) {
+            this.method = method;
+            this.remainingDepth = remainingDepth < 0 ? -1 : remainingDepth;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return remainingDepth == key.remainingDepth && method.equals(key.method);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * method.hashCode() + remainingDepth;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.equivalentmutant.dependency;
+
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.model.MethodCallInfo;
+import com.equivalentmutant.stats.PipelineStats;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A method resolver for call sites that were resolved by the symbol solver when their files were indexed.
+ * <p>
+ * A call with a resolved target is linked to exactly the method declared there, and a call resolved to a
+ * method outside the sources (such as {@code List.get}) is not linked at all. Calls the symbol solver could
+ * not resolve fall back to the name matching of {@link SimpleMethodResolver}; the number of such fallbacks
+ * is counted so it can be reported. So do calls whose target key is shared by several methods, such as
+ * the same method of two anonymous classes in one class.
+ * <p>
+ * The declared method is the only target: a call through an interface, to an abstract method or to a method
+ * that subclasses override never reaches the overriding implementations. Name matching may link such a call
+ * to one of them, which is why this resolver is not the default.
+ */
+public class SymbolSolverMethodResolver extends SimpleMethodResolver {
+
+    private final Map<String, List<JavaMethod>> methodsByDeclarationKey = new ConcurrentHashMap<>();
+    private final LongAdder resolvedCalls = new LongAdder();
+    private final LongAdder externalCalls = new LongAdder();
+    private final LongAdder fallbackCalls = new LongAdder();
+
+    @Override
+    public synchronized void addMethods(Collection<JavaMethod> methods) {
+        super.addMethods(methods);
+        for (JavaMethod method : methods) {
+            // Lists are replaced rather than changed, as lookups do not lock
+            methodsByDeclarationKey.merge(method.getDeclarationKey(), Collections.singletonList(method),
+                (present, added) -> {
+                    List<JavaMethod> merged = new ArrayList<>(present);
+                    merged.addAll(added);
+                    return merged;
+                });
+        }
+    }
+
+    @Override
+    public synchronized void removeMethods(Collection<JavaMethod> methods) {
+        super.removeMethods(methods);
+        for (JavaMethod method : methods) {
+            methodsByDeclarationKey.computeIfPresent(method.getDeclarationKey(), (key, present) -> {
+                List<JavaMethod> remaining = new ArrayList<>(present);
+                remaining.remove(method);
+                return remaining.isEmpty() ? null : remaining;
+            });
+        }
+    }
+
+    @Override
+    public Optional<JavaMethod> resolveCall(MethodCallInfo call) {
+        String targetKey = call.getTargetKey();
+        if (MethodCallInfo.EXTERNAL_TARGET.equals(targetKey)) {
+            externalCalls.increment();
+            if (PipelineStats.isEnabled()) {
+                PipelineStats.global().recordResolution(PipelineStats.Resolution.MISS);
+            }
+            return Optional.empty();
+        }
+        if (targetKey != null) {
+            List<JavaMethod> targets = methodsByDeclarationKey.get(targetKey);
+            if (targets != null && targets.size() == 1) {
+                resolvedCalls.increment();
+                if (PipelineStats.isEnabled()) {
+                    PipelineStats.global().recordResolution(PipelineStats.Resolution.HIT);
+                }
+                return Optional.of(targets.get(0));
+            }
+        }
+        fallbackCalls.increment();
+        return super.resolveCall(call);
+    }
+
+    /**
+     * @return The number of calls linked through their resolved target
+     */
+    public long getResolvedCalls() {
+        return resolvedCalls.sum();
+    }
+
+    /**
+     * @return The number of calls left unlinked because they target a method outside the sources
+     */
+    public long getExternalCalls() {
+        return externalCalls.sum();
+    }
+
+    /**
+     * @return The number of calls resolved by name because their target was not known
+     */
+    public long getFallbackCalls() {
+        return fallbackCalls.sum();
+    }
+}
@@ -0,0 +1,84 @@
+package com.equivalentmutant.dependency;
+
+/**
+ * Limits on the size and duration of a dependency graph traversal.
+ * <p>
+ * Each limit uses -1 for unlimited, like the maximum depth.
+ */
+public class TraversalBudget {
+    
+    public static final TraversalBudget UNLIMITED = new TraversalBudget(-1, -1, -1, -1);
+    
+    private final int maxNodes;
+    private final int maxEdges;
+    private final int maxFanOut;
+    private final long timeoutMillis;
+    
+    /**
+     * Creates a traversal budget.
+     * 
+     * @param maxNodes The maximum number of methods in the graph, including the root
+     * @param maxEdges The maximum number of dependencies in the graph
+     * @param maxFanOut The maximum number of dependencies followed from a single method
+     * @param timeoutMillis The wall-clock time after which the traversal stops
+     */
+    public TraversalBudget(int maxNodes, int maxEdges, int maxFanOut, long timeoutMillis) {
+        if (maxNodes == 0 || maxNodes < -1) {
+            throw new IllegalArgumentException("Node limit must be positive or -1: " + maxNodes);
+        }
+        if (maxEdges < -1 || maxFanOut < -1 || timeoutMillis < -1) {
+            throw new IllegalArgumentException("Budget limits must be non-negative or -1");
+        }
+        this.maxNodes = maxNodes;
+        this.maxEdges = maxEdges;
+        this.maxFanOut = maxFanOut;
+        this.timeoutMillis = timeoutMillis;
+    }
+    
+    public int getMaxNodes() {
+        return maxNodes;
+    }
+    
+    public int getMaxEdges() {
+        return maxEdges;
+    }
+    
+    public int getMaxFanOut() {
+        return maxFanOut;
+    }
+    
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+    
+    /**
+     * Checks whether any limit is set.
+     * 
+     * @return True if the budget never stops a traversal
+     */
+    public boolean isUnlimited() {
+        return maxNodes < 0 && maxEdges < 0 && maxFanOut < 0 && timeoutMillis < 0;
+    }
+    
+    boolean allowsNodes(int nodeCount) {
+        return maxNodes < 0 || nodeCount <= maxNodes;
+    }
+    
+    boolean allowsEdges(int edgeCount) {
+        return maxEdges < 0 || edgeCount <= maxEdges;
+    }
+    
+    boolean allowsFanOut(int fanOut) {
+        return maxFanOut < 0 || fanOut <= maxFanOut;
+    }
+    
+    long deadlineFrom(long startNanos) {
+        return timeoutMillis < 0 ? Long.MAX_VALUE : startNanos + timeoutMillis * 1_000_000L;
+    }
+    
+    @Override
+    public String toString() {
+        return "TraversalBudget[maxNodes=" + maxNodes + ", maxEdges=" + maxEdges + ", maxFanOut=" + maxFanOut
+            + ", timeoutMillis=" + timeoutMillis + "]";
+    }
+}
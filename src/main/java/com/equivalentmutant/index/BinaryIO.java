@@ -0,0 +1,45 @@
+package com.equivalentmutant.index;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Helpers for the length-prefixed encodings shared by the binary index and snapshot formats.
+ */
+public final class BinaryIO {
+    
+    private BinaryIO() {
+    }
+    
+    /**
+     * Writes a string as its UTF-8 byte length followed by the bytes. Unlike {@link DataOutput#writeUTF},
+     * this has no 64 KB limit.
+     * 
+     * @param out The output
+     * @param value The string to write
+     * @throws IOException If writing fails
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    /**
+     * Reads a string written by {@link #writeString}.
+     * 
+     * @param buffer The buffer positioned at the string
+     * @return The string
+     */
+    public static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalStateException("Corrupt string length " + length + " at " + (buffer.position() - 4));
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
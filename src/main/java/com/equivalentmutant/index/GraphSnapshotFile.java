@@ -0,0 +1,371 @@
+package com.equivalentmutant.index;
+
+import com.equivalentmutant.model.CompactGraph;
+import com.equivalentmutant.model.DependencyGraph;
+import com.equivalentmutant.model.FileFingerprint;
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.model.SourceLocation;
+import com.equivalentmutant.model.SourceText;
+import com.equivalentmutant.model.SymbolTable;
+import com.equivalentmutant.model.TruncationReason;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * The binary file format of a saved dependency graph.
+ * <p>
+ * A snapshot holds everything needed to print a graph's context without the sources being parsed again:
+ * the methods with the offsets of their code, the calls between them with their call sites, the depths and
+ * the truncation state. The file starts with a header, followed by a string table holding each name, type
+ * and path once, a table of the source files with the fingerprint of the version the graph was built from,
+ * the method records and the calls, seven ints each as in {@link CompactGraph}.
+ * <p>
+ * Opening a snapshot reads it into memory and decodes the tables; it is not mapped, so a snapshot can be
+ * saved over the one it was loaded from on every platform. {@link #findChangedFiles()} compares the recorded
+ * fingerprints with the files on disk, so a snapshot older than its sources is detected before its code
+ * offsets are used.
+ */
+public class GraphSnapshotFile {
+
+    private static final int MAGIC = 0x454D4753; // "EMGS"
+    static final int VERSION = 1;
+
+    // Tags of the source code stored with each method, as in the method index
+    private static final byte SOURCE_INLINE = 0;
+    private static final byte SOURCE_SLICE = 1;
+
+    private static final int NONE = -1;
+
+    private final ByteBuffer buffer;
+    private final String[] strings;
+    private final String[] paths;
+    private final FileFingerprint[] fingerprints;
+    private final int methodCount;
+    private final int edgeCount;
+    private final TruncationReason truncationReason;
+    private final int droppedCallCount;
+    private final int methodsStart;
+
+    private GraphSnapshotFile(ByteBuffer buffer, String[] strings, String[] paths, FileFingerprint[] fingerprints,
+                              int methodCount, int edgeCount, TruncationReason truncationReason,
+                              int droppedCallCount, int methodsStart) {
+        this.buffer = buffer;
+        this.strings = strings;
+        this.paths = paths;
+        this.fingerprints = fingerprints;
+        this.methodCount = methodCount;
+        this.edgeCount = edgeCount;
+        this.truncationReason = truncationReason;
+        this.droppedCallCount = droppedCallCount;
+        this.methodsStart = methodsStart;
+    }
+
+    /**
+     * Reads a snapshot file and decodes its string and file tables.
+     *
+     * @param snapshotFile The snapshot file
+     * @return The opened snapshot
+     * @throws IOException If the file cannot be read or is not a valid snapshot of the current version
+     */
+    public static GraphSnapshotFile open(Path snapshotFile) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(snapshotFile));
+
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a graph snapshot: " + snapshotFile);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported graph snapshot version " + version + ": " + snapshotFile);
+            }
+
+            int stringCount = buffer.getInt();
+            int fileCount = buffer.getInt();
+            int methodCount = buffer.getInt();
+            int edgeCount = buffer.getInt();
+            int truncationReason = buffer.getInt();
+            int droppedCallCount = buffer.getInt();
+
+            SymbolTable symbols = SymbolTable.shared();
+            String[] strings = new String[stringCount];
+            for (int i = 0; i < stringCount; i++) {
+                strings[i] = symbols.intern(BinaryIO.readString(buffer));
+            }
+            String[] paths = new String[fileCount];
+            FileFingerprint[] fingerprints = new FileFingerprint[fileCount];
+            for (int i = 0; i < fileCount; i++) {
+                paths[i] = strings[buffer.getInt()];
+                fingerprints[i] = new FileFingerprint(buffer.getLong(), buffer.getLong(), buffer.getLong());
+            }
+            return new GraphSnapshotFile(buffer, strings, paths, fingerprints, methodCount, edgeCount,
+                truncationReason == NONE ? null : TruncationReason.valueOf(strings[truncationReason]),
+                droppedCallCount, buffer.position());
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt graph snapshot: " + snapshotFile, e);
+        }
+    }
+
+    /**
+     * Writes a snapshot of a graph, replacing any existing file atomically.
+     * <p>
+     * The fingerprints are taken from the source files as they are now, so the graph should be saved before
+     * its sources change again.
+     *
+     * @param snapshotFile The snapshot file to write
+     * @param graph The graph
+     * @throws IOException If a source file cannot be read or the snapshot cannot be written
+     * @throws IllegalStateException If a source file has changed since the graph's methods were indexed
+     */
+    public static void write(Path snapshotFile, DependencyGraph graph) throws IOException {
+        CompactGraph compactGraph = graph.getCompactGraph();
+        CompactGraph.Snapshot snapshot = compactGraph.snapshot();
+        Map<JavaMethod, TruncationReason> truncatedMethods = graph.getTruncatedMethods();
+
+        // Number the strings and files first, so the tables can precede the records using them
+        Map<String, Integer> stringIds = new LinkedHashMap<>();
+        Map<String, Integer> fileIds = new LinkedHashMap<>();
+        for (int id = 0; id < snapshot.getMethodCount(); id++) {
+            JavaMethod method = snapshot.method(id);
+            stringId(stringIds, method.getPackageName());
+            stringId(stringIds, method.getClassName());
+            stringId(stringIds, method.getMethodName());
+            stringId(stringIds, method.getSignature());
+            for (String parameterType : method.getParameterTypes()) {
+                stringId(stringIds, parameterType);
+            }
+            if (method.getSourceText() == null) {
+                stringId(stringIds, method.getSourceCode());
+            }
+            fileId(fileIds, stringIds, method.getLocation().getFilePath());
+        }
+        for (int edge = 0; edge < snapshot.getEdgeCount(); edge++) {
+            fileId(fileIds, stringIds, snapshot.callSitePath(edge));
+        }
+        for (TruncationReason reason : truncatedMethods.values()) {
+            stringId(stringIds, reason.name());
+        }
+        if (graph.getTruncationReason() != null) {
+            stringId(stringIds, graph.getTruncationReason().name());
+        }
+
+        Map<String, FileFingerprint> fingerprints = new HashMap<>(fileIds.size() * 2);
+        for (String path : fileIds.keySet()) {
+            fingerprints.put(path, FileFingerprint.of(Paths.get(path)));
+        }
+        for (int id = 0; id < snapshot.getMethodCount(); id++) {
+            JavaMethod method = snapshot.method(id);
+            SourceText sourceText = method.getSourceText();
+            // Offsets into a changed file would slice the wrong code when the snapshot is read
+            if (sourceText != null && sourceText.getContentHash()
+                    != fingerprints.get(method.getLocation().getFilePath()).getContentHash()) {
+                throw new IllegalStateException("Source file changed since the graph was built: "
+                    + method.getLocation().getFilePath());
+            }
+        }
+
+        Path directory = snapshotFile.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path tempFile = Files.createTempFile(directory, snapshotFile.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tempFile), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(stringIds.size());
+                out.writeInt(fileIds.size());
+                out.writeInt(snapshot.getMethodCount());
+                out.writeInt(snapshot.getEdgeCount());
+                out.writeInt(graph.getTruncationReason() == null
+                    ? NONE : stringIds.get(graph.getTruncationReason().name()));
+                out.writeInt(graph.getDroppedCallCount());
+
+                for (String value : stringIds.keySet()) {
+                    BinaryIO.writeString(out, value);
+                }
+                for (String path : fileIds.keySet()) {
+                    FileFingerprint fingerprint = fingerprints.get(path);
+                    out.writeInt(stringIds.get(path));
+                    out.writeLong(fingerprint.getLastModified());
+                    out.writeLong(fingerprint.getSize());
+                    out.writeLong(fingerprint.getContentHash());
+                }
+
+                for (int id = 0; id < snapshot.getMethodCount(); id++) {
+                    JavaMethod method = snapshot.method(id);
+                    out.writeInt(stringIds.get(method.getPackageName()));
+                    out.writeInt(stringIds.get(method.getClassName()));
+                    out.writeInt(stringIds.get(method.getMethodName()));
+                    out.writeInt(stringIds.get(method.getSignature()));
+                    out.writeBoolean(method.isStatic());
+                    List<String> parameterTypes = method.getParameterTypes();
+                    out.writeInt(parameterTypes.size());
+                    for (String parameterType : parameterTypes) {
+                        out.writeInt(stringIds.get(parameterType));
+                    }
+                    SourceLocation location = method.getLocation();
+                    out.writeInt(fileIds.get(location.getFilePath()));
+                    out.writeInt(location.getBeginLine());
+                    out.writeInt(location.getBeginColumn());
+                    out.writeInt(location.getEndLine());
+                    out.writeInt(location.getEndColumn());
+                    if (method.getSourceText() != null) {
+                        out.writeByte(SOURCE_SLICE);
+                        out.writeInt(method.getSourceBegin());
+                        out.writeInt(method.getSourceEnd());
+                    } else {
+                        out.writeByte(SOURCE_INLINE);
+                        out.writeInt(stringIds.get(method.getSourceCode()));
+                    }
+                    out.writeInt(compactGraph.getDepth(method));
+                    TruncationReason reason = truncatedMethods.get(method);
+                    out.writeInt(reason == null ? NONE : stringIds.get(reason.name()));
+                }
+
+                for (int edge = 0; edge < snapshot.getEdgeCount(); edge++) {
+                    out.writeInt(snapshot.caller(edge));
+                    out.writeInt(snapshot.callee(edge));
+                    out.writeInt(fileIds.get(snapshot.callSitePath(edge)));
+                    out.writeInt(snapshot.callSiteBeginLine(edge));
+                    out.writeInt(snapshot.callSiteBeginColumn(edge));
+                    out.writeInt(snapshot.callSiteEndLine(edge));
+                    out.writeInt(snapshot.callSiteEndColumn(edge));
+                }
+            }
+            Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Compares the recorded fingerprints with the source files on disk. Files whose modification time and
+     * size still match are not read.
+     *
+     * @return The paths of the source files that changed or disappeared since the snapshot was written
+     * @throws IOException If a source file cannot be read
+     */
+    public List<String> findChangedFiles() throws IOException {
+        List<String> changed = new ArrayList<>();
+        for (int i = 0; i < paths.length; i++) {
+            Path path = Paths.get(paths[i]);
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                changed.add(paths[i]);
+                continue;
+            }
+            if (!fingerprints[i].matchesAttributes(attributes.lastModifiedTime().toMillis(), attributes.size())
+                    && FileFingerprint.hash(Files.readAllBytes(path)) != fingerprints[i].getContentHash()) {
+                changed.add(paths[i]);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Decodes the graph. Method code is sliced from the source files when it is first needed.
+     *
+     * @return A graph equal to the one that was saved, with its methods and calls in the same order
+     */
+    public DependencyGraph read() {
+        ByteBuffer view = buffer.duplicate();
+        view.position(methodsStart);
+
+        SourceText[] sourceTexts = new SourceText[paths.length];
+        JavaMethod[] methods = new JavaMethod[methodCount];
+        int[] depths = new int[methodCount];
+        TruncationReason[] truncations = new TruncationReason[methodCount];
+        for (int id = 0; id < methodCount; id++) {
+            String packageName = strings[view.getInt()];
+            String className = strings[view.getInt()];
+            String methodName = strings[view.getInt()];
+            String signature = strings[view.getInt()];
+            boolean isStatic = view.get() != 0;
+            int parameterCount = view.getInt();
+            List<String> parameterTypes = new ArrayList<>(parameterCount);
+            for (int p = 0; p < parameterCount; p++) {
+                parameterTypes.add(strings[view.getInt()]);
+            }
+            int file = view.getInt();
+            SourceLocation location = new SourceLocation(paths[file], view.getInt(), view.getInt(), view.getInt(),
+                view.getInt());
+            if (view.get() == SOURCE_SLICE) {
+                if (sourceTexts[file] == null) {
+                    sourceTexts[file] = new SourceText(MethodIndexFile.absolutePath(Paths.get(paths[file])),
+                        fingerprints[file].getContentHash());
+                }
+                methods[id] = new JavaMethod(packageName, className, methodName, signature, sourceTexts[file],
+                    view.getInt(), view.getInt(), location, isStatic, parameterTypes);
+            } else {
+                methods[id] = new JavaMethod(packageName, className, methodName, signature,
+                    strings[view.getInt()], location, isStatic, parameterTypes);
+            }
+            depths[id] = view.getInt();
+            int reason = view.getInt();
+            truncations[id] = reason == NONE ? null : TruncationReason.valueOf(strings[reason]);
+        }
+
+        DependencyGraph graph = new DependencyGraph(methods[0]);
+        CompactGraph compactGraph = graph.getCompactGraph();
+        for (int id = 0; id < methodCount; id++) {
+            // Interning in order keeps every method at the ID it was saved with
+            compactGraph.intern(methods[id]);
+            if (depths[id] >= 0) {
+                compactGraph.recordDepth(methods[id], depths[id]);
+            }
+            if (truncations[id] != null) {
+                graph.markTruncated(methods[id], truncations[id]);
+            }
+        }
+        for (int edge = 0; edge < edgeCount; edge++) {
+            JavaMethod caller = methods[view.getInt()];
+            JavaMethod callee = methods[view.getInt()];
+            String path = paths[view.getInt()];
+            compactGraph.addEdge(caller, callee,
+                new SourceLocation(path, view.getInt(), view.getInt(), view.getInt(), view.getInt()));
+        }
+        if (truncationReason != null) {
+            graph.setTruncation(truncationReason, droppedCallCount);
+        }
+        return graph;
+    }
+
+    public int getMethodCount() {
+        return methodCount;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    public int getFileCount() {
+        return paths.length;
+    }
+
+    private static int stringId(Map<String, Integer> stringIds, String value) {
+        Integer id = stringIds.get(value);
+        if (id == null) {
+            id = stringIds.size();
+            stringIds.put(value, id);
+        }
+        return id;
+    }
+
+    private static void fileId(Map<String, Integer> fileIds, Map<String, Integer> stringIds, String path) {
+        if (!fileIds.containsKey(path)) {
+            stringId(stringIds, path);
+            fileIds.put(path, fileIds.size());
+        }
+    }
+}
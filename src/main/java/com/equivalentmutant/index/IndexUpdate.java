@@ -0,0 +1,83 @@
+package com.equivalentmutant.index;
+
+import com.equivalentmutant.model.JavaMethod;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of applying a set of file changes to a {@link SourceIndex}.
+ */
+public class IndexUpdate {
+    private final List<Path> changedFiles;
+    private final List<JavaMethod> removedMethods;
+    private final List<JavaMethod> addedMethods;
+    private final int invalidatedGraphs;
+    private final Map<Path, String> skippedFiles;
+    
+    public IndexUpdate(List<Path> changedFiles, List<JavaMethod> removedMethods, List<JavaMethod> addedMethods,
+                       int invalidatedGraphs) {
+        this(changedFiles, removedMethods, addedMethods, invalidatedGraphs, Collections.emptyMap());
+    }
+    
+    /**
+     * @param skippedFiles The changed files that could not be parsed, with the reason
+     */
+    public IndexUpdate(List<Path> changedFiles, List<JavaMethod> removedMethods, List<JavaMethod> addedMethods,
+                       int invalidatedGraphs, Map<Path, String> skippedFiles) {
+        this.changedFiles = Collections.unmodifiableList(changedFiles);
+        this.removedMethods = Collections.unmodifiableList(removedMethods);
+        this.addedMethods = Collections.unmodifiableList(addedMethods);
+        this.invalidatedGraphs = invalidatedGraphs;
+        this.skippedFiles = Collections.unmodifiableMap(skippedFiles);
+    }
+    
+    /**
+     * Returns the files whose content actually changed, including added and deleted files.
+     * 
+     * @return The changed files
+     */
+    public List<Path> getChangedFiles() {
+        return changedFiles;
+    }
+    
+    /**
+     * Returns the methods retracted from the index, including the old versions of re-added methods.
+     * 
+     * @return The removed methods
+     */
+    public List<JavaMethod> getRemovedMethods() {
+        return removedMethods;
+    }
+    
+    public List<JavaMethod> getAddedMethods() {
+        return addedMethods;
+    }
+    
+    public int getInvalidatedGraphs() {
+        return invalidatedGraphs;
+    }
+    
+    /**
+     * Returns the changed files that could not be parsed, typically because they were saved halfway through
+     * an edit. Their old methods are removed, and they are indexed again on their next change.
+     * 
+     * @return The reason for each skipped file
+     */
+    public Map<Path, String> getSkippedFiles() {
+        return skippedFiles;
+    }
+    
+    public boolean isEmpty() {
+        return changedFiles.isEmpty();
+    }
+    
+    @Override
+    public String toString() {
+        return changedFiles.size() + " files changed, " + removedMethods.size() + " methods removed, "
+            + addedMethods.size() + " added, " + invalidatedGraphs + " graphs invalidated"
+            + (skippedFiles.isEmpty() ? "" : ", " + skippedFiles.size() + " files skipped");
+    }
+}
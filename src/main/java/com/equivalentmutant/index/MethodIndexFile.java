@@ -0,0 +1,308 @@
+package com.equivalentmutant.index;
+
+import com.equivalentmutant.model.CallSiteTable;
+import com.equivalentmutant.model.FileFingerprint;
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.model.MethodCallInfo;
+import com.equivalentmutant.model.SourceLocation;
+import com.equivalentmutant.model.SourceText;
+import com.equivalentmutant.model.SymbolTable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * The binary file format of the persistent method index.
+ * <p>
+ * The file starts with a header and a table of the indexed source files (absolute path, fingerprint and
+ * the position of the file's method records), followed by the method records themselves. Each method
+ * record holds the method metadata, the offsets of its code in the source file and its call sites,
+ * including the resolved target of each call. Opening a file reads it into memory and decodes the table;
+ * the records of a source file are decoded from the buffer when they are requested. The file is read rather
+ * than mapped, because an index is replaced while the index it was opened from is still in use, and a mapped
+ * file cannot be replaced on every platform.
+ */
+public class MethodIndexFile {
+
+    private static final int MAGIC = 0x454D4958; // "EMIX"
+    static final int VERSION = 5;
+
+    // Tags of the source code stored with each method
+    private static final byte SOURCE_INLINE = 0;
+    private static final byte SOURCE_SLICE = 1;
+
+    // Tags of the resolved target stored with each call site
+    private static final byte TARGET_UNRESOLVED = 0;
+    private static final byte TARGET_EXTERNAL = 1;
+    private static final byte TARGET_DECLARATION = 2;
+
+    private final Map<String, FileRecord> files;
+
+    private MethodIndexFile(Map<String, FileRecord> files) {
+        this.files = files;
+    }
+
+    /**
+     * Reads an index file and decodes its file table.
+     *
+     * @param indexFile The index file
+     * @return The opened index
+     * @throws IOException If the file cannot be read or is not a valid index of the current version
+     */
+    public static MethodIndexFile open(Path indexFile) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(indexFile));
+
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a method index: " + indexFile);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported method index version " + version + ": " + indexFile);
+            }
+
+            int fileCount = buffer.getInt();
+            String[] paths = new String[fileCount];
+            FileFingerprint[] fingerprints = new FileFingerprint[fileCount];
+            int[] recordOffsets = new int[fileCount];
+            for (int i = 0; i < fileCount; i++) {
+                paths[i] = BinaryIO.readString(buffer);
+                fingerprints[i] = new FileFingerprint(buffer.getLong(), buffer.getLong(), buffer.getLong());
+                recordOffsets[i] = buffer.getInt();
+            }
+
+            // Record offsets are relative to the end of the file table
+            int recordsStart = buffer.position();
+            Map<String, FileRecord> files = new HashMap<>(fileCount * 2);
+            for (int i = 0; i < fileCount; i++) {
+                if (recordOffsets[i] < 0 || recordsStart + recordOffsets[i] >= buffer.limit()) {
+                    throw new IOException("Corrupt method index: " + indexFile);
+                }
+                files.put(paths[i], new FileRecord(buffer, fingerprints[i], recordsStart + recordOffsets[i]));
+            }
+            return new MethodIndexFile(files);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt method index: " + indexFile, e);
+        }
+    }
+
+    /**
+     * Writes an index file, replacing any existing one atomically.
+     *
+     * @param indexFile The index file to write
+     * @param entries The indexed source files
+     * @param callSiteTable The table holding the call sites of the indexed methods
+     * @throws IOException If the file cannot be written
+     */
+    public static void write(Path indexFile, Collection<SourceFileEntry> entries, CallSiteTable callSiteTable)
+            throws IOException {
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        DataOutputStream recordOut = new DataOutputStream(records);
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream headerOut = new DataOutputStream(header);
+
+        headerOut.writeInt(MAGIC);
+        headerOut.writeInt(VERSION);
+        headerOut.writeInt(entries.size());
+        for (SourceFileEntry entry : entries) {
+            BinaryIO.writeString(headerOut, absolutePath(entry.getPath()));
+            headerOut.writeLong(entry.getFingerprint().getLastModified());
+            headerOut.writeLong(entry.getFingerprint().getSize());
+            headerOut.writeLong(entry.getFingerprint().getContentHash());
+            headerOut.writeInt(recordOut.size());
+            writeMethods(recordOut, entry.getMethods(), callSiteTable);
+        }
+        headerOut.flush();
+        recordOut.flush();
+
+        Path directory = indexFile.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path tempFile = Files.createTempFile(directory, indexFile.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                channel.write(new ByteBuffer[] {
+                    ByteBuffer.wrap(header.toByteArray()), ByteBuffer.wrap(records.toByteArray())
+                });
+            }
+            Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Returns the indexed state of a source file.
+     *
+     * @param sourceFile The source file
+     * @return The record, or null if the file is not in the index
+     */
+    public FileRecord getFile(Path sourceFile) {
+        return files.get(absolutePath(sourceFile));
+    }
+
+    public int getFileCount() {
+        return files.size();
+    }
+
+    static String absolutePath(Path path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+
+    private static void writeMethods(DataOutputStream out, List<JavaMethod> methods, CallSiteTable callSiteTable)
+            throws IOException {
+        out.writeInt(methods.size());
+        for (JavaMethod method : methods) {
+            BinaryIO.writeString(out, method.getPackageName());
+            BinaryIO.writeString(out, method.getClassName());
+            BinaryIO.writeString(out, method.getMethodName());
+            BinaryIO.writeString(out, method.getSignature());
+            // Code sliced from the file is stored as its offsets, so the file text is not copied into the index
+            if (method.getSourceText() != null) {
+                out.writeByte(SOURCE_SLICE);
+                out.writeInt(method.getSourceBegin());
+                out.writeInt(method.getSourceEnd());
+            } else {
+                out.writeByte(SOURCE_INLINE);
+                BinaryIO.writeString(out, method.getSourceCode());
+            }
+            out.writeBoolean(method.isStatic());
+            List<String> parameterTypes = method.getParameterTypes();
+            out.writeInt(parameterTypes.size());
+            for (String parameterType : parameterTypes) {
+                BinaryIO.writeString(out, parameterType);
+            }
+            writePosition(out, method.getLocation());
+
+            List<MethodCallInfo> calls = callSiteTable.get(method);
+            if (calls == null) {
+                calls = Collections.emptyList();
+            }
+            out.writeInt(calls.size());
+            for (MethodCallInfo call : calls) {
+                BinaryIO.writeString(out, call.getMethodName());
+                out.writeInt(call.getArgumentTypes().size());
+                writePosition(out, call.getLocation());
+                String targetKey = call.getTargetKey();
+                if (targetKey == null) {
+                    out.writeByte(TARGET_UNRESOLVED);
+                } else if (targetKey.equals(MethodCallInfo.EXTERNAL_TARGET)) {
+                    out.writeByte(TARGET_EXTERNAL);
+                } else {
+                    out.writeByte(TARGET_DECLARATION);
+                    BinaryIO.writeString(out, targetKey);
+                }
+                String receiverClass = call.getReceiverClass();
+                out.writeBoolean(receiverClass != null);
+                if (receiverClass != null) {
+                    BinaryIO.writeString(out, receiverClass);
+                }
+            }
+        }
+    }
+
+    private static void writePosition(DataOutputStream out, SourceLocation location) throws IOException {
+        out.writeInt(location.getBeginLine());
+        out.writeInt(location.getBeginColumn());
+        out.writeInt(location.getEndLine());
+        out.writeInt(location.getEndColumn());
+    }
+
+    private static SourceLocation readPosition(ByteBuffer buffer, String filePath) {
+        return new SourceLocation(filePath, buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+    }
+
+    /**
+     * The indexed state of one source file.
+     */
+    public static class FileRecord {
+        private final ByteBuffer buffer;
+        private final FileFingerprint fingerprint;
+        private final int recordOffset;
+
+        FileRecord(ByteBuffer buffer, FileFingerprint fingerprint, int recordOffset) {
+            this.buffer = buffer;
+            this.fingerprint = fingerprint;
+            this.recordOffset = recordOffset;
+        }
+
+        public FileFingerprint getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * Decodes the methods of the file and records their call sites.
+         *
+         * @param filePath The path to use in the decoded source locations
+         * @param callSiteTable The table receiving the call sites
+         * @return The methods of the file
+         */
+        public List<JavaMethod> readMethods(String filePath, CallSiteTable callSiteTable) {
+            SymbolTable symbols = SymbolTable.shared();
+            filePath = symbols.intern(filePath);
+            // Each reader gets its own view of the shared buffer, so files can be decoded concurrently
+            ByteBuffer view = buffer.duplicate();
+            view.position(recordOffset);
+
+            SourceText sourceText = new SourceText(absolutePath(Paths.get(filePath)), fingerprint.getContentHash());
+            int methodCount = view.getInt();
+            List<JavaMethod> methods = new ArrayList<>(methodCount);
+            for (int i = 0; i < methodCount; i++) {
+                String packageName = BinaryIO.readString(view);
+                String className = BinaryIO.readString(view);
+                String methodName = BinaryIO.readString(view);
+                String signature = BinaryIO.readString(view);
+                String sourceCode = null;
+                int sourceBegin = 0;
+                int sourceEnd = 0;
+                if (view.get() == SOURCE_SLICE) {
+                    sourceBegin = view.getInt();
+                    sourceEnd = view.getInt();
+                } else {
+                    sourceCode = BinaryIO.readString(view);
+                }
+                boolean isStatic = view.get() != 0;
+                int parameterCount = view.getInt();
+                List<String> parameterTypes = new ArrayList<>(parameterCount);
+                for (int p = 0; p < parameterCount; p++) {
+                    parameterTypes.add(BinaryIO.readString(view));
+                }
+                SourceLocation location = readPosition(view, filePath);
+                JavaMethod method = sourceCode == null
+                    ? new JavaMethod(packageName, className, methodName, signature, sourceText, sourceBegin,
+                        sourceEnd, location, isStatic, parameterTypes)
+                    : new JavaMethod(packageName, className, methodName, signature, sourceCode, location,
+                        isStatic, parameterTypes);
+
+                int callCount = view.getInt();
+                List<MethodCallInfo> calls = new ArrayList<>(callCount);
+                for (int c = 0; c < callCount; c++) {
+                    String calledName = BinaryIO.readString(view);
+                    int arity = view.getInt();
+                    SourceLocation callLocation = readPosition(view, filePath);
+                    byte targetTag = view.get();
+                    String targetKey = null;
+                    if (targetTag == TARGET_EXTERNAL) {
+                        targetKey = MethodCallInfo.EXTERNAL_TARGET;
+                    } else if (targetTag == TARGET_DECLARATION) {
+                        targetKey = symbols.intern(BinaryIO.readString(view));
+                    }
+                    String receiverClass = view.get() != 0 ? symbols.intern(BinaryIO.readString(view)) : null;
+                    calls.add(new MethodCallInfo(symbols.intern(calledName), MethodCallInfo.unknownArgumentTypes(arity),
+                        callLocation, targetKey, receiverClass));
+                }
+                callSiteTable.put(method, calls);
+                methods.add(method);
+            }
+            return methods;
+        }
+    }
+}
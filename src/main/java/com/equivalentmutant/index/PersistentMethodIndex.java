@@ -0,0 +1,240 @@
+package com.equivalentmutant.index;
+
+import com.equivalentmutant.model.CallSiteTable;
+import com.equivalentmutant.model.FileFingerprint;
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.parser.JavaSourceParser;
+import com.equivalentmutant.parser.ParallelSourceIndexer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the method index of a source tree in a cache directory between runs.
+ * <p>
+ * On each run the source tree is walked as usual, but a file is only parsed if its fingerprint differs
+ * from the one in the stored index; unchanged files are decoded from the stored index instead. The
+ * index is written back when anything changed. A stored index that cannot be read, or a file whose records
+ * in it cannot be decoded, is indexed again from the sources.
+ * <p>
+ * Several source roots, such as the modules of a multi-module build, are indexed as shards: each root has
+ * its own index file, and a file belongs to the shard of the root it lies under. The shards are walked and
+ * parsed together by one pool of workers, but each is stored on its own, so a change in one module only
+ * rewrites that module's index file.
+ */
+public class PersistentMethodIndex {
+
+    private final Path cacheDirectory;
+    private final AtomicInteger reusedFiles = new AtomicInteger();
+    private final AtomicInteger parsedFiles = new AtomicInteger();
+    private int removedFiles;
+    private int shardCount;
+    private int writtenShards;
+    private final List<String> ignoredIndexes = new ArrayList<>();
+
+    public PersistentMethodIndex(Path cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Indexes a source tree, reusing the stored index for unchanged files.
+     *
+     * @param sourceRoot The source directory
+     * @param indexer The indexer used to walk and parse the tree
+     * @param callSiteTable The table receiving the call sites of all methods
+     * @return The indexed files, ordered by path
+     * @throws IOException If the tree cannot be read or the index cannot be written
+     */
+    public SortedMap<Path, SourceFileEntry> index(Path sourceRoot, ParallelSourceIndexer indexer,
+                                                 CallSiteTable callSiteTable) throws IOException {
+        return index(Collections.singletonList(sourceRoot), indexer, callSiteTable);
+    }
+
+    /**
+     * Indexes several source trees, one shard each, reusing the stored shards for unchanged files.
+     *
+     * @param sourceRoots The source directories, none inside another
+     * @param indexer The indexer used to walk and parse the trees
+     * @param callSiteTable The table receiving the call sites of all methods
+     * @return The indexed files of all trees, ordered by path
+     * @throws IOException If a tree cannot be read or an index cannot be written
+     */
+    public SortedMap<Path, SourceFileEntry> index(List<Path> sourceRoots, ParallelSourceIndexer indexer,
+                                                 CallSiteTable callSiteTable) throws IOException {
+        boolean resolvedCalls = indexer.getSymbolResolution() != null;
+        List<Shard> shards = new ArrayList<>(sourceRoots.size());
+        ignoredIndexes.clear();
+        for (Path sourceRoot : sourceRoots) {
+            Path indexFile = getIndexFile(sourceRoot, resolvedCalls);
+            shards.add(new Shard(sourceRoot, indexFile, open(indexFile)));
+        }
+        reusedFiles.set(0);
+        parsedFiles.set(0);
+
+        SortedMap<Path, SourceFileEntry> entries = indexer.index(sourceRoots,
+            (file, parser) -> loadFile(file, parser, shardOf(shards, file), callSiteTable));
+
+        removedFiles = 0;
+        writtenShards = 0;
+        shardCount = shards.size();
+        for (SourceFileEntry entry : entries.values()) {
+            shardOf(shards, entry.getPath()).entries.add(entry);
+        }
+        for (Shard shard : shards) {
+            // Files in the stored index that were not seen on this walk have been deleted
+            int removed = shard.stored == null ? 0 : shard.stored.getFileCount() - shard.retainedFiles.get();
+            removedFiles += removed;
+            if (shard.stored == null || shard.parsedFiles.get() > 0 || removed > 0 || shard.fingerprintsChanged) {
+                MethodIndexFile.write(shard.indexFile, shard.entries, callSiteTable);
+                writtenShards++;
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the index file used for a source tree. Indexes with and without resolved call targets are
+     * kept apart, so switching resolvers never reuses the wrong kind.
+     *
+     * @param sourceRoot The source directory
+     * @param resolvedCalls Whether the index holds resolved call targets
+     * @return The index file inside the cache directory
+     */
+    public Path getIndexFile(Path sourceRoot, boolean resolvedCalls) {
+        String root = MethodIndexFile.absolutePath(sourceRoot);
+        long rootHash = FileFingerprint.hash(root.getBytes(StandardCharsets.UTF_8));
+        return cacheDirectory.resolve(String.format(resolvedCalls ? "methods-%016x-resolved.idx" : "methods-%016x.idx", rootHash));
+    }
+
+    private SourceFileEntry loadFile(Path file, JavaSourceParser parser, Shard shard,
+                                     CallSiteTable callSiteTable) throws IOException {
+        MethodIndexFile.FileRecord record = shard.stored == null ? null : shard.stored.getFile(file);
+
+        if (record != null) {
+            shard.retainedFiles.incrementAndGet();
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (record.getFingerprint().matchesAttributes(attributes.lastModifiedTime().toMillis(), attributes.size())) {
+                List<JavaMethod> methods = readMethods(record, file, callSiteTable);
+                if (methods != null) {
+                    reusedFiles.incrementAndGet();
+                    return new SourceFileEntry(file, record.getFingerprint(), methods);
+                }
+                record = null;
+            }
+        }
+
+        // Fingerprint before parsing, so a concurrent edit is picked up again by the next run
+        FileFingerprint fingerprint = FileFingerprint.of(file);
+        if (record != null && record.getFingerprint().getContentHash() == fingerprint.getContentHash()) {
+            List<JavaMethod> methods = readMethods(record, file, callSiteTable);
+            if (methods != null) {
+                // Touched but unchanged, store the new attributes so the next run can skip hashing
+                reusedFiles.incrementAndGet();
+                shard.fingerprintsChanged = true;
+                return new SourceFileEntry(file, fingerprint, methods);
+            }
+        }
+
+        parsedFiles.incrementAndGet();
+        shard.parsedFiles.incrementAndGet();
+        return new SourceFileEntry(file, fingerprint, parser.parseFile(file.toFile()));
+    }
+
+    private MethodIndexFile open(Path indexFile) {
+        if (!Files.isRegularFile(indexFile)) {
+            return null;
+        }
+        try {
+            return MethodIndexFile.open(indexFile);
+        } catch (IOException e) {
+            // A stale or damaged index is rebuilt from scratch
+            ignoredIndexes.add(e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Decodes the stored methods of a file.
+     *
+     * @return The methods, or null if the records are damaged and the file has to be parsed
+     */
+    private static List<JavaMethod> readMethods(MethodIndexFile.FileRecord record, Path file,
+                                                CallSiteTable callSiteTable) {
+        try {
+            return record.readMethods(file.toString(), callSiteTable);
+        } catch (RuntimeException e) {
+            // Call sites decoded before the damage are replaced when the file is parsed
+            return null;
+        }
+    }
+
+    private static Shard shardOf(List<Shard> shards, Path file) {
+        for (Shard shard : shards) {
+            if (file.startsWith(shard.root)) {
+                return shard;
+            }
+        }
+        throw new IllegalStateException("File outside every source root: " + file);
+    }
+
+    public int getReusedFiles() {
+        return reusedFiles.get();
+    }
+
+    public int getParsedFiles() {
+        return parsedFiles.get();
+    }
+
+    public int getRemovedFiles() {
+        return removedFiles;
+    }
+
+    /**
+     * @return The number of shards, one per source root, indexed by the last run
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * @return The number of shards whose index file the last run wrote, because they were new or changed
+     */
+    public int getWrittenShards() {
+        return writtenShards;
+    }
+
+    /**
+     * @return Why the stored index files the last run could not use were ignored, such as an older format
+     *         or a damaged file; their shards were indexed from the sources
+     */
+    public List<String> getIgnoredIndexes() {
+        return Collections.unmodifiableList(ignoredIndexes);
+    }
+
+    /**
+     * The stored index and the counters of one source root during a run.
+     */
+    private static class Shard {
+        final Path root;
+        final Path indexFile;
+        final MethodIndexFile stored;
+        final List<SourceFileEntry> entries = new ArrayList<>();
+        final AtomicInteger parsedFiles = new AtomicInteger();
+        final AtomicInteger retainedFiles = new AtomicInteger();
+        volatile boolean fingerprintsChanged;
+
+        Shard(Path root, Path indexFile, MethodIndexFile stored) {
+            this.root = root;
+            this.indexFile = indexFile;
+            this.stored = stored;
+        }
+    }
+}
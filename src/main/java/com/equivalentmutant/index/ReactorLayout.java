@@ -0,0 +1,80 @@
+package com.equivalentmutant.index;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds the source roots of a multi-module Maven or Gradle build.
+ * <p>
+ * Every directory below the build's root that holds a build file ({@code pom.xml}, {@code build.gradle}
+ * or {@code build.gradle.kts}) is taken as a module, and its {@code src/main/java} directory, if it has
+ * one, as a source root. The module lists of the build files are not read, so modules of nested
+ * aggregators and Gradle builds without a settings file are found alike. Build output, hidden and
+ * dependency directories are not searched.
+ */
+public final class ReactorLayout {
+
+    private static final List<String> BUILD_FILES = Arrays.asList("pom.xml", "build.gradle", "build.gradle.kts");
+    private static final Set<String> SKIPPED_DIRECTORIES = new HashSet<>(Arrays.asList(
+        "target", "build", "out", "bin", "node_modules"));
+    private static final Path MAIN_SOURCES = Path.of("src", "main", "java");
+
+    private ReactorLayout() {
+    }
+
+    /**
+     * Finds the source roots of the modules of a build.
+     *
+     * @param buildRoot The root directory of the build
+     * @return The {@code src/main/java} directories of the modules, ordered by path
+     * @throws IOException If the directory tree cannot be walked
+     * @throws IllegalArgumentException If the directory holds no module with Java sources
+     */
+    public static List<Path> findSourceRoots(Path buildRoot) throws IOException {
+        if (!Files.isDirectory(buildRoot)) {
+            throw new IllegalArgumentException("Build root is not a directory: " + buildRoot);
+        }
+        List<Path> sourceRoots = new ArrayList<>();
+        Path start = buildRoot.normalize();
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+                // The build root itself is searched whatever its name, even "." or a hidden directory
+                Path name = directory.getFileName();
+                if (!directory.equals(start) && name != null
+                        && (name.toString().startsWith(".") || SKIPPED_DIRECTORIES.contains(name.toString()))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                if (isModule(directory) && Files.isDirectory(directory.resolve(MAIN_SOURCES))) {
+                    sourceRoots.add(directory.resolve(MAIN_SOURCES));
+                }
+                // A module's sources are not searched for further modules
+                return directory.endsWith("src") ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+        });
+        if (sourceRoots.isEmpty()) {
+            throw new IllegalArgumentException("No module with a src/main/java directory found in " + buildRoot);
+        }
+        Collections.sort(sourceRoots);
+        return sourceRoots;
+    }
+
+    private static boolean isModule(Path directory) {
+        for (String buildFile : BUILD_FILES) {
+            if (Files.isRegularFile(directory.resolve(buildFile))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,293 @@
+package com.equivalentmutant.index;
+
+import com.equivalentmutant.context.Json;
+import com.equivalentmutant.dependency.MethodDependencyTracker;
+import com.equivalentmutant.dependency.MethodResolver;
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.model.MethodCallInfo;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Predicate;
+
+/**
+ * A project-wide call graph that answers who calls a method and which tests can reach it.
+ * <p>
+ * The index is built once from the call-site table, resolving every call of every indexed method with the
+ * same resolver the traversals use. Methods are numbered in index order and calls are kept in compressed
+ * sparse row form in both directions, as int arrays, so a query touches no maps beyond the lookup of the
+ * method itself. A reachability query is a breadth-first walk over the reverse edges, which visits only the
+ * methods that can reach the queried one. Its scratch arrays are borrowed from a pool shared by all threads,
+ * since the server runs every request on a new thread, and their visited marks are reset by bumping a
+ * generation counter rather than clearing them. The pool holds as many walks as queries have run at once.
+ * <p>
+ * The index is immutable and thread-safe. It does not follow source changes; build a new one instead.
+ */
+public class ReverseCallIndex {
+
+    private final JavaMethod[] methods;
+    private final Map<JavaMethod, Integer> methodIds;
+    // Callees of method i are calleeIds[calleeStart[i]] to calleeIds[calleeStart[i + 1] - 1]
+    private final int[] calleeStart;
+    private final int[] calleeIds;
+    // Callers of method i are callerIds[callerStart[i]] to callerIds[callerStart[i + 1] - 1]
+    private final int[] callerStart;
+    private final int[] callerIds;
+    private final BitSet tests;
+    private final Queue<Walk> walks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Builds the index.
+     *
+     * @param methods The methods of the project, in the order they are to be numbered
+     * @param dependencyTracker The tracker supplying call sites
+     * @param methodResolver The resolver for called methods
+     * @param isTest Recognizes the test methods
+     */
+    public ReverseCallIndex(List<JavaMethod> methods, MethodDependencyTracker dependencyTracker,
+                            MethodResolver methodResolver, Predicate<JavaMethod> isTest) {
+        this.methods = methods.toArray(new JavaMethod[0]);
+        this.methodIds = new HashMap<>(this.methods.length * 2);
+        for (int i = 0; i < this.methods.length; i++) {
+            methodIds.put(this.methods[i], i);
+        }
+
+        int count = this.methods.length;
+        this.tests = new BitSet(count);
+        this.calleeStart = new int[count + 1];
+        int[] edges = new int[Math.max(16, count * 2)];
+        int edgeCount = 0;
+        int[] callees = new int[16];
+        for (int caller = 0; caller < count; caller++) {
+            JavaMethod method = this.methods[caller];
+            if (isTest.test(method)) {
+                tests.set(caller);
+            }
+
+            // Each callee is kept once per caller, however many times it is called
+            int calleeCount = 0;
+            for (MethodCallInfo callInfo : dependencyTracker.findMethodCalls(method)) {
+                Optional<JavaMethod> callee = methodResolver.resolveCall(callInfo);
+                Integer calleeId = callee.isPresent() ? methodIds.get(callee.get()) : null;
+                if (calleeId != null) {
+                    if (calleeCount == callees.length) {
+                        callees = Arrays.copyOf(callees, calleeCount * 2);
+                    }
+                    callees[calleeCount++] = calleeId;
+                }
+            }
+            Arrays.sort(callees, 0, calleeCount);
+            calleeStart[caller] = edgeCount;
+            for (int i = 0; i < calleeCount; i++) {
+                if (i > 0 && callees[i] == callees[i - 1]) {
+                    continue;
+                }
+                if (edgeCount == edges.length) {
+                    edges = Arrays.copyOf(edges, edgeCount * 2);
+                }
+                edges[edgeCount++] = callees[i];
+            }
+        }
+        calleeStart[count] = edgeCount;
+        this.calleeIds = Arrays.copyOf(edges, edgeCount);
+
+        // Reverse the edges with a counting sort; walking callers in order keeps each caller list sorted
+        this.callerStart = new int[count + 1];
+        for (int i = 0; i < edgeCount; i++) {
+            callerStart[calleeIds[i] + 1]++;
+        }
+        for (int i = 0; i < count; i++) {
+            callerStart[i + 1] += callerStart[i];
+        }
+        this.callerIds = new int[edgeCount];
+        int[] next = Arrays.copyOf(callerStart, count);
+        for (int caller = 0; caller < count; caller++) {
+            for (int i = calleeStart[caller]; i < calleeStart[caller + 1]; i++) {
+                callerIds[next[calleeIds[i]]++] = caller;
+            }
+        }
+    }
+
+    public int getMethodCount() {
+        return methods.length;
+    }
+
+    /**
+     * @return The number of distinct caller and callee pairs
+     */
+    public int getCallCount() {
+        return calleeIds.length;
+    }
+
+    public int getTestCount() {
+        return tests.cardinality();
+    }
+
+    /**
+     * @param method The method
+     * @return True if the method is an indexed test method
+     */
+    public boolean isTest(JavaMethod method) {
+        Integer id = methodIds.get(method);
+        return id != null && tests.get(id);
+    }
+
+    /**
+     * Lists the methods that a method calls directly.
+     *
+     * @param method The calling method
+     * @return The callees in index order, or an empty list if the method is not indexed
+     */
+    public List<JavaMethod> getCallees(JavaMethod method) {
+        Integer id = methodIds.get(method);
+        if (id == null) {
+            return Collections.emptyList();
+        }
+        List<JavaMethod> callees = new ArrayList<>(calleeStart[id + 1] - calleeStart[id]);
+        for (int i = calleeStart[id]; i < calleeStart[id + 1]; i++) {
+            callees.add(methods[calleeIds[i]]);
+        }
+        return callees;
+    }
+
+    /**
+     * Lists the methods that call a method directly.
+     *
+     * @param method The called method
+     * @return The callers in index order, or an empty list if the method is not indexed
+     */
+    public List<JavaMethod> getCallers(JavaMethod method) {
+        Integer id = methodIds.get(method);
+        if (id == null) {
+            return Collections.emptyList();
+        }
+        List<JavaMethod> callers = new ArrayList<>(callerStart[id + 1] - callerStart[id]);
+        for (int i = callerStart[id]; i < callerStart[id + 1]; i++) {
+            callers.add(methods[callerIds[i]]);
+        }
+        return callers;
+    }
+
+    /**
+     * Finds the test methods from which a method can be reached through any chain of calls. A test method
+     * reaches itself.
+     *
+     * @param method The method
+     * @return The tests in index order, or an empty list if the method is not indexed
+     */
+    public List<JavaMethod> findReachingTests(JavaMethod method) {
+        Integer id = methodIds.get(method);
+        if (id == null) {
+            return Collections.emptyList();
+        }
+        Walk walk = borrowWalk();
+        int[] found;
+        try {
+            found = walk.reachingTests(id);
+        } finally {
+            walks.offer(walk);
+        }
+        List<JavaMethod> reachingTests = new ArrayList<>(found.length);
+        for (int test : found) {
+            reachingTests.add(methods[test]);
+        }
+        return reachingTests;
+    }
+
+    /**
+     * Writes the test-selection map: one JSON object per line for each method that is not a test, listing
+     * the tests that reach it. A method that no test reaches has an empty list.
+     *
+     * @param out The destination
+     * @throws IOException If writing fails
+     */
+    public void writeTestMap(Writer out) throws IOException {
+        Walk methodWalk = borrowWalk();
+        try {
+            writeTestMap(out, methodWalk);
+        } finally {
+            walks.offer(methodWalk);
+        }
+    }
+
+    private void writeTestMap(Writer out, Walk methodWalk) throws IOException {
+        for (int id = 0; id < methods.length; id++) {
+            if (tests.get(id)) {
+                continue;
+            }
+            JavaMethod method = methods[id];
+            out.write("{\"method\":");
+            out.write(Json.quote(method.getFullyQualifiedName()));
+            out.write(",\"signature\":");
+            out.write(Json.quote(method.getSignature()));
+            out.write(",\"location\":");
+            out.write(Json.quote(method.getLocation().toString()));
+            out.write(",\"tests\":[");
+            int[] found = methodWalk.reachingTests(id);
+            for (int i = 0; i < found.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                out.write(Json.quote(methods[found[i]].getFullyQualifiedName()));
+            }
+            out.write("]}\n");
+        }
+    }
+
+    private Walk borrowWalk() {
+        Walk walk = walks.poll();
+        return walk != null ? walk : new Walk(methods.length);
+    }
+
+    /**
+     * The scratch space of a reverse walk, used by one query at a time.
+     */
+    private class Walk {
+        private final int[] visited;
+        private final int[] queue;
+        private int generation;
+
+        Walk(int methodCount) {
+            this.visited = new int[methodCount];
+            this.queue = new int[methodCount];
+        }
+
+        int[] reachingTests(int start) {
+            if (++generation == 0) {
+                // The counter wrapped, so old marks could match again
+                Arrays.fill(visited, 0);
+                generation = 1;
+            }
+            int head = 0;
+            int tail = 0;
+            visited[start] = generation;
+            queue[tail++] = start;
+            int testCount = 0;
+            while (head < tail) {
+                int method = queue[head++];
+                if (tests.get(method)) {
+                    testCount++;
+                }
+                for (int i = callerStart[method]; i < callerStart[method + 1]; i++) {
+                    int caller = callerIds[i];
+                    if (visited[caller] != generation) {
+                        visited[caller] = generation;
+                        queue[tail++] = caller;
+                    }
+                }
+            }
+
+            int[] found = new int[testCount];
+            int n = 0;
+            for (int i = 0; i < tail; i++) {
+                if (tests.get(queue[i])) {
+                    found[n++] = queue[i];
+                }
+            }
+            Arrays.sort(found);
+            return found;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.equivalentmutant.index;
+
+import com.equivalentmutant.model.FileFingerprint;
+import com.equivalentmutant.model.JavaMethod;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The indexed state of a single source file: the version that was indexed and the methods it declares.
+ */
+public class SourceFileEntry {
+    private final Path path;
+    private final FileFingerprint fingerprint;
+    private final List<JavaMethod> methods;
+    
+    public SourceFileEntry(Path path, FileFingerprint fingerprint, List<JavaMethod> methods) {
+        this.path = path;
+        this.fingerprint = fingerprint;
+        this.methods = Collections.unmodifiableList(methods);
+    }
+    
+    public Path getPath() {
+        return path;
+    }
+    
+    public FileFingerprint getFingerprint() {
+        return fingerprint;
+    }
+    
+    public List<JavaMethod> getMethods() {
+        return methods;
+    }
+    
+    @Override
+    public String toString() {
+        return path + " (" + methods.size() + " methods, " + fingerprint + ")";
+    }
+}
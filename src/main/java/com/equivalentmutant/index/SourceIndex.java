@@ -0,0 +1,438 @@
+package com.equivalentmutant.index;
+
+import com.equivalentmutant.dependency.SimpleMethodResolver;
+import com.equivalentmutant.model.CallSiteTable;
+import com.equivalentmutant.model.DependencyGraph;
+import com.equivalentmutant.model.FileFingerprint;
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.model.MethodCallInfo;
+import com.equivalentmutant.parser.CompilationUnitCache;
+import com.equivalentmutant.parser.JavaSourceParser;
+import com.equivalentmutant.parser.ParallelSourceIndexer;
+import com.equivalentmutant.parser.SymbolResolution;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * The method index of a source tree, kept up to date as files change.
+ * <p>
+ * The index owns the per-file method lists and feeds them into the shared call-site table and method
+ * resolver. When files change, {@link #update} retracts the methods of those files and indexes them again,
+ * leaving the rest of the index untouched. Dependency graphs registered with the index are marked stale
+ * when an update may have changed them.
+ * <p>
+ * An index can cover several source roots, such as the modules of a multi-module build. Each root is a
+ * shard of the {@link PersistentMethodIndex}, while lookups and call resolution see the methods of all
+ * roots, so calls into sibling modules are followed.
+ * <p>
+ * An update briefly leaves the call-site table and the resolver without the methods of the files it is
+ * parsing again. Code that traverses them while updates may run, such as the analysis server, holds the
+ * {@link #getReadLock() read lock}; updates wait for it.
+ */
+public class SourceIndex {
+
+    private final List<Path> roots;
+    private final CompilationUnitCache unitCache;
+    private final CallSiteTable callSiteTable;
+    private final SimpleMethodResolver methodResolver;
+    private final SymbolResolution symbolResolution;
+    private final JavaSourceParser parser;
+    private final SortedMap<Path, SourceFileEntry> files = new TreeMap<>();
+    private final Map<String, List<JavaMethod>> methodsByFullyQualifiedName = new HashMap<>();
+    private final Set<DependencyGraph> graphs = Collections.newSetFromMap(new WeakHashMap<>());
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public SourceIndex(Path root, CompilationUnitCache unitCache, CallSiteTable callSiteTable,
+                       SimpleMethodResolver methodResolver) {
+        this(root, unitCache, callSiteTable, methodResolver, null);
+    }
+
+    /**
+     * Creates an index that resolves the target of every call when files are parsed.
+     *
+     * @param root The source directory, or a single source file
+     * @param unitCache The cache of parsed compilation units
+     * @param callSiteTable The table receiving the call sites
+     * @param methodResolver The resolver receiving the indexed methods
+     * @param symbolResolution The call resolution to use, or null to record calls by name only
+     */
+    public SourceIndex(Path root, CompilationUnitCache unitCache, CallSiteTable callSiteTable,
+                       SimpleMethodResolver methodResolver, SymbolResolution symbolResolution) {
+        this(Collections.singletonList(root), unitCache, callSiteTable, methodResolver, symbolResolution);
+    }
+
+    /**
+     * Creates an index of several source roots that resolves the target of every call when files are
+     * parsed.
+     *
+     * @param roots The source directories, none inside another, or a single source file
+     * @param unitCache The cache of parsed compilation units
+     * @param callSiteTable The table receiving the call sites
+     * @param methodResolver The resolver receiving the indexed methods
+     * @param symbolResolution The call resolution to use, or null to record calls by name only
+     */
+    public SourceIndex(List<Path> roots, CompilationUnitCache unitCache, CallSiteTable callSiteTable,
+                       SimpleMethodResolver methodResolver, SymbolResolution symbolResolution) {
+        if (roots.isEmpty()) {
+            throw new IllegalArgumentException("No source root given");
+        }
+        List<Path> normalizedRoots = normalize(roots);
+        for (Path root : normalizedRoots) {
+            for (Path other : normalizedRoots) {
+                if (root != other && root.startsWith(other)) {
+                    throw new IllegalArgumentException(root.equals(other) ? "Source root given twice: " + root
+                        : "Source root " + root + " lies inside source root " + other);
+                }
+            }
+        }
+        this.roots = Collections.unmodifiableList(normalizedRoots);
+        this.unitCache = unitCache;
+        this.callSiteTable = callSiteTable;
+        this.methodResolver = methodResolver;
+        this.symbolResolution = symbolResolution;
+        this.parser = new JavaSourceParser(unitCache, callSiteTable, symbolResolution);
+    }
+
+    /**
+     * Indexes the whole source tree of every root, or the single source file the index was created for.
+     *
+     * @param threads The number of parsing threads
+     * @param persistentIndex The on-disk index to reuse and refresh, or null to parse every file
+     * @throws IOException If the sources cannot be read
+     */
+    public void build(int threads, PersistentMethodIndex persistentIndex) throws IOException {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            buildLocked(threads, persistentIndex);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private synchronized void buildLocked(int threads, PersistentMethodIndex persistentIndex) throws IOException {
+        Map<Path, SourceFileEntry> entries;
+        Path root = roots.get(0);
+        if (roots.size() == 1 && Files.isRegularFile(root) && isJavaFile(root)) {
+            entries = Collections.singletonMap(root, parseEntry(root));
+        } else {
+            for (Path directory : roots) {
+                if (!Files.isDirectory(directory)) {
+                    throw new IllegalArgumentException(roots.size() == 1
+                        ? "Source path must be a directory or a Java file"
+                        : "Source root is not a directory: " + directory);
+                }
+            }
+            ParallelSourceIndexer indexer = new ParallelSourceIndexer(unitCache, callSiteTable, threads, symbolResolution);
+            if (persistentIndex != null) {
+                entries = persistentIndex.index(roots, indexer, callSiteTable);
+            } else {
+                entries = indexer.index(roots,
+                    (file, fileParser) -> new SourceFileEntry(file, FileFingerprint.of(file), fileParser.parseFile(file.toFile())));
+            }
+        }
+
+        for (SourceFileEntry entry : files.values()) {
+            retract(entry);
+        }
+        files.clear();
+        for (SourceFileEntry entry : entries.values()) {
+            add(entry);
+        }
+    }
+
+    /**
+     * Applies changes to individual files. Changed and added files are parsed again and deleted files are
+     * removed; files whose content is unchanged are skipped. A file that cannot be parsed is left out of the
+     * index and reported in the update.
+     *
+     * @param changedFiles The files that were modified, added or deleted
+     * @return What changed in the index
+     */
+    public IndexUpdate update(Collection<Path> changedFiles) {
+        return update(changedFiles, null);
+    }
+
+    /**
+     * Applies changes to individual files, and passes a non-empty update to a listener before any analysis
+     * waiting on the read lock goes on. State derived from the index, such as cached subgraphs, can so be
+     * dropped before it is used again.
+     *
+     * @param changedFiles The files that were modified, added or deleted
+     * @param listener Receives the update while the write lock is held, or null
+     * @return What changed in the index
+     */
+    public IndexUpdate update(Collection<Path> changedFiles, Consumer<IndexUpdate> listener) {
+        // Taken before the monitor, which readers may wait on while holding the read lock
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            IndexUpdate update = updateLocked(changedFiles);
+            if (listener != null && !update.isEmpty()) {
+                listener.accept(update);
+            }
+            return update;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private synchronized IndexUpdate updateLocked(Collection<Path> changedFiles) {
+        List<Path> updatedFiles = new ArrayList<>();
+        List<JavaMethod> removedMethods = new ArrayList<>();
+        List<JavaMethod> addedMethods = new ArrayList<>();
+        Map<Path, String> skippedFiles = new TreeMap<>();
+        // A symbol solver keeps the files it has read, so a fresh one sees the edits to called files
+        JavaSourceParser updateParser = symbolResolution == null ? parser
+            : new JavaSourceParser(unitCache, callSiteTable, symbolResolution);
+
+        for (Path file : new TreeSet<>(normalize(changedFiles))) {
+            if (!covers(file)) {
+                continue;
+            }
+            SourceFileEntry previous = files.get(file);
+            boolean exists = Files.isRegularFile(file);
+
+            FileFingerprint fingerprint = null;
+            if (exists) {
+                try {
+                    fingerprint = FileFingerprint.of(file);
+                } catch (IOException e) {
+                    // Deleted between the check and the read
+                    exists = false;
+                }
+            }
+            if (previous != null && fingerprint != null
+                    && previous.getFingerprint().getContentHash() == fingerprint.getContentHash()) {
+                continue;
+            }
+            if (previous == null && !exists) {
+                continue;
+            }
+
+            updatedFiles.add(file);
+            if (previous != null) {
+                files.remove(file);
+                retract(previous);
+                removedMethods.addAll(previous.getMethods());
+            }
+            unitCache.invalidate(file.toFile());
+
+            if (exists) {
+                try {
+                    List<JavaMethod> methods = updateParser.parseFile(file.toFile());
+                    add(new SourceFileEntry(file, fingerprint, methods));
+                    addedMethods.addAll(methods);
+                } catch (IOException | RuntimeException e) {
+                    // Typically a file saved halfway through an edit; it is indexed again on its next change
+                    skippedFiles.put(file, String.valueOf(e.getMessage()));
+                }
+            }
+        }
+
+        int invalidated = updatedFiles.isEmpty() ? 0 : invalidateGraphs(removedMethods, addedMethods);
+        return new IndexUpdate(updatedFiles, removedMethods, addedMethods, invalidated, skippedFiles);
+    }
+
+    /**
+     * Returns the lock that keeps updates out while it is held. It is reentrant, and a listener given to
+     * {@link #update(Collection, Consumer)} may take it too.
+     *
+     * @return The read lock
+     */
+    public Lock getReadLock() {
+        return lock.readLock();
+    }
+
+    /**
+     * Tracks a graph built from this index, so that later updates can mark it stale. Graphs are held weakly.
+     *
+     * @param graph The graph to track
+     */
+    public void registerGraph(DependencyGraph graph) {
+        synchronized (graphs) {
+            graphs.add(graph);
+        }
+    }
+
+    /**
+     * Returns all indexed methods, ordered by file path.
+     *
+     * @return The methods
+     */
+    public synchronized List<JavaMethod> getMethods() {
+        List<JavaMethod> methods = new ArrayList<>();
+        for (SourceFileEntry entry : files.values()) {
+            methods.addAll(entry.getMethods());
+        }
+        return methods;
+    }
+
+    /**
+     * Finds the indexed methods with a fully qualified name, one per overload.
+     *
+     * @param fullyQualifiedName The name as {@code package.Class.method}
+     * @return The methods, or an empty list if there are none
+     */
+    public synchronized List<JavaMethod> findMethods(String fullyQualifiedName) {
+        List<JavaMethod> methods = methodsByFullyQualifiedName.get(fullyQualifiedName);
+        return methods == null ? Collections.emptyList() : new ArrayList<>(methods);
+    }
+
+    public synchronized Set<Path> getFiles() {
+        return new TreeSet<>(files.keySet());
+    }
+
+    /**
+     * Checks whether a file belongs to the indexed sources.
+     *
+     * @param file The file
+     * @return True if the file is a Java file under one of the source roots
+     */
+    public boolean covers(Path file) {
+        return findRoot(file) != null;
+    }
+
+    /**
+     * Finds the source root, and so the shard, a file belongs to.
+     *
+     * @param file The file
+     * @return The root, or null if the file is not a Java file under any source root
+     */
+    public Path findRoot(Path file) {
+        Path normalized = file.normalize();
+        if (!isJavaFile(normalized)) {
+            return null;
+        }
+        for (Path root : roots) {
+            if (normalized.startsWith(root)) {
+                return root;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The first source root, the only one unless the index was created for several
+     */
+    public Path getRoot() {
+        return roots.get(0);
+    }
+
+    public List<Path> getRoots() {
+        return roots;
+    }
+
+    public CallSiteTable getCallSiteTable() {
+        return callSiteTable;
+    }
+
+    public SimpleMethodResolver getMethodResolver() {
+        return methodResolver;
+    }
+
+    private SourceFileEntry parseEntry(Path file) throws IOException {
+        FileFingerprint fingerprint = FileFingerprint.of(file);
+        return new SourceFileEntry(file, fingerprint, parser.parseFile(file.toFile()));
+    }
+
+    private void add(SourceFileEntry entry) {
+        files.put(entry.getPath(), entry);
+        methodResolver.addMethods(entry.getMethods());
+        for (JavaMethod method : entry.getMethods()) {
+            methodsByFullyQualifiedName.computeIfAbsent(method.getFullyQualifiedName(), k -> new ArrayList<>()).add(method);
+        }
+    }
+
+    private void retract(SourceFileEntry entry) {
+        methodResolver.removeMethods(entry.getMethods());
+        for (JavaMethod method : entry.getMethods()) {
+            callSiteTable.remove(method);
+            List<JavaMethod> methods = methodsByFullyQualifiedName.get(method.getFullyQualifiedName());
+            if (methods != null) {
+                methods.remove(method);
+                if (methods.isEmpty()) {
+                    methodsByFullyQualifiedName.remove(method.getFullyQualifiedName());
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the registered graphs that contain a removed method, or that contain a call which could now
+     * resolve to an added method.
+     */
+    private int invalidateGraphs(List<JavaMethod> removedMethods, List<JavaMethod> addedMethods) {
+        Set<JavaMethod> removed = new HashSet<>(removedMethods);
+        Set<String> addedNames = new HashSet<>();
+        for (JavaMethod method : addedMethods) {
+            addedNames.add(method.getMethodName());
+        }
+
+        List<DependencyGraph> candidates;
+        synchronized (graphs) {
+            candidates = new ArrayList<>(graphs);
+        }
+
+        int invalidated = 0;
+        for (DependencyGraph graph : candidates) {
+            if (graph.isStale()) {
+                continue;
+            }
+            if (touches(graph, removed, addedNames)) {
+                graph.markStale();
+                invalidated++;
+            }
+        }
+        return invalidated;
+    }
+
+    private boolean touches(DependencyGraph graph, Set<JavaMethod> removed, Set<String> addedNames) {
+        // A root without resolved calls has no edges, so it is not among the graph's methods
+        if (touches(graph.getRootMethod(), removed, addedNames)) {
+            return true;
+        }
+        for (JavaMethod method : graph.getAllMethods()) {
+            if (touches(method, removed, addedNames)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean touches(JavaMethod method, Set<JavaMethod> removed, Set<String> addedNames) {
+        if (removed.contains(method)) {
+            return true;
+        }
+        List<MethodCallInfo> calls = callSiteTable.get(method);
+        if (calls == null) {
+            return false;
+        }
+        for (MethodCallInfo call : calls) {
+            if (addedNames.contains(call.getMethodName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Path> normalize(Collection<Path> files) {
+        List<Path> normalized = new ArrayList<>(files.size());
+        for (Path file : files) {
+            normalized.add(file.normalize());
+        }
+        return normalized;
+    }
+
+    private static boolean isJavaFile(Path file) {
+        Path name = file.getFileName();
+        return name != null && name.toString().endsWith(".java");
+    }
+}
@@ -0,0 +1,183 @@
+package com.equivalentmutant.index;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches the source trees of a {@link SourceIndex} and applies file changes to it as they happen.
+ * <p>
+ * Events are collected until the tree has been quiet for a short period, since editors and build tools
+ * usually write files in several steps, and are then applied as a single update. Failures while applying
+ * changes do not stop the watcher; they are passed to an error listener. The update listener runs while
+ * the index holds its write lock, so analyses holding the read lock do not see the index before the listener
+ * has reacted to the change.
+ */
+public class SourceWatcher implements Closeable {
+
+    private static final long QUIET_PERIOD_MILLIS = 200;
+
+    private final SourceIndex index;
+    private final Consumer<IndexUpdate> listener;
+    private final Consumer<Exception> errorListener;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final Thread thread;
+    private volatile boolean closed;
+
+    /**
+     * Creates a watcher. Call {@link #start} to begin watching.
+     *
+     * @param index The index to keep current
+     * @param listener Receives every non-empty update, while the index's write lock is held
+     * @param errorListener Receives the failures to scan or apply changes, on the watcher thread
+     * @throws IOException If the source tree cannot be registered
+     */
+    public SourceWatcher(SourceIndex index, Consumer<IndexUpdate> listener, Consumer<Exception> errorListener)
+            throws IOException {
+        this.index = index;
+        this.listener = listener;
+        this.errorListener = errorListener;
+        Path root = index.getRoot();
+        this.watchService = root.getFileSystem().newWatchService();
+        if (Files.isDirectory(root)) {
+            for (Path directory : index.getRoots()) {
+                registerTree(directory);
+            }
+        } else {
+            // A single source file is watched through its directory
+            Path parent = root.toAbsolutePath().getParent();
+            directories.put(parent.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE),
+                root.getParent() == null ? Paths.get("") : root.getParent());
+        }
+        this.thread = new Thread(this::watch, "source-watcher");
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Blocks until the watcher is closed.
+     *
+     * @throws InterruptedException If the waiting thread is interrupted
+     */
+    public void awaitClose() throws InterruptedException {
+        thread.join();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        watchService.close();
+    }
+
+    private void watch() {
+        while (!closed) {
+            try {
+                WatchKey key = watchService.take();
+                Set<Path> changedFiles = new TreeSet<>();
+                boolean overflow = collect(key, changedFiles);
+
+                while ((key = watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    overflow |= collect(key, changedFiles);
+                }
+                if (overflow) {
+                    // Events were lost, so compare every known and every present file
+                    changedFiles.addAll(index.getFiles());
+                    for (Path root : index.getRoots()) {
+                        changedFiles.addAll(javaFilesUnder(root));
+                    }
+                }
+
+                if (!changedFiles.isEmpty()) {
+                    index.update(changedFiles, listener);
+                }
+            } catch (ClosedWatchServiceException e) {
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                errorListener.accept(e);
+            }
+        }
+    }
+
+    /**
+     * Adds the files affected by the events of a key.
+     *
+     * @return True if events were lost
+     */
+    private boolean collect(WatchKey key, Set<Path> changedFiles) {
+        Path directory = directories.get(key);
+        boolean overflow = false;
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                overflow = true;
+                continue;
+            }
+            if (directory == null) {
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                try {
+                    registerTree(path);
+                } catch (IOException e) {
+                    overflow = true;
+                }
+                changedFiles.addAll(javaFilesUnder(path));
+            } else if (index.covers(path)) {
+                changedFiles.add(path);
+            } else if (event.kind() == ENTRY_DELETE) {
+                // A deleted directory does not report the files it contained
+                for (Path file : index.getFiles()) {
+                    if (file.startsWith(path)) {
+                        changedFiles.add(file);
+                    }
+                }
+            }
+        }
+
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+        return overflow;
+    }
+
+    private void registerTree(Path start) throws IOException {
+        try (Stream<Path> paths = Files.walk(start)) {
+            for (Path directory : (Iterable<Path>) paths::iterator) {
+                if (Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS)) {
+                    directories.put(directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), directory);
+                }
+            }
+        }
+    }
+
+    private List<Path> javaFilesUnder(Path start) {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(start)) {
+            return files;
+        }
+        try (Stream<Path> paths = Files.walk(start)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (index.covers(path) && Files.isRegularFile(path)) {
+                    files.add(path);
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            errorListener.accept(new IOException("Failed to scan " + start + ": " + e.getMessage(), e));
+        }
+        return files;
+    }
+}
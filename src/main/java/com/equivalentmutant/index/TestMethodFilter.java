@@ -0,0 +1,67 @@
+package com.equivalentmutant.index;
+
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.parser.CompilationUnitCache;
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.expr.AnnotationExpr;
+
+import java.io.FileNotFoundException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Recognizes the test methods of a test source directory: methods annotated as JUnit 4 or 5 tests, and
+ * public methods named {@code test...} without parameters in the JUnit 3 style.
+ */
+public class TestMethodFilter implements Predicate<JavaMethod> {
+
+    private static final Set<String> TEST_ANNOTATIONS = new HashSet<>(Arrays.asList(
+        "Test", "ParameterizedTest", "RepeatedTest", "TestFactory", "TestTemplate"));
+
+    // JavaParser is not thread-safe and the filter may be shared by concurrent builds
+    private final ThreadLocal<JavaParser> parser = ThreadLocal.withInitial(JavaParser::new);
+    private final Path testRoot;
+    private final CompilationUnitCache unitCache;
+
+    /**
+     * @param testRoot The directory holding the test sources
+     * @param unitCache The cache the test files are parsed through
+     */
+    public TestMethodFilter(Path testRoot, CompilationUnitCache unitCache) {
+        this.testRoot = testRoot.toAbsolutePath().normalize();
+        this.unitCache = unitCache;
+    }
+
+    public Path getTestRoot() {
+        return testRoot;
+    }
+
+    @Override
+    public boolean test(JavaMethod method) {
+        if (!Paths.get(method.getLocation().getFilePath()).toAbsolutePath().normalize().startsWith(testRoot)) {
+            return false;
+        }
+        Optional<MethodDeclaration> declaration;
+        try {
+            declaration = unitCache.findDeclaration(method, parser.get());
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+        if (!declaration.isPresent()) {
+            return false;
+        }
+        for (AnnotationExpr annotation : declaration.get().getAnnotations()) {
+            if (TEST_ANNOTATIONS.contains(annotation.getName().getIdentifier())) {
+                return true;
+            }
+        }
+        return method.getMethodName().startsWith("test") && declaration.get().isPublic()
+            && declaration.get().getParameters().isEmpty();
+    }
+}
@@ -0,0 +1,147 @@
+package com.equivalentmutant.model;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the call sites of every indexed method, recorded once when the method's file is parsed.
+ * <p>
+ * Each method's calls are packed into parallel arrays (called names, arities, positions, resolved
+ * targets and receiver classes) sharing a single file path, and {@link MethodCallInfo} objects are only materialized when a method is visited.
+ * The table is safe for concurrent use.
+ */
+public class CallSiteTable {
+    
+    private final Map<JavaMethod, CallSites> callSites = new ConcurrentHashMap<>();
+    
+    /**
+     * Records the call sites of a method, replacing any previous entry.
+     * 
+     * @param method The calling method
+     * @param calls The calls made by the method, in source order
+     */
+    public void put(JavaMethod method, List<MethodCallInfo> calls) {
+        callSites.put(method, new CallSites(method.getLocation().getFilePath(), calls));
+    }
+    
+    /**
+     * Returns the call sites of a method.
+     * 
+     * @param method The calling method
+     * @return The calls in source order, or null if the method has not been indexed
+     */
+    public List<MethodCallInfo> get(JavaMethod method) {
+        return callSites.get(method);
+    }
+    
+    /**
+     * Checks whether the call sites of a method have been recorded.
+     * 
+     * @param method The method
+     * @return True if the method has been indexed
+     */
+    public boolean contains(JavaMethod method) {
+        return callSites.containsKey(method);
+    }
+    
+    /**
+     * Removes the call sites of a method.
+     * 
+     * @param method The method to remove
+     */
+    public void remove(JavaMethod method) {
+        callSites.remove(method);
+    }
+    
+    /**
+     * Returns the number of indexed methods.
+     * 
+     * @return The number of methods
+     */
+    public int size() {
+        return callSites.size();
+    }
+    
+    /**
+     * Returns the total number of recorded call sites.
+     * 
+     * @return The number of call sites
+     */
+    public long getCallSiteCount() {
+        long count = 0;
+        for (CallSites sites : callSites.values()) {
+            count += sites.size();
+        }
+        return count;
+    }
+    
+    /**
+     * The packed call sites of a single method, exposed as a read-only list.
+     */
+    private static class CallSites extends AbstractList<MethodCallInfo> {
+        private static final String[] NO_NAMES = new String[0];
+        private static final int[] NO_INTS = new int[0];
+        
+        private final String filePath;
+        private final String[] names;
+        private final int[] arities;
+        private final int[] positions;
+        // Null when no call of the method has a resolved target
+        private final String[] targets;
+        // Null when no call of the method has a known receiver class
+        private final String[] receivers;
+        
+        CallSites(String filePath, List<MethodCallInfo> calls) {
+            this.filePath = filePath;
+            int count = calls.size();
+            this.names = count == 0 ? NO_NAMES : new String[count];
+            this.arities = count == 0 ? NO_INTS : new int[count];
+            this.positions = count == 0 ? NO_INTS : new int[count * 4];
+            String[] resolvedTargets = null;
+            String[] receiverClasses = null;
+            for (int i = 0; i < count; i++) {
+                MethodCallInfo call = calls.get(i);
+                SourceLocation location = call.getLocation();
+                names[i] = call.getMethodName();
+                arities[i] = call.getArgumentTypes().size();
+                positions[i * 4] = location.getBeginLine();
+                positions[i * 4 + 1] = location.getBeginColumn();
+                positions[i * 4 + 2] = location.getEndLine();
+                positions[i * 4 + 3] = location.getEndColumn();
+                if (call.getTargetKey() != null) {
+                    if (resolvedTargets == null) {
+                        resolvedTargets = new String[count];
+                    }
+                    resolvedTargets[i] = call.getTargetKey();
+                }
+                if (call.getReceiverClass() != null) {
+                    if (receiverClasses == null) {
+                        receiverClasses = new String[count];
+                    }
+                    receiverClasses[i] = call.getReceiverClass();
+                }
+            }
+            this.targets = resolvedTargets;
+            this.receivers = receiverClasses;
+        }
+        
+        @Override
+        public MethodCallInfo get(int index) {
+            SourceLocation location = new SourceLocation(filePath,
+                positions[index * 4], positions[index * 4 + 1], positions[index * 4 + 2], positions[index * 4 + 3]);
+            List<String> argumentTypes = arities[index] == 0
+                ? Collections.emptyList()
+                : MethodCallInfo.unknownArgumentTypes(arities[index]);
+            return new MethodCallInfo(names[index], argumentTypes, location, targets == null ? null : targets[index],
+                receivers == null ? null : receivers[index]);
+        }
+        
+        @Override
+        public int size() {
+            return names.length;
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package com.equivalentmutant.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An append-only call graph that numbers methods with dense int IDs and keeps edges in primitive arrays.
+ * <p>
+ * Methods get IDs in the order they are first seen. An edge is a call from a caller to a callee at a call
+ * site; it is stored as seven ints (caller, callee, interned file path and the four positions of the call
+ * site) in a single array, with a hash table of edge numbers rejecting duplicates. Each method also carries
+ * its recorded call depth.
+ * <p>
+ * Reads go through a {@link Snapshot}, which adds forward and reverse adjacency in compressed sparse row
+ * form. A snapshot is built on the first read after a change and shared by all readers until the next
+ * change; it shares the edge array rather than copying it, since edges are never modified once added.
+ * <p>
+ * All methods are thread-safe. Changes are serialized.
+ */
+public class CompactGraph {
+
+    private static final int CALLER = 0;
+    private static final int CALLEE = 1;
+    private static final int FILE = 2;
+    private static final int BEGIN_LINE = 3;
+    private static final int BEGIN_COLUMN = 4;
+    private static final int END_LINE = 5;
+    private static final int END_COLUMN = 6;
+    private static final int EDGE_INTS = 7;
+
+    private final Map<JavaMethod, Integer> methodIds = new HashMap<>();
+    private JavaMethod[] methods = new JavaMethod[16];
+    private int[] depths = new int[16];
+    private int methodCount;
+
+    private final Map<String, Integer> fileIds = new HashMap<>();
+    private String[] files = new String[4];
+    private int fileCount;
+
+    private int[] edges = new int[16 * EDGE_INTS];
+    private int edgeCount;
+    // Open addressing table of edge numbers plus one; zero marks a free slot
+    private int[] edgeTable = new int[32];
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * Returns the ID of a method, assigning the next free ID if the method is new.
+     *
+     * @param method The method
+     * @return The ID
+     */
+    public synchronized int intern(JavaMethod method) {
+        Integer id = methodIds.get(method);
+        if (id != null) {
+            return id;
+        }
+        if (methodCount == methods.length) {
+            methods = Arrays.copyOf(methods, methodCount * 2);
+            depths = Arrays.copyOf(depths, methodCount * 2);
+        }
+        methods[methodCount] = method;
+        depths[methodCount] = -1;
+        methodIds.put(method, methodCount);
+        snapshot = null;
+        return methodCount++;
+    }
+
+    /**
+     * @param method The method
+     * @return The ID of the method, or -1 if it is not in the graph
+     */
+    public synchronized int idOf(Object method) {
+        Integer id = methodIds.get(method);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Adds a call, unless the same call is already present.
+     *
+     * @param caller The calling method
+     * @param callee The called method
+     * @param callSite The location of the call
+     * @return True if the call was added
+     */
+    public synchronized boolean addEdge(JavaMethod caller, JavaMethod callee, SourceLocation callSite) {
+        int callerId = intern(caller);
+        int calleeId = intern(callee);
+        int fileId = internFile(callSite.getFilePath());
+
+        int mask = edgeTable.length - 1;
+        int hash = hash(callerId, calleeId, fileId, callSite);
+        for (int slot = hash & mask; edgeTable[slot] != 0; slot = (slot + 1) & mask) {
+            int offset = (edgeTable[slot] - 1) * EDGE_INTS;
+            if (edges[offset + CALLER] == callerId && edges[offset + CALLEE] == calleeId
+                    && edges[offset + FILE] == fileId
+                    && edges[offset + BEGIN_LINE] == callSite.getBeginLine()
+                    && edges[offset + BEGIN_COLUMN] == callSite.getBeginColumn()
+                    && edges[offset + END_LINE] == callSite.getEndLine()
+                    && edges[offset + END_COLUMN] == callSite.getEndColumn()) {
+                return false;
+            }
+        }
+
+        if ((edgeCount + 1) * EDGE_INTS > edges.length) {
+            edges = Arrays.copyOf(edges, edges.length * 2);
+        }
+        int offset = edgeCount * EDGE_INTS;
+        edges[offset + CALLER] = callerId;
+        edges[offset + CALLEE] = calleeId;
+        edges[offset + FILE] = fileId;
+        edges[offset + BEGIN_LINE] = callSite.getBeginLine();
+        edges[offset + BEGIN_COLUMN] = callSite.getBeginColumn();
+        edges[offset + END_LINE] = callSite.getEndLine();
+        edges[offset + END_COLUMN] = callSite.getEndColumn();
+        edgeCount++;
+        insertEdge(edgeCount - 1, hash);
+        if (edgeCount * 2 > edgeTable.length) {
+            rehash();
+        }
+        snapshot = null;
+        return true;
+    }
+
+    /**
+     * Records the call depth of a method, keeping the smallest depth seen.
+     *
+     * @param method The method
+     * @param depth The depth
+     */
+    public synchronized void recordDepth(JavaMethod method, int depth) {
+        int id = intern(method);
+        if (depths[id] < 0 || depth < depths[id]) {
+            depths[id] = depth;
+        }
+    }
+
+    /**
+     * @param method The method
+     * @return The recorded depth of the method, or -1 if none was recorded
+     */
+    public synchronized int getDepth(Object method) {
+        Integer id = methodIds.get(method);
+        return id == null ? -1 : depths[id];
+    }
+
+    public synchronized int getMethodCount() {
+        return methodCount;
+    }
+
+    public synchronized int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Returns a read-only view of the graph as it is now, building the adjacency if the graph has changed
+     * since the last snapshot.
+     *
+     * @return The snapshot
+     */
+    public Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                snapshot = new Snapshot(methods, methodCount, files, edges, edgeCount);
+            }
+            return snapshot;
+        }
+    }
+
+    private int internFile(String filePath) {
+        Integer id = fileIds.get(filePath);
+        if (id != null) {
+            return id;
+        }
+        if (fileCount == files.length) {
+            files = Arrays.copyOf(files, fileCount * 2);
+        }
+        files[fileCount] = filePath;
+        fileIds.put(filePath, fileCount);
+        return fileCount++;
+    }
+
+    private void insertEdge(int edge, int hash) {
+        int mask = edgeTable.length - 1;
+        int slot = hash & mask;
+        while (edgeTable[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        edgeTable[slot] = edge + 1;
+    }
+
+    private void rehash() {
+        edgeTable = new int[edgeTable.length * 2];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            int offset = edge * EDGE_INTS;
+            insertEdge(edge, hash(edges[offset + CALLER], edges[offset + CALLEE], edges[offset + FILE],
+                edges[offset + BEGIN_LINE], edges[offset + BEGIN_COLUMN], edges[offset + END_LINE],
+                edges[offset + END_COLUMN]));
+        }
+    }
+
+    private static int hash(int caller, int callee, int file, SourceLocation callSite) {
+        return hash(caller, callee, file, callSite.getBeginLine(), callSite.getBeginColumn(),
+            callSite.getEndLine(), callSite.getEndColumn());
+    }
+
+    private static int hash(int caller, int callee, int file, int beginLine, int beginColumn, int endLine, int endColumn) {
+        int hash = caller;
+        hash = 31 * hash + callee;
+        hash = 31 * hash + file;
+        hash = 31 * hash + beginLine;
+        hash = 31 * hash + beginColumn;
+        hash = 31 * hash + endLine;
+        hash = 31 * hash + endColumn;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * An immutable view of the graph with forward and reverse adjacency.
+     * <p>
+     * Edges are numbered in the order they were added. The outgoing edges of a method, in that order, are
+     * {@code outEdge(i)} for {@code outStart(id) <= i < outEnd(id)}; incoming edges work the same way.
+     */
+    public static final class Snapshot {
+        private final JavaMethod[] methods;
+        private final int methodCount;
+        private final String[] files;
+        private final int[] edges;
+        private final int edgeCount;
+        private final int[] outOffsets;
+        private final int[] outEdges;
+        private final int[] inOffsets;
+        private final int[] inEdges;
+        private final int[] callers;
+        private final int[] connected;
+
+        private Snapshot(JavaMethod[] methods, int methodCount, String[] files, int[] edges, int edgeCount) {
+            this.methods = methods;
+            this.methodCount = methodCount;
+            this.files = files;
+            this.edges = edges;
+            this.edgeCount = edgeCount;
+
+            this.outOffsets = new int[methodCount + 1];
+            this.inOffsets = new int[methodCount + 1];
+            for (int edge = 0; edge < edgeCount; edge++) {
+                outOffsets[edges[edge * EDGE_INTS + CALLER] + 1]++;
+                inOffsets[edges[edge * EDGE_INTS + CALLEE] + 1]++;
+            }
+            int callerCount = 0;
+            int connectedCount = 0;
+            for (int id = 0; id < methodCount; id++) {
+                if (outOffsets[id + 1] > 0) {
+                    callerCount++;
+                }
+                if (outOffsets[id + 1] > 0 || inOffsets[id + 1] > 0) {
+                    connectedCount++;
+                }
+            }
+            this.callers = new int[callerCount];
+            this.connected = new int[connectedCount];
+            callerCount = 0;
+            connectedCount = 0;
+            for (int id = 0; id < methodCount; id++) {
+                if (outOffsets[id + 1] > 0) {
+                    callers[callerCount++] = id;
+                }
+                if (outOffsets[id + 1] > 0 || inOffsets[id + 1] > 0) {
+                    connected[connectedCount++] = id;
+                }
+                outOffsets[id + 1] += outOffsets[id];
+                inOffsets[id + 1] += inOffsets[id];
+            }
+
+            // Counting sort, stable so each method's edges keep their insertion order
+            this.outEdges = new int[edgeCount];
+            this.inEdges = new int[edgeCount];
+            int[] outNext = Arrays.copyOf(outOffsets, methodCount);
+            int[] inNext = Arrays.copyOf(inOffsets, methodCount);
+            for (int edge = 0; edge < edgeCount; edge++) {
+                outEdges[outNext[edges[edge * EDGE_INTS + CALLER]]++] = edge;
+                inEdges[inNext[edges[edge * EDGE_INTS + CALLEE]]++] = edge;
+            }
+        }
+
+        public int getMethodCount() {
+            return methodCount;
+        }
+
+        public int getEdgeCount() {
+            return edgeCount;
+        }
+
+        public JavaMethod method(int id) {
+            return methods[id];
+        }
+
+        public int outStart(int id) {
+            return id < methodCount ? outOffsets[id] : 0;
+        }
+
+        public int outEnd(int id) {
+            return id < methodCount ? outOffsets[id + 1] : 0;
+        }
+
+        public int outEdge(int index) {
+            return outEdges[index];
+        }
+
+        public int inStart(int id) {
+            return id < methodCount ? inOffsets[id] : 0;
+        }
+
+        public int inEnd(int id) {
+            return id < methodCount ? inOffsets[id + 1] : 0;
+        }
+
+        public int inEdge(int index) {
+            return inEdges[index];
+        }
+
+        public int caller(int edge) {
+            return edges[edge * EDGE_INTS + CALLER];
+        }
+
+        public int callee(int edge) {
+            return edges[edge * EDGE_INTS + CALLEE];
+        }
+
+        /**
+         * @param edge The edge number
+         * @return The path of the file containing the call site of the edge
+         */
+        public String callSitePath(int edge) {
+            return files[edges[edge * EDGE_INTS + FILE]];
+        }
+
+        public int callSiteBeginLine(int edge) {
+            return edges[edge * EDGE_INTS + BEGIN_LINE];
+        }
+
+        public int callSiteBeginColumn(int edge) {
+            return edges[edge * EDGE_INTS + BEGIN_COLUMN];
+        }
+
+        public int callSiteEndLine(int edge) {
+            return edges[edge * EDGE_INTS + END_LINE];
+        }
+
+        public int callSiteEndColumn(int edge) {
+            return edges[edge * EDGE_INTS + END_COLUMN];
+        }
+
+        /**
+         * @param edge The edge number
+         * @return A new location object for the call site of the edge
+         */
+        public SourceLocation callSite(int edge) {
+            int offset = edge * EDGE_INTS;
+            return new SourceLocation(files[edges[offset + FILE]], edges[offset + BEGIN_LINE],
+                edges[offset + BEGIN_COLUMN], edges[offset + END_LINE], edges[offset + END_COLUMN]);
+        }
+
+        /**
+         * @param edge The edge number
+         * @return A new dependency object for the edge
+         */
+        public MethodDependency dependency(int edge) {
+            return new MethodDependency(methods[caller(edge)], methods[callee(edge)], callSite(edge));
+        }
+
+        /**
+         * @return The number of methods with at least one outgoing edge
+         */
+        public int callerCount() {
+            return callers.length;
+        }
+
+        /**
+         * @param index The position among the methods with outgoing edges, which are in ascending ID order
+         * @return The ID of the method
+         */
+        public int callerAt(int index) {
+            return callers[index];
+        }
+
+        /**
+         * @return The number of methods with at least one edge
+         */
+        public int connectedCount() {
+            return connected.length;
+        }
+
+        /**
+         * @param index The position among the methods with edges, which are in ascending ID order
+         * @return The ID of the method
+         */
+        public int connectedAt(int index) {
+            return connected[index];
+        }
+
+        /**
+         * @param id The method ID, or -1
+         * @return True if the method has at least one edge
+         */
+        public boolean isConnected(int id) {
+            return id >= 0 && id < methodCount && (outOffsets[id + 1] > outOffsets[id] || inOffsets[id + 1] > inOffsets[id]);
+        }
+    }
+}
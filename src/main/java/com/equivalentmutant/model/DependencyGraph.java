@@ -1,43 +1,186 @@
 package com.equivalentmutant.model;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents a graph of method dependencies.
+ * <p>
+ * The methods, calls and depths are stored in a {@link CompactGraph}; the collections returned here are
+ * read-only views of it as of the call, and their dependency objects are created as they are iterated.
+ * Dependencies and depths may be added concurrently while the graph is being built.
  */
 public class DependencyGraph {
-    private final Map<JavaMethod, Set<MethodDependency>> dependencies = new HashMap<>();
+    private final CompactGraph graph = new CompactGraph();
+    private final Map<JavaMethod, TruncationReason> truncatedMethods = new ConcurrentHashMap<>();
     private final JavaMethod rootMethod;
+    private volatile TruncationReason truncationReason;
+    private volatile int droppedCallCount;
+    private volatile boolean stale;
 
     public DependencyGraph(JavaMethod rootMethod) {
         this.rootMethod = rootMethod;
+        // The root always has ID 0 in the compact graph
+        graph.intern(rootMethod);
     }
 
-    public void addDependency(MethodDependency dependency) {
-        JavaMethod caller = dependency.getCaller();
-        dependencies.computeIfAbsent(caller, k -> new HashSet<>()).add(dependency);
+    /**
+     * Adds a dependency to the graph.
+     *
+     * @param dependency The dependency to add
+     * @return True if the dependency was not already present
+     */
+    public boolean addDependency(MethodDependency dependency) {
+        return graph.addEdge(dependency.getCaller(), dependency.getCallee(), dependency.getCallSite());
     }
 
+    /**
+     * Records the call distance of a method from the root, keeping the shortest distance seen.
+     *
+     * @param method The method
+     * @param depth The number of calls between the root and the method
+     */
+    public void recordDepth(JavaMethod method, int depth) {
+        graph.recordDepth(method, depth);
+    }
+
+    /**
+     * Returns the shortest call distance of a method from the root.
+     *
+     * @param method The method
+     * @return The depth, or -1 if it has not been recorded
+     */
+    public int getDepth(JavaMethod method) {
+        return graph.getDepth(method);
+    }
+
+    /**
+     * Marks a method whose dependencies were cut short by a traversal budget.
+     *
+     * @param method The method that was not fully expanded
+     * @param reason The first limit that cut it
+     */
+    public void markTruncated(JavaMethod method, TruncationReason reason) {
+        truncatedMethods.putIfAbsent(method, reason);
+    }
+
+    /**
+     * Returns the methods that were not fully expanded, with the reason for each.
+     *
+     * @return An unmodifiable view of the truncated methods
+     */
+    public Map<JavaMethod, TruncationReason> getTruncatedMethods() {
+        return Collections.unmodifiableMap(truncatedMethods);
+    }
+
+    /**
+     * Records why the traversal building this graph stopped early and how many resolved calls it left out.
+     *
+     * @param reason The budget that was exhausted
+     * @param droppedCallCount The number of resolved calls not added as dependencies
+     */
+    public void setTruncation(TruncationReason reason, int droppedCallCount) {
+        this.truncationReason = reason;
+        this.droppedCallCount = droppedCallCount;
+    }
+
+    /**
+     * Checks whether the graph is incomplete because a traversal budget ran out.
+     *
+     * @return True if the graph was truncated
+     */
+    public boolean isTruncated() {
+        return truncationReason != null;
+    }
+
+    /**
+     * Returns why the graph was truncated.
+     *
+     * @return The reason, or null if the graph is complete
+     */
+    public TruncationReason getTruncationReason() {
+        return truncationReason;
+    }
+
+    public int getDroppedCallCount() {
+        return droppedCallCount;
+    }
+
+    /**
+     * Marks the graph as out of date because methods it depends on were changed in the source.
+     */
+    public void markStale() {
+        stale = true;
+    }
+
+    /**
+     * Checks whether the source has changed in a way that may affect this graph since it was built.
+     *
+     * @return True if the graph should be rebuilt
+     */
+    public boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * Returns the calls made by a method.
+     *
+     * @param method The calling method
+     * @return A read-only view of the calls, in the order they were added
+     */
     public Set<MethodDependency> getDependenciesForMethod(JavaMethod method) {
-        return dependencies.getOrDefault(method, Collections.emptySet());
+        CompactGraph.Snapshot snapshot = graph.snapshot();
+        int id = graph.idOf(method);
+        return id < 0 ? Collections.emptySet() : new EdgeSet(snapshot, id, true);
+    }
+
+    /**
+     * Returns the calls made to a method.
+     *
+     * @param method The called method
+     * @return A read-only view of the calls, in the order they were added
+     */
+    public Set<MethodDependency> getCallersOfMethod(JavaMethod method) {
+        CompactGraph.Snapshot snapshot = graph.snapshot();
+        int id = graph.idOf(method);
+        return id < 0 ? Collections.emptySet() : new EdgeSet(snapshot, id, false);
     }
 
+    /**
+     * Returns every method that calls or is called by another method in the graph.
+     *
+     * @return A read-only view of the methods, in the order they were first added
+     */
     public Set<JavaMethod> getAllMethods() {
-        Set<JavaMethod> allMethods = new HashSet<>(dependencies.keySet());
-        for (Set<MethodDependency> deps : dependencies.values()) {
-            for (MethodDependency dep : deps) {
-                allMethods.add(dep.getCallee());
-            }
-        }
-        return allMethods;
+        return new MethodSet(graph, graph.snapshot());
     }
 
     public JavaMethod getRootMethod() {
         return rootMethod;
     }
 
+    /**
+     * Returns the calls of every calling method.
+     *
+     * @return A read-only view mapping each method with calls to its calls, in the order the callers were
+     *         first added
+     */
     public Map<JavaMethod, Set<MethodDependency>> getAllDependencies() {
-        return new HashMap<>(dependencies);
+        return new DependencyMap(graph, graph.snapshot());
+    }
+
+    /**
+     * @return The number of calls in the graph
+     */
+    public int getDependencyCount() {
+        return graph.getEdgeCount();
+    }
+
+    /**
+     * @return The underlying graph, for traversals working on method IDs
+     */
+    public CompactGraph getCompactGraph() {
+        return graph;
     }
 
     @Override
@@ -45,7 +188,7 @@ public class DependencyGraph {
         StringBuilder builder = new StringBuilder();
         builder.append("Dependency Graph for ").append(rootMethod.getSignature()).append(":\n");
         
-        for (Map.Entry<JavaMethod, Set<MethodDependency>> entry : dependencies.entrySet()) {
+        for (Map.Entry<JavaMethod, Set<MethodDependency>> entry : getAllDependencies().entrySet()) {
             builder.append("  ").append(entry.getKey().getSignature()).append(" calls:\n");
             for (MethodDependency dependency : entry.getValue()) {
                 builder.append("    ").append(dependency.getCallee().getSignature())
@@ -55,4 +198,151 @@ public class DependencyGraph {
         
         return builder.toString();
     }
-} 
\ No newline at end of file
+
+    /**
+     * The outgoing or incoming calls of one method in a snapshot.
+     */
+    private static class EdgeSet extends AbstractSet<MethodDependency> {
+        private final CompactGraph.Snapshot snapshot;
+        private final boolean outgoing;
+        private final int start;
+        private final int end;
+
+        EdgeSet(CompactGraph.Snapshot snapshot, int id, boolean outgoing) {
+            this.snapshot = snapshot;
+            this.outgoing = outgoing;
+            this.start = outgoing ? snapshot.outStart(id) : snapshot.inStart(id);
+            this.end = outgoing ? snapshot.outEnd(id) : snapshot.inEnd(id);
+        }
+
+        @Override
+        public Iterator<MethodDependency> iterator() {
+            return new Iterator<MethodDependency>() {
+                private int next = start;
+
+                @Override
+                public boolean hasNext() {
+                    return next < end;
+                }
+
+                @Override
+                public MethodDependency next() {
+                    if (next >= end) {
+                        throw new NoSuchElementException();
+                    }
+                    int index = next++;
+                    return snapshot.dependency(outgoing ? snapshot.outEdge(index) : snapshot.inEdge(index));
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return end - start;
+        }
+    }
+
+    /**
+     * The methods with at least one call in a snapshot.
+     */
+    private static class MethodSet extends AbstractSet<JavaMethod> {
+        private final CompactGraph graph;
+        private final CompactGraph.Snapshot snapshot;
+
+        MethodSet(CompactGraph graph, CompactGraph.Snapshot snapshot) {
+            this.graph = graph;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public Iterator<JavaMethod> iterator() {
+            return new Iterator<JavaMethod>() {
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    return next < snapshot.connectedCount();
+                }
+
+                @Override
+                public JavaMethod next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return snapshot.method(snapshot.connectedAt(next++));
+                }
+            };
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return snapshot.isConnected(graph.idOf(o));
+        }
+
+        @Override
+        public int size() {
+            return snapshot.connectedCount();
+        }
+    }
+
+    /**
+     * The calls of every calling method in a snapshot.
+     */
+    private static class DependencyMap extends AbstractMap<JavaMethod, Set<MethodDependency>> {
+        private final CompactGraph graph;
+        private final CompactGraph.Snapshot snapshot;
+
+        DependencyMap(CompactGraph graph, CompactGraph.Snapshot snapshot) {
+            this.graph = graph;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public Set<MethodDependency> get(Object key) {
+            int id = graph.idOf(key);
+            return id >= 0 && snapshot.outEnd(id) > snapshot.outStart(id) ? new EdgeSet(snapshot, id, true) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return snapshot.callerCount();
+        }
+
+        @Override
+        public Set<Map.Entry<JavaMethod, Set<MethodDependency>>> entrySet() {
+            return new AbstractSet<Map.Entry<JavaMethod, Set<MethodDependency>>>() {
+                @Override
+                public Iterator<Map.Entry<JavaMethod, Set<MethodDependency>>> iterator() {
+                    return new Iterator<Map.Entry<JavaMethod, Set<MethodDependency>>>() {
+                        private int next;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < snapshot.callerCount();
+                        }
+
+                        @Override
+                        public Map.Entry<JavaMethod, Set<MethodDependency>> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            int id = snapshot.callerAt(next++);
+                            return new AbstractMap.SimpleImmutableEntry<>(snapshot.method(id),
+                                new EdgeSet(snapshot, id, true));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return snapshot.callerCount();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.equivalentmutant.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+
+/**
+ * Identifies a particular version of a source file by its modification time, size and content hash.
+ */
+public class FileFingerprint {
+    private final long lastModified;
+    private final long size;
+    private final long contentHash;
+
+    public FileFingerprint(long lastModified, long size, long contentHash) {
+        this.lastModified = lastModified;
+        this.size = size;
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * Creates a fingerprint for a file whose content has already been read.
+     *
+     * @param path The file the content was read from
+     * @param content The file content
+     * @return The fingerprint
+     * @throws IOException If the file attributes cannot be read
+     */
+    public static FileFingerprint of(Path path, byte[] content) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return new FileFingerprint(attributes.lastModifiedTime().toMillis(), content.length, hash(content));
+    }
+
+    /**
+     * Reads a file and creates its fingerprint.
+     *
+     * @param path The file to fingerprint
+     * @return The fingerprint
+     * @throws IOException If the file cannot be read
+     */
+    public static FileFingerprint of(Path path) throws IOException {
+        return of(path, Files.readAllBytes(path));
+    }
+
+    /**
+     * Computes a 64-bit content hash (the leading bytes of the SHA-256 digest).
+     *
+     * @param content The bytes to hash
+     * @return The hash
+     */
+    public static long hash(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            long hash = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                hash = (hash << 8) | (digest[i] & 0xFF);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Checks whether the file attributes still match without reading the content.
+     *
+     * @param lastModified The current modification time
+     * @param size The current size
+     * @return True if both match
+     */
+    public boolean matchesAttributes(long lastModified, long size) {
+        return this.lastModified == lastModified && this.size == size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        FileFingerprint that = (FileFingerprint) o;
+        return lastModified == that.lastModified && size == that.size && contentHash == that.contentHash;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(lastModified, size, contentHash);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d bytes, modified %d, hash %016x", size, lastModified, contentHash);
+    }
+}
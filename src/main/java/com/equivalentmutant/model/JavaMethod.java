@@ -1,11 +1,16 @@
 package com.equivalentmutant.model;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.List;
 import java.util.Objects;
 
 /**
  * Represents a Java method with its source code and location information.
+ * <p>
+ * Methods read from source files refer to their code by offsets into a {@link SourceText} and slice it
+ * only when the code is asked for. Names other than the signature are the canonical instances of the
+ * {@link SymbolTable}, and the derived names and the hash code are computed once.
  */
 public class JavaMethod {
     private final String packageName;
@@ -13,21 +18,55 @@ public class JavaMethod {
     private final String methodName;
     private final String signature;
     private final String sourceCode;
+    private final SourceText sourceText;
+    private final int sourceBegin;
+    private final int sourceEnd;
     private final SourceLocation location;
     private final boolean isStatic;
     private final List<String> parameterTypes;
+    private final String qualifiedClassName;
+    private final String fullyQualifiedName;
+    private final int hashCode;
+    private volatile String declarationKey;
     
     public JavaMethod(String packageName, String className, String methodName, 
                      String signature, String sourceCode, SourceLocation location, 
                      boolean isStatic, List<String> parameterTypes) {
-        this.packageName = packageName;
-        this.className = className;
-        this.methodName = methodName;
+        this(packageName, className, methodName, signature, sourceCode, null, 0, 0, location, isStatic, parameterTypes);
+    }
+    
+    /**
+     * Creates a method whose source code is a part of a source file.
+     * 
+     * @param sourceText The file declaring the method
+     * @param sourceBegin The offset of the first character of the method, including its comment
+     * @param sourceEnd The offset after the last character of the method
+     */
+    public JavaMethod(String packageName, String className, String methodName,
+                      String signature, SourceText sourceText, int sourceBegin, int sourceEnd,
+                      SourceLocation location, boolean isStatic, List<String> parameterTypes) {
+        this(packageName, className, methodName, signature, null, sourceText, sourceBegin, sourceEnd, location,
+            isStatic, parameterTypes);
+    }
+    
+    private JavaMethod(String packageName, String className, String methodName, String signature,
+                       String sourceCode, SourceText sourceText, int sourceBegin, int sourceEnd,
+                       SourceLocation location, boolean isStatic, List<String> parameterTypes) {
+        SymbolTable symbols = SymbolTable.shared();
+        this.packageName = symbols.intern(packageName);
+        this.className = symbols.intern(className);
+        this.methodName = symbols.intern(methodName);
         this.signature = signature;
         this.sourceCode = sourceCode;
+        this.sourceText = sourceText;
+        this.sourceBegin = sourceBegin;
+        this.sourceEnd = sourceEnd;
         this.location = location;
         this.isStatic = isStatic;
-        this.parameterTypes = new ArrayList<>(parameterTypes);
+        this.parameterTypes = symbols.intern(parameterTypes);
+        this.qualifiedClassName = qualifiedClassName(packageName, className);
+        this.fullyQualifiedName = qualifiedClassName + "." + methodName;
+        this.hashCode = Objects.hash(this.packageName, this.className, this.signature);
     }
 
     public String getPackageName() {
@@ -46,8 +85,42 @@ public class JavaMethod {
         return signature;
     }
 
+    /**
+     * Returns the source code of the method as written, reading it from the source file if needed.
+     * 
+     * @return The source code
+     */
     public String getSourceCode() {
-        return sourceCode;
+        return sourceText == null ? sourceCode : sourceText.slice(sourceBegin, sourceEnd);
+    }
+
+    /**
+     * Writes the source code of the method, straight from the file text when it is sliced from a file.
+     * 
+     * @param out The writer
+     * @throws IOException If writing fails
+     */
+    public void writeSourceCode(Writer out) throws IOException {
+        if (sourceText == null) {
+            out.write(sourceCode);
+        } else {
+            sourceText.writeTo(out, sourceBegin, sourceEnd);
+        }
+    }
+
+    /**
+     * @return The file the source code is sliced from, or null if the code is held directly
+     */
+    public SourceText getSourceText() {
+        return sourceText;
+    }
+
+    public int getSourceBegin() {
+        return sourceBegin;
+    }
+
+    public int getSourceEnd() {
+        return sourceEnd;
     }
 
     public SourceLocation getLocation() {
@@ -58,12 +131,61 @@ public class JavaMethod {
         return isStatic;
     }
 
+    /**
+     * @return An unmodifiable list of the parameter types
+     */
     public List<String> getParameterTypes() {
-        return new ArrayList<>(parameterTypes);
+        return parameterTypes;
+    }
+
+    /**
+     * Returns a key identifying the method by its class, name and parameter types, which tells overloads
+     * apart and stays the same when the method moves within its file. Resolved call sites refer to their
+     * target by this key, so a call indexed before its target's file was edited still finds the target.
+     *
+     * @return The key
+     */
+    public String getDeclarationKey() {
+        String key = declarationKey;
+        if (key == null) {
+            key = declarationKey(qualifiedClassName, methodName, parameterTypes);
+            declarationKey = key;
+        }
+        return key;
+    }
+
+    /**
+     * Builds the declaration key of a method.
+     *
+     * @param qualifiedClassName The declaring class as returned by {@link #getQualifiedClassName()}
+     * @param methodName The method name
+     * @param parameterTypes The parameter types as written in the declaration
+     * @return The key
+     */
+    public static String declarationKey(String qualifiedClassName, String methodName, List<String> parameterTypes) {
+        return qualifiedClassName + "." + methodName + "(" + String.join(",", parameterTypes) + ")";
     }
 
     public String getFullyQualifiedName() {
-        return packageName + "." + className + "." + methodName;
+        return fullyQualifiedName;
+    }
+
+    /**
+     * Returns the name of the declaring class in the form used by {@link #getFullyQualifiedName()}.
+     *
+     * @return The package and class name
+     */
+    public String getQualifiedClassName() {
+        return qualifiedClassName;
+    }
+
+    /**
+     * @param packageName The package name, possibly empty
+     * @param className The simple class name
+     * @return The canonical qualified class name as returned by {@link #getQualifiedClassName()}
+     */
+    public static String qualifiedClassName(String packageName, String className) {
+        return SymbolTable.shared().intern(packageName + "." + className);
     }
 
     @Override
@@ -71,12 +193,14 @@ public class JavaMethod {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         JavaMethod that = (JavaMethod) o;
-        return Objects.equals(signature, that.signature);
+        return Objects.equals(signature, that.signature) &&
+               Objects.equals(className, that.className) &&
+               Objects.equals(packageName, that.packageName);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(signature);
+        return hashCode;
     }
 
     @Override
@@ -0,0 +1,112 @@
+package com.equivalentmutant.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Information about a method call.
+ */
+public class MethodCallInfo {
+    
+    /**
+     * Placeholder used for argument types that have not been resolved.
+     */
+    public static final String UNKNOWN_TYPE = "Unknown";
+    
+    /**
+     * Target key of a call that resolves to a method outside the indexed sources, such as a JDK method.
+     */
+    public static final String EXTERNAL_TARGET = "external";
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final List<String>[] UNKNOWN_ARGUMENT_TYPES = new List[16];
+    static {
+        for (int arity = 0; arity < UNKNOWN_ARGUMENT_TYPES.length; arity++) {
+            UNKNOWN_ARGUMENT_TYPES[arity] = Collections.nCopies(arity, UNKNOWN_TYPE);
+        }
+    }
+    
+    private final String methodName;
+    private final List<String> argumentTypes;
+    private final SourceLocation location;
+    private final String targetKey;
+    private final String receiverClass;
+    
+    public MethodCallInfo(String methodName, List<String> argumentTypes, SourceLocation location) {
+        this(methodName, argumentTypes, location, null);
+    }
+    
+    /**
+     * Creates the information of a call whose target declaration is known.
+     * 
+     * @param methodName The name of the called method
+     * @param argumentTypes The types of the arguments
+     * @param location The location of the call
+     * @param targetKey The {@link JavaMethod#getDeclarationKey() declaration key} of the called method,
+     *                  {@link #EXTERNAL_TARGET}, or null if the call was not resolved
+     */
+    public MethodCallInfo(String methodName, List<String> argumentTypes, SourceLocation location, String targetKey) {
+        this(methodName, argumentTypes, location, targetKey, null);
+    }
+    
+    /**
+     * Creates the information of a call whose target declaration or receiver class is known.
+     * 
+     * @param methodName The name of the called method
+     * @param argumentTypes The types of the arguments
+     * @param location The location of the call
+     * @param targetKey The {@link JavaMethod#getDeclarationKey() declaration key} of the called method,
+     *                  {@link #EXTERNAL_TARGET}, or null if the call was not resolved
+     * @param receiverClass The {@link JavaMethod#getQualifiedClassName() qualified name} of the class the call
+     *                      is made on, known for unqualified and {@code this.} calls, or null
+     */
+    public MethodCallInfo(String methodName, List<String> argumentTypes, SourceLocation location, String targetKey,
+                          String receiverClass) {
+        this.methodName = methodName;
+        this.argumentTypes = argumentTypes;
+        this.location = location;
+        this.targetKey = targetKey;
+        this.receiverClass = receiverClass;
+    }
+    
+    /**
+     * Creates the argument type list for a call whose argument types are not resolved.
+     * 
+     * @param arity The number of arguments
+     * @return A shared list of {@link #UNKNOWN_TYPE} entries
+     */
+    public static List<String> unknownArgumentTypes(int arity) {
+        return arity < UNKNOWN_ARGUMENT_TYPES.length ? UNKNOWN_ARGUMENT_TYPES[arity] : Collections.nCopies(arity, UNKNOWN_TYPE);
+    }
+    
+    public String getMethodName() {
+        return methodName;
+    }
+    
+    public List<String> getArgumentTypes() {
+        return argumentTypes;
+    }
+    
+    public SourceLocation getLocation() {
+        return location;
+    }
+    
+    /**
+     * @return The declaration key of the called method, {@link #EXTERNAL_TARGET}, or null if not resolved
+     */
+    public String getTargetKey() {
+        return targetKey;
+    }
+    
+    /**
+     * @return The qualified name of the class the call is made on, or null if unknown
+     */
+    public String getReceiverClass() {
+        return receiverClass;
+    }
+    
+    @Override
+    public String toString() {
+        return methodName + "/" + argumentTypes.size() + " at " + location;
+    }
+}
@@ -1,5 +1,7 @@
 package com.equivalentmutant.model;
 
+import java.util.Objects;
+
 /**
  * Represents a location in source code.
  */
@@ -38,6 +40,23 @@ public class SourceLocation {
         return endColumn;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SourceLocation that = (SourceLocation) o;
+        return beginLine == that.beginLine &&
+               beginColumn == that.beginColumn &&
+               endLine == that.endLine &&
+               endColumn == that.endColumn &&
+               Objects.equals(filePath, that.filePath);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(filePath, beginLine, beginColumn, endLine, endColumn);
+    }
+
     @Override
     public String toString() {
         return filePath + ":" + beginLine + ":" + beginColumn + " to " + endLine + ":" + endColumn;
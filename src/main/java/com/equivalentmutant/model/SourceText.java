@@ -0,0 +1,139 @@
+package com.equivalentmutant.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * The text of one indexed source file, from which method source code is sliced on demand.
+ * <p>
+ * Methods refer to their text by character offsets into the file as it was when it was indexed. The text
+ * is held through a soft reference, so files that are not being printed cost nothing but this object; a
+ * reclaimed text is read again on the next access and checked against the content hash recorded at
+ * indexing time, since offsets into a changed file would slice the wrong code.
+ */
+public class SourceText {
+    private final String filePath;
+    private final long contentHash;
+    private volatile SoftReference<Text> text;
+
+    /**
+     * Creates a reference to a file whose text is read when first needed.
+     *
+     * @param filePath The path of the file
+     * @param contentHash The {@link FileFingerprint#hash(byte[]) content hash} of the indexed version
+     */
+    public SourceText(String filePath, long contentHash) {
+        this.filePath = filePath;
+        this.contentHash = contentHash;
+        this.text = new SoftReference<>(null);
+    }
+
+    /**
+     * Creates a reference to a file whose text has already been read.
+     *
+     * @param filePath The path of the file
+     * @param contentHash The content hash of the indexed version
+     * @param content The decoded text of the indexed version
+     */
+    public SourceText(String filePath, long contentHash, String content) {
+        this.filePath = filePath;
+        this.contentHash = contentHash;
+        this.text = new SoftReference<>(new Text(content));
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * Converts a parser position to a character offset.
+     *
+     * @param line The line, starting at 1
+     * @param column The column, starting at 1, counting a tab as one column
+     * @return The offset of the character at that position
+     */
+    public int offset(int line, int column) {
+        Text current = text();
+        if (line < 1 || line > current.lineStarts.length) {
+            throw new IllegalArgumentException("Line " + line + " is outside " + filePath);
+        }
+        return Math.min(current.lineStarts[line - 1] + column - 1, current.content.length());
+    }
+
+    /**
+     * Returns a part of the text.
+     *
+     * @param begin The offset of the first character
+     * @param end The offset after the last character
+     * @return The text between the offsets
+     */
+    public String slice(int begin, int end) {
+        return text().content.substring(begin, end);
+    }
+
+    /**
+     * Writes a part of the text without copying it.
+     *
+     * @param out The writer
+     * @param begin The offset of the first character
+     * @param end The offset after the last character
+     * @throws IOException If writing fails
+     */
+    public void writeTo(Writer out, int begin, int end) throws IOException {
+        out.write(text().content, begin, end - begin);
+    }
+
+    private Text text() {
+        Text current = text.get();
+        if (current != null) {
+            return current;
+        }
+        byte[] content;
+        try {
+            content = Files.readAllBytes(Paths.get(filePath));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read file: " + filePath, e);
+        }
+        if (FileFingerprint.hash(content) != contentHash) {
+            throw new IllegalStateException("Source file changed since it was indexed: " + filePath);
+        }
+        current = new Text(new String(content, StandardCharsets.UTF_8));
+        text = new SoftReference<>(current);
+        return current;
+    }
+
+    /**
+     * Decoded file content with the offsets at which its lines start.
+     */
+    private static class Text {
+        private final String content;
+        private final int[] lineStarts;
+
+        Text(String content) {
+            this.content = content;
+            int[] starts = new int[64];
+            int lines = 1;
+            for (int i = 0; i < content.length(); i++) {
+                char c = content.charAt(i);
+                // A line ends at \n, \r\n or a lone \r, as in the parser
+                if (c == '\n' || (c == '\r' && (i + 1 == content.length() || content.charAt(i + 1) != '\n'))) {
+                    if (lines == starts.length) {
+                        starts = Arrays.copyOf(starts, lines * 2);
+                    }
+                    starts[lines++] = i + 1;
+                }
+            }
+            this.lineStarts = Arrays.copyOf(starts, lines);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.equivalentmutant.model;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Canonical instances of the names the model is made of: package, class, method and type names, file paths
+ * and call targets, and lists of parameter types.
+ * <p>
+ * Thousands of methods share a handful of packages, classes, types and files, so the model classes keep the
+ * canonical instance of each name instead of their own copy. Canonical instances are also compared by
+ * identity first, which makes equality checks between model objects cheap. Names that seldom repeat, such
+ * as signatures with their parameter names, are better kept as they are.
+ * <p>
+ * The table holds its canonical instances weakly: once no model object refers to a name any more, the name
+ * and its entry are dropped, so long-running processes that index edited files again and again keep only
+ * the names of their current model.
+ */
+public final class SymbolTable {
+
+    private static final SymbolTable SHARED = new SymbolTable();
+
+    private final WeakInterner<String> strings = new WeakInterner<>();
+    private final WeakInterner<List<String>> lists = new WeakInterner<>();
+
+    /**
+     * @return The table used by the model classes
+     */
+    public static SymbolTable shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the canonical instance of a string.
+     *
+     * @param value The string, or null
+     * @return The canonical instance equal to the string, or null
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        return strings.intern(value, UnaryOperator.identity());
+    }
+
+    /**
+     * Returns the canonical instance of a list of strings.
+     *
+     * @param values The list
+     * @return An unmodifiable list of canonical strings equal to the given list
+     */
+    public List<String> intern(List<String> values) {
+        if (values.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return lists.intern(values, list -> {
+            List<String> interned = new ArrayList<>(list.size());
+            for (String value : list) {
+                interned.add(intern(value));
+            }
+            return Collections.unmodifiableList(interned);
+        });
+    }
+
+    /**
+     * @return The number of canonical strings still referred to, or not yet dropped
+     */
+    public int size() {
+        return strings.size();
+    }
+
+    /**
+     * A concurrent set of canonical instances held by weak references. Entries are looked up with a
+     * {@link Probe} that holds the value strongly, and entries whose instance was collected are removed on
+     * the next call.
+     */
+    private static final class WeakInterner<T> {
+
+        private final Map<Object, Canonical<T>> instances = new ConcurrentHashMap<>();
+        private final ReferenceQueue<T> collected = new ReferenceQueue<>();
+
+        T intern(T value, UnaryOperator<T> copy) {
+            removeCollected();
+            T canonical = get(instances.get(new Probe(value)));
+            if (canonical != null) {
+                return canonical;
+            }
+            T created = copy.apply(value);
+            Canonical<T> entry = new Canonical<>(created, value.hashCode(), collected);
+            while (true) {
+                Canonical<T> existing = instances.putIfAbsent(entry, entry);
+                if (existing == null) {
+                    return created;
+                }
+                canonical = existing.get();
+                if (canonical != null) {
+                    return canonical;
+                }
+                // The equal instance was collected between the lookup and now
+                instances.remove(existing, existing);
+            }
+        }
+
+        int size() {
+            removeCollected();
+            return instances.size();
+        }
+
+        private void removeCollected() {
+            Object reference;
+            while ((reference = collected.poll()) != null) {
+                instances.remove(reference, reference);
+            }
+        }
+
+        private static <T> T get(Canonical<T> entry) {
+            return entry == null ? null : entry.get();
+        }
+    }
+
+    /**
+     * The weakly held key and value of an entry. A collected entry is only equal to itself.
+     */
+    private static final class Canonical<T> extends WeakReference<T> {
+
+        private final int hashCode;
+
+        Canonical(T value, int hashCode, ReferenceQueue<T> queue) {
+            super(value, queue);
+            this.hashCode = hashCode;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            Object value = get();
+            if (value == null) {
+                return false;
+            }
+            if (other instanceof Canonical) {
+                return value.equals(((Canonical<?>) other).get());
+            }
+            return other instanceof Probe && value.equals(((Probe) other).value);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * A strongly held value to look up its entry with.
+     */
+    private static final class Probe {
+
+        private final Object value;
+
+        Probe(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Canonical && other.equals(this);
+        }
+
+        @Override
+        public int hashCode() {
+            return value.hashCode();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.equivalentmutant.model;
+
+/**
+ * Why a method in a dependency graph was not fully expanded.
+ */
+public enum TruncationReason {
+    /**
+     * The method made more calls than the per-method fan-out limit allows.
+     */
+    FAN_OUT,
+    
+    /**
+     * The graph reached its maximum number of methods.
+     */
+    NODE_LIMIT,
+    
+    /**
+     * The graph reached its maximum number of dependencies.
+     */
+    EDGE_LIMIT,
+    
+    /**
+     * The traversal ran past its deadline.
+     */
+    DEADLINE
+}
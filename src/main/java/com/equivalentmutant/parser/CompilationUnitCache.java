@@ -0,0 +1,248 @@
+package com.equivalentmutant.parser;
+
+import com.equivalentmutant.model.FileFingerprint;
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.model.SourceText;
+import com.equivalentmutant.stats.FileParseEvent;
+import com.equivalentmutant.stats.PipelineStats;
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.Position;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.MethodDeclaration;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of parsed compilation units shared by the components that need a file's AST.
+ * <p>
+ * Entries are keyed by the normalized file path and validated against the file's content hash, so an
+ * edited file is re-parsed while an unchanged one is parsed at most once. The cache keeps at most
+ * {@code maxEntries} units in LRU order and holds them through soft references, so the garbage collector
+ * can reclaim them under memory pressure.
+ */
+public class CompilationUnitCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 512;
+
+    private final Map<String, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public CompilationUnitCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public CompilationUnitCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxEntries);
+        }
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the compilation unit for the given file, parsing it only if it is not cached or has changed.
+     *
+     * @param sourceFile The Java source file
+     * @param parser The parser to use on a cache miss
+     * @return The parsed compilation unit
+     * @throws FileNotFoundException If the source file cannot be found
+     */
+    public CompilationUnit getCompilationUnit(File sourceFile, JavaParser parser) throws FileNotFoundException {
+        Path path = sourceFile.toPath().toAbsolutePath().normalize();
+        String key = path.toString();
+
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            throw new FileNotFoundException(sourceFile.getPath());
+        }
+        long lastModified = attributes.lastModifiedTime().toMillis();
+
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+
+        // Unchanged attributes are enough to trust the cached unit without reading the file
+        if (entry != null && entry.fingerprint.matchesAttributes(lastModified, attributes.size())) {
+            CompilationUnit cached = entry.unit.get();
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+
+        long start = PipelineStats.startTimer();
+        FileParseEvent event = new FileParseEvent();
+        event.begin();
+        byte[] content;
+        try {
+            content = Files.readAllBytes(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read file: " + sourceFile.getPath(), e);
+        }
+        FileFingerprint fingerprint = new FileFingerprint(lastModified, content.length, FileFingerprint.hash(content));
+
+        // The file was touched but its content is the same
+        if (entry != null && entry.fingerprint.getContentHash() == fingerprint.getContentHash()) {
+            CompilationUnit cached = entry.unit.get();
+            if (cached != null) {
+                hits.incrementAndGet();
+                put(key, new Entry(fingerprint, entry.unit, entry.text));
+                return cached;
+            }
+        }
+
+        misses.incrementAndGet();
+        String text = new String(content, StandardCharsets.UTF_8);
+        ParseResult<CompilationUnit> parseResult = parser.parse(text);
+        if (!parseResult.isSuccessful() || !parseResult.getResult().isPresent()) {
+            throw new RuntimeException("Failed to parse file: " + sourceFile.getPath());
+        }
+
+        CompilationUnit cu = parseResult.getResult().get();
+        put(key, new Entry(fingerprint, new SoftReference<>(cu), new SourceText(key, fingerprint.getContentHash(), text)));
+        if (PipelineStats.isEnabled()) {
+            PipelineStats.global().recordParse(content.length, start);
+        }
+        if (event.shouldCommit()) {
+            event.path = key;
+            event.bytes = content.length;
+            event.commit();
+        }
+        return cu;
+    }
+
+    /**
+     * Finds the declaration of an indexed method in its parsed file.
+     *
+     * @param method The method
+     * @param parser The parser to use on a cache miss
+     * @return The declaration starting at the method's location, or empty if the file declares none there
+     * @throws FileNotFoundException If the source file cannot be found
+     */
+    public Optional<MethodDeclaration> findDeclaration(JavaMethod method, JavaParser parser)
+            throws FileNotFoundException {
+        CompilationUnit cu = getCompilationUnit(new File(method.getLocation().getFilePath()), parser);
+        int line = method.getLocation().getBeginLine();
+        int column = method.getLocation().getBeginColumn();
+        for (MethodDeclaration declaration : cu.findAll(MethodDeclaration.class)) {
+            Optional<Position> begin = declaration.getBegin();
+            if (begin.isPresent() && begin.get().line == line && begin.get().column == column
+                    && declaration.getNameAsString().equals(method.getMethodName())) {
+                return Optional.of(declaration);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Returns the text of a file as last parsed through this cache.
+     *
+     * @param sourceFile The Java source file
+     * @return The text matching the cached compilation unit
+     * @throws FileNotFoundException If the file was evicted and cannot be read again
+     */
+    public SourceText getSourceText(File sourceFile) throws FileNotFoundException {
+        Path path = sourceFile.toPath().toAbsolutePath().normalize();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(path.toString());
+        }
+        if (entry != null) {
+            return entry.text;
+        }
+        try {
+            return new SourceText(path.toString(), FileFingerprint.hash(Files.readAllBytes(path)));
+        } catch (IOException e) {
+            throw new FileNotFoundException(sourceFile.getPath());
+        }
+    }
+
+    /**
+     * Drops the cached unit for a file, if any.
+     *
+     * @param sourceFile The file to invalidate
+     */
+    public void invalidate(File sourceFile) {
+        String key = sourceFile.toPath().toAbsolutePath().normalize().toString();
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Drops all cached units.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    private void put(String key, Entry entry) {
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "CompilationUnitCache[size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses()
+            + ", evictions=" + getEvictions() + "]";
+    }
+
+    private static class Entry {
+        private final FileFingerprint fingerprint;
+        private final SoftReference<CompilationUnit> unit;
+        private final SourceText text;
+
+        Entry(FileFingerprint fingerprint, SoftReference<CompilationUnit> unit, SourceText text) {
+            this.fingerprint = fingerprint;
+            this.unit = unit;
+            this.text = text;
+        }
+    }
+}
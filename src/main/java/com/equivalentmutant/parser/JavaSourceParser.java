@@ -1,47 +1,85 @@
 package com.equivalentmutant.parser;
 
+import com.equivalentmutant.model.CallSiteTable;
 import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.model.MethodCallInfo;
 import com.equivalentmutant.model.SourceLocation;
+import com.equivalentmutant.model.SourceText;
+import com.equivalentmutant.model.SymbolTable;
+import com.equivalentmutant.stats.CallExtractionEvent;
+import com.equivalentmutant.stats.PipelineStats;
 import com.github.javaparser.JavaParser;
-import com.github.javaparser.ParseResult;
+import com.github.javaparser.Position;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.comments.Comment;
+import com.github.javaparser.ast.expr.MethodCallExpr;
 import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
+import com.github.javaparser.symbolsolver.JavaSymbolSolver;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.Optional;
 
 /**
  * Parser for Java source files.
+ * <p>
+ * A parser is not thread-safe; concurrent indexing uses one parser per thread.
  */
 public class JavaSourceParser {
     
     private final JavaParser parser;
+    private final CompilationUnitCache unitCache;
+    private final CallSiteTable callSiteTable;
+    private final SymbolResolution symbolResolution;
+    private final JavaSymbolSolver symbolSolver;
     
     public JavaSourceParser() {
+        this(new CompilationUnitCache(), new CallSiteTable());
+    }
+    
+    public JavaSourceParser(CompilationUnitCache unitCache, CallSiteTable callSiteTable) {
+        this(unitCache, callSiteTable, null);
+    }
+    
+    /**
+     * Creates a parser that resolves the target of every call it records.
+     * 
+     * @param unitCache The cache of parsed compilation units
+     * @param callSiteTable The table receiving the call sites
+     * @param symbolResolution The call resolution to use, or null to record calls by name only
+     */
+    public JavaSourceParser(CompilationUnitCache unitCache, CallSiteTable callSiteTable,
+                            SymbolResolution symbolResolution) {
         this.parser = new JavaParser();
+        this.unitCache = unitCache;
+        this.callSiteTable = callSiteTable;
+        this.symbolResolution = symbolResolution;
+        this.symbolSolver = symbolResolution == null ? null : symbolResolution.createSymbolSolver();
     }
     
     /**
      * Parse a Java source file and extract all methods.
+     * <p>
+     * The call sites of every extracted method are recorded in the parser's call-site table in the same pass.
      * 
      * @param sourceFile The Java source file to parse
      * @return A list of JavaMethod objects
      * @throws FileNotFoundException If the source file cannot be found
      */
     public List<JavaMethod> parseFile(File sourceFile) throws FileNotFoundException {
-        ParseResult<CompilationUnit> parseResult = parser.parse(sourceFile);
-        
-        if (!parseResult.isSuccessful() || !parseResult.getResult().isPresent()) {
-            throw new RuntimeException("Failed to parse file: " + sourceFile.getPath());
+        CompilationUnit cu = unitCache.getCompilationUnit(sourceFile, parser);
+        SourceText sourceText = unitCache.getSourceText(sourceFile);
+        if (symbolSolver != null) {
+            // The unit may have been parsed by another parser, so attach this thread's solver
+            symbolSolver.inject(cu);
         }
-        
-        CompilationUnit cu = parseResult.getResult().get();
         List<JavaMethod> methods = new ArrayList<>();
         
         // Extract the package name
@@ -50,24 +88,55 @@ public class JavaSourceParser {
                               .orElse("");
         
         // Visit all method declarations
-        cu.accept(new MethodVisitor(sourceFile.getPath(), packageName, methods), null);
+        long start = PipelineStats.startTimer();
+        CallExtractionEvent event = new CallExtractionEvent();
+        event.begin();
+        cu.accept(new MethodVisitor(SymbolTable.shared().intern(sourceFile.getPath()), sourceText, packageName, methods, callSiteTable,
+            symbolSolver == null ? null : symbolResolution), null);
         
+        if (PipelineStats.isEnabled() || event.shouldCommit()) {
+            int callSites = 0;
+            for (JavaMethod method : methods) {
+                callSites += callSiteTable.get(method).size();
+            }
+            if (PipelineStats.isEnabled()) {
+                PipelineStats.global().recordExtraction(callSites, start);
+            }
+            if (event.shouldCommit()) {
+                event.source = sourceFile.getPath();
+                event.callSites = callSites;
+                event.commit();
+            }
+        }
         return methods;
     }
     
+    public CallSiteTable getCallSiteTable() {
+        return callSiteTable;
+    }
+    
     /**
-     * Visitor to extract method information from a compilation unit.
+     * Visitor to extract method information and method calls from a compilation unit.
      */
     private static class MethodVisitor extends VoidVisitorAdapter<Void> {
         private final String filePath;
+        private final SourceText sourceText;
         private final String packageName;
         private final List<JavaMethod> methods;
+        private final CallSiteTable callSiteTable;
+        private final SymbolResolution symbolResolution;
+        // Call lists of the methods currently being visited, innermost last
+        private final Deque<List<MethodCallInfo>> enclosingCalls = new ArrayDeque<>();
         private String currentClassName = "";
         
-        public MethodVisitor(String filePath, String packageName, List<JavaMethod> methods) {
+        public MethodVisitor(String filePath, SourceText sourceText, String packageName, List<JavaMethod> methods,
+                             CallSiteTable callSiteTable, SymbolResolution symbolResolution) {
             this.filePath = filePath;
+            this.sourceText = sourceText;
             this.packageName = packageName;
             this.methods = methods;
+            this.callSiteTable = callSiteTable;
+            this.symbolResolution = symbolResolution;
         }
         
         @Override
@@ -107,9 +176,6 @@ public class JavaSourceParser {
             signatureBuilder.append(")");
             String signature = signatureBuilder.toString();
             
-            // Get source code (preserving original formatting and comments)
-            String sourceCode = methodDecl.toString();
-            
             // Create source location
             SourceLocation location = new SourceLocation(
                 filePath,
@@ -119,13 +185,23 @@ public class JavaSourceParser {
                 methodDecl.getEnd().map(pos -> pos.column).orElse(0)
             );
             
+            // The source code is sliced from the file when needed, from the comment to the closing brace
+            Position codeBegin = methodDecl.getComment()
+                .flatMap(Comment::getBegin)
+                .orElse(methodDecl.getBegin().orElse(Position.HOME));
+            Position codeEnd = methodDecl.getEnd().orElse(Position.HOME);
+            int sourceBegin = sourceText.offset(codeBegin.line, codeBegin.column);
+            int sourceEnd = sourceText.offset(codeEnd.line, codeEnd.column) + 1;
+            
             // Create and add the JavaMethod object
             JavaMethod method = new JavaMethod(
                 packageName,
                 currentClassName,
                 methodName,
                 signature,
-                sourceCode,
+                sourceText,
+                sourceBegin,
+                sourceEnd,
                 location,
                 isStatic,
                 parameterTypes
@@ -133,7 +209,46 @@ public class JavaSourceParser {
             
             methods.add(method);
             
+            // Collect the calls made in the body, including those of nested local and anonymous classes
+            List<MethodCallInfo> calls = new ArrayList<>();
+            enclosingCalls.addLast(calls);
             super.visit(methodDecl, arg);
+            enclosingCalls.removeLast();
+            
+            callSiteTable.put(method, calls);
+        }
+        
+        @Override
+        public void visit(MethodCallExpr methodCallExpr, Void arg) {
+            if (!enclosingCalls.isEmpty()) {
+                SourceLocation location = new SourceLocation(
+                    filePath,
+                    methodCallExpr.getBegin().map(pos -> pos.line).orElse(0),
+                    methodCallExpr.getBegin().map(pos -> pos.column).orElse(0),
+                    methodCallExpr.getEnd().map(pos -> pos.line).orElse(0),
+                    methodCallExpr.getEnd().map(pos -> pos.column).orElse(0)
+                );
+                
+                // Unqualified and this-qualified calls are made on the enclosing class
+                String receiverClass = null;
+                if (!methodCallExpr.getScope().isPresent() || methodCallExpr.getScope().get().isThisExpr()) {
+                    receiverClass = JavaMethod.qualifiedClassName(packageName, currentClassName);
+                }
+                
+                // Argument types are not recorded, only the arity is known
+                MethodCallInfo callInfo = new MethodCallInfo(
+                    SymbolTable.shared().intern(methodCallExpr.getNameAsString()),
+                    MethodCallInfo.unknownArgumentTypes(methodCallExpr.getArguments().size()),
+                    location,
+                    symbolResolution == null ? null : symbolResolution.resolveTarget(methodCallExpr),
+                    receiverClass
+                );
+                for (List<MethodCallInfo> calls : enclosingCalls) {
+                    calls.add(callInfo);
+                }
+            }
+            
+            super.visit(methodCallExpr, arg);
         }
     }
 } 
\ No newline at end of file
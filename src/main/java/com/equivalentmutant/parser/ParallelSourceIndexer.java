@@ -0,0 +1,266 @@
+package com.equivalentmutant.parser;
+
+import com.equivalentmutant.model.CallSiteTable;
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.stats.FileDiscoveryEvent;
+import com.equivalentmutant.stats.PipelineStats;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Indexes a source tree, or several, on several threads.
+ * <p>
+ * One thread walks the trees one after another and feeds the discovered {@code .java} files into a bounded queue, while the
+ * worker threads take files from the queue and parse them, each with its own {@link JavaSourceParser}
+ * since JavaParser instances are not thread-safe. Workers share the compilation unit cache and call-site
+ * table and publish their results into a concurrent map. The result is ordered by file path, so it is
+ * the same whatever the number of threads.
+ * <p>
+ * What happens to each file is decided by a {@link FileProcessor}; by default the file is simply parsed.
+ */
+public class ParallelSourceIndexer {
+
+    private static final Path END_OF_FILES = Path.of("");
+    private static final int QUEUE_CAPACITY_PER_THREAD = 64;
+
+    private final CompilationUnitCache unitCache;
+    private final CallSiteTable callSiteTable;
+    private final int threads;
+    private final SymbolResolution symbolResolution;
+
+    public ParallelSourceIndexer(CompilationUnitCache unitCache, CallSiteTable callSiteTable, int threads) {
+        this(unitCache, callSiteTable, threads, null);
+    }
+
+    /**
+     * @param unitCache The cache of parsed compilation units
+     * @param callSiteTable The table receiving the call sites
+     * @param threads The number of parsing threads
+     * @param symbolResolution The call resolution used by every worker's parser, or null
+     */
+    public ParallelSourceIndexer(CompilationUnitCache unitCache, CallSiteTable callSiteTable, int threads,
+                                 SymbolResolution symbolResolution) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        }
+        this.unitCache = unitCache;
+        this.callSiteTable = callSiteTable;
+        this.threads = threads;
+        this.symbolResolution = symbolResolution;
+    }
+
+    /**
+     * @return The call resolution used by the workers, or null if calls are recorded by name only
+     */
+    public SymbolResolution getSymbolResolution() {
+        return symbolResolution;
+    }
+
+    /**
+     * Processes a single discovered source file on a worker thread.
+     *
+     * @param <T> The per-file result type
+     */
+    public interface FileProcessor<T> {
+        /**
+         * @param file The source file
+         * @param parser The parser confined to the current worker thread
+         * @return The result for the file
+         * @throws IOException If the file cannot be read
+         */
+        T process(Path file, JavaSourceParser parser) throws IOException;
+    }
+
+    /**
+     * Parses every Java file below the given directory.
+     *
+     * @param root The source directory
+     * @return The methods of each file, ordered by file path
+     * @throws IOException If the directory cannot be walked or a file cannot be read
+     */
+    public SortedMap<Path, List<JavaMethod>> index(Path root) throws IOException {
+        return index(root, (file, parser) -> parser.parseFile(file.toFile()));
+    }
+
+    /**
+     * Runs a processor on every Java file below the given directory.
+     *
+     * @param <T> The per-file result type
+     * @param root The source directory
+     * @param processor The processor applied to each file
+     * @return The result of each file, ordered by file path
+     * @throws IOException If the directory cannot be walked or a file cannot be read
+     */
+    public <T> SortedMap<Path, T> index(Path root, FileProcessor<T> processor) throws IOException {
+        return index(Collections.singletonList(root), processor);
+    }
+
+    /**
+     * Runs a processor on every Java file below any of the given directories. The workers are shared by
+     * all directories, so a directory with few files does not leave threads idle.
+     *
+     * @param <T> The per-file result type
+     * @param roots The source directories
+     * @param processor The processor applied to each file
+     * @return The result of each file, ordered by file path
+     * @throws IOException If a directory cannot be walked or a file cannot be read
+     */
+    public <T> SortedMap<Path, T> index(List<Path> roots, FileProcessor<T> processor) throws IOException {
+        BlockingQueue<Path> queue = new ArrayBlockingQueue<>(threads * QUEUE_CAPACITY_PER_THREAD);
+        Map<Path, T> results = new ConcurrentHashMap<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        try {
+            executor.execute(() -> discoverFiles(roots, queue, failure));
+            for (int i = 0; i < threads; i++) {
+                executor.execute(() -> processFiles(queue, processor, results, failure));
+            }
+            executor.shutdown();
+            awaitTermination(executor);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Throwable error = failure.get();
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        } else if (error instanceof UncheckedIOException) {
+            throw ((UncheckedIOException) error).getCause();
+        } else if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        } else if (error != null) {
+            throw new RuntimeException("Indexing failed: " + error.getMessage(), error);
+        }
+
+        return new TreeMap<>(results);
+    }
+
+    /**
+     * Flattens indexed files into a single method list in file order.
+     *
+     * @param methodsByFile The indexing result
+     * @return All methods
+     */
+    public static List<JavaMethod> allMethods(Map<Path, List<JavaMethod>> methodsByFile) {
+        List<JavaMethod> methods = new ArrayList<>();
+        for (List<JavaMethod> fileMethods : methodsByFile.values()) {
+            methods.addAll(fileMethods);
+        }
+        return methods;
+    }
+
+    private void discoverFiles(List<Path> roots, BlockingQueue<Path> queue, AtomicReference<Throwable> failure) {
+        try {
+            for (Path root : roots) {
+                if (failure.get() != null) {
+                    break;
+                }
+                discoverFiles(root, queue, failure);
+            }
+        } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            // Every worker stops at its own end marker
+            for (int i = 0; i < threads; i++) {
+                putUninterruptibly(queue, END_OF_FILES);
+            }
+        }
+    }
+
+    private void discoverFiles(Path root, BlockingQueue<Path> queue, AtomicReference<Throwable> failure)
+            throws IOException, InterruptedException {
+        long start = PipelineStats.startTimer();
+        FileDiscoveryEvent event = new FileDiscoveryEvent();
+        event.begin();
+        int files = 0;
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (failure.get() != null) {
+                    break;
+                }
+                if (path.getFileName().toString().endsWith(".java") && Files.isRegularFile(path)) {
+                    queue.put(path);
+                    files++;
+                }
+            }
+        }
+        if (PipelineStats.isEnabled()) {
+            PipelineStats.global().recordDiscovery(files, start);
+        }
+        if (event.shouldCommit()) {
+            event.root = root.toString();
+            event.files = files;
+            event.commit();
+        }
+    }
+
+    private <T> void processFiles(BlockingQueue<Path> queue, FileProcessor<T> processor, Map<Path, T> results,
+                                  AtomicReference<Throwable> failure) {
+        JavaSourceParser parser = new JavaSourceParser(unitCache, callSiteTable, symbolResolution);
+        while (true) {
+            Path path;
+            try {
+                path = queue.take();
+            } catch (InterruptedException e) {
+                failure.compareAndSet(null, e);
+                return;
+            }
+            if (path == END_OF_FILES) {
+                return;
+            }
+            // After a failure keep draining so the discovery thread never blocks on a full queue
+            if (failure.get() != null) {
+                continue;
+            }
+            try {
+                results.put(path, processor.process(path, parser));
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        }
+    }
+
+    private static void putUninterruptibly(BlockingQueue<Path> queue, Path path) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(path);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // Keep waiting, large trees can take a while
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while indexing", e);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.equivalentmutant.parser;
+
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.model.MethodCallInfo;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.resolution.declarations.ResolvedMethodDeclaration;
+import com.github.javaparser.symbolsolver.JavaSymbolSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ClassLoaderTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resolves method calls to their declarations with the JavaParser symbol solver while files are parsed.
+ * <p>
+ * Types are looked up in the given source roots, in the JDK and in an optional library class path. A call
+ * that resolves to a method declared in the sources is recorded with the
+ * {@link JavaMethod#getDeclarationKey() declaration key} of that method, so the receiver type and overload
+ * are settled once at indexing time and stored with the call site. The key does not depend on where the
+ * method lies in its file, so it stays valid when that file is edited and the calling file is not. Calls into
+ * the JDK or the libraries are marked as external, and calls that cannot be resolved, for example into
+ * libraries missing from the class path, are left for name-based matching.
+ * <p>
+ * Symbol solvers and their type caches are not thread-safe, so each parser gets its own through
+ * {@link #createSymbolSolver()}. A solver keeps the source files it has read, so one is only used for
+ * files parsed at about the same time. The statistics are shared.
+ * <p>
+ * The type solvers parse the source files they look types up in themselves, outside the
+ * {@link CompilationUnitCache}, so each referenced file is parsed again by every solver that needs it: at
+ * worst once per indexing thread and once per update, on top of the parse that indexes it.
+ */
+public class SymbolResolution {
+
+    private final List<Path> sourceRoots;
+    private final ClassLoader libraryLoader;
+    private final LongAdder resolvedCalls = new LongAdder();
+    private final LongAdder externalCalls = new LongAdder();
+    private final LongAdder unresolvedCalls = new LongAdder();
+
+    /**
+     * @param sourceRoots The package roots of the sources; roots that are not directories are ignored
+     */
+    public SymbolResolution(List<Path> sourceRoots) {
+        this(sourceRoots, Collections.emptyList());
+    }
+
+    /**
+     * @param sourceRoots The package roots of the sources; roots that are not directories are ignored
+     * @param classPath Jar files and class directories of the libraries the sources use
+     */
+    public SymbolResolution(List<Path> sourceRoots, List<Path> classPath) {
+        this.sourceRoots = new ArrayList<>(sourceRoots);
+        if (classPath.isEmpty()) {
+            this.libraryLoader = null;
+        } else {
+            URL[] urls = new URL[classPath.size()];
+            for (int i = 0; i < urls.length; i++) {
+                try {
+                    urls[i] = classPath.get(i).toUri().toURL();
+                } catch (MalformedURLException e) {
+                    throw new IllegalArgumentException("Invalid class path entry: " + classPath.get(i), e);
+                }
+            }
+            // No parent, so the analyzer's own libraries never stand in for the analyzed project's
+            this.libraryLoader = new URLClassLoader(urls, null);
+        }
+    }
+
+    /**
+     * Creates a symbol solver for use by a single thread.
+     *
+     * @return The symbol solver
+     */
+    public JavaSymbolSolver createSymbolSolver() {
+        CombinedTypeSolver typeSolver = new CombinedTypeSolver(new ReflectionTypeSolver());
+        for (Path sourceRoot : sourceRoots) {
+            if (Files.isDirectory(sourceRoot)) {
+                typeSolver.add(new JavaParserTypeSolver(sourceRoot));
+            }
+        }
+        if (libraryLoader != null) {
+            typeSolver.add(new ClassLoaderTypeSolver(libraryLoader));
+        }
+        return new JavaSymbolSolver(typeSolver);
+    }
+
+    /**
+     * Resolves the declaration called by an expression.
+     *
+     * @param call The call, part of a compilation unit the symbol solver has been injected into
+     * @return The target key for {@link MethodCallInfo}, or null if the call cannot be resolved
+     */
+    String resolveTarget(MethodCallExpr call) {
+        ResolvedMethodDeclaration declaration;
+        try {
+            declaration = call.resolve();
+        } catch (RuntimeException | StackOverflowError e) {
+            // Unsolved symbols, unsupported constructs and solver limitations all end up here
+            unresolvedCalls.increment();
+            return null;
+        }
+
+        Optional<MethodDeclaration> node = declaration.toAst(MethodDeclaration.class);
+        if (!node.isPresent()) {
+            externalCalls.increment();
+            return MethodCallInfo.EXTERNAL_TARGET;
+        }
+        Optional<CompilationUnit> unit = node.get().findCompilationUnit();
+        if (!unit.isPresent()) {
+            unresolvedCalls.increment();
+            return null;
+        }
+
+        // The names the parser gives the declared method: the innermost named class, and the parameter
+        // types as written
+        String packageName = unit.get().getPackageDeclaration().map(pd -> pd.getName().asString()).orElse("");
+        // A single class still makes a generic varargs array
+        @SuppressWarnings("unchecked")
+        Optional<ClassOrInterfaceDeclaration> declaringClass = node.get().findAncestor(ClassOrInterfaceDeclaration.class);
+        String className = declaringClass.map(ClassOrInterfaceDeclaration::getNameAsString).orElse("");
+        List<String> parameterTypes = new ArrayList<>();
+        for (Parameter parameter : node.get().getParameters()) {
+            parameterTypes.add(parameter.getType().asString());
+        }
+        resolvedCalls.increment();
+        return JavaMethod.declarationKey(JavaMethod.qualifiedClassName(packageName, className),
+            node.get().getNameAsString(), parameterTypes);
+    }
+
+    /**
+     * @return The number of calls resolved to a method in the sources
+     */
+    public long getResolvedCalls() {
+        return resolvedCalls.sum();
+    }
+
+    /**
+     * @return The number of calls resolved to a method outside the sources
+     */
+    public long getExternalCalls() {
+        return externalCalls.sum();
+    }
+
+    /**
+     * @return The number of calls the symbol solver could not resolve
+     */
+    public long getUnresolvedCalls() {
+        return unresolvedCalls.sum();
+    }
+}
@@ -0,0 +1,333 @@
+package com.equivalentmutant.server;
+
+import com.equivalentmutant.batch.BatchAnalyzer;
+import com.equivalentmutant.batch.BatchTarget;
+import com.equivalentmutant.context.Json;
+import com.equivalentmutant.dependency.SubgraphCache;
+import com.equivalentmutant.dependency.TraversalBudget;
+import com.equivalentmutant.index.ReverseCallIndex;
+import com.equivalentmutant.index.SourceIndex;
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.parser.CompilationUnitCache;
+import com.equivalentmutant.stats.PipelineStats;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Serves analysis requests over HTTP from an index that stays in memory between requests.
+ * <p>
+ * The server listens on the loopback interface and handles each request on its own virtual thread. It
+ * offers these endpoints, all answering with JSON:
+ * <ul>
+ *   <li>{@code GET /analyze?class=C&method=M[&depth=D][&signature=S][&line=L[&column=C]]} returns the same
+ *       record as a batch run for that target</li>
+ *   <li>{@code GET /tests?class=C&method=M[&signature=S][&line=L]} lists the direct callers of the method and
+ *       the test methods that can reach it, once a {@link ReverseCallIndex} has been given</li>
+ *   <li>{@code GET /health} reports whether the server is up and how much is indexed</li>
+ *   <li>{@code GET /stats} reports request counts, latencies and cache statistics</li>
+ * </ul>
+ * Analyses hold the read lock of the source index, so they never see a file half way through an update.
+ * Whoever updates the index must drop cached subgraphs and replace the reverse call index from the update
+ * listener, while the write lock is still held.
+ */
+public class AnalyzerServer {
+
+    private final SourceIndex sourceIndex;
+    private final BatchAnalyzer analyzer;
+    private final CompilationUnitCache unitCache;
+    private final SubgraphCache subgraphCache;
+    private final int defaultDepth;
+    private final TraversalBudget budget;
+    private final long startTime = System.currentTimeMillis();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failedRequests = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final AtomicLong lastNanos = new AtomicLong();
+    private HttpServer server;
+    private ExecutorService executor;
+    private volatile ReverseCallIndex reverseCallIndex;
+
+    /**
+     * @param sourceIndex The index serving method lookups
+     * @param analyzer The analyzer that answers requests
+     * @param unitCache The compilation unit cache, reported in the statistics
+     * @param subgraphCache The subgraph cache used by the analyzer, or null; reported in the statistics
+     * @param defaultDepth The depth used when a request does not give one
+     * @param budget The limits for every traversal
+     */
+    public AnalyzerServer(SourceIndex sourceIndex, BatchAnalyzer analyzer, CompilationUnitCache unitCache,
+                          SubgraphCache subgraphCache, int defaultDepth, TraversalBudget budget) {
+        this.sourceIndex = sourceIndex;
+        this.analyzer = analyzer;
+        this.unitCache = unitCache;
+        this.subgraphCache = subgraphCache;
+        this.defaultDepth = defaultDepth;
+        this.budget = budget;
+    }
+
+    /**
+     * Sets the index answering {@code /tests}, replacing the previous one when the sources change.
+     *
+     * @param reverseCallIndex The index, or null to stop answering test queries
+     */
+    public void setReverseCallIndex(ReverseCallIndex reverseCallIndex) {
+        this.reverseCallIndex = reverseCallIndex;
+    }
+
+    /**
+     * Starts listening on the loopback interface.
+     *
+     * @param port The port, or 0 to pick a free one
+     * @throws IOException If the port cannot be bound
+     */
+    public synchronized void start(int port) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Server already started");
+        }
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/analyze", new JsonHandler(this::handleAnalyze));
+        server.createContext("/tests", new JsonHandler(this::handleTests));
+        server.createContext("/health", new JsonHandler(this::handleHealth));
+        server.createContext("/stats", new JsonHandler(this::handleStats));
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Stops the server, giving running requests a second to finish.
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(1);
+            executor.shutdown();
+            server = null;
+        }
+    }
+
+    /**
+     * @return The bound port
+     */
+    public synchronized int getPort() {
+        if (server == null) {
+            throw new IllegalStateException("Server not started");
+        }
+        return server.getAddress().getPort();
+    }
+
+    private Response handleAnalyze(Map<String, String> parameters) {
+        String className = parameters.get("class");
+        String methodName = parameters.get("method");
+        if (className == null || methodName == null) {
+            return new Response(400, error("Parameters 'class' and 'method' are required"));
+        }
+
+        int depth;
+        int line;
+        int column;
+        try {
+            depth = parameters.containsKey("depth") ? Integer.parseInt(parameters.get("depth")) : defaultDepth;
+            line = parameters.containsKey("line") ? Integer.parseInt(parameters.get("line")) : -1;
+            column = parameters.containsKey("column") ? Integer.parseInt(parameters.get("column")) : -1;
+        } catch (NumberFormatException e) {
+            return new Response(400, error("Invalid number: " + e.getMessage()));
+        }
+
+        BatchTarget target = new BatchTarget(0, className, methodName, parameters.get("signature"), line, column);
+        Lock readLock = sourceIndex.getReadLock();
+        readLock.lock();
+        try {
+            if (analyzer.findMethod(target) == null) {
+                return new Response(404, error("Target method not found: " + target));
+            }
+            return new Response(200, analyzer.analyze(target, depth, budget));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private Response handleTests(Map<String, String> parameters) {
+        Lock readLock = sourceIndex.getReadLock();
+        readLock.lock();
+        try {
+            return findTests(parameters);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private Response findTests(Map<String, String> parameters) {
+        ReverseCallIndex index = reverseCallIndex;
+        if (index == null) {
+            return new Response(404, error("No test directory is indexed"));
+        }
+        String className = parameters.get("class");
+        String methodName = parameters.get("method");
+        if (className == null || methodName == null) {
+            return new Response(400, error("Parameters 'class' and 'method' are required"));
+        }
+        int line;
+        try {
+            line = parameters.containsKey("line") ? Integer.parseInt(parameters.get("line")) : -1;
+        } catch (NumberFormatException e) {
+            return new Response(400, error("Invalid number: " + e.getMessage()));
+        }
+
+        BatchTarget target = new BatchTarget(0, className, methodName, parameters.get("signature"), line, -1);
+        JavaMethod method = analyzer.findMethod(target);
+        if (method == null) {
+            return new Response(404, error("Target method not found: " + target));
+        }
+        return new Response(200, "{\"target\":" + Json.quote(target.toString())
+            + ",\"signature\":" + Json.quote(method.getSignature())
+            + ",\"callers\":" + namesOf(index.getCallers(method))
+            + ",\"tests\":" + namesOf(index.findReachingTests(method)) + "}");
+    }
+
+    private static String namesOf(List<JavaMethod> methods) {
+        StringBuilder json = new StringBuilder("[");
+        for (JavaMethod method : methods) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append(Json.quote(method.getFullyQualifiedName()));
+        }
+        return json.append(']').toString();
+    }
+
+    private Response handleHealth(Map<String, String> parameters) {
+        return new Response(200, "{\"status\":\"ok\",\"files\":" + sourceIndex.getFiles().size()
+            + ",\"callSites\":" + sourceIndex.getCallSiteTable().getCallSiteCount() + "}");
+    }
+
+    private Response handleStats(Map<String, String> parameters) {
+        long count = requests.sum();
+        return new Response(200, "{\"uptimeMillis\":" + (System.currentTimeMillis() - startTime)
+            + ",\"requests\":" + count
+            + ",\"failedRequests\":" + failedRequests.sum()
+            + ",\"meanMillis\":" + (count == 0 ? 0.0 : toMillis(totalNanos.sum() / (double) count))
+            + ",\"maxMillis\":" + toMillis(maxNanos.get())
+            + ",\"lastMillis\":" + toMillis(lastNanos.get())
+            + ",\"indexedMethods\":" + sourceIndex.getCallSiteTable().size()
+            + ",\"unitCache\":{\"size\":" + unitCache.size() + ",\"hits\":" + unitCache.getHits()
+            + ",\"misses\":" + unitCache.getMisses() + ",\"evictions\":" + unitCache.getEvictions() + "}"
+            + ",\"subgraphCache\":" + (subgraphCache == null ? "null" : "{\"size\":" + subgraphCache.size()
+                + ",\"totalSize\":" + subgraphCache.getTotalSize() + ",\"hits\":" + subgraphCache.getHits()
+                + ",\"misses\":" + subgraphCache.getMisses() + ",\"evictions\":" + subgraphCache.getEvictions() + "}")
+            + ",\"pipeline\":" + (PipelineStats.isEnabled() ? PipelineStats.global().toJson().trim() : "null")
+            + "}");
+    }
+
+    private static double toMillis(double nanos) {
+        return Math.round(nanos / TimeUnit.MILLISECONDS.toNanos(1) * 1000) / 1000.0;
+    }
+
+    private static String error(String message) {
+        return "{\"status\":\"error\",\"error\":" + Json.quote(message) + "}";
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    /**
+     * Handles the request of one endpoint.
+     */
+    private interface Endpoint {
+        Response handle(Map<String, String> parameters);
+    }
+
+    private static class Response {
+        private final int status;
+        private final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Adapts an endpoint to the HTTP server, recording timings and turning failures into error responses.
+     */
+    private class JsonHandler implements HttpHandler {
+        private final Endpoint endpoint;
+
+        JsonHandler(Endpoint endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            long start = System.nanoTime();
+            Response response;
+            try {
+                if (!"GET".equals(exchange.getRequestMethod())) {
+                    response = new Response(405, error("Only GET is supported"));
+                } else {
+                    response = handleQuery(exchange.getRequestURI().getRawQuery());
+                }
+            } catch (RuntimeException e) {
+                response = new Response(500, error(String.valueOf(e.getMessage())));
+            }
+
+            try {
+                byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+                exchange.sendResponseHeaders(response.status, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } finally {
+                exchange.close();
+                long elapsed = System.nanoTime() - start;
+                requests.increment();
+                if (response.status >= 400) {
+                    failedRequests.increment();
+                }
+                totalNanos.add(elapsed);
+                maxNanos.accumulate(elapsed);
+                lastNanos.set(elapsed);
+            }
+        }
+
+        private Response handleQuery(String query) {
+            Map<String, String> parameters;
+            try {
+                parameters = parseQuery(query);
+            } catch (IllegalArgumentException e) {
+                // A malformed escape is the client's error, like a malformed number
+                return new Response(400, error("Invalid query: " + e.getMessage()));
+            }
+            return endpoint.handle(parameters);
+        }
+    }
+}
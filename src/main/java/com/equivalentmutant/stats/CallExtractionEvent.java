@@ -0,0 +1,23 @@
+package com.equivalentmutant.stats;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for collecting the call sites of a parsed file, or of a method missing from the call-site table.
+ */
+@Name("com.equivalentmutant.CallExtraction")
+@Label("Call Extraction")
+@Category({"Equivalent Mutant Analyzer", "Indexing"})
+@Description("Call sites collected from parsed code")
+public class CallExtractionEvent extends Event {
+
+    @Label("Source")
+    public String source;
+
+    @Label("Call Sites")
+    public int callSites;
+}
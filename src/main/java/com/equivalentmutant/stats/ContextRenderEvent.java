@@ -0,0 +1,20 @@
+package com.equivalentmutant.stats;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for writing the context of a method and its dependencies.
+ */
+@Name("com.equivalentmutant.ContextRender")
+@Label("Context Render")
+@Category({"Equivalent Mutant Analyzer", "Analysis"})
+@Description("Method context written")
+public class ContextRenderEvent extends Event {
+
+    @Label("Root Method")
+    public String rootMethod;
+}
@@ -0,0 +1,23 @@
+package com.equivalentmutant.stats;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for the walk of a source tree looking for Java files.
+ */
+@Name("com.equivalentmutant.FileDiscovery")
+@Label("File Discovery")
+@Category({"Equivalent Mutant Analyzer", "Indexing"})
+@Description("Walk of a source tree")
+public class FileDiscoveryEvent extends Event {
+
+    @Label("Root")
+    public String root;
+
+    @Label("Files")
+    public int files;
+}
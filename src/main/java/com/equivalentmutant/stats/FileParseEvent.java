@@ -0,0 +1,25 @@
+package com.equivalentmutant.stats;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for reading and parsing one source file that was not in the cache.
+ */
+@Name("com.equivalentmutant.FileParse")
+@Label("File Parse")
+@Category({"Equivalent Mutant Analyzer", "Indexing"})
+@Description("Source file read and parsed")
+public class FileParseEvent extends Event {
+
+    @Label("Path")
+    public String path;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+}
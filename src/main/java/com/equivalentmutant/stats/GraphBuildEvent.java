@@ -0,0 +1,29 @@
+package com.equivalentmutant.stats;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for the traversal building the dependency graph of a method.
+ */
+@Name("com.equivalentmutant.GraphBuild")
+@Label("Graph Build")
+@Category({"Equivalent Mutant Analyzer", "Analysis"})
+@Description("Dependency graph built")
+public class GraphBuildEvent extends Event {
+
+    @Label("Root Method")
+    public String rootMethod;
+
+    @Label("Methods")
+    public int nodes;
+
+    @Label("Calls")
+    public int edges;
+
+    @Label("Truncated")
+    public boolean truncated;
+}
@@ -0,0 +1,261 @@
+package com.equivalentmutant.stats;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and timing histograms for each phase of an analysis: discovering files, parsing them,
+ * extracting call sites, resolving calls, traversing the graph and rendering the context.
+ * <p>
+ * Statistics are off by default. The instrumented code checks {@link #isEnabled()} before it reads the
+ * clock or records anything, so a disabled run pays one field read per instrumented operation. The
+ * statistics are process-wide and may be recorded from any thread.
+ */
+public final class PipelineStats {
+
+    /**
+     * How a call was resolved.
+     */
+    public enum Resolution {
+        /** Exactly one method matched. */
+        HIT,
+        /** No method matched. */
+        MISS,
+        /** Several methods matched and the first was taken. */
+        AMBIGUOUS
+    }
+
+    private static final PipelineStats GLOBAL = new PipelineStats();
+    private static volatile boolean enabled;
+
+    private final LongAdder filesDiscovered = new LongAdder();
+    private final Histogram discoveryTime = new Histogram();
+    private final LongAdder filesParsed = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final Histogram parseTime = new Histogram();
+    private final LongAdder callSitesExtracted = new LongAdder();
+    private final Histogram extractionTime = new Histogram();
+    private final LongAdder resolutionHits = new LongAdder();
+    private final LongAdder resolutionMisses = new LongAdder();
+    private final LongAdder resolutionAmbiguous = new LongAdder();
+    private final LongAdder graphNodes = new LongAdder();
+    private final LongAdder graphEdges = new LongAdder();
+    private final Histogram traversalTime = new Histogram();
+    private final LongAdder outputBytes = new LongAdder();
+    private final Histogram renderTime = new Histogram();
+
+    private PipelineStats() {
+    }
+
+    /**
+     * @return The statistics of this process
+     */
+    public static PipelineStats global() {
+        return GLOBAL;
+    }
+
+    /**
+     * @return True if statistics are being recorded
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns recording on or off. Operations already running when it is turned on are not counted.
+     *
+     * @param enabled True to record statistics
+     */
+    public static void setEnabled(boolean enabled) {
+        PipelineStats.enabled = enabled;
+    }
+
+    /**
+     * @return The current time in nanoseconds if statistics are enabled, or 0
+     */
+    public static long startTimer() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the walk of a source tree.
+     *
+     * @param files The number of source files found
+     * @param startNanos The {@link #startTimer() start time} of the walk
+     */
+    public void recordDiscovery(int files, long startNanos) {
+        filesDiscovered.add(files);
+        discoveryTime.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records a source file read and parsed from disk.
+     *
+     * @param bytes The size of the file
+     * @param startNanos The {@link #startTimer() start time} of the read
+     */
+    public void recordParse(long bytes, long startNanos) {
+        filesParsed.increment();
+        bytesRead.add(bytes);
+        parseTime.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records the call sites extracted from a parsed file or method.
+     *
+     * @param callSites The number of call sites
+     * @param startNanos The {@link #startTimer() start time} of the extraction
+     */
+    public void recordExtraction(int callSites, long startNanos) {
+        callSitesExtracted.add(callSites);
+        extractionTime.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records the outcome of resolving a call.
+     *
+     * @param resolution The outcome
+     */
+    public void recordResolution(Resolution resolution) {
+        switch (resolution) {
+            case HIT:
+                resolutionHits.increment();
+                break;
+            case MISS:
+                resolutionMisses.increment();
+                break;
+            default:
+                resolutionAmbiguous.increment();
+                break;
+        }
+    }
+
+    /**
+     * Records a dependency graph built by a traversal.
+     *
+     * @param nodes The number of methods in the graph
+     * @param edges The number of calls in the graph
+     * @param startNanos The {@link #startTimer() start time} of the traversal
+     */
+    public void recordTraversal(int nodes, int edges, long startNanos) {
+        graphNodes.add(nodes);
+        graphEdges.add(edges);
+        traversalTime.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records the rendering of a method context.
+     *
+     * @param startNanos The {@link #startTimer() start time} of the rendering
+     */
+    public void recordRender(long startNanos) {
+        renderTime.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records bytes written to the output, after any compression.
+     *
+     * @param bytes The number of bytes
+     */
+    public void recordOutput(long bytes) {
+        outputBytes.add(bytes);
+    }
+
+    public long getFilesParsed() {
+        return filesParsed.sum();
+    }
+
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    public long getResolutions(Resolution resolution) {
+        switch (resolution) {
+            case HIT:
+                return resolutionHits.sum();
+            case MISS:
+                return resolutionMisses.sum();
+            default:
+                return resolutionAmbiguous.sum();
+        }
+    }
+
+    public long getGraphNodes() {
+        return graphNodes.sum();
+    }
+
+    public long getGraphEdges() {
+        return graphEdges.sum();
+    }
+
+    public long getOutputBytes() {
+        return outputBytes.sum();
+    }
+
+    /**
+     * Clears every counter and histogram.
+     */
+    public void reset() {
+        for (LongAdder counter : new LongAdder[] {filesDiscovered, filesParsed, bytesRead, callSitesExtracted,
+                resolutionHits, resolutionMisses, resolutionAmbiguous, graphNodes, graphEdges, outputBytes}) {
+            counter.reset();
+        }
+        for (Histogram histogram : new Histogram[] {discoveryTime, parseTime, extractionTime, traversalTime,
+                renderTime}) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Writes the statistics as a JSON object, one member per phase. Times are in microseconds.
+     *
+     * @param out The destination
+     * @throws IOException If writing fails
+     */
+    public void writeJson(Appendable out) throws IOException {
+        out.append("{\n");
+        out.append("  \"discovery\": {\"files\": ").append(Long.toString(filesDiscovered.sum()))
+            .append(", \"time\": ").append(timing(discoveryTime)).append("},\n");
+        out.append("  \"parsing\": {\"files\": ").append(Long.toString(filesParsed.sum()))
+            .append(", \"bytesRead\": ").append(Long.toString(bytesRead.sum()))
+            .append(", \"timePerFile\": ").append(timing(parseTime)).append("},\n");
+        out.append("  \"callExtraction\": {\"callSites\": ").append(Long.toString(callSitesExtracted.sum()))
+            .append(", \"time\": ").append(timing(extractionTime)).append("},\n");
+        out.append("  \"resolution\": {\"hits\": ").append(Long.toString(resolutionHits.sum()))
+            .append(", \"misses\": ").append(Long.toString(resolutionMisses.sum()))
+            .append(", \"ambiguous\": ").append(Long.toString(resolutionAmbiguous.sum())).append("},\n");
+        out.append("  \"traversal\": {\"graphs\": ").append(Long.toString(traversalTime.getCount()))
+            .append(", \"nodes\": ").append(Long.toString(graphNodes.sum()))
+            .append(", \"edges\": ").append(Long.toString(graphEdges.sum()))
+            .append(", \"time\": ").append(timing(traversalTime)).append("},\n");
+        out.append("  \"rendering\": {\"contexts\": ").append(Long.toString(renderTime.getCount()))
+            .append(", \"outputBytes\": ").append(Long.toString(outputBytes.sum()))
+            .append(", \"time\": ").append(timing(renderTime)).append("}\n");
+        out.append("}\n");
+    }
+
+    /**
+     * @return The statistics as a JSON object
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(1024);
+        try {
+            writeJson(json);
+        } catch (IOException e) {
+            // A StringBuilder does not fail
+            throw new UncheckedIOException(e);
+        }
+        return json.toString();
+    }
+
+    private static String timing(Histogram histogram) {
+        return String.format(Locale.ROOT,
+            "{\"count\": %d, \"totalMicros\": %d, \"meanMicros\": %.1f, \"p50Micros\": %d, \"p90Micros\": %d, "
+                + "\"p99Micros\": %d, \"maxMicros\": %d}",
+            histogram.getCount(), histogram.getSum() / 1000, histogram.getMean() / 1000,
+            histogram.getPercentile(50) / 1000, histogram.getPercentile(90) / 1000,
+            histogram.getPercentile(99) / 1000, histogram.getMax() / 1000);
+    }
+}
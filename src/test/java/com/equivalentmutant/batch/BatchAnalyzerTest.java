@@ -0,0 +1,103 @@
+package com.equivalentmutant.batch;
+
+import com.equivalentmutant.context.MethodContextExtractor;
+import com.equivalentmutant.dependency.MethodDependencyTracker;
+import com.equivalentmutant.dependency.SimpleMethodResolver;
+import com.equivalentmutant.dependency.TraversalBudget;
+import com.equivalentmutant.index.SourceIndex;
+import com.equivalentmutant.model.CallSiteTable;
+import com.equivalentmutant.parser.CompilationUnitCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class BatchAnalyzerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testRecordsFollowTargetOrder() throws Exception {
+        Path source = tempDir.resolve("A.java");
+        Files.writeString(source, String.join("\n",
+            "package p;",
+            "class A {",
+            "    void leaf() {}",
+            "    void small() { leaf(); }",
+            "    void large() { small(); leaf(); mid(); }",
+            "    void mid() { small(); }",
+            "    int over(int x) { return x; }",
+            "    int over(String s) { leaf(); return 0; }",
+            "}"));
+        Path targetFile = tempDir.resolve("targets.txt");
+        Files.writeString(targetFile, String.join("\n",
+            "# class\tmethod\tsignature\tline",
+            "p.A\tleaf",
+            "p.A\tlarge",
+            "p.A\tmissing",
+            "p.A\tover\t-\t8:5",
+            ""));
+
+        CompilationUnitCache cache = new CompilationUnitCache();
+        CallSiteTable table = new CallSiteTable();
+        SimpleMethodResolver resolver = new SimpleMethodResolver();
+        SourceIndex index = new SourceIndex(source, cache, table, resolver);
+        index.build(1, null);
+        BatchAnalyzer analyzer = new BatchAnalyzer(index, new MethodDependencyTracker(cache, table), resolver,
+            new MethodContextExtractor(), 2);
+
+        List<BatchTarget> targets = new BatchTargetReader().read(targetFile);
+        StringWriter out = new StringWriter();
+        int failed = analyzer.analyze(targets, -1, TraversalBudget.UNLIMITED, out);
+
+        String[] records = out.toString().split("\n");
+        assertEquals(4, records.length);
+        assertEquals(1, failed);
+        for (int i = 0; i < records.length; i++) {
+            assertTrue(records[i].startsWith("{\"index\":" + i + ","), records[i]);
+        }
+        assertTrue(records[1].contains("\"methods\":4"), records[1]);
+        assertTrue(records[2].contains("\"status\":\"error\""), records[2]);
+        assertTrue(records[3].contains("\"signature\":\"int over(String s)\""), records[3]);
+    }
+
+    @Test
+    public void testRecordsFollowTargetOrderBeyondWindow() throws Exception {
+        Path source = tempDir.resolve("A.java");
+        Files.writeString(source, String.join("\n",
+            "package p;",
+            "class A {",
+            "    void leaf() {}",
+            "    void large() { leaf(); leaf(); leaf(); }",
+            "}"));
+        CompilationUnitCache cache = new CompilationUnitCache();
+        CallSiteTable table = new CallSiteTable();
+        SimpleMethodResolver resolver = new SimpleMethodResolver();
+        SourceIndex index = new SourceIndex(source, cache, table, resolver);
+        index.build(1, null);
+        BatchAnalyzer analyzer = new BatchAnalyzer(index, new MethodDependencyTracker(cache, table), resolver,
+            new MethodContextExtractor(), 2);
+
+        // Large targets further on are started ahead of small ones, but only within the window
+        StringBuilder lines = new StringBuilder();
+        int count = 5 * 2 * BatchAnalyzer.WINDOW_PER_THREAD;
+        for (int i = 0; i < count; i++) {
+            lines.append(i % 7 == 0 ? "p.A\tlarge\n" : "p.A\tleaf\n");
+        }
+        Path targetFile = tempDir.resolve("targets.txt");
+        Files.writeString(targetFile, lines);
+        StringWriter out = new StringWriter();
+        assertEquals(0, analyzer.analyze(new BatchTargetReader().read(targetFile), -1, TraversalBudget.UNLIMITED, out));
+
+        String[] records = out.toString().split("\n");
+        assertEquals(count, records.length);
+        for (int i = 0; i < records.length; i++) {
+            assertTrue(records[i].startsWith("{\"index\":" + i + ","), records[i]);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.equivalentmutant.context;
+
+import com.equivalentmutant.dependency.MethodDependencyTracker;
+import com.equivalentmutant.dependency.RecursiveDependencyResolver;
+import com.equivalentmutant.dependency.SimpleMethodResolver;
+import com.equivalentmutant.index.SourceIndex;
+import com.equivalentmutant.model.CallSiteTable;
+import com.equivalentmutant.model.DependencyGraph;
+import com.equivalentmutant.parser.CompilationUnitCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+public class ContextOutputTest {
+
+    @TempDir
+    Path tempDir;
+
+    private DependencyGraph graph;
+    private String context;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        // Text outside ASCII checks the encoding
+        Files.writeString(Files.createDirectories(tempDir.resolve("p")).resolve("A.java"), String.join("\n",
+            "package p;",
+            "class A {",
+            "    /** Größe in \u2713 and \uD83D\uDE00 */",
+            "    void run() { helper(); }",
+            "    void helper() { String s = \"\\u00e9\u00e9\"; }",
+            "}"));
+        CompilationUnitCache cache = new CompilationUnitCache();
+        CallSiteTable table = new CallSiteTable();
+        SimpleMethodResolver resolver = new SimpleMethodResolver();
+        SourceIndex index = new SourceIndex(tempDir, cache, table, resolver);
+        index.build(1, null);
+        graph = new RecursiveDependencyResolver(new MethodDependencyTracker(cache, table), resolver)
+            .buildDependencyGraph(index.findMethods("p.A.run").get(0), -1);
+        context = new MethodContextExtractor().extractMethodContext(graph);
+        assertTrue(context.contains("Größe in \u2713 and \uD83D\uDE00"), context);
+    }
+
+    @Test
+    public void testStreamedContextEqualsExtractedContext() throws Exception {
+        MethodContextExtractor extractor = new MethodContextExtractor();
+        Path file = tempDir.resolve("context.txt");
+        try (Writer out = ContextOutput.open(file, false)) {
+            // Written in the two parts the analysis streams while the graph is built
+            extractor.writeRootContext(graph.getRootMethod(), out);
+            extractor.writeDependencyContext(graph, out);
+        }
+        assertEquals(context, Files.readString(file, StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer out = ContextOutput.open(ContextOutput.shielded(bytes), false)) {
+            extractor.writeMethodContext(graph, out);
+        }
+        assertEquals(context, bytes.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testGzipOutputRoundTripsAndFlushesWhatIsWritten() throws Exception {
+        MethodContextExtractor extractor = new MethodContextExtractor();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Writer out = ContextOutput.open(bytes, true);
+        extractor.writeRootContext(graph.getRootMethod(), out);
+        out.flush();
+
+        // The root part can be read before the stream is finished
+        String root = context.substring(0, context.indexOf("\nDEPENDENCIES:\n"));
+        assertEquals(root, readAvailable(bytes.toByteArray()));
+
+        extractor.writeDependencyContext(graph, out);
+        out.close();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(context, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Decompresses an unfinished gzip stream as far as it goes.
+     */
+    private static String readAvailable(byte[] gzip) throws Exception {
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            int b;
+            while ((b = in.read()) >= 0) {
+                text.write(b);
+            }
+            fail("Stream is already finished");
+        } catch (EOFException e) {
+            // The end of what was flushed
+        }
+        return text.toString(StandardCharsets.UTF_8);
+    }
+}
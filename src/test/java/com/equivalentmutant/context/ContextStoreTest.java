@@ -0,0 +1,82 @@
+package com.equivalentmutant.context;
+
+import com.equivalentmutant.dependency.MethodDependencyTracker;
+import com.equivalentmutant.dependency.RecursiveDependencyResolver;
+import com.equivalentmutant.dependency.SimpleMethodResolver;
+import com.equivalentmutant.index.SourceIndex;
+import com.equivalentmutant.model.CallSiteTable;
+import com.equivalentmutant.model.DependencyGraph;
+import com.equivalentmutant.parser.CompilationUnitCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class ContextStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testIdenticalContextsAreRenderedOnce() throws Exception {
+        Path source = Files.createDirectories(tempDir.resolve("src/p")).resolve("A.java");
+        Files.writeString(source, String.join("\n",
+            "package p;",
+            "class A {",
+            "    void leaf() {}",
+            "    void run() { mid(); leaf(); }",
+            "    void mid() { leaf(); }",
+            "}"));
+        CompilationUnitCache cache = new CompilationUnitCache();
+        CallSiteTable table = new CallSiteTable();
+        SimpleMethodResolver resolver = new SimpleMethodResolver();
+        SourceIndex index = new SourceIndex(tempDir.resolve("src"), cache, table, resolver);
+        index.build(1, null);
+        RecursiveDependencyResolver dependencyResolver =
+            new RecursiveDependencyResolver(new MethodDependencyTracker(cache, table), resolver);
+        MethodContextExtractor extractor = new MethodContextExtractor();
+
+        // Two traversals of one method stand for two mutants of it
+        DependencyGraph first = dependencyResolver.buildDependencyGraph(index.findMethods("p.A.run").get(0), -1);
+        DependencyGraph second = dependencyResolver.buildDependencyGraph(index.findMethods("p.A.run").get(0), -1);
+        assertEquals(extractor.contextKey(first), extractor.contextKey(second));
+
+        ContextStore store = new ContextStore(tempDir.resolve("store"));
+        String hash = store.store(first, extractor);
+        assertEquals(hash, store.store(second, extractor));
+        assertEquals(1, store.getRendered());
+        assertEquals(1, store.getReused());
+
+        String context = extractor.extractMethodContext(first);
+        assertEquals(context, store.read(hash));
+        assertEquals(hash, sha256(context));
+
+        assertNull(store.getVerdict(hash));
+        store.putVerdict(hash, "equivalent");
+        ContextStore reopened = new ContextStore(tempDir.resolve("store"));
+        assertEquals("equivalent", reopened.getVerdict(hash));
+        assertEquals(hash, reopened.store(second, extractor));
+        assertEquals(0, reopened.getRendered());
+
+        assertThrows(IllegalArgumentException.class, () -> store.read("../keys"));
+    }
+
+    @Test
+    public void testHashMatchesUtf8Encoding() throws Exception {
+        String text = "ascii é € 😀 lone \ud83d end \ude00";
+        StringWriter out = new StringWriter();
+        HashingWriter writer = new HashingWriter(out);
+        writer.write(text, 0, 10);
+        writer.write(text.substring(10).toCharArray());
+        assertEquals(text, out.toString());
+        assertEquals(sha256(text), writer.getHash());
+    }
+
+    private static String sha256(String text) {
+        return HashingWriter.toHex(HashingWriter.newDigest().digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+}
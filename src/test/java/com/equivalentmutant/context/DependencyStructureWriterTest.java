@@ -0,0 +1,152 @@
+package com.equivalentmutant.context;
+
+import com.equivalentmutant.dependency.MethodDependencyTracker;
+import com.equivalentmutant.dependency.RecursiveDependencyResolver;
+import com.equivalentmutant.dependency.SimpleMethodResolver;
+import com.equivalentmutant.dependency.TraversalBudget;
+import com.equivalentmutant.index.BinaryIO;
+import com.equivalentmutant.index.SourceIndex;
+import com.equivalentmutant.model.CallSiteTable;
+import com.equivalentmutant.model.DependencyGraph;
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.parser.CompilationUnitCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class DependencyStructureWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private DependencyGraph graph;
+    private DependencyGraph truncatedGraph;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        // run calls get twice, and the chain leads back to run
+        Path sources = Files.createDirectories(tempDir.resolve("p"));
+        Files.writeString(sources.resolve("A.java"), String.join("\n",
+            "package p;",
+            "class A {",
+            "    void run() { new B().get(); new B().get(); }",
+            "    void again() { run(); }",
+            "}"));
+        Files.writeString(sources.resolve("B.java"), String.join("\n",
+            "package p;",
+            "class B {",
+            "    int get() { new A().again(); return 1; }",
+            "}"));
+        CompilationUnitCache cache = new CompilationUnitCache();
+        CallSiteTable table = new CallSiteTable();
+        SimpleMethodResolver resolver = new SimpleMethodResolver();
+        SourceIndex index = new SourceIndex(tempDir, cache, table, resolver);
+        index.build(1, null);
+        RecursiveDependencyResolver dependencyResolver =
+            new RecursiveDependencyResolver(new MethodDependencyTracker(cache, table), resolver);
+        JavaMethod run = index.findMethods("p.A.run").get(0);
+        graph = dependencyResolver.buildDependencyGraph(run, -1);
+        truncatedGraph = dependencyResolver.buildDependencyGraph(run, -1, new TraversalBudget(2, -1, -1, -1));
+    }
+
+    @Test
+    public void testJsonLinesRecords() throws Exception {
+        String a = tempDir.resolve("p/A.java").toString();
+        String b = tempDir.resolve("p/B.java").toString();
+        StringWriter out = new StringWriter();
+        JsonLinesStructureWriter writer = new JsonLinesStructureWriter(out);
+        writer.write(graph);
+        writer.write(truncatedGraph);
+
+        String run = "{\"type\":\"method\",\"id\":0,\"package\":\"p\",\"class\":\"A\",\"name\":\"run\","
+            + "\"signature\":\"void run()\",\"file\":0,\"line\":3,\"column\":5,\"endLine\":3,\"endColumn\":48,\"depth\":0}\n";
+        String get = "{\"type\":\"method\",\"id\":1,\"package\":\"p\",\"class\":\"B\",\"name\":\"get\","
+            + "\"signature\":\"int get()\",\"file\":1,\"line\":3,\"column\":5,\"endLine\":3,\"endColumn\":44,\"depth\":1}\n";
+        String files = "{\"type\":\"file\",\"id\":0,\"path\":\"" + a + "\"}\n"
+            + "{\"type\":\"file\",\"id\":1,\"path\":\"" + b + "\"}\n";
+        String callsOfRun = "{\"type\":\"call\",\"caller\":0,\"callee\":1,\"file\":0,\"line\":3,\"column\":18,\"endLine\":3,\"endColumn\":30}\n"
+            + "{\"type\":\"call\",\"caller\":0,\"callee\":1,\"file\":0,\"line\":3,\"column\":33,\"endLine\":3,\"endColumn\":45}\n";
+        assertEquals(
+            // The root keeps ID 0 although it is called again, and each method is written once
+            "{\"type\":\"graph\",\"root\":0,\"files\":2,\"methods\":3,\"calls\":4,\"truncated\":null}\n"
+            + files + run + get
+            + "{\"type\":\"method\",\"id\":2,\"package\":\"p\",\"class\":\"A\",\"name\":\"again\","
+            + "\"signature\":\"void again()\",\"file\":0,\"line\":4,\"column\":5,\"endLine\":4,\"endColumn\":27,\"depth\":2}\n"
+            + callsOfRun
+            + "{\"type\":\"call\",\"caller\":1,\"callee\":2,\"file\":1,\"line\":3,\"column\":17,\"endLine\":3,\"endColumn\":31}\n"
+            + "{\"type\":\"call\",\"caller\":2,\"callee\":0,\"file\":0,\"line\":4,\"column\":20,\"endLine\":4,\"endColumn\":24}\n"
+            // The truncated graph names the exhausted budget
+            + "{\"type\":\"graph\",\"root\":0,\"files\":2,\"methods\":2,\"calls\":2,\"truncated\":\"NODE_LIMIT\"}\n"
+            + files + run + get + callsOfRun,
+            out.toString());
+    }
+
+    @Test
+    public void testBinaryTablesMatchJsonLines() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryStructureWriter writer = new BinaryStructureWriter(bytes);
+        writer.write(graph);
+        writer.write(truncatedGraph);
+        StringWriter expected = new StringWriter();
+        JsonLinesStructureWriter jsonWriter = new JsonLinesStructureWriter(expected);
+        jsonWriter.write(graph);
+        jsonWriter.write(truncatedGraph);
+
+        // Decode both structures of the stream into the JSON Lines form
+        ByteBuffer in = ByteBuffer.wrap(bytes.toByteArray());
+        StringBuilder decoded = new StringBuilder();
+        while (in.hasRemaining()) {
+            assertEquals(BinaryStructureWriter.MAGIC, in.getInt());
+            assertEquals(BinaryStructureWriter.VERSION, in.getInt());
+            String truncation = BinaryIO.readString(in);
+            int fileCount = in.getInt();
+            String[] paths = new String[fileCount];
+            for (int i = 0; i < fileCount; i++) {
+                paths[i] = BinaryIO.readString(in);
+            }
+            int methodCount = in.getInt();
+            StringBuilder methods = new StringBuilder();
+            for (int id = 0; id < methodCount; id++) {
+                methods.append("{\"type\":\"method\",\"id\":").append(id)
+                    .append(",\"package\":\"").append(BinaryIO.readString(in))
+                    .append("\",\"class\":\"").append(BinaryIO.readString(in))
+                    .append("\",\"name\":\"").append(BinaryIO.readString(in))
+                    .append("\",\"signature\":\"").append(BinaryIO.readString(in)).append('"');
+                appendPosition(methods, in);
+                methods.append(",\"depth\":").append(in.getInt()).append("}\n");
+            }
+            int callCount = in.getInt();
+            StringBuilder calls = new StringBuilder();
+            for (int i = 0; i < callCount; i++) {
+                calls.append("{\"type\":\"call\",\"caller\":").append(in.getInt())
+                    .append(",\"callee\":").append(in.getInt());
+                appendPosition(calls, in);
+                calls.append("}\n");
+            }
+
+            decoded.append("{\"type\":\"graph\",\"root\":0,\"files\":").append(fileCount)
+                .append(",\"methods\":").append(methodCount).append(",\"calls\":").append(callCount)
+                .append(",\"truncated\":").append(truncation.isEmpty() ? "null" : "\"" + truncation + "\"").append("}\n");
+            for (int id = 0; id < fileCount; id++) {
+                decoded.append("{\"type\":\"file\",\"id\":").append(id).append(",\"path\":\"").append(paths[id]).append("\"}\n");
+            }
+            decoded.append(methods).append(calls);
+        }
+        assertEquals(expected.toString(), decoded.toString());
+    }
+
+    private static void appendPosition(StringBuilder record, ByteBuffer in) {
+        record.append(",\"file\":").append(in.getInt())
+            .append(",\"line\":").append(in.getInt())
+            .append(",\"column\":").append(in.getInt())
+            .append(",\"endLine\":").append(in.getInt())
+            .append(",\"endColumn\":").append(in.getInt());
+    }
+}
@@ -0,0 +1,199 @@
+package com.equivalentmutant.context;
+
+import com.equivalentmutant.dependency.MethodDependencyTracker;
+import com.equivalentmutant.dependency.RecursiveDependencyResolver;
+import com.equivalentmutant.dependency.SimpleMethodResolver;
+import com.equivalentmutant.index.SourceIndex;
+import com.equivalentmutant.model.CallSiteTable;
+import com.equivalentmutant.model.DependencyGraph;
+import com.equivalentmutant.parser.CompilationUnitCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class MethodContextExtractorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testBudgetKeepsNearestMostCalledMethodsInFull() throws Exception {
+        Files.writeString(Files.createDirectories(tempDir.resolve("p")).resolve("A.java"), String.join("\n",
+            "package p;",
+            "class A {",
+            "    void run() { once(); twice(); twice(); }",
+            "    void once() {",
+            "        int x = 1;",
+            "        int y = 2;",
+            "    }",
+            "    void twice() {",
+            "        int x = 1;",
+            "        int y = 2;",
+            "        deep();",
+            "    }",
+            "    void deep() {",
+            "        int x = 1;",
+            "    }",
+            "}"));
+        CompilationUnitCache cache = new CompilationUnitCache();
+        CallSiteTable table = new CallSiteTable();
+        SimpleMethodResolver resolver = new SimpleMethodResolver();
+        SourceIndex index = new SourceIndex(tempDir, cache, table, resolver);
+        index.build(1, null);
+        DependencyGraph graph = new RecursiveDependencyResolver(new MethodDependencyTracker(cache, table), resolver)
+            .buildDependencyGraph(index.findMethods("p.A.run").get(0), -1);
+
+        String full = new MethodContextExtractor().extractMethodContext(graph);
+        int fullLines = lines(full);
+        assertEquals(full, new MethodContextExtractor(new ContextBudget(full.length(), -1)).extractMethodContext(graph));
+
+        // Cutting one body leaves room for the closing note: deep is furthest from the root and goes first
+        MethodContextExtractor extractor = new MethodContextExtractor(new ContextBudget(-1, fullLines - 1));
+        StringWriter out = new StringWriter();
+        ContextTruncation truncation = extractor.writeMethodContext(graph, out);
+        assertEquals(2, truncation.getFullMethods());
+        assertEquals(1, truncation.getSignatureMethods());
+        assertTrue(lines(out.toString()) <= fullLines - 1);
+        assertTrue(out.toString().contains("Method: void deep()\nSource: " + tempDir.resolve("p/A.java")));
+        assertTrue(out.toString().endsWith("CONTEXT TRUNCATED: " + truncation + " to fit " + (fullLines - 1)
+            + " lines\n"));
+
+        // At the same distance, the method with more call sites keeps its body
+        out = new StringWriter();
+        truncation = new MethodContextExtractor(new ContextBudget(-1, fullLines - 9)).writeMethodContext(graph, out);
+        assertEquals(1, truncation.getFullMethods());
+        assertEquals(1, truncation.getSignatureMethods());
+        assertEquals(1, truncation.getOmittedMethods());
+        assertTrue(out.toString().contains("Code:\nvoid twice() {"));
+        assertFalse(out.toString().contains("Method: void deep()"));
+        assertNotEquals(extractor.contextKey(graph), new MethodContextExtractor().contextKey(graph));
+    }
+
+    @Test
+    public void testRootAloneOverBudgetOmitsDependencies() throws Exception {
+        Files.writeString(Files.createDirectories(tempDir.resolve("p")).resolve("B.java"), String.join("\n",
+            "package p;",
+            "class B {",
+            "    void run() { leaf(); }",
+            "    void leaf() {}",
+            "}"));
+        CompilationUnitCache cache = new CompilationUnitCache();
+        CallSiteTable table = new CallSiteTable();
+        SimpleMethodResolver resolver = new SimpleMethodResolver();
+        SourceIndex index = new SourceIndex(tempDir, cache, table, resolver);
+        index.build(1, null);
+        DependencyGraph graph = new RecursiveDependencyResolver(new MethodDependencyTracker(cache, table), resolver)
+            .buildDependencyGraph(index.findMethods("p.B.run").get(0), -1);
+
+        // The root part, a header, a code line, the dependency header and the two note lines
+        StringWriter out = new StringWriter();
+        ContextTruncation truncation = new MethodContextExtractor(new ContextBudget(-1, 10))
+            .writeMethodContext(graph, out);
+        assertTrue(truncation.isRootTruncated());
+        assertEquals(0, truncation.getFullMethods());
+        assertEquals(1, truncation.getOmittedMethods());
+        // Only the header fits, so no code is kept
+        assertTrue(out.toString().contains(" to 3:26\nCode: omitted to fit the context budget\n"), out.toString());
+        assertEquals(10, lines(out.toString()));
+    }
+
+    @Test
+    public void testContextNeverExceedsTinyBudget() throws Exception {
+        DependencyGraph graph = buildGraph("D", "run", "    void run() { leaf(); }", "    void leaf() {}");
+
+        // Not even the header of the root fits, so a single line says the context is left out
+        StringWriter out = new StringWriter();
+        ContextTruncation truncation = new MethodContextExtractor(new ContextBudget(-1, 9))
+            .writeMethodContext(graph, out);
+        assertEquals(MethodContextExtractor.CONTEXT_OMITTED, out.toString());
+        assertTrue(truncation.isRootTruncated());
+        assertEquals(1, truncation.getOmittedMethods());
+
+        for (long maxBytes = ContextBudget.MIN_BYTES; maxBytes < 400; maxBytes += 7) {
+            String context = new MethodContextExtractor(new ContextBudget(maxBytes, -1)).extractMethodContext(graph);
+            assertTrue(context.getBytes(StandardCharsets.UTF_8).length <= maxBytes, maxBytes + ": " + context);
+        }
+        for (long maxLines = 1; maxLines < 20; maxLines++) {
+            String context = new MethodContextExtractor(new ContextBudget(-1, maxLines)).extractMethodContext(graph);
+            assertTrue(lines(context) <= maxLines, maxLines + ": " + context);
+        }
+        assertThrows(IllegalArgumentException.class, () -> new ContextBudget(ContextBudget.MIN_BYTES - 1, -1));
+    }
+
+    @Test
+    public void testContextJustUnderBudgetIsNotCut() throws Exception {
+        DependencyGraph graph = buildGraph("E", "run", "    int run() { return 1; }");
+        String full = new MethodContextExtractor().extractMethodContext(graph);
+
+        // No room for a closing note is needed when nothing is cut
+        MethodContextExtractor extractor = new MethodContextExtractor(
+            new ContextBudget(full.getBytes(StandardCharsets.UTF_8).length + 5, lines(full) + 1));
+        StringWriter out = new StringWriter();
+        assertFalse(extractor.writeMethodContext(graph, out).isTruncated());
+        assertEquals(full, out.toString());
+    }
+
+    private DependencyGraph buildGraph(String className, String methodName, String... methods) throws Exception {
+        Files.writeString(Files.createDirectories(tempDir.resolve("p")).resolve(className + ".java"),
+            "package p;\nclass " + className + " {\n" + String.join("\n", methods) + "\n}\n");
+        CompilationUnitCache cache = new CompilationUnitCache();
+        CallSiteTable table = new CallSiteTable();
+        SimpleMethodResolver resolver = new SimpleMethodResolver();
+        SourceIndex index = new SourceIndex(tempDir, cache, table, resolver);
+        index.build(1, null);
+        return new RecursiveDependencyResolver(new MethodDependencyTracker(cache, table), resolver)
+            .buildDependencyGraph(index.findMethods("p." + className + "." + methodName).get(0), -1);
+    }
+
+    @Test
+    public void testRootOverBudgetKeepsLinesAroundFocus() throws Exception {
+        StringBuilder source = new StringBuilder("package p;\nclass C {\n    /** Runs. */\n    void run() {\n");
+        for (int i = 0; i < 40; i++) {
+            source.append("        int v").append(i).append(" = ").append(i).append(";\n");
+        }
+        source.append("        leaf();\n    }\n    void leaf() {}\n}\n");
+        Files.writeString(Files.createDirectories(tempDir.resolve("p")).resolve("C.java"), source);
+        CompilationUnitCache cache = new CompilationUnitCache();
+        CallSiteTable table = new CallSiteTable();
+        SimpleMethodResolver resolver = new SimpleMethodResolver();
+        SourceIndex index = new SourceIndex(tempDir, cache, table, resolver);
+        index.build(1, null);
+        DependencyGraph graph = new RecursiveDependencyResolver(new MethodDependencyTracker(cache, table), resolver)
+            .buildDependencyGraph(index.findMethods("p.C.run").get(0), -1);
+
+        // Line 25 holds v20
+        MethodContextExtractor extractor = new MethodContextExtractor(new ContextBudget(600, -1));
+        StringWriter out = new StringWriter();
+        ContextTruncation truncation = extractor.writeMethodContext(graph, 25, out);
+        String context = out.toString();
+        assertTrue(context.getBytes(StandardCharsets.UTF_8).length <= 600, context);
+        assertTrue(truncation.isRootTruncated());
+        assertEquals(1, truncation.getOmittedMethods());
+        assertTrue(context.contains("int v20 = 20;"), context);
+        assertFalse(context.contains("int v0 = 0;"), context);
+        assertFalse(context.contains("leaf();"), context);
+        assertTrue(context.endsWith("CONTEXT TRUNCATED: " + truncation + " to fit 600 bytes\n"), context);
+        assertTrue(truncation.toString().startsWith("root method code cut, "));
+
+        // Without a focus line the excerpt grows around the declaration, and the key tells the two apart
+        String fromDeclaration = new MethodContextExtractor(new ContextBudget(600, -1)).extractMethodContext(graph);
+        assertTrue(fromDeclaration.contains("Code: lines 3 to "), fromDeclaration);
+        assertTrue(fromDeclaration.contains("    void run() {\n        int v0 = 0;"), fromDeclaration);
+        assertNotEquals(extractor.contextKey(graph, 25), extractor.contextKey(graph));
+        assertEquals(extractor.contextKey(graph, 25), extractor.contextKey(graph, 25));
+
+        // A root that fits is written in full whatever the focus line
+        MethodContextExtractor large = new MethodContextExtractor(new ContextBudget(100_000, -1));
+        assertFalse(large.writeMethodContext(graph, 25, new StringWriter()).isTruncated());
+        assertEquals(large.contextKey(graph), large.contextKey(graph, 25));
+    }
+
+    private static int lines(String text) {
+        return (int) text.chars().filter(c -> c == '\n').count();
+    }
+}
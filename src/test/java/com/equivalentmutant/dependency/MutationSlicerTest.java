@@ -0,0 +1,125 @@
+package com.equivalentmutant.dependency;
+
+import com.equivalentmutant.index.SourceIndex;
+import com.equivalentmutant.model.CallSiteTable;
+import com.equivalentmutant.model.DependencyGraph;
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.model.MethodDependency;
+import com.equivalentmutant.parser.CompilationUnitCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class MutationSlicerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private CompilationUnitCache cache;
+    private CallSiteTable table;
+    private SimpleMethodResolver resolver;
+    private SourceIndex index;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Path source = Files.createDirectories(tempDir.resolve("p")).resolve("A.java");
+        Files.writeString(source, String.join("\n",
+            "package p;",
+            "public class A {",
+            "    int run(int x) {",
+            "        int a = x + 1;",
+            "        int b = x * 2;",
+            "        log(b);",
+            "        if (a > 3) {",
+            "            alert();",
+            "        }",
+            "        int c = compute(b);",
+            "        return c + a;",
+            "    }",
+            "    int sum(int n) {",
+            "        int s = 0;",
+            "        int t = 0;",
+            "        for (int i = 0; i < n; i++) {",
+            "            t = compute(s);",
+            "            s = s + i;",
+            "        }",
+            "        return t;",
+            "    }",
+            "    void log(int v) {}",
+            "    void alert() {}",
+            "    int compute(int v) { return v; }",
+            "    int total;",
+            "    void store(int x) {",
+            "        int local = x + 1;",
+            "        total = x + 1;",
+            "        report();",
+            "        log(local);",
+            "        other.log(1);",
+            "    }",
+            "    void report() { log(total); }",
+            "    A other;",
+            "}"));
+
+        cache = new CompilationUnitCache();
+        table = new CallSiteTable();
+        resolver = new SimpleMethodResolver();
+        index = new SourceIndex(tempDir, cache, table, resolver);
+        index.build(1, null);
+    }
+
+    @Test
+    public void testSliceFollowsDataAndControlDependence() {
+        JavaMethod run = index.findMethods("p.A.run").get(0);
+        MutationSlicer slicer = new MutationSlicer(cache);
+
+        // a feeds the condition, so the guarded call and the return join, but b's statements do not
+        MutationSlice slice = slicer.slice(run, 4, 17);
+        assertEquals(7, slice.getStatementCount());
+        assertEquals(4, slice.getSlicedStatementCount());
+        assertEquals(Set.of("alert"), calleesOf(run, slice));
+
+        // b reaches the logged value and the computed result, but not the condition
+        assertEquals(Set.of("log", "compute"), calleesOf(run, slicer.slice(run, 5, -1)));
+
+        assertThrows(IllegalArgumentException.class, () -> slicer.slice(run, 2, -1));
+    }
+
+    @Test
+    public void testFieldWriteReachesLaterCallsOnThis() {
+        JavaMethod store = index.findMethods("p.A.store").get(0);
+        MutationSlicer slicer = new MutationSlicer(cache);
+
+        // A local only reaches the calls that name it
+        assertEquals(Set.of("log"), calleesOf(store, slicer.slice(store, 27, -1)));
+
+        // report() reads total without naming it, and so may any later call on this, but not a call on
+        // another object
+        MutationSlice slice = slicer.slice(store, 28, -1);
+        assertEquals(Set.of("report", "log"), calleesOf(store, slice));
+        assertEquals(2, slice.getCallSiteCount());
+    }
+
+    @Test
+    public void testWriteInLoopReachesEarlierRead() {
+        JavaMethod sum = index.findMethods("p.A.sum").get(0);
+
+        // s is read by the call before the write, on the next iteration
+        assertEquals(Set.of("compute"), calleesOf(sum, new MutationSlicer(cache).slice(sum, 18, -1)));
+    }
+
+    private Set<String> calleesOf(JavaMethod root, MutationSlice slice) {
+        DependencyGraph graph = new RecursiveDependencyResolver(new MethodDependencyTracker(cache, table), resolver)
+            .buildDependencyGraph(root, 1, TraversalBudget.UNLIMITED, slice);
+        Set<String> callees = new TreeSet<>();
+        for (MethodDependency dependency : graph.getDependenciesForMethod(root)) {
+            callees.add(dependency.getCallee().getMethodName());
+        }
+        return callees;
+    }
+}
@@ -0,0 +1,255 @@
+package com.equivalentmutant.dependency;
+
+import com.equivalentmutant.model.CallSiteTable;
+import com.equivalentmutant.model.CompactGraph;
+import com.equivalentmutant.model.DependencyGraph;
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.model.MethodCallInfo;
+import com.equivalentmutant.model.SourceLocation;
+import com.equivalentmutant.model.TruncationReason;
+import com.equivalentmutant.parser.CompilationUnitCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class RecursiveDependencyResolverTest {
+
+    private CallSiteTable callSiteTable;
+    private SimpleMethodResolver methodResolver;
+    private MethodDependencyTracker tracker;
+
+    @BeforeEach
+    public void setUp() {
+        callSiteTable = new CallSiteTable();
+        methodResolver = new SimpleMethodResolver();
+        tracker = new MethodDependencyTracker(new CompilationUnitCache(), callSiteTable);
+    }
+
+    @Test
+    public void testParallelTraversalMatchesSequential() {
+        // root -> a0..a9, each ai -> b, b -> root
+        JavaMethod root = method("root", 1);
+        JavaMethod b = method("b", 100);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            JavaMethod a = method("a" + i, 10 + i);
+            calls(a, "b");
+            names.add("a" + i);
+        }
+        calls(root, names.toArray(new String[0]));
+        calls(b, "root");
+        
+        DependencyGraph sequential = new RecursiveDependencyResolver(tracker, methodResolver).buildDependencyGraph(root, -1);
+        DependencyGraph parallel;
+        try (RecursiveDependencyResolver resolver = new RecursiveDependencyResolver(tracker, methodResolver, 4)) {
+            parallel = resolver.buildDependencyGraph(root, -1);
+        }
+        
+        assertEquals(12, sequential.getAllMethods().size());
+        assertEquals(sequential.getAllMethods(), parallel.getAllMethods());
+        assertEquals(sequential.getAllDependencies(), parallel.getAllDependencies());
+        assertEquals(2, parallel.getDepth(b));
+    }
+
+    @Test
+    public void testParallelTraversalAddsInSequentialOrder() {
+        // Method and edge IDs follow insertion order and end up in the structure output and snapshots
+        Random random = new Random(7);
+        int count = 400;
+        List<JavaMethod> methods = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            methods.add(method("n" + i, i + 1));
+        }
+        for (JavaMethod method : methods) {
+            calls(method, "n" + random.nextInt(count), "n" + random.nextInt(count), "n" + random.nextInt(count));
+        }
+
+        CompactGraph.Snapshot sequential = new RecursiveDependencyResolver(tracker, methodResolver)
+            .buildDependencyGraph(methods.get(0), -1).getCompactGraph().snapshot();
+        try (RecursiveDependencyResolver resolver = new RecursiveDependencyResolver(tracker, methodResolver, 8)) {
+            for (int run = 0; run < 10; run++) {
+                CompactGraph.Snapshot parallel = resolver.buildDependencyGraph(methods.get(0), -1)
+                    .getCompactGraph().snapshot();
+                assertEquals(sequential.getMethodCount(), parallel.getMethodCount());
+                assertEquals(sequential.getEdgeCount(), parallel.getEdgeCount());
+                for (int id = 0; id < sequential.getMethodCount(); id++) {
+                    assertEquals(sequential.method(id), parallel.method(id), "Method " + id);
+                }
+                for (int edge = 0; edge < sequential.getEdgeCount(); edge++) {
+                    assertEquals(sequential.caller(edge), parallel.caller(edge), "Caller of edge " + edge);
+                    assertEquals(sequential.callee(edge), parallel.callee(edge), "Callee of edge " + edge);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDepthLimitUsesShortestPath() {
+        // root -> a -> c and root -> c: c must be expanded at depth 1
+        JavaMethod root = method("root", 1);
+        JavaMethod a = method("a", 10);
+        JavaMethod c = method("c", 20);
+        JavaMethod d = method("d", 30);
+        calls(root, "a", "c");
+        calls(a, "c");
+        calls(c, "d");
+        calls(d);
+        
+        DependencyGraph graph = new RecursiveDependencyResolver(tracker, methodResolver).buildDependencyGraph(root, 1);
+        
+        assertEquals(1, graph.getDepth(c));
+        assertEquals(1, graph.getDependenciesForMethod(c).size());
+        assertFalse(graph.isTruncated());
+    }
+
+    @Test
+    public void testDeepCallChainDoesNotOverflowStack() {
+        int length = 20_000;
+        List<JavaMethod> chain = new ArrayList<>();
+        for (int i = 0; i < length; i++) {
+            chain.add(method("m" + i, i + 1));
+        }
+        for (int i = 0; i < length - 1; i++) {
+            calls(chain.get(i), "m" + (i + 1));
+        }
+        calls(chain.get(length - 1));
+
+        for (int parallelism : new int[] {1, 4}) {
+            try (RecursiveDependencyResolver resolver = new RecursiveDependencyResolver(tracker, methodResolver, parallelism)) {
+                DependencyGraph graph = resolver.buildDependencyGraph(chain.get(0), -1);
+                assertEquals(length, graph.getAllMethods().size());
+                assertEquals(length - 1, graph.getDepth(chain.get(length - 1)));
+            }
+        }
+    }
+
+    @Test
+    public void testParallelTraversalMatchesSequentialAtEveryDepth() {
+        // Each method calls three others picked at random, so the graph has cycles and shortcuts
+        Random random = new Random(42);
+        int count = 300;
+        List<JavaMethod> methods = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            methods.add(method("n" + i, i + 1));
+        }
+        for (JavaMethod method : methods) {
+            calls(method, "n" + random.nextInt(count), "n" + random.nextInt(count), "n" + random.nextInt(count));
+        }
+
+        try (RecursiveDependencyResolver parallelResolver = new RecursiveDependencyResolver(tracker, methodResolver, 4)) {
+            for (int maxDepth : new int[] {0, 1, 2, 3, 5, -1}) {
+                DependencyGraph sequential = new RecursiveDependencyResolver(tracker, methodResolver)
+                    .buildDependencyGraph(methods.get(0), maxDepth);
+                DependencyGraph parallel = parallelResolver.buildDependencyGraph(methods.get(0), maxDepth);
+                assertEquals(sequential.getAllMethods(), parallel.getAllMethods(), "Depth " + maxDepth);
+                assertEquals(sequential.getAllDependencies(), parallel.getAllDependencies(), "Depth " + maxDepth);
+                for (JavaMethod method : sequential.getAllMethods()) {
+                    assertEquals(sequential.getDepth(method), parallel.getDepth(method), method + " at depth " + maxDepth);
+                    // Methods up to the limit are expanded, so their callees are one level further
+                    assertTrue(maxDepth < 0 || sequential.getDepth(method) <= maxDepth + 1);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFanOutBudgetTruncatesMethod() {
+        JavaMethod root = method("root", 1);
+        for (int i = 0; i < 5; i++) {
+            calls(method("leaf" + i, 10 + i));
+        }
+        calls(root, "leaf0", "leaf1", "leaf2", "leaf3", "leaf4");
+        
+        TraversalBudget budget = new TraversalBudget(-1, -1, 2, -1);
+        DependencyGraph graph = new RecursiveDependencyResolver(tracker, methodResolver).buildDependencyGraph(root, -1, budget);
+        
+        assertEquals(2, graph.getDependenciesForMethod(root).size());
+        assertEquals(TruncationReason.FAN_OUT, graph.getTruncationReason());
+        assertEquals(TruncationReason.FAN_OUT, graph.getTruncatedMethods().get(root));
+        assertEquals(3, graph.getDroppedCallCount());
+    }
+
+    @Test
+    public void testNodeBudgetStopsInBreadthOrder() {
+        // root -> a, b; a -> c; b -> d
+        JavaMethod root = method("root", 1);
+        JavaMethod a = method("a", 10);
+        JavaMethod b = method("b", 20);
+        calls(root, "a", "b");
+        calls(a, "c");
+        calls(b, "d");
+        calls(method("c", 30));
+        calls(method("d", 40));
+        
+        TraversalBudget budget = new TraversalBudget(4, -1, -1, -1);
+        DependencyGraph graph = new RecursiveDependencyResolver(tracker, methodResolver).buildDependencyGraph(root, -1, budget);
+        
+        assertEquals(4, graph.getAllMethods().size());
+        assertEquals(TruncationReason.NODE_LIMIT, graph.getTruncationReason());
+        assertFalse(graph.getTruncatedMethods().containsKey(a));
+        assertEquals(TruncationReason.NODE_LIMIT, graph.getTruncatedMethods().get(b));
+        assertEquals(1, graph.getDroppedCallCount());
+    }
+
+    @Test
+    public void testCachedSubgraphsComposeToSameGraph() {
+        // rootA -> shared, rootB -> x -> shared, rootB -> tail; shared -> s1 -> s2 -> tail
+        JavaMethod rootA = method("rootA", 1);
+        JavaMethod rootB = method("rootB", 2);
+        JavaMethod x = method("x", 3);
+        JavaMethod shared = method("shared", 10);
+        JavaMethod s1 = method("s1", 11);
+        JavaMethod s2 = method("s2", 12);
+        JavaMethod tail = method("tail", 13);
+        calls(rootA, "shared");
+        calls(rootB, "x", "tail");
+        calls(x, "shared");
+        calls(shared, "s1");
+        calls(s1, "s2");
+        calls(s2, "tail");
+        calls(tail);
+        
+        SubgraphCache cache = new SubgraphCache();
+        RecursiveDependencyResolver uncached = new RecursiveDependencyResolver(tracker, methodResolver);
+        RecursiveDependencyResolver cached = new RecursiveDependencyResolver(tracker, methodResolver, 1, cache);
+        
+        for (int maxDepth : new int[] {-1, 3}) {
+            cache.clear();
+            cached.buildDependencyGraph(rootA, maxDepth);
+            DependencyGraph expected = uncached.buildDependencyGraph(rootB, maxDepth);
+            DependencyGraph composed = cached.buildDependencyGraph(rootB, maxDepth);
+            
+            assertEquals(expected.getAllDependencies(), composed.getAllDependencies());
+            for (JavaMethod method : expected.getAllMethods()) {
+                assertEquals(expected.getDepth(method), composed.getDepth(method), method.getMethodName());
+            }
+        }
+        assertTrue(cache.getHits() > 0);
+    }
+
+    private JavaMethod method(String name, int line) {
+        JavaMethod method = new JavaMethod(
+            "com.example", "TestClass", name,
+            "void " + name + "()", "void " + name + "() {}",
+            new SourceLocation("TestClass.java", line, 1, line, 20),
+            false, Collections.emptyList()
+        );
+        methodResolver.addMethod(method);
+        return method;
+    }
+
+    private void calls(JavaMethod caller, String... calleeNames) {
+        List<MethodCallInfo> calls = new ArrayList<>();
+        int line = caller.getLocation().getBeginLine();
+        for (int i = 0; i < calleeNames.length; i++) {
+            calls.add(new MethodCallInfo(calleeNames[i], Collections.emptyList(),
+                new SourceLocation("TestClass.java", line, 10 + i, line, 15 + i)));
+        }
+        callSiteTable.put(caller, calls);
+    }
+}
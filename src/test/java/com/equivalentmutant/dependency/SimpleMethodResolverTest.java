@@ -0,0 +1,61 @@
+package com.equivalentmutant.dependency;
+
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.model.MethodCallInfo;
+import com.equivalentmutant.model.SourceLocation;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+public class SimpleMethodResolverTest {
+
+    @Test
+    public void testCallsResolveByClassThenArity() {
+        SimpleMethodResolver resolver = new SimpleMethodResolver();
+        JavaMethod boxGet = method("Box", "get", 1, "int");
+        JavaMethod boxGetTwo = method("Box", "get", 2, "int", "int");
+        JavaMethod shelfGet = method("Shelf", "get", 3, "int");
+        resolver.addMethods(Arrays.asList(boxGet, boxGetTwo, shelfGet));
+
+        assertEquals(Optional.of(boxGetTwo), resolver.resolveCall(call("get", 2, null)));
+        assertEquals(Optional.of(shelfGet), resolver.resolveCall(call("get", 1, "com.example.Shelf")));
+        assertEquals(Optional.of(boxGet), resolver.resolveCall(call("get", 1, "com.example.Other")));
+        assertEquals(Optional.of(boxGet), resolver.resolveCall(call("get", 5, null)));
+        assertEquals(Optional.empty(), resolver.resolveCall(call("size", 0, null)));
+
+        resolver.removeMethod(boxGetTwo);
+        assertEquals(Optional.of(boxGet), resolver.resolveCall(call("get", 2, "com.example.Box")));
+        resolver.removeMethods(Arrays.asList(boxGet, shelfGet));
+        assertEquals(Optional.empty(), resolver.resolveCall(call("get", 1, null)));
+    }
+
+    @Test
+    public void testNameFilterGrowsWithoutLosingNames() {
+        SimpleMethodResolver resolver = new SimpleMethodResolver();
+        List<JavaMethod> methods = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            JavaMethod method = method("Many", "m" + i, i);
+            resolver.addMethod(method);
+            methods.add(method);
+        }
+        for (int i = 0; i < methods.size(); i++) {
+            assertEquals(Optional.of(methods.get(i)), resolver.resolveMethod("m" + i, Collections.emptyList()));
+        }
+    }
+
+    private static JavaMethod method(String className, String name, int line, String... parameterTypes) {
+        String signature = "void " + name + "(" + String.join(", ", parameterTypes) + ")";
+        return new JavaMethod("com.example", className, name, signature, signature + " {}",
+            new SourceLocation(className + ".java", line, 1, line, 20), false, Arrays.asList(parameterTypes));
+    }
+
+    private static MethodCallInfo call(String name, int arity, String receiverClass) {
+        return new MethodCallInfo(name, MethodCallInfo.unknownArgumentTypes(arity),
+            new SourceLocation("Caller.java", 1, 1, 1, 10), null, receiverClass);
+    }
+}
@@ -0,0 +1,148 @@
+package com.equivalentmutant.dependency;
+
+import com.equivalentmutant.index.PersistentMethodIndex;
+import com.equivalentmutant.index.SourceIndex;
+import com.equivalentmutant.model.CallSiteTable;
+import com.equivalentmutant.model.DependencyGraph;
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.model.MethodDependency;
+import com.equivalentmutant.parser.CompilationUnitCache;
+import com.equivalentmutant.parser.SymbolResolution;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+public class SymbolSolverMethodResolverTest {
+
+    @TempDir
+    Path tempDir;
+
+    private CompilationUnitCache cache;
+    private CallSiteTable table;
+
+    @Test
+    public void testCallsResolveToReceiverTypeAndOverload() throws Exception {
+        Path packageDir = Files.createDirectories(tempDir.resolve("p"));
+        Files.writeString(packageDir.resolve("Box.java"), String.join("\n",
+            "package p;",
+            "public class Box {",
+            "    public int get(int index) { return index; }",
+            "    public String get(String key) { return key; }",
+            "}"));
+        Files.writeString(packageDir.resolve("Shelf.java"), String.join("\n",
+            "package p;",
+            "public class Shelf {",
+            "    public int get(int index) { return 0; }",
+            "}"));
+        Files.writeString(packageDir.resolve("User.java"), String.join("\n",
+            "package p;",
+            "import java.util.List;",
+            "public class User {",
+            "    public void use(Box box, List<String> names) {",
+            "        box.get(\"key\");",
+            "        names.get(0);",
+            "    }",
+            "}"));
+
+        CallSiteTable table = new CallSiteTable();
+        CompilationUnitCache cache = new CompilationUnitCache();
+        SymbolSolverMethodResolver resolver = new SymbolSolverMethodResolver();
+        SourceIndex index = new SourceIndex(tempDir, cache, table, resolver,
+            new SymbolResolution(Collections.singletonList(tempDir)));
+        index.build(2, null);
+
+        JavaMethod use = index.findMethods("p.User.use").get(0);
+        DependencyGraph graph = new RecursiveDependencyResolver(new MethodDependencyTracker(cache, table), resolver)
+            .buildDependencyGraph(use, 1);
+
+        Set<String> callees = new HashSet<>();
+        for (MethodDependency dependency : graph.getDependenciesForMethod(use)) {
+            callees.add(dependency.getCallee().getClassName() + " " + dependency.getCallee().getSignature());
+        }
+        assertEquals(Collections.singleton("Box String get(String key)"), callees);
+        assertEquals(1, resolver.getResolvedCalls());
+        assertEquals(1, resolver.getExternalCalls());
+        assertEquals(0, resolver.getFallbackCalls());
+    }
+
+    @Test
+    public void testResolvedTargetSurvivesEditOfCalledFile() throws Exception {
+        Path packageDir = Files.createDirectories(tempDir.resolve("p"));
+        Files.writeString(packageDir.resolve("A.java"), String.join("\n",
+            "package p;",
+            "public class A {",
+            "    public void run(B b) { b.foo(); }",
+            "}"));
+        Files.writeString(packageDir.resolve("B.java"), String.join("\n",
+            "package p;",
+            "public class B {",
+            "    public void foo() {}",
+            "}"));
+        PersistentMethodIndex persistentIndex = new PersistentMethodIndex(tempDir.resolve("index"));
+        build(persistentIndex);
+
+        // A method added above the target moves it, while the calling file stays as it was indexed
+        Files.writeString(packageDir.resolve("B.java"), String.join("\n",
+            "package p;",
+            "public class B {",
+            "    public void dangerous() {}",
+            "    public void foo() {}",
+            "}"));
+        SymbolSolverMethodResolver resolver = new SymbolSolverMethodResolver();
+        SourceIndex index = build(persistentIndex, resolver);
+        assertEquals(1, persistentIndex.getReusedFiles());
+        assertEquals("void foo()", calleeOf(index, resolver));
+        assertEquals(1, resolver.getResolvedCalls());
+
+        // The same for a file updated in place, and a call parsed again after the update sees the new
+        // overload in the edited file
+        Files.writeString(packageDir.resolve("B.java"), String.join("\n",
+            "package p;",
+            "public class B {",
+            "    public void foo(int x) {}",
+            "    public void foo() {}",
+            "}"));
+        index.update(Collections.singletonList(packageDir.resolve("B.java")));
+        assertEquals("void foo()", calleeOf(index, resolver));
+        Files.writeString(packageDir.resolve("A.java"), String.join("\n",
+            "package p;",
+            "public class A {",
+            "    public void run(B b) { b.foo(1); }",
+            "}"));
+        index.update(Collections.singletonList(packageDir.resolve("A.java")));
+        assertEquals("void foo(int x)", calleeOf(index, resolver));
+        assertEquals(0, resolver.getFallbackCalls());
+    }
+
+    private SourceIndex build(PersistentMethodIndex persistentIndex) throws Exception {
+        return build(persistentIndex, new SymbolSolverMethodResolver());
+    }
+
+    private SourceIndex build(PersistentMethodIndex persistentIndex, SymbolSolverMethodResolver resolver)
+            throws Exception {
+        this.cache = new CompilationUnitCache();
+        this.table = new CallSiteTable();
+        SourceIndex index = new SourceIndex(tempDir, cache, table, resolver,
+            new SymbolResolution(Collections.singletonList(tempDir)));
+        index.build(2, persistentIndex);
+        return index;
+    }
+
+    private String calleeOf(SourceIndex index, SymbolSolverMethodResolver resolver) {
+        JavaMethod run = index.findMethods("p.A.run").get(0);
+        DependencyGraph graph = new RecursiveDependencyResolver(new MethodDependencyTracker(cache, table), resolver)
+            .buildDependencyGraph(run, 1);
+        Set<String> callees = new HashSet<>();
+        for (MethodDependency dependency : graph.getDependenciesForMethod(run)) {
+            callees.add(dependency.getCallee().getSignature());
+        }
+        assertEquals(1, callees.size(), callees.toString());
+        return callees.iterator().next();
+    }
+}
@@ -0,0 +1,61 @@
+package com.equivalentmutant.index;
+
+import com.equivalentmutant.context.MethodContextExtractor;
+import com.equivalentmutant.dependency.MethodDependencyTracker;
+import com.equivalentmutant.dependency.RecursiveDependencyResolver;
+import com.equivalentmutant.dependency.SimpleMethodResolver;
+import com.equivalentmutant.model.CallSiteTable;
+import com.equivalentmutant.model.DependencyGraph;
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.parser.CompilationUnitCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+
+public class GraphSnapshotFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testSavedGraphReloadsAndDetectsChangedSources() throws Exception {
+        Path source = Files.createDirectories(tempDir.resolve("p")).resolve("A.java");
+        Files.writeString(source, String.join("\n",
+            "package p;",
+            "public class A {",
+            "    /** Entry point. */",
+            "    public void a() { b(); c(); }",
+            "    private void b() { c(); }",
+            "    private void c() {}",
+            "}"));
+
+        CallSiteTable table = new CallSiteTable();
+        CompilationUnitCache cache = new CompilationUnitCache();
+        SimpleMethodResolver resolver = new SimpleMethodResolver();
+        SourceIndex index = new SourceIndex(tempDir, cache, table, resolver);
+        index.build(1, null);
+        JavaMethod root = index.findMethods("p.A.a").get(0);
+        DependencyGraph graph = new RecursiveDependencyResolver(new MethodDependencyTracker(cache, table), resolver)
+            .buildDependencyGraph(root, -1);
+
+        Path snapshotFile = tempDir.resolve("graphs").resolve("a.graph");
+        GraphSnapshotFile.write(snapshotFile, graph);
+
+        GraphSnapshotFile snapshot = GraphSnapshotFile.open(snapshotFile);
+        assertEquals(Collections.emptyList(), snapshot.findChangedFiles());
+        DependencyGraph loaded = snapshot.read();
+        MethodContextExtractor extractor = new MethodContextExtractor();
+        assertEquals(extractor.extractMethodContext(graph), extractor.extractMethodContext(loaded));
+        assertEquals(graph.getDependencyCount(), loaded.getDependencyCount());
+        assertEquals(graph.getDepth(root), loaded.getDepth(loaded.getRootMethod()));
+
+        Files.writeString(source, "package p;\npublic class A {}");
+        Files.setLastModifiedTime(source, FileTime.fromMillis(source.toFile().lastModified() + 2000));
+        assertEquals(Collections.singletonList(root.getLocation().getFilePath()), snapshot.findChangedFiles());
+    }
+}
@@ -0,0 +1,164 @@
+package com.equivalentmutant.index;
+
+import com.equivalentmutant.dependency.SimpleMethodResolver;
+import com.equivalentmutant.model.CallSiteTable;
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.model.MethodCallInfo;
+import com.equivalentmutant.parser.CompilationUnitCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+
+public class PersistentMethodIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private CallSiteTable table;
+
+    @Test
+    public void testModulesAreIndexedAsSeparateShards() throws Exception {
+        Path build = tempDir.resolve("build");
+        Files.createDirectories(build);
+        Files.writeString(build.resolve("pom.xml"), "");
+        writeModule(build.resolve("core"), "pom.xml", "Core", "public int compute() { return 1; }");
+        writeModule(build.resolve("app"), "build.gradle", "App", "public int run() { return new Core().compute(); }");
+        // Build output and modules without Java sources are not source roots
+        writeModule(build.resolve("app/target"), "pom.xml", "Copy", "");
+        Files.createDirectories(build.resolve("docs"));
+        Files.writeString(build.resolve("docs/pom.xml"), "");
+
+        List<Path> roots = ReactorLayout.findSourceRoots(build);
+        assertEquals(Arrays.asList(build.resolve("app/src/main/java"), build.resolve("core/src/main/java")), roots);
+
+        PersistentMethodIndex persistentIndex = new PersistentMethodIndex(tempDir.resolve("index"));
+        SourceIndex index = build(roots, persistentIndex);
+        assertEquals(2, persistentIndex.getParsedFiles());
+        assertEquals(2, persistentIndex.getWrittenShards());
+        // Lookups see the methods of every shard
+        assertEquals(1, index.findMethods("p.Core.compute").size());
+        assertEquals(build.resolve("core/src/main/java"),
+            index.findRoot(build.resolve("core/src/main/java/p/Core.java")));
+
+        // A change in one module leaves the other module's shard untouched; the size differs so the change
+        // is seen even within the file time resolution
+        Files.writeString(build.resolve("core/src/main/java/p/Core.java"),
+            "package p;\npublic class Core {\n    public int compute() { return 1 + 1; }\n}\n");
+        build(roots, persistentIndex);
+        assertEquals(1, persistentIndex.getParsedFiles());
+        assertEquals(1, persistentIndex.getReusedFiles());
+        assertEquals(1, persistentIndex.getWrittenShards());
+        assertEquals(2, persistentIndex.getShardCount());
+
+        assertThrows(IllegalArgumentException.class, () -> build(Arrays.asList(roots.get(0),
+            roots.get(0).resolve("p")), null));
+    }
+
+    @Test
+    public void testUnchangedFilesAreReusedAndChangedFilesParsed() throws Exception {
+        Path root = Files.createDirectories(tempDir.resolve("src"));
+        writeClass(root, "A", "public int run() { return new B().get() + new B().get(); }");
+        writeClass(root, "B", "public int get() { return 1; }");
+        PersistentMethodIndex persistentIndex = new PersistentMethodIndex(tempDir.resolve("index"));
+        String parsed = describe(build(List.of(root), persistentIndex));
+        assertEquals(2, persistentIndex.getParsedFiles());
+        assertEquals(1, persistentIndex.getWrittenShards());
+
+        // The decoded index holds the same methods and call sites as the parsed one, and is not written again
+        assertEquals(parsed, describe(build(List.of(root), persistentIndex)));
+        assertEquals(2, persistentIndex.getReusedFiles());
+        assertEquals(0, persistentIndex.getParsedFiles());
+        assertEquals(0, persistentIndex.getWrittenShards());
+
+        // A touched file with the same content is hashed and reused, and its new time stored
+        Path a = root.resolve("p/A.java");
+        Files.setLastModifiedTime(a, FileTime.fromMillis(Files.getLastModifiedTime(a).toMillis() + 10_000));
+        assertEquals(parsed, describe(build(List.of(root), persistentIndex)));
+        assertEquals(2, persistentIndex.getReusedFiles());
+        assertEquals(1, persistentIndex.getWrittenShards());
+
+        // An edited file is parsed again; the size differs so the change is seen within the time resolution
+        writeClass(root, "B", "public int get() { return 1 + 1; }");
+        SourceIndex index = build(List.of(root), persistentIndex);
+        assertEquals(1, persistentIndex.getParsedFiles());
+        assertEquals(1, persistentIndex.getReusedFiles());
+        assertTrue(index.findMethods("p.B.get").get(0).getSourceCode().contains("1 + 1"));
+
+        // A deleted file leaves the index
+        Files.delete(root.resolve("p/B.java"));
+        index = build(List.of(root), persistentIndex);
+        assertEquals(1, persistentIndex.getRemovedFiles());
+        assertEquals(1, persistentIndex.getWrittenShards());
+        assertTrue(index.findMethods("p.B.get").isEmpty());
+        build(List.of(root), persistentIndex);
+        assertEquals(0, persistentIndex.getRemovedFiles());
+        assertEquals(0, persistentIndex.getWrittenShards());
+    }
+
+    @Test
+    public void testDamagedIndexIsRebuiltFromSources() throws Exception {
+        Path root = Files.createDirectories(tempDir.resolve("src"));
+        writeClass(root, "A", "public int run() { return new B().get(); }");
+        writeClass(root, "B", "public int get() { return 1; }");
+        PersistentMethodIndex persistentIndex = new PersistentMethodIndex(tempDir.resolve("index"));
+        String parsed = describe(build(List.of(root), persistentIndex));
+        Path indexFile = persistentIndex.getIndexFile(root, false);
+        byte[] stored = Files.readAllBytes(indexFile);
+
+        // Not an index at all
+        Files.write(indexFile, new byte[] {1, 2, 3});
+        assertEquals(parsed, describe(build(List.of(root), persistentIndex)));
+        assertEquals(2, persistentIndex.getParsedFiles());
+        assertEquals(1, persistentIndex.getWrittenShards());
+        assertArrayEquals(stored, Files.readAllBytes(indexFile));
+
+        // An intact file table whose last records are cut off: only the damaged file is parsed
+        Files.write(indexFile, Arrays.copyOf(stored, stored.length - 8));
+        assertEquals(parsed, describe(build(List.of(root), persistentIndex)));
+        assertEquals(1, persistentIndex.getParsedFiles());
+        assertEquals(1, persistentIndex.getReusedFiles());
+        assertArrayEquals(stored, Files.readAllBytes(indexFile));
+    }
+
+    private SourceIndex build(List<Path> roots, PersistentMethodIndex persistentIndex) throws Exception {
+        table = new CallSiteTable();
+        SourceIndex index = new SourceIndex(roots, new CompilationUnitCache(), table, new SimpleMethodResolver(), null);
+        index.build(2, persistentIndex);
+        return index;
+    }
+
+    /**
+     * Lists the methods of an index with their code and call sites.
+     */
+    private String describe(SourceIndex index) {
+        StringBuilder description = new StringBuilder();
+        for (JavaMethod method : index.getMethods()) {
+            description.append(method.getFullyQualifiedName()).append(' ').append(method.getSignature())
+                .append(' ').append(method.getLocation()).append('\n').append(method.getSourceCode()).append('\n');
+            for (MethodCallInfo call : table.get(method)) {
+                description.append("  ").append(call.getMethodName()).append('/').append(call.getArgumentTypes().size())
+                    .append(' ').append(call.getLocation()).append('\n');
+            }
+        }
+        return description.toString();
+    }
+
+    private static void writeClass(Path root, String className, String body) throws Exception {
+        Path sources = Files.createDirectories(root.resolve("p"));
+        Files.writeString(sources.resolve(className + ".java"),
+            "package p;\npublic class " + className + " {\n    " + body + "\n}\n");
+    }
+
+    private static void writeModule(Path module, String buildFile, String className, String body) throws Exception {
+        Path sources = Files.createDirectories(module.resolve("src/main/java/p"));
+        Files.writeString(module.resolve(buildFile), "");
+        Files.writeString(sources.resolve(className + ".java"),
+            "package p;\npublic class " + className + " {\n    " + body + "\n}\n");
+    }
+}
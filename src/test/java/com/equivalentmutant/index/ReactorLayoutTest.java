@@ -0,0 +1,46 @@
+package com.equivalentmutant.index;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class ReactorLayoutTest {
+
+    @Test
+    public void testRelativeRootSkipsBuildOutputAndHiddenDirectories() throws Exception {
+        // "." normalizes to the empty path, whose direct children are the first level to skip; the tests run
+        // in the project directory, so modules placed under its target directory must not be found
+        Path output = Path.of("target", "reactor-layout-test");
+        try {
+            createModule(output.resolve("m"));
+            List<Path> roots = ReactorLayout.findSourceRoots(Path.of("."));
+            assertTrue(roots.contains(Path.of("src", "main", "java")), roots.toString());
+            for (Path root : roots) {
+                assertFalse(root.startsWith("target"), root.toString());
+                assertFalse(root.getName(0).toString().startsWith("."), root.toString());
+            }
+
+            // Below a relative root the same directories are skipped
+            createModule(output.resolve("build/a"));
+            createModule(output.resolve("build/.hidden/m"));
+            createModule(output.resolve("build/target/x"));
+            Files.writeString(output.resolve("build/pom.xml"), "");
+            Path build = output.resolve("build/a/..");
+            assertEquals(List.of(output.resolve("build/a/src/main/java")), ReactorLayout.findSourceRoots(build));
+        } finally {
+            try (Stream<Path> paths = Files.walk(output)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static void createModule(Path module) throws Exception {
+        Files.createDirectories(module.resolve("src/main/java"));
+        Files.writeString(module.resolve("pom.xml"), "");
+    }
+}
@@ -0,0 +1,105 @@
+package com.equivalentmutant.index;
+
+import com.equivalentmutant.dependency.MethodDependencyTracker;
+import com.equivalentmutant.dependency.SimpleMethodResolver;
+import com.equivalentmutant.model.CallSiteTable;
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.parser.CompilationUnitCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ReverseCallIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testCallersAndReachingTests() throws Exception {
+        Files.writeString(Files.createDirectories(tempDir.resolve("main/p")).resolve("A.java"), String.join("\n",
+            "package p;",
+            "public class A {",
+            "    public void a() { b(); b(); }",
+            "    public void b() { c(); }",
+            "    public void c() { b(); }",
+            "    public void unused() { c(); }",
+            "}"));
+        Files.writeString(Files.createDirectories(tempDir.resolve("test/p")).resolve("ATest.java"), String.join("\n",
+            "package p;",
+            "import org.junit.jupiter.api.Test;",
+            "public class ATest {",
+            "    @Test",
+            "    public void callsA() { setUp(); new A().a(); }",
+            "    public void testC() { new A().c(); }",
+            "    private void setUp() {}",
+            "}"));
+
+        CompilationUnitCache cache = new CompilationUnitCache();
+        CallSiteTable table = new CallSiteTable();
+        SimpleMethodResolver resolver = new SimpleMethodResolver();
+        SourceIndex sourceIndex = new SourceIndex(tempDir, cache, table, resolver);
+        sourceIndex.build(1, null);
+        ReverseCallIndex index = new ReverseCallIndex(sourceIndex.getMethods(),
+            new MethodDependencyTracker(cache, table), resolver,
+            new TestMethodFilter(tempDir.resolve("test"), cache));
+
+        JavaMethod b = sourceIndex.findMethods("p.A.b").get(0);
+        JavaMethod c = sourceIndex.findMethods("p.A.c").get(0);
+        assertEquals(2, index.getTestCount());
+        assertFalse(index.isTest(sourceIndex.findMethods("p.ATest.setUp").get(0)));
+        // Repeated calls count once
+        assertEquals(Arrays.asList("p.A.a", "p.A.c"), names(index.getCallers(b)));
+        assertEquals(Collections.singletonList("p.A.c"), names(index.getCallees(b)));
+        // The cycle between b and c does not stop the walk
+        assertEquals(Arrays.asList("p.ATest.callsA", "p.ATest.testC"), names(index.findReachingTests(b)));
+        assertEquals(Arrays.asList("p.ATest.callsA", "p.ATest.testC"), names(index.findReachingTests(c)));
+        assertEquals(Collections.emptyList(), index.findReachingTests(sourceIndex.findMethods("p.A.unused").get(0)));
+
+        StringWriter map = new StringWriter();
+        index.writeTestMap(map);
+        String[] lines = map.toString().split("\n");
+        assertEquals(5, lines.length);
+        assertTrue(lines[0].startsWith("{\"method\":\"p.A.a\""));
+        assertTrue(lines[0].endsWith("\"tests\":[\"p.ATest.callsA\"]}"));
+        assertTrue(lines[3].endsWith("\"tests\":[]}"));
+
+        // Queries on many threads at once share the pooled walks without mixing up their marks
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 200; i++) {
+                        assertEquals(Arrays.asList("p.ATest.callsA", "p.ATest.testC"), names(index.findReachingTests(b)));
+                        assertEquals(Collections.emptyList(),
+                            index.findReachingTests(sourceIndex.findMethods("p.A.unused").get(0)));
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(Collections.emptyList(), failures);
+    }
+
+    private static List<String> names(List<JavaMethod> methods) {
+        List<String> names = new ArrayList<>();
+        for (JavaMethod method : methods) {
+            names.add(method.getFullyQualifiedName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,172 @@
+package com.equivalentmutant.index;
+
+import com.equivalentmutant.dependency.MethodDependencyTracker;
+import com.equivalentmutant.dependency.RecursiveDependencyResolver;
+import com.equivalentmutant.dependency.SimpleMethodResolver;
+import com.equivalentmutant.model.CallSiteTable;
+import com.equivalentmutant.model.DependencyGraph;
+import com.equivalentmutant.parser.CompilationUnitCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+
+public class SourceIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private CompilationUnitCache cache;
+    private CallSiteTable table;
+    private SimpleMethodResolver resolver;
+    private SourceIndex index;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        writeClass("A", "public int run() { return new B().get(); }");
+        writeClass("B", "public int get() { return 1; }");
+        writeClass("C", "public void other() {}");
+        cache = new CompilationUnitCache();
+        table = new CallSiteTable();
+        resolver = new SimpleMethodResolver();
+        index = new SourceIndex(tempDir, cache, table, resolver);
+        index.build(2, null);
+    }
+
+    @Test
+    public void testUpdateAppliesAddedModifiedAndDeletedFiles() throws Exception {
+        // Unchanged content and files outside the sources are no change at all
+        Files.writeString(tempDir.resolve("notes.txt"), "x");
+        assertTrue(index.update(List.of(file("A"), file("B"), tempDir.resolve("notes.txt"))).isEmpty());
+
+        writeClass("B", "public int get() { return 2; } public int size() { return 0; }");
+        writeClass("D", "public void added() {}");
+        Files.delete(file("C"));
+        IndexUpdate update = index.update(List.of(file("B"), file("C"), file("D")));
+        assertEquals(List.of(file("B"), file("C"), file("D")), update.getChangedFiles());
+        assertEquals(2, update.getRemovedMethods().size());
+        assertEquals(3, update.getAddedMethods().size());
+        assertTrue(update.getSkippedFiles().isEmpty());
+
+        assertTrue(index.findMethods("p.B.get").get(0).getSourceCode().contains("return 2"));
+        assertEquals(1, index.findMethods("p.B.size").size());
+        assertEquals(1, index.findMethods("p.D.added").size());
+        assertTrue(index.findMethods("p.C.other").isEmpty());
+        assertFalse(index.getFiles().contains(file("C")));
+        // The call-site table and the resolver follow the index
+        assertEquals(1, table.get(index.findMethods("p.A.run").get(0)).size());
+        assertFalse(resolver.resolveMethodByFullyQualifiedName("p.C.other").isPresent());
+    }
+
+    @Test
+    public void testUnparsableFileIsReportedAndRetried() throws Exception {
+        Files.writeString(file("B"), "package p;\npublic class B {\n    public int get() {");
+        IndexUpdate update = index.update(List.of(file("B")));
+        assertEquals(List.of(file("B")), update.getChangedFiles());
+        assertEquals(List.of(file("B")), List.copyOf(update.getSkippedFiles().keySet()));
+        assertTrue(index.findMethods("p.B.get").isEmpty());
+
+        writeClass("B", "public int get() { return 3; }");
+        update = index.update(List.of(file("B")));
+        assertTrue(update.getSkippedFiles().isEmpty());
+        assertEquals(1, index.findMethods("p.B.get").size());
+    }
+
+    @Test
+    public void testUpdateMarksOnlyAffectedGraphsStale() throws Exception {
+        RecursiveDependencyResolver dependencyResolver =
+            new RecursiveDependencyResolver(new MethodDependencyTracker(cache, table), resolver);
+        DependencyGraph graph = dependencyResolver.buildDependencyGraph(index.findMethods("p.A.run").get(0), -1);
+        index.registerGraph(graph);
+
+        // C is not in the graph, and nothing in the graph calls a method named like one of C's
+        writeClass("C", "public void other() { int x = 1; }");
+        assertEquals(0, index.update(List.of(file("C"))).getInvalidatedGraphs());
+        assertFalse(graph.isStale());
+
+        // A new method named like a call in the graph could be its target now
+        writeClass("C", "public int get() { return 0; }");
+        assertEquals(1, index.update(List.of(file("C"))).getInvalidatedGraphs());
+        assertTrue(graph.isStale());
+
+        // A method of the graph changes
+        graph = dependencyResolver.buildDependencyGraph(index.findMethods("p.A.run").get(0), -1);
+        index.registerGraph(graph);
+        writeClass("B", "public int get() { return 2; }");
+        assertEquals(1, index.update(List.of(file("B"))).getInvalidatedGraphs());
+        assertTrue(graph.isStale());
+    }
+
+    @Test
+    public void testUpdateChecksRootWithoutResolvedCalls() throws Exception {
+        writeClass("A", "public void run() { helper(); }");
+        index.update(List.of(file("A")));
+        RecursiveDependencyResolver dependencyResolver =
+            new RecursiveDependencyResolver(new MethodDependencyTracker(cache, table), resolver);
+
+        // helper() resolves to nothing, so the graph has no edges and holds only its root
+        DependencyGraph graph = dependencyResolver.buildDependencyGraph(index.findMethods("p.A.run").get(0), -1);
+        assertTrue(graph.getAllMethods().isEmpty());
+        index.registerGraph(graph);
+        writeClass("B", "public int get() { return 1; } public void helper() {}");
+        assertEquals(1, index.update(List.of(file("B"))).getInvalidatedGraphs());
+        assertTrue(graph.isStale());
+
+        // The root itself changes
+        graph = dependencyResolver.buildDependencyGraph(index.findMethods("p.A.run").get(0), -1);
+        index.registerGraph(graph);
+        writeClass("A", "public void run() { helper(); helper(); }");
+        assertEquals(1, index.update(List.of(file("A"))).getInvalidatedGraphs());
+        assertTrue(graph.isStale());
+    }
+
+    @Test
+    public void testUpdateWaitsForReadLockAndRunsListenerUnderIt() throws Exception {
+        writeClass("B", "public int get() { return 2; }");
+        AtomicBoolean listenerHeldLock = new AtomicBoolean();
+        CompletableFuture<IndexUpdate> update;
+
+        Lock readLock = index.getReadLock();
+        readLock.lock();
+        try {
+            update = CompletableFuture.supplyAsync(() -> index.update(List.of(file("B")),
+                applied -> listenerHeldLock.set(!readLockAvailableElsewhere())));
+            Thread.sleep(200);
+            assertFalse(update.isDone());
+            assertTrue(index.findMethods("p.B.get").get(0).getSourceCode().contains("return 1"));
+        } finally {
+            readLock.unlock();
+        }
+        assertEquals(List.of(file("B")), update.get(10, TimeUnit.SECONDS).getChangedFiles());
+        assertTrue(listenerHeldLock.get());
+    }
+
+    private boolean readLockAvailableElsewhere() {
+        CompletableFuture<Boolean> acquired = CompletableFuture.supplyAsync(() -> {
+            Lock readLock = index.getReadLock();
+            if (!readLock.tryLock()) {
+                return false;
+            }
+            readLock.unlock();
+            return true;
+        });
+        return acquired.join();
+    }
+
+    private Path file(String className) {
+        return tempDir.resolve("p").resolve(className + ".java");
+    }
+
+    private void writeClass(String className, String body) throws Exception {
+        Files.createDirectories(tempDir.resolve("p"));
+        Files.writeString(file(className), "package p;\npublic class " + className + " {\n    " + body + "\n}\n");
+    }
+}
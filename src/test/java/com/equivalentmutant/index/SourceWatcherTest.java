@@ -0,0 +1,62 @@
+package com.equivalentmutant.index;
+
+import com.equivalentmutant.dependency.SimpleMethodResolver;
+import com.equivalentmutant.model.CallSiteTable;
+import com.equivalentmutant.parser.CompilationUnitCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class SourceWatcherTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testChangesInQuickSuccessionAreAppliedAsOneUpdate() throws Exception {
+        Path sources = Files.createDirectories(tempDir.resolve("p"));
+        Files.writeString(sources.resolve("A.java"), "package p;\nclass A {\n    void a() {}\n}\n");
+        SourceIndex index = new SourceIndex(tempDir, new CompilationUnitCache(), new CallSiteTable(),
+            new SimpleMethodResolver());
+        index.build(1, null);
+
+        BlockingQueue<IndexUpdate> updates = new LinkedBlockingQueue<>();
+        BlockingQueue<Exception> errors = new LinkedBlockingQueue<>();
+        try (SourceWatcher watcher = new SourceWatcher(index, updates::add, errors::add)) {
+            watcher.start();
+            // Well within the quiet period of each other
+            Files.writeString(sources.resolve("A.java"), "package p;\nclass A {\n    void a() { b(); }\n}\n");
+            Files.writeString(sources.resolve("B.java"), "package p;\nclass B {\n    void b() {}\n}\n");
+            IndexUpdate update = updates.poll(10, TimeUnit.SECONDS);
+            assertNotNull(update, "No update");
+            assertEquals(List.of(sources.resolve("A.java"), sources.resolve("B.java")), update.getChangedFiles());
+            assertEquals(1, index.findMethods("p.B.b").size());
+
+            // The files of a new directory are found, and the directory is watched from then on
+            Path nested = Files.createDirectories(sources.resolve("q"));
+            Files.writeString(nested.resolve("C.java"), "package p.q;\nclass C {\n    void c() {}\n}\n");
+            while (index.findMethods("p.q.C.c").isEmpty()) {
+                assertNotNull(updates.poll(10, TimeUnit.SECONDS), "New directory not indexed");
+            }
+            Files.writeString(nested.resolve("C.java"), "package p.q;\nclass C {\n    void d() {}\n}\n");
+            while (index.findMethods("p.q.C.d").isEmpty()) {
+                assertNotNull(updates.poll(10, TimeUnit.SECONDS), "Change in new directory not indexed");
+            }
+
+            // A deleted file is removed
+            Files.delete(sources.resolve("B.java"));
+            update = updates.poll(10, TimeUnit.SECONDS);
+            assertNotNull(update, "No update");
+            assertEquals(List.of(sources.resolve("B.java")), update.getChangedFiles());
+            assertTrue(index.findMethods("p.B.b").isEmpty());
+            assertTrue(errors.isEmpty(), errors.toString());
+        }
+    }
+}
@@ -49,4 +49,39 @@ public class DependencyGraphTest {
         assertTrue(allMethods.contains(rootMethod));
         assertTrue(allMethods.contains(calleeMethod));
     }
-} 
\ No newline at end of file
+
+    @Test
+    public void testDuplicateCallsAndReverseView() {
+        JavaMethod root = method("root", 1);
+        JavaMethod shared = method("shared", 10);
+        JavaMethod other = method("other", 20);
+        DependencyGraph graph = new DependencyGraph(root);
+
+        assertTrue(graph.addDependency(new MethodDependency(root, shared, callSite(2, 5))));
+        assertFalse(graph.addDependency(new MethodDependency(root, shared, callSite(2, 5))));
+        assertTrue(graph.addDependency(new MethodDependency(root, shared, callSite(3, 5))));
+        assertTrue(graph.addDependency(new MethodDependency(other, shared, callSite(21, 5))));
+        graph.recordDepth(shared, 2);
+        graph.recordDepth(shared, 1);
+
+        assertEquals(3, graph.getDependencyCount());
+        assertEquals(2, graph.getDependenciesForMethod(root).size());
+        assertEquals(3, graph.getCallersOfMethod(shared).size());
+        assertTrue(graph.getCallersOfMethod(shared).contains(new MethodDependency(other, shared, callSite(21, 5))));
+        assertEquals(Collections.emptySet(), graph.getCallersOfMethod(root));
+        assertEquals(2, graph.getAllDependencies().size());
+        assertNull(graph.getAllDependencies().get(shared));
+        assertEquals(3, graph.getAllMethods().size());
+        assertEquals(1, graph.getDepth(shared));
+        assertEquals(-1, graph.getDepth(other));
+    }
+
+    private static JavaMethod method(String name, int line) {
+        return new JavaMethod("com.example", "TestClass", name, "void " + name + "()", "void " + name + "() {}",
+            new SourceLocation("TestClass.java", line, 1, line + 2, 3), false, Collections.emptyList());
+    }
+
+    private static SourceLocation callSite(int line, int column) {
+        return new SourceLocation("TestClass.java", line, column, line, column + 10);
+    }
+}
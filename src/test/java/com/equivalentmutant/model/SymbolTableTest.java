@@ -0,0 +1,50 @@
+package com.equivalentmutant.model;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class SymbolTableTest {
+
+    @Test
+    public void testEqualNamesShareOneInstance() {
+        SymbolTable symbols = new SymbolTable();
+        String name = symbols.intern(new String("com.example"));
+        assertSame(name, symbols.intern(new String("com.example")));
+        assertNull(symbols.intern((String) null));
+
+        List<String> types = symbols.intern(new ArrayList<>(Arrays.asList(new String("int"), new String("String"))));
+        assertSame(types, symbols.intern(Arrays.asList("int", "String")));
+        assertSame(symbols.intern("int"), types.get(0));
+        assertThrows(UnsupportedOperationException.class, () -> types.add("long"));
+    }
+
+    @Test
+    public void testUnreferencedNamesAreDropped() throws Exception {
+        SymbolTable symbols = new SymbolTable();
+        String kept = symbols.intern(new String("kept"));
+        for (int i = 0; i < 10_000; i++) {
+            symbols.intern("dropped" + i);
+            symbols.intern(Collections.singletonList("dropped" + i));
+        }
+        for (int attempt = 0; attempt < 50 && symbols.size() > 1; attempt++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(1, symbols.size());
+        assertSame(kept, symbols.intern(new String("kept")));
+    }
+
+    @Test
+    public void testSignaturesAreNotInterned() {
+        String signature = new String("void run(int count)");
+        JavaMethod method = new JavaMethod("p", "A", "run", signature, "void run(int count) {}",
+            new SourceLocation("A.java", 1, 1, 1, 20), false, Collections.singletonList("int"));
+        assertSame(signature, method.getSignature());
+        assertSame(SymbolTable.shared().intern(new String("run")), method.getMethodName());
+    }
+}
@@ -0,0 +1,67 @@
+package com.equivalentmutant.parser;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+public class CompilationUnitCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testUnchangedFileIsParsedOnce() throws Exception {
+        File file = tempDir.resolve("A.java").toFile();
+        Files.writeString(file.toPath(), "class A { void a() {} }");
+        
+        CompilationUnitCache cache = new CompilationUnitCache();
+        JavaParser parser = new JavaParser();
+        
+        CompilationUnit first = cache.getCompilationUnit(file, parser);
+        CompilationUnit second = cache.getCompilationUnit(file, parser);
+        
+        assertSame(first, second);
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testChangedContentIsReparsed() throws Exception {
+        File file = tempDir.resolve("A.java").toFile();
+        Files.writeString(file.toPath(), "class A { void a() {} }");
+        
+        CompilationUnitCache cache = new CompilationUnitCache();
+        JavaParser parser = new JavaParser();
+        cache.getCompilationUnit(file, parser);
+        
+        // Change the content and move the timestamp so the attribute check fails
+        Files.writeString(file.toPath(), "class A { void a() {} void b() {} }");
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(file.lastModified() + 2000));
+        CompilationUnit updated = cache.getCompilationUnit(file, parser);
+        
+        assertEquals(2, updated.getType(0).getMethods().size());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() throws Exception {
+        CompilationUnitCache cache = new CompilationUnitCache(1);
+        JavaParser parser = new JavaParser();
+        
+        for (String name : new String[] {"A", "B"}) {
+            File file = tempDir.resolve(name + ".java").toFile();
+            Files.writeString(file.toPath(), "class " + name + " {}");
+            cache.getCompilationUnit(file, parser);
+        }
+        
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getEvictions());
+    }
+}
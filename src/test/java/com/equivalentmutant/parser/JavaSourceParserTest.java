@@ -0,0 +1,71 @@
+package com.equivalentmutant.parser;
+
+import com.equivalentmutant.model.CallSiteTable;
+import com.equivalentmutant.model.FileFingerprint;
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.model.MethodCallInfo;
+import com.equivalentmutant.model.SourceText;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class JavaSourceParserTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testCallSitesAreRecordedPerOverload() throws Exception {
+        File file = tempDir.resolve("Calc.java").toFile();
+        Files.writeString(file.toPath(),
+            "package com.example;\n" +
+            "class Calc {\n" +
+            "    int add(int a) {\n" +
+            "        return add(a, 1);\n" +
+            "    }\n" +
+            "    int add(int a, int b) {\n" +
+            "        return sum(a, b) + Math.abs(b);\n" +
+            "    }\n" +
+            "}\n");
+        
+        CallSiteTable table = new CallSiteTable();
+        JavaSourceParser parser = new JavaSourceParser(new CompilationUnitCache(), table);
+        List<JavaMethod> methods = parser.parseFile(file);
+        
+        assertEquals(2, methods.size());
+        assertEquals(2, table.size());
+        
+        List<MethodCallInfo> singleArgCalls = table.get(methods.get(0));
+        assertEquals(1, singleArgCalls.size());
+        assertEquals("add", singleArgCalls.get(0).getMethodName());
+        assertEquals(2, singleArgCalls.get(0).getArgumentTypes().size());
+        assertEquals(4, singleArgCalls.get(0).getLocation().getBeginLine());
+        
+        List<MethodCallInfo> twoArgCalls = table.get(methods.get(1));
+        assertEquals(2, twoArgCalls.size());
+        assertEquals("sum", twoArgCalls.get(0).getMethodName());
+        assertEquals("abs", twoArgCalls.get(1).getMethodName());
+    }
+
+    @Test
+    public void testSourceCodeIsSlicedFromOriginalText() throws Exception {
+        File file = tempDir.resolve("Fmt.java").toFile();
+        String method = "/** Doubles. */\r\n    @Deprecated\r\n    int twice(int a)   {\r\n\treturn a+a ; // keep\r\n    }";
+        Files.writeString(file.toPath(), "package com.example;\r\nclass Fmt {\r\n    " + method + "\r\n}\r\n");
+
+        JavaMethod parsed = new JavaSourceParser().parseFile(file).get(0);
+        assertEquals(method, parsed.getSourceCode());
+
+        // A text that is not held in memory is read again, but only while the file is unchanged
+        SourceText lazy = new SourceText(file.getAbsolutePath(), FileFingerprint.hash(Files.readAllBytes(file.toPath())));
+        assertEquals(method, lazy.slice(parsed.getSourceBegin(), parsed.getSourceEnd()));
+        Files.writeString(file.toPath(), "package com.example;\nclass Fmt {}\n");
+        SourceText changed = new SourceText(file.getAbsolutePath(), lazy.getContentHash());
+        assertThrows(IllegalStateException.class, () -> changed.slice(0, 1));
+    }
+}
@@ -0,0 +1,70 @@
+package com.equivalentmutant.parser;
+
+import com.equivalentmutant.model.CallSiteTable;
+import com.equivalentmutant.model.JavaMethod;
+import com.equivalentmutant.model.MethodCallInfo;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class ParallelSourceIndexerTest {
+
+    // A package of the analyzer's own sources, large enough for the workers to interleave, with calls
+    // resolved against all of them
+    private static final Path TYPE_ROOT = Path.of("src", "main", "java");
+    private static final Path SOURCES = TYPE_ROOT.resolve("com/equivalentmutant/dependency");
+
+    @Test
+    public void testParallelIndexEqualsSequentialIndex() throws Exception {
+        SymbolResolution symbolResolution = new SymbolResolution(Collections.singletonList(TYPE_ROOT));
+
+        // Every file parsed in path order by a single parser
+        CallSiteTable table = new CallSiteTable();
+        JavaSourceParser parser = new JavaSourceParser(new CompilationUnitCache(), table, symbolResolution);
+        SortedMap<Path, List<JavaMethod>> sequential = new TreeMap<>();
+        try (Stream<Path> paths = Files.walk(SOURCES)) {
+            for (Path file : paths.filter(path -> path.toString().endsWith(".java")).sorted().collect(Collectors.toList())) {
+                sequential.put(file, parser.parseFile(file.toFile()));
+            }
+        }
+        String expected = describe(sequential, table);
+        assertTrue(expected.contains(" -> com.equivalentmutant.model.JavaMethod.getDeclarationKey()"));
+
+        for (int run = 0; run < 2; run++) {
+            CallSiteTable parallelTable = new CallSiteTable();
+            SortedMap<Path, List<JavaMethod>> parallel = new ParallelSourceIndexer(new CompilationUnitCache(),
+                parallelTable, 4, symbolResolution).index(SOURCES);
+            assertEquals(sequential.keySet(), parallel.keySet());
+            assertEquals(expected, describe(parallel, parallelTable), "Run " + run);
+        }
+    }
+
+    /**
+     * Lists every method with its location and call sites, including their resolved targets.
+     */
+    private static String describe(SortedMap<Path, List<JavaMethod>> files, CallSiteTable table) {
+        StringBuilder description = new StringBuilder();
+        for (Map.Entry<Path, List<JavaMethod>> file : files.entrySet()) {
+            description.append(file.getKey()).append('\n');
+            for (JavaMethod method : file.getValue()) {
+                description.append("  ").append(method.getQualifiedClassName()).append(' ')
+                    .append(method.getSignature()).append(' ').append(method.getLocation()).append('\n');
+                for (MethodCallInfo call : table.get(method)) {
+                    description.append("    ").append(call.getMethodName()).append('/')
+                        .append(call.getArgumentTypes().size()).append(' ').append(call.getLocation())
+                        .append(" -> ").append(call.getTargetKey()).append('\n');
+                }
+            }
+        }
+        return description.toString();
+    }
+}
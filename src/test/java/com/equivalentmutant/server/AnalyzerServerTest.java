@@ -0,0 +1,131 @@
+package com.equivalentmutant.server;
+
+import com.equivalentmutant.batch.BatchAnalyzer;
+import com.equivalentmutant.context.MethodContextExtractor;
+import com.equivalentmutant.dependency.MethodDependencyTracker;
+import com.equivalentmutant.dependency.SimpleMethodResolver;
+import com.equivalentmutant.dependency.SubgraphCache;
+import com.equivalentmutant.dependency.TraversalBudget;
+import com.equivalentmutant.index.SourceIndex;
+import com.equivalentmutant.model.CallSiteTable;
+import com.equivalentmutant.parser.CompilationUnitCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class AnalyzerServerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private SourceIndex index;
+    private SubgraphCache subgraphCache;
+    private AnalyzerServer server;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        writeClass("A", "public int run() { return new B().get(); }");
+        writeClass("B", "public int get() { return 1; }");
+        CompilationUnitCache cache = new CompilationUnitCache();
+        CallSiteTable table = new CallSiteTable();
+        SimpleMethodResolver resolver = new SimpleMethodResolver();
+        index = new SourceIndex(tempDir, cache, table, resolver);
+        index.build(1, null);
+        subgraphCache = new SubgraphCache(1000);
+        BatchAnalyzer analyzer = new BatchAnalyzer(index, new MethodDependencyTracker(cache, table), resolver,
+            new MethodContextExtractor(), 1, subgraphCache, null);
+        server = new AnalyzerServer(index, analyzer, cache, subgraphCache, -1, TraversalBudget.UNLIMITED);
+        server.start(0);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testEndpoints() throws Exception {
+        HttpResponse<String> response = get("/analyze?class=p.A&method=run");
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("application/json"));
+        assertTrue(response.body().contains("\"methods\":2"), response.body());
+
+        response = get("/health");
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().startsWith("{\"status\":\"ok\",\"files\":2,"), response.body());
+
+        response = get("/stats");
+        assertEquals(200, response.statusCode());
+        // Requests are counted once their response is sent, so the count may lag behind
+        assertTrue(response.body().contains("\"failedRequests\":0,"), response.body());
+        assertTrue(response.body().contains("\"subgraphCache\":{"), response.body());
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        assertEquals(400, get("/analyze?class=p.A").statusCode());
+        assertEquals(400, get("/analyze?class=p.A&method=run&depth=deep").statusCode());
+        // The client refuses to send a malformed escape, so the request is written by hand
+        String rawResponse = getRaw("/analyze?class=p.A&method=%zz");
+        assertTrue(rawResponse.startsWith("HTTP/1.1 400 "), rawResponse);
+        HttpResponse<String> response = get("/analyze?class=p.A&method=missing");
+        assertEquals(404, response.statusCode());
+        assertTrue(response.body().startsWith("{\"status\":\"error\","), response.body());
+        // No test directory was given
+        assertEquals(404, get("/tests?class=p.A&method=run").statusCode());
+
+        HttpRequest post = HttpRequest.newBuilder(uri("/analyze?class=p.A&method=run"))
+            .POST(HttpRequest.BodyPublishers.noBody()).build();
+        assertEquals(405, client.send(post, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    @Test
+    public void testAnalysisFollowsUpdate() throws Exception {
+        assertTrue(get("/analyze?class=p.A&method=run").body().contains("\"methods\":2"));
+        writeClass("B", "public int get() { return new C().other(); }");
+        writeClass("C", "public int other() { return 2; }");
+        index.update(List.of(tempDir.resolve("p/B.java"), tempDir.resolve("p/C.java")), update -> subgraphCache.clear());
+
+        HttpResponse<String> response = get("/analyze?class=p.A&method=run");
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("\"methods\":3"), response.body());
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        return client.send(HttpRequest.newBuilder(uri(path)).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private String getRaw(String path) throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET " + path + " HTTP/1.1\r\nHost: 127.0.0.1\r\nConnection: close\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            return new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getPort() + path);
+    }
+
+    private void writeClass(String className, String body) throws Exception {
+        Files.createDirectories(tempDir.resolve("p"));
+        Files.writeString(tempDir.resolve("p").resolve(className + ".java"),
+            "package p;\npublic class " + className + " {\n    " + body + "\n}\n");
+    }
+}
@@ -0,0 +1,38 @@
+package com.equivalentmutant.stats;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HistogramTest {
+
+    @Test
+    public void testPercentilesAreWithinAQuarterOfTheValue() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value * 1000);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMax());
+        assertEquals(500_500.0, histogram.getMean(), 0.001);
+        for (double percentile : new double[] {50, 90, 99}) {
+            long exact = (long) (percentile * 10) * 1000;
+            long estimate = histogram.getPercentile(percentile);
+            assertTrue(estimate >= exact && estimate <= exact * 1.25, percentile + ": " + estimate);
+        }
+        assertEquals(1_000_000, histogram.getPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+
+    @Test
+    public void testBucketBoundsContainTheirValues() {
+        for (long value : new long[] {0, 1, 3, 4, 5, 7, 8, 9, 15, 16, 1000, 123_456_789, Long.MAX_VALUE / 2}) {
+            int bucket = Histogram.bucketOf(value);
+            assertTrue(Histogram.upperBound(bucket) >= value, "upper bound of " + value);
+            assertTrue(bucket == 0 || Histogram.upperBound(bucket - 1) < value, "lower bound of " + value);
+        }
+    }
+}
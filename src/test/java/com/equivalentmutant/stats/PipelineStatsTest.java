@@ -0,0 +1,109 @@
+package com.equivalentmutant.stats;
+
+import com.equivalentmutant.context.ContextOutput;
+import com.equivalentmutant.context.MethodContextExtractor;
+import com.equivalentmutant.dependency.MethodDependencyTracker;
+import com.equivalentmutant.dependency.RecursiveDependencyResolver;
+import com.equivalentmutant.dependency.SimpleMethodResolver;
+import com.equivalentmutant.index.SourceIndex;
+import com.equivalentmutant.model.CallSiteTable;
+import com.equivalentmutant.model.DependencyGraph;
+import com.equivalentmutant.parser.CompilationUnitCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class PipelineStatsTest {
+
+    @TempDir
+    Path tempDir;
+
+    private long sourceBytes;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        // run() makes a hit, a call with two equally good candidates and a call to nothing in the sources
+        writeClass("A", "void run() { helper(); new B().get(); size(); println(); }\n    void helper() {}");
+        writeClass("B", "int get() { return 1; }\n    int size() { return 0; }");
+        writeClass("C", "int size() { return 2; }");
+        PipelineStats.global().reset();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        PipelineStats.setEnabled(false);
+        PipelineStats.global().reset();
+    }
+
+    @Test
+    public void testEnabledRunRecordsEveryPhase() throws Exception {
+        PipelineStats.setEnabled(true);
+        long outputBytes = runPipeline();
+        PipelineStats stats = PipelineStats.global();
+
+        assertEquals(3, stats.getFilesParsed());
+        assertEquals(sourceBytes, stats.getBytesRead());
+        assertEquals(2, stats.getResolutions(PipelineStats.Resolution.HIT));
+        assertEquals(1, stats.getResolutions(PipelineStats.Resolution.AMBIGUOUS));
+        assertEquals(1, stats.getResolutions(PipelineStats.Resolution.MISS));
+        // Four methods in the graph of run(), and helper() alone in its own
+        assertEquals(5, stats.getGraphNodes());
+        assertEquals(3, stats.getGraphEdges());
+        assertEquals(outputBytes, stats.getOutputBytes());
+        assertTrue(stats.toJson().contains("\"rendering\": {\"contexts\": 1, \"outputBytes\": " + outputBytes + ","),
+            stats.toJson());
+    }
+
+    @Test
+    public void testDisabledRunRecordsNothing() throws Exception {
+        assertFalse(PipelineStats.isEnabled());
+        assertTrue(runPipeline() > 0);
+        PipelineStats stats = PipelineStats.global();
+
+        assertEquals(0, stats.getFilesParsed());
+        assertEquals(0, stats.getBytesRead());
+        for (PipelineStats.Resolution resolution : PipelineStats.Resolution.values()) {
+            assertEquals(0, stats.getResolutions(resolution), resolution.name());
+        }
+        assertEquals(0, stats.getGraphNodes());
+        assertEquals(0, stats.getGraphEdges());
+        assertEquals(0, stats.getOutputBytes());
+    }
+
+    /**
+     * Indexes the sources, builds the graphs of run() and helper() and renders the context of run().
+     *
+     * @return The number of bytes rendered
+     */
+    private long runPipeline() throws Exception {
+        CompilationUnitCache cache = new CompilationUnitCache();
+        CallSiteTable table = new CallSiteTable();
+        SimpleMethodResolver resolver = new SimpleMethodResolver();
+        SourceIndex index = new SourceIndex(tempDir, cache, table, resolver);
+        index.build(1, null);
+
+        RecursiveDependencyResolver dependencyResolver =
+            new RecursiveDependencyResolver(new MethodDependencyTracker(cache, table), resolver);
+        DependencyGraph graph = dependencyResolver.buildDependencyGraph(index.findMethods("p.A.run").get(0), -1);
+        dependencyResolver.buildDependencyGraph(index.findMethods("p.A.helper").get(0), -1);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer out = ContextOutput.open(bytes, false)) {
+            new MethodContextExtractor().writeMethodContext(graph, out);
+        }
+        return bytes.size();
+    }
+
+    private void writeClass(String className, String body) throws Exception {
+        Path file = Files.createDirectories(tempDir.resolve("p")).resolve(className + ".java");
+        Files.writeString(file, "package p;\nclass " + className + " {\n    " + body + "\n}\n");
+        sourceBytes += Files.size(file);
+    }
+}